@@ -0,0 +1,34 @@
+package plugins.davhelle.cellgraph.benchmark;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the JMH benchmark suite. Runs all benchmarks
+ * of this package or only those matching the regular expression
+ * given as first argument, e.g. "TrackingBenchmark.trackCells".<br><br>
+ *
+ * The benchmark source folder requires jmh-core and
+ * jmh-generator-annprocess (annotation processing enabled) in
+ * addition to the plugin classpath. Relative inputs are resolved
+ * against the CellGraph project folder (see testData/).
+ *
+ * @author Davide Heller
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+
+		String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName();
+
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.include(include)
+				.forks(1);
+
+		new Runner(options.build()).run();
+	}
+
+}
@@ -0,0 +1,79 @@
+package plugins.davhelle.cellgraph.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.io.CsvTrackReader;
+import plugins.davhelle.cellgraph.io.CsvTrackWriter;
+import plugins.davhelle.cellgraph.misc.BorderCells;
+import plugins.davhelle.cellgraph.tracking.StableMarriageTracking;
+
+/**
+ * Benchmarks writing and reading back the tracking
+ * information in csv format.
+ *
+ * @author Davide Heller
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvTrackBenchmark {
+
+	@Param({"250", "1000", "4000"})
+	public int cell_no;
+
+	@Param({"6"})
+	public int time_points;
+
+	private SyntheticTissue tissue;
+	private SpatioTemporalGraph trackedGraph;
+	private SpatioTemporalGraph untrackedGraph;
+	private File directory;
+
+	@Setup(Level.Trial)
+	public void track() throws IOException{
+		tissue = SyntheticTissue.voronoi(cell_no, time_points, 1);
+		trackedGraph = tissue.toStGraph();
+		new BorderCells(trackedGraph).markOnly();
+		new StableMarriageTracking(trackedGraph, 5, 1, 1).track();
+
+		directory = File.createTempFile("cellgraph_tracking", "");
+		directory.delete();
+		directory.mkdir();
+	}
+
+	@Setup(Level.Invocation)
+	public void resetGraph(){
+		//reading the tracking modifies the graph
+		untrackedGraph = tissue.toStGraph();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFiles(){
+		for(File f: directory.listFiles())
+			f.delete();
+		directory.delete();
+	}
+
+	@Benchmark
+	public SpatioTemporalGraph roundTrip(){
+		new CsvTrackWriter(trackedGraph, directory.getAbsolutePath()).write();
+		new CsvTrackReader(untrackedGraph, directory.getAbsolutePath()).track();
+		return untrackedGraph;
+	}
+
+}
@@ -0,0 +1,96 @@
+package plugins.davhelle.cellgraph.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import plugins.davhelle.cellgraph.graphs.AdjacencyType;
+import plugins.davhelle.cellgraph.graphs.FrameGenerator;
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.io.InputType;
+import plugins.davhelle.cellgraph.io.RasterSkeletonReader;
+import plugins.davhelle.cellgraph.io.SkeletonReader;
+
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Benchmarks the graph generation stages: polygon extraction
+ * from skeleton images, comparing the ImageJ based {@link SkeletonReader}
+ * with the {@link RasterSkeletonReader}, and the construction of the frame graph.
+ *
+ * @author Davide Heller
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphGenerationBenchmark {
+
+	@State(Scope.Thread)
+	public static class SkeletonInput {
+
+		@Param({"testData/cell_tissue_crop.tif", "testData/square_example.tif", "testData/nested_example.tiff"})
+		public String skeleton_file;
+
+		@Param({"SKELETON", "SKELETON_RASTER"})
+		public InputType reader_type;
+
+		private SkeletonReader reader;
+
+		@Setup
+		public void setUp(){
+			if(reader_type == InputType.SKELETON_RASTER)
+				reader = new RasterSkeletonReader();
+			else
+				reader = new SkeletonReader();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class PolygonInput {
+
+		@Param({"250", "1000", "4000"})
+		public int cell_no;
+
+		@Param({"INTERSECTION", "SHARED_BOUNDARY"})
+		public AdjacencyType adjacency;
+
+		@Param({"voronoi", "hexagonal"})
+		public String tiling;
+
+		private ArrayList<Polygon> polygons;
+		private FrameGenerator generator;
+
+		@Setup
+		public void setUp(){
+			SyntheticTissue tissue;
+			if(tiling.equals("hexagonal"))
+				tissue = SyntheticTissue.hexagonal(cell_no, 1, 1);
+			else
+				tissue = SyntheticTissue.voronoi(cell_no, 1, 1);
+
+			polygons = tissue.getPolygons(0);
+			generator = new FrameGenerator(InputType.SKELETON, adjacency);
+		}
+	}
+
+	@Benchmark
+	public ArrayList<Polygon> extractPolygons(SkeletonInput input){
+		return input.reader.extractPolygons(input.skeleton_file);
+	}
+
+	@Benchmark
+	public FrameGraph populateFrame(PolygonInput input){
+		FrameGraph frame = new FrameGraph(0);
+		input.generator.populateFrame(frame, input.polygons);
+		return frame;
+	}
+
+}
@@ -0,0 +1,63 @@
+package plugins.davhelle.cellgraph.benchmark;
+
+import icy.image.IcyBufferedImage;
+import icy.sequence.Sequence;
+import icy.type.DataType;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.misc.EllipseFitGenerator;
+import plugins.davhelle.cellgraph.misc.VoronoiGenerator;
+
+/**
+ * Benchmarks the per-cell morphology generators.
+ *
+ * @author Davide Heller
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MorphologyBenchmark {
+
+	@Param({"250", "1000", "4000"})
+	public int cell_no;
+
+	@Param({"3"})
+	public int time_points;
+
+	private SpatioTemporalGraph stGraph;
+	private Sequence sequence;
+	private int extent;
+
+	@Setup
+	public void setUp(){
+		SyntheticTissue tissue = SyntheticTissue.voronoi(cell_no, time_points, 1);
+		stGraph = tissue.toStGraph();
+		extent = tissue.getExtent();
+		sequence = new Sequence(new IcyBufferedImage(extent, extent, 1, DataType.UBYTE));
+	}
+
+	@Benchmark
+	public VoronoiGenerator voronoi(){
+		//discard the tesselation stored by the previous invocation
+		stGraph.setVoronoiTesselation(null);
+		return new VoronoiGenerator(stGraph, sequence);
+	}
+
+	@Benchmark
+	public EllipseFitGenerator ellipseFit(){
+		return new EllipseFitGenerator(stGraph, extent, extent);
+	}
+
+}
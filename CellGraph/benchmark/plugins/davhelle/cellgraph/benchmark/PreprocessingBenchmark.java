@@ -0,0 +1,62 @@
+package plugins.davhelle.cellgraph.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.misc.BorderCells;
+import plugins.davhelle.cellgraph.misc.SmallCellRemover;
+
+/**
+ * Benchmarks the graph preprocessing stages: border
+ * identification and small cell removal.
+ *
+ * @author Davide Heller
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PreprocessingBenchmark {
+
+	@Param({"250", "1000", "4000"})
+	public int cell_no;
+
+	@Param({"3"})
+	public int time_points;
+
+	private SyntheticTissue tissue;
+	private SpatioTemporalGraph stGraph;
+
+	@Setup(Level.Trial)
+	public void createTissue(){
+		tissue = SyntheticTissue.voronoi(cell_no, time_points, 1);
+	}
+
+	@Setup(Level.Invocation)
+	public void createGraph(){
+		//both stages modify the graph
+		stGraph = tissue.toStGraph();
+	}
+
+	@Benchmark
+	public SpatioTemporalGraph markBorderCells(){
+		new BorderCells(stGraph).markOnly();
+		return stGraph;
+	}
+
+	@Benchmark
+	public int removeSmallCells(){
+		return new SmallCellRemover(stGraph).removeCellsBelow(SyntheticTissue.CELL_SIZE * 5);
+	}
+
+}
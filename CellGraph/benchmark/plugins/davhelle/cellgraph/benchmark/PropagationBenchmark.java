@@ -0,0 +1,89 @@
+package plugins.davhelle.cellgraph.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.nodes.Node;
+import plugins.davhelle.cellgraph.tracking.OverlapPropagation;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * Benchmarks the propagation of the first frame over the linkrange
+ * window: the exhaustive overlap search formerly used by
+ * GraphTracking.propagateTimePoint against the spatially indexed
+ * {@link OverlapPropagation}. Both return the number of candidate links.
+ *
+ * @author Davide Heller
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PropagationBenchmark {
+
+	private static final double MIN_OVERLAP = 10;
+	private static final int TIME_POINTS = 6;
+
+	@State(Scope.Thread)
+	public static class Tissue {
+
+		@Param({"250", "1000", "4000"})
+		public int cell_no;
+
+		private SpatioTemporalGraph stGraph;
+
+		@Setup(Level.Trial)
+		public void createTissue(){
+			stGraph = SyntheticTissue.voronoi(cell_no, TIME_POINTS, 1).toStGraph();
+		}
+	}
+
+	@Benchmark
+	public long propagateExhaustive(Tissue input){
+		SpatioTemporalGraph stGraph = input.stGraph;
+		PreparedGeometryFactory cached_factory = new PreparedGeometryFactory();
+		long links = 0;
+
+		for(Node current: stGraph.getFrame(0).vertexSet()){
+			PreparedGeometry cached_current = cached_factory.create(current.getGeometry());
+			for(int i=1; i<stGraph.size(); i++)
+				for(Node next: stGraph.getFrame(i).vertexSet()){
+					Geometry next_geometry = next.getGeometry();
+					if(cached_current.intersects(next_geometry))
+						if(next_geometry.intersection(current.getGeometry()).getArea() > MIN_OVERLAP)
+							links++;
+				}
+		}
+
+		return links;
+	}
+
+	@Benchmark
+	public long propagateIndexed(Tissue input){
+		SpatioTemporalGraph stGraph = input.stGraph;
+		OverlapPropagation propagation = new OverlapPropagation(MIN_OVERLAP);
+		long links = 0;
+
+		for(Node current: stGraph.getFrame(0).vertexSet())
+			for(int i=1; i<stGraph.size(); i++){
+				FrameGraph next_frame = stGraph.getFrame(i);
+				links += propagation.findOverlapping(current, next_frame).size();
+			}
+
+		return links;
+	}
+
+}
@@ -0,0 +1,194 @@
+package plugins.davhelle.cellgraph.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import plugins.davhelle.cellgraph.graphs.AdjacencyType;
+import plugins.davhelle.cellgraph.graphs.FrameGenerator;
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.io.InputType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.triangulate.VoronoiDiagramBuilder;
+
+/**
+ * Generator of synthetic epithelia used as benchmark input.
+ * Tissues are either regular hexagonal tilings or Voronoi
+ * tessellations of random seeds. Time points are obtained by
+ * displacing the seeds with a small random motion.
+ *
+ * @author Davide Heller
+ *
+ */
+public class SyntheticTissue {
+
+	/**
+	 * Typical cell diameter in pixels
+	 */
+	public static final double CELL_SIZE = 20;
+
+	/**
+	 * Tissue geometries, [time point][cell]
+	 */
+	private final List<List<Polygon>> frames;
+
+	/**
+	 * Side of the square tissue extent
+	 */
+	private final double side;
+
+	private SyntheticTissue(List<List<Polygon>> frames, double side){
+		this.frames = frames;
+		this.side = side;
+	}
+
+	/**
+	 * Voronoi tessellation of randomly placed seeds
+	 *
+	 * @param cell_no approximate number of cells per frame
+	 * @param time_points number of frames
+	 * @param seed random seed
+	 * @return synthetic tissue
+	 */
+	public static SyntheticTissue voronoi(int cell_no, int time_points, long seed){
+		Random random = new Random(seed);
+		double side = Math.sqrt(cell_no) * CELL_SIZE;
+
+		List<Coordinate> sites = new ArrayList<Coordinate>();
+		for(int i=0; i<cell_no; i++)
+			sites.add(new Coordinate(random.nextDouble() * side, random.nextDouble() * side));
+
+		return new SyntheticTissue(tessellate(sites, time_points, side, random), side);
+	}
+
+	/**
+	 * Regular hexagonal tiling obtained from a triangular seed lattice
+	 *
+	 * @param cell_no approximate number of cells per frame
+	 * @param time_points number of frames
+	 * @param seed random seed for the motion
+	 * @return synthetic tissue
+	 */
+	public static SyntheticTissue hexagonal(int cell_no, int time_points, long seed){
+		Random random = new Random(seed);
+		int columns = (int)Math.ceil(Math.sqrt(cell_no));
+		double row_height = CELL_SIZE * Math.sqrt(3) / 2;
+		int rows = (int)Math.ceil(cell_no / (double)columns);
+		double side = Math.max(columns * CELL_SIZE, rows * row_height);
+
+		List<Coordinate> sites = new ArrayList<Coordinate>();
+		for(int r=0; r<rows; r++)
+			for(int c=0; c<columns; c++){
+				double x = (c + (r % 2 == 0 ? 0.25 : 0.75)) * CELL_SIZE;
+				double y = (r + 0.5) * row_height;
+				sites.add(new Coordinate(x, y));
+			}
+
+		return new SyntheticTissue(tessellate(sites, time_points, side, random), side);
+	}
+
+	/**
+	 * Computes the clipped Voronoi cells of moving sites
+	 */
+	private static List<List<Polygon>> tessellate(List<Coordinate> sites, int time_points, double side, Random random){
+		List<List<Polygon>> frames = new ArrayList<List<Polygon>>();
+		for(int t=0; t<time_points; t++){
+			List<Polygon> cells = new ArrayList<Polygon>();
+			for(Polygon cell: voronoiCells(sites, side))
+				if(cell != null)
+					cells.add(cell);
+			frames.add(cells);
+
+			for(Coordinate c: sites){
+				c.x += random.nextGaussian() * CELL_SIZE / 10;
+				c.y += random.nextGaussian() * CELL_SIZE / 10;
+			}
+		}
+
+		return frames;
+	}
+
+	/**
+	 * Voronoi cells of a single frame clipped to the square tissue extent
+	 *
+	 * @param sites cell centers
+	 * @param side side of the square tissue extent
+	 * @return cell of every site in site order, null if the site has no cell inside the extent
+	 */
+	public static Polygon[] voronoiCells(List<Coordinate> sites, double side){
+		GeometryFactory factory = new GeometryFactory();
+		Envelope extent = new Envelope(0, side, 0, side);
+		Geometry clip = factory.toGeometry(extent);
+
+		Map<Coordinate, Integer> site_ids = new HashMap<Coordinate, Integer>();
+		for(int i=0; i<sites.size(); i++)
+			site_ids.put(sites.get(i), i);
+
+		VoronoiDiagramBuilder builder = new VoronoiDiagramBuilder();
+		builder.setSites(sites);
+		builder.setClipEnvelope(extent);
+		Geometry diagram = builder.getDiagram(factory);
+
+		Polygon[] cells = new Polygon[sites.size()];
+		for(int k=0; k<diagram.getNumGeometries(); k++){
+			Geometry tile = diagram.getGeometryN(k);
+			Integer site_id = site_ids.get(tile.getUserData());
+			Geometry cell = tile.intersection(clip);
+			if(site_id != null && cell instanceof Polygon && !cell.isEmpty())
+				cells[site_id] = (Polygon)cell;
+		}
+
+		return cells;
+	}
+
+	/**
+	 * @param time_point frame index
+	 * @return cell polygons of the frame
+	 */
+	public ArrayList<Polygon> getPolygons(int time_point){
+		return new ArrayList<Polygon>(frames.get(time_point));
+	}
+
+	/**
+	 * @return number of frames
+	 */
+	public int size(){
+		return frames.size();
+	}
+
+	/**
+	 * @return width and height of the tissue in pixels
+	 */
+	public int getExtent(){
+		return (int)Math.ceil(side);
+	}
+
+	/**
+	 * Builds a new spatio-temporal graph of the tissue. Every call
+	 * returns an independent graph which can be modified freely.
+	 *
+	 * @return untracked spatio-temporal graph
+	 */
+	public SpatioTemporalGraph toStGraph(){
+		FrameGenerator generator = new FrameGenerator(InputType.SKELETON, AdjacencyType.INTERSECTION);
+		TissueEvolution stGraph = new TissueEvolution(frames.size());
+
+		for(int t=0; t<frames.size(); t++){
+			FrameGraph frame = new FrameGraph(t);
+			generator.populateFrame(frame, getPolygons(t));
+			stGraph.setFrame(frame, t);
+		}
+
+		return stGraph;
+	}
+
+}
@@ -0,0 +1,109 @@
+package plugins.davhelle.cellgraph.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.misc.BorderCells;
+import plugins.davhelle.cellgraph.tracking.EdgeTrackStore;
+import plugins.davhelle.cellgraph.tracking.EdgeTracking;
+import plugins.davhelle.cellgraph.tracking.HungarianTracking;
+import plugins.davhelle.cellgraph.tracking.SparseAssignmentTracking;
+import plugins.davhelle.cellgraph.tracking.StableMarriageTracking;
+import plugins.davhelle.cellgraph.tracking.TrackingAlgorithm;
+import plugins.davhelle.cellgraph.tracking.TrackingEnum;
+
+/**
+ * Benchmarks the cell tracking algorithms and the
+ * subsequent edge tracking.
+ *
+ * @author Davide Heller
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TrackingBenchmark {
+
+	private static final int LINKRANGE = 5;
+	private static final int TIME_POINTS = 6;
+
+	private static SpatioTemporalGraph createGraph(SyntheticTissue tissue){
+		SpatioTemporalGraph stGraph = tissue.toStGraph();
+		new BorderCells(stGraph).markOnly();
+		return stGraph;
+	}
+
+	@State(Scope.Thread)
+	public static class UntrackedGraph {
+
+		@Param({"250", "1000"})
+		public int cell_no;
+
+		@Param({"STABLE_MARRIAGE", "HUNGARIAN", "SPARSE_ASSIGNMENT"})
+		public TrackingEnum algorithm;
+
+		private SyntheticTissue tissue;
+		private SpatioTemporalGraph stGraph;
+
+		@Setup(Level.Trial)
+		public void createTissue(){
+			tissue = SyntheticTissue.voronoi(cell_no, TIME_POINTS, 1);
+		}
+
+		@Setup(Level.Invocation)
+		public void resetGraph(){
+			//tracking modifies the graph
+			stGraph = createGraph(tissue);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class TrackedGraph {
+
+		@Param({"250", "1000"})
+		public int cell_no;
+
+		private SpatioTemporalGraph stGraph;
+
+		@Setup(Level.Trial)
+		public void track(){
+			stGraph = createGraph(SyntheticTissue.voronoi(cell_no, TIME_POINTS, 1));
+			new StableMarriageTracking(stGraph, LINKRANGE, 1, 1).track();
+		}
+	}
+
+	@Benchmark
+	public SpatioTemporalGraph trackCells(UntrackedGraph input){
+		TrackingAlgorithm tracker = null;
+		switch(input.algorithm){
+		case HUNGARIAN:
+			tracker = new HungarianTracking(input.stGraph, LINKRANGE, 1, 1);
+			break;
+		case SPARSE_ASSIGNMENT:
+			tracker = new SparseAssignmentTracking(input.stGraph, LINKRANGE, 1, 1);
+			break;
+		case STABLE_MARRIAGE:
+		default:
+			tracker = new StableMarriageTracking(input.stGraph, LINKRANGE, 1, 1);
+			break;
+		}
+
+		tracker.track();
+		return input.stGraph;
+	}
+
+	@Benchmark
+	public EdgeTrackStore trackEdges(TrackedGraph input){
+		return EdgeTracking.trackEdges(input.stGraph);
+	}
+
+}
@@ -0,0 +1,297 @@
+package plugins.davhelle.cellgraph.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.io.LazySessionGraph;
+import plugins.davhelle.cellgraph.io.SessionReader;
+import plugins.davhelle.cellgraph.io.SessionWriter;
+import plugins.davhelle.cellgraph.nodes.HandleCell;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.triangulate.DelaunayTriangulationBuilder;
+
+/**
+ * Memory benchmark for long time-lapses. A synthetic tracked movie
+ * (default 1000 frames of 500 Voronoi cells) is written frame by frame
+ * to a session file and then traversed, following every cell along its
+ * track, either from a fully loaded graph ({@link SessionReader}) or from
+ * a {@link LazySessionGraph}. Run every mode in its own JVM with a fixed
+ * heap, e.g.<br><br>
+ *
+ * <code>java -Xmx256m ... SessionMemoryBenchmark lazy 500 1000</code><br><br>
+ *
+ * The peak heap usage sampled after every frame is reported together
+ * with the elapsed time, or the failure if the heap is exhausted.
+ * The cells are generated with {@link SyntheticTissue}, the benchmark
+ * source folder has to be on the source path as well (JMH is not needed).
+ *
+ * @author Davide Heller
+ *
+ */
+public class SessionMemoryBenchmark {
+
+	/**
+	 * Number of frames kept by the lazy graph
+	 */
+	private static final int CACHE_SIZE = 16;
+
+	public static void main(String[] args) throws IOException {
+
+		String mode = args.length > 0 ? args[0] : "lazy";
+		int cell_no = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int frame_no = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+		File session_file = File.createTempFile("cellgraph_movie", SessionWriter.FILE_EXTENSION);
+		session_file.deleteOnExit();
+
+		long start = System.currentTimeMillis();
+		new SessionWriter(new SyntheticMovie(cell_no, frame_no, 1)).write(session_file);
+		System.out.printf("Wrote %d frames of %d cells in %d ms (%d MB)\n",
+				frame_no, cell_no, System.currentTimeMillis() - start, session_file.length() >> 20);
+
+		System.out.printf("Heap limit: %d MB\n", Runtime.getRuntime().maxMemory() >> 20);
+
+		start = System.currentTimeMillis();
+		try{
+			SpatioTemporalGraph stGraph;
+			if(mode.equals("eager"))
+				stGraph = new SessionReader(session_file).read();
+			else
+				stGraph = new LazySessionGraph(session_file, CACHE_SIZE);
+
+			long peak = traverse(stGraph);
+			System.out.printf("%s: traversed %d frames in %d ms, peak heap %d MB\n",
+					mode, stGraph.size(), System.currentTimeMillis() - start, peak >> 20);
+		}catch(OutOfMemoryError e){
+			System.out.printf("%s: out of memory after %d ms\n",
+					mode, System.currentTimeMillis() - start);
+		}
+	}
+
+	/**
+	 * Follows every cell to its next occurrence
+	 *
+	 * @param stGraph graph to traverse
+	 * @return peak heap usage in bytes
+	 */
+	private static long traverse(SpatioTemporalGraph stGraph){
+		Runtime runtime = Runtime.getRuntime();
+		long peak = 0;
+		double displacement = 0;
+
+		for(int i=0; i<stGraph.size(); i++){
+			for(Node n: stGraph.getFrame(i).vertexSet()){
+				Node next = n.getNext();
+				if(next != null)
+					displacement += n.getCentroid().distance(next.getCentroid());
+			}
+			peak = Math.max(peak, runtime.totalMemory() - runtime.freeMemory());
+		}
+
+		System.out.printf("Mean displacement: %.3f px\n",
+				displacement / stGraph.size() / stGraph.getFrame(0).size());
+		return peak;
+	}
+
+	/**
+	 * Tracked Voronoi movie generated frame by frame. Every site keeps its
+	 * tracking id and oscillates around its initial position. Only the
+	 * recently requested frames are kept, links are handles addressing
+	 * the cells by site index.
+	 */
+	private static class SyntheticMovie implements SpatioTemporalGraph, HandleCell.Resolver {
+
+		private static final int KEPT_FRAMES = 4;
+
+		/**
+		 * Frame of the movie, cells by site index
+		 */
+		private class MovieFrame extends FrameGraph {
+
+			private static final long serialVersionUID = 1L;
+
+			private final Node[] cells;
+
+			private MovieFrame(int t){
+				super(t);
+				this.cells = new Node[sites.length];
+			}
+
+			private SyntheticMovie getMovie(){
+				return SyntheticMovie.this;
+			}
+		}
+
+		private final GeometryFactory factory = new GeometryFactory();
+		private final int frame_no;
+		private final double side;
+		private final double[][] sites;
+
+		private final LinkedHashMap<Integer, FrameGraph> frames =
+				new LinkedHashMap<Integer, FrameGraph>(2 * KEPT_FRAMES, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, FrameGraph> eldest) {
+				return size() > KEPT_FRAMES;
+			}
+		};
+
+		private SyntheticMovie(int cell_no, int frame_no, long seed){
+			this.frame_no = frame_no;
+			this.side = Math.sqrt(cell_no) * SyntheticTissue.CELL_SIZE;
+
+			//position, oscillation phase and frequency of every site
+			Random random = new Random(seed);
+			double margin = SyntheticTissue.CELL_SIZE / 2;
+			sites = new double[cell_no][4];
+			for(int i=0; i<cell_no; i++){
+				sites[i][0] = margin + random.nextDouble() * (side - 2 * margin);
+				sites[i][1] = margin + random.nextDouble() * (side - 2 * margin);
+				sites[i][2] = random.nextDouble() * 2 * Math.PI;
+				sites[i][3] = 0.01 + random.nextDouble() * 0.05;
+			}
+		}
+
+		@Override
+		public FrameGraph getFrame(int t) {
+			FrameGraph frame = frames.get(t);
+			if(frame == null){
+				frame = createFrame(t);
+				frames.put(t, frame);
+			}
+			return frame;
+		}
+
+		@Override
+		public Node getCell(int t, int index) {
+			FrameGraph frame = getFrame(t);
+			if(!(frame instanceof MovieFrame))
+				return null;
+			return ((MovieFrame)frame).cells[index];
+		}
+
+		@Override
+		public int indexOf(Node n) {
+			FrameGraph frame = n.getBelongingFrame();
+			if(frame instanceof MovieFrame && ((MovieFrame)frame).getMovie() == this)
+				return n.getTrackID();
+			return -1;
+		}
+
+		private FrameGraph createFrame(int t){
+			double amplitude = SyntheticTissue.CELL_SIZE / 4;
+			List<Coordinate> coordinates = new ArrayList<Coordinate>();
+			Map<Coordinate, Integer> track_ids = new HashMap<Coordinate, Integer>();
+			for(int i=0; i<sites.length; i++){
+				double angle = sites[i][2] + t * sites[i][3];
+				Coordinate c = new Coordinate(
+						sites[i][0] + amplitude * Math.cos(angle),
+						sites[i][1] + amplitude * Math.sin(angle));
+				coordinates.add(c);
+				track_ids.put(c, i);
+			}
+
+			Polygon[] polygons = SyntheticTissue.voronoiCells(coordinates, side);
+
+			MovieFrame frame = new MovieFrame(t);
+			for(int track_id=0; track_id<polygons.length; track_id++){
+				if(polygons[track_id] == null)
+					continue;
+
+				HandleCell cell = new HandleCell(polygons[track_id], frame, this);
+				cell.setTrackID(track_id);
+				cell.setFirstHandle(0, track_id);
+				if(t > 0)
+					cell.setPreviousHandle(t - 1, track_id);
+				if(t < frame_no - 1)
+					cell.setNextHandle(t + 1, track_id);
+
+				frame.addVertex(cell);
+				frame.cells[track_id] = cell;
+			}
+
+			//voronoi neighbors are connected in the delaunay triangulation
+			DelaunayTriangulationBuilder triangulation = new DelaunayTriangulationBuilder();
+			triangulation.setSites(coordinates);
+			Geometry edges = triangulation.getEdges(factory);
+			for(int k=0; k<edges.getNumGeometries(); k++){
+				LineString edge = (LineString)edges.getGeometryN(k);
+				Integer source_id = track_ids.get(edge.getCoordinateN(0));
+				Integer target_id = track_ids.get(edge.getCoordinateN(1));
+				if(source_id == null || target_id == null)
+					continue;
+				Node source = frame.cells[source_id];
+				Node target = frame.cells[target_id];
+				if(source != null && target != null)
+					frame.addEdge(source, target);
+			}
+
+			return frame;
+		}
+
+		@Override
+		public void setFrame(FrameGraph graph, int frame_no) {
+			frames.put(frame_no, graph);
+		}
+
+		@Override
+		public int size() {
+			return frame_no;
+		}
+
+		@Override
+		public boolean hasTracking() {
+			return true;
+		}
+
+		@Override
+		public boolean hasVoronoi() {
+			return false;
+		}
+
+		@Override
+		public boolean hasEllipseFitting() {
+			return false;
+		}
+
+		@Override
+		public void setTracking(boolean new_state) {}
+
+		@Override
+		public void setVoronoi(boolean new_state) {}
+
+		@Override
+		public Map<Node, Geometry> getVoronoiTesselation() {
+			return null;
+		}
+
+		@Override
+		public void setVoronoiTesselation(Map<Node, Geometry> tesselation) {}
+
+		@Override
+		public Object getTileCache() {
+			return null;
+		}
+
+		@Override
+		public void setTileCache(Object cache) {}
+
+		@Override
+		public void setEllipseFitting(boolean new_state) {}
+	}
+}
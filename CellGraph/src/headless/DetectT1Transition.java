@@ -3,7 +3,7 @@ package headless;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Map;
 
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
@@ -42,10 +42,10 @@ public class DetectT1Transition {
 			stGraph = LoadNeoWktFiles.loadNeo(0);
 		assert stGraph != null: "Spatio temporal graph creation failed!";
 		
-		HashMap<Node, PolygonalCellTile> cell_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph);
+		Map<Node, PolygonalCellTile> cell_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph);
 		
 		System.out.println("\nAnalyzing the cell edges..");
-		HashMap<Long, boolean[]> tracked_edges = EdgeTracking.trackEdges(stGraph);
+		Map<Long, boolean[]> tracked_edges = EdgeTracking.trackEdges(stGraph);
 		
 		//saveStableEdgesToCSV(stGraph, tracked_edges);
 		
@@ -64,7 +64,7 @@ public class DetectT1Transition {
 	 * @param tracked_edges a Map containing a boolean presence array for every edgeID for every frame
 	 */
 	public static void saveStableEdgesToCSV(SpatioTemporalGraph stGraph,
-			HashMap<Long, boolean[]> tracked_edges) {
+			Map<Long, boolean[]> tracked_edges) {
 		StringBuilder builder = new StringBuilder();
 		for(long track_code:tracked_edges.keySet()){
 			boolean[] edge_track = tracked_edges.get(track_code);
@@ -127,8 +127,8 @@ public class DetectT1Transition {
 	 */
 	public static ArrayList<T1Transition> findTransitions(
 			SpatioTemporalGraph stGraph,
-			HashMap<Node, PolygonalCellTile> cell_tiles,
-			HashMap<Long, boolean[]> tracked_edges,
+			Map<Node, PolygonalCellTile> cell_tiles,
+			Map<Long, boolean[]> tracked_edges,
 			int minimalTransitionLength,
 			int minimalOldEdgeSurvivalLength
 			) {
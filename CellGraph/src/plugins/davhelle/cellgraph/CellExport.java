@@ -1,5 +1,6 @@
 package plugins.davhelle.cellgraph;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 
@@ -24,6 +25,7 @@ import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.io.CsvTrackWriter;
 import plugins.davhelle.cellgraph.io.PdfPrinter;
 import plugins.davhelle.cellgraph.io.SaveFolderDialog;
+import plugins.davhelle.cellgraph.io.SessionWriter;
 import plugins.davhelle.cellgraph.io.SkeletonWriter;
 import plugins.davhelle.cellgraph.io.WktPolygonExporter;
 import plugins.davhelle.cellgraph.overlays.CellColorTagOverlay;
@@ -166,6 +168,10 @@ public class CellExport extends EzPlug {
 						saveCsvTracking(stGraph);
 						break;
 						
+					case BINARY_SESSION:
+						saveSession(stGraph);
+						break;
+						
 					}
 				}
 			}
@@ -273,4 +279,26 @@ public class CellExport extends EzPlug {
 		
 	}
 	
+	/**
+	 * Export the complete graph structure as binary session file
+	 * 
+	 * @param stGraph Spatiotemporal graph to export as session file
+	 */
+	private void saveSession(SpatioTemporalGraph stGraph) {
+		
+		String export_folder = SaveFolderDialog.chooseFolder("Session file");
+		if(export_folder == null)
+			return;
+		
+		File session_file = new File(export_folder, "session" + SessionWriter.FILE_EXTENSION);
+		try {
+			new SessionWriter(stGraph).write(session_file);
+			System.out.println("Successfully saved session to: "+session_file);
+		} catch (IOException e) {
+			e.printStackTrace();
+			new AnnounceFrame("Failed to save session: "+e.getMessage());
+		}
+		
+	}
+	
 }
@@ -9,7 +9,11 @@ import icy.swimmingPool.SwimmingPool;
 
 import java.awt.Color;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import plugins.adufour.ezplug.EzGroup;
 import plugins.adufour.ezplug.EzPlug;
@@ -22,6 +26,8 @@ import plugins.adufour.ezplug.EzVarFloat;
 import plugins.adufour.ezplug.EzVarFolder;
 import plugins.adufour.ezplug.EzVarInteger;
 import plugins.adufour.ezplug.EzVarSequence;
+import plugins.davhelle.cellgraph.graphs.AdjacencyType;
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.GraphType;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraphGenerator;
@@ -29,13 +35,16 @@ import plugins.davhelle.cellgraph.io.CsvTrackReader;
 import plugins.davhelle.cellgraph.io.FileNameGenerator;
 import plugins.davhelle.cellgraph.io.InputType;
 import plugins.davhelle.cellgraph.io.SegmentationProgram;
+import plugins.davhelle.cellgraph.io.SessionReader;
 import plugins.davhelle.cellgraph.misc.BorderCells;
 import plugins.davhelle.cellgraph.misc.SmallCellRemover;
 import plugins.davhelle.cellgraph.overlays.DisplacementOverlay;
 import plugins.davhelle.cellgraph.overlays.PolygonOverlay;
 import plugins.davhelle.cellgraph.overlays.TrackIdOverlay;
 import plugins.davhelle.cellgraph.overlays.TrackingOverlay;
+import plugins.davhelle.cellgraph.tracking.GraphTracking;
 import plugins.davhelle.cellgraph.tracking.HungarianTracking;
+import plugins.davhelle.cellgraph.tracking.SparseAssignmentTracking;
 import plugins.davhelle.cellgraph.tracking.StableMarriageTracking;
 import plugins.davhelle.cellgraph.tracking.TrackingAlgorithm;
 import plugins.davhelle.cellgraph.tracking.TrackingEnum;
@@ -69,6 +78,7 @@ public class CellGraph extends EzPlug implements EzStoppable
 	//Ezplug fields 
 	EzVarEnum<TrackingEnum>		varTrackingAlgorithm;
 	EzVarEnum<InputType>		varInput;
+	EzVarEnum<AdjacencyType>	varAdjacency;
 	EzVarEnum<SegmentationProgram> varTool;
 	EzVarFile					varFile;
 	EzVarBoolean				varDirectInput;
@@ -79,6 +89,7 @@ public class CellGraph extends EzPlug implements EzStoppable
 	EzVarInteger				varMaxT;
 	EzVarBoolean				varAllT;
 	EzVarInteger				varBorderEliminationNo;
+	EzVarInteger				varFrameThreadNo;
 	
 	//EzPlug options
 	EzVarBoolean				varUpdatePainterMode;
@@ -92,6 +103,7 @@ public class CellGraph extends EzPlug implements EzStoppable
 	EzVarFloat					varDisplacement;
 	EzVarDouble					varLambda1;
 	EzVarDouble					varLambda2;
+	EzVarInteger				varTrackingThreadNo;
 	EzVarBoolean				varBooleanCellIDs;
 	
 	//Remove cells
@@ -105,7 +117,7 @@ public class CellGraph extends EzPlug implements EzStoppable
 	EzVarFolder 				varLoadFile;
 	
 	//Stop flag for advanced thread handling
-	boolean						stopFlag;
+	volatile boolean			stopFlag;
 	
 	//sequence to paint on 
 	Sequence sequence;
@@ -184,13 +196,25 @@ public class CellGraph extends EzPlug implements EzStoppable
 		varAreaThreshold.setToolTipText("Area below which cells will be removed");
 		varRemoveSmallCells.addVisibilityTriggerTo(varAreaThreshold, true);
 		
+		//neighbor detection
+		varAdjacency = new EzVarEnum<AdjacencyType>(
+				"Neighbor detection",AdjacencyType.values(), AdjacencyType.INTERSECTION);
+		varAdjacency.setToolTipText("SHARED_BOUNDARY requires exactly matching cell outlines, e.g. skeletons");
+		
+		//parallel frame generation
+		varFrameThreadNo = new EzVarInteger("Frames built in parallel",
+				Runtime.getRuntime().availableProcessors(),1,64,1);
+		varFrameThreadNo.setToolTipText("Number of time points whose graph is generated concurrently");
+		
 		EzGroup inputTypeGroup = new EzGroup("Optional input parameters",
 				//varDirectInput,
 				//varTool,
 				varUsePackingAnalyzer,
 				varCutBorder,
 				varRemoveSmallCells,
-				varAreaThreshold
+				varAreaThreshold,
+				varAdjacency,
+				varFrameThreadNo
 				);
 		
 		EzGroup groupInputPrameters = new EzGroup("1. SELECT INPUT FILES",
@@ -203,12 +227,14 @@ public class CellGraph extends EzPlug implements EzStoppable
 				);
 		
 		varUseAdvanceOptions.addVisibilityTriggerTo(inputTypeGroup, true);
-		varInput.addVisibilityTriggerTo(varDirectInput, InputType.SKELETON);
-		varInput.addVisibilityTriggerTo(varTool, InputType.SKELETON);
+		varInput.addVisibilityTriggerTo(varDirectInput, 
+				InputType.SKELETON,InputType.SKELETON_RASTER);
+		varInput.addVisibilityTriggerTo(varTool, 
+				InputType.SKELETON,InputType.SKELETON_RASTER);
 		
 		//These commands should only be available when the inputType is not wkt
 		varInput.addVisibilityTriggerTo(varCutBorder,
-				InputType.SKELETON,InputType.VTK_MESH);
+				InputType.SKELETON,InputType.SKELETON_RASTER,InputType.VTK_MESH);
 		
 		varDirectInput.addVisibilityTriggerTo(varTool, true);
 		
@@ -238,6 +264,10 @@ public class CellGraph extends EzPlug implements EzStoppable
 		varLambda1 = new EzVarDouble("Min. Distance weight", 1, 0, 10, 0.1);
 		varLambda2 = new EzVarDouble("Overlap Ratio weight", 1, 0, 10, 0.1);
 		
+		varTrackingThreadNo = new EzVarInteger("Candidate scoring threads",
+				Runtime.getRuntime().availableProcessors(),1,64,1);
+		varTrackingThreadNo.setToolTipText("Number of workers evaluating the tracking candidates of a frame");
+		
 		varLoadFile = new EzVarFolder("Select csv location", "");
 		varLoadFile.setToolTipText("Choose the folder where the CSV tracking files have been saved");
 
@@ -246,7 +276,8 @@ public class CellGraph extends EzPlug implements EzStoppable
 				//varDisplacement,
 				//varLambda1,
 				//varLambda2,
-				varBorderEliminationNo
+				varBorderEliminationNo,
+				varTrackingThreadNo
 				//varBooleanCellIDs,
 				//varBooleanHighlightMistakesBoolean,
 				//varBooleanDrawDisplacement
@@ -260,7 +291,7 @@ public class CellGraph extends EzPlug implements EzStoppable
 		
 		varTrackingAlgorithm.addVisibilityTriggerTo(varLoadFile, TrackingEnum.LOAD_CSV_FILE);
 		varTrackingAlgorithm.addVisibilityTriggerTo(groupTrackingParameters, 
-				TrackingEnum.STABLE_MARRIAGE,TrackingEnum.HUNGARIAN);
+				TrackingEnum.STABLE_MARRIAGE,TrackingEnum.HUNGARIAN,TrackingEnum.SPARSE_ASSIGNMENT);
 		
 		groupTrackingParameters.setVisible(false);
 		
@@ -309,6 +340,12 @@ public class CellGraph extends EzPlug implements EzStoppable
 		if(varAllT.getValue())
 			varMaxT.setValue(sequence.getSizeT());
 		
+		//Saved sessions are restored without segmentation or tracking
+		if(varInput.getValue() == InputType.SESSION){
+			loadSession();
+			return;
+		}
+		
 		//Build input file names from user input
 		String[] input_file_paths = generateInputPaths();
 		
@@ -323,8 +360,8 @@ public class CellGraph extends EzPlug implements EzStoppable
 		//Create spatio temporal graph from mesh files
 		SpatioTemporalGraph stGraph = generateSpatioTemporalGraph(input_file_paths);
 
-		//safety check, e.g. in case of user interruption
-		if(stGraph.size() != varMaxT.getValue())
+		//generation interrupted by the user or failed
+		if(stGraph == null)
 			return;
 
 		//Border identification + discard/mark
@@ -351,6 +388,42 @@ public class CellGraph extends EzPlug implements EzStoppable
 		this.getUI().setProgressBarMessage("Creation Completed!");
 	}
 
+	/**
+	 * Restores a spatio-temporal graph saved with 
+	 * {@link plugins.davhelle.cellgraph.io.SessionWriter} and displays it
+	 */
+	private void loadSession() {
+		
+		File session_file = varFile.getValue(false);
+		if(icyAssert(session_file != null && session_file.exists(),
+				"Session file required! Please select a saved session file"))
+			return;
+		
+		varFile.setButtonText(session_file.getName());
+		this.getUI().setProgressBarMessage("Loading session...");
+		
+		SpatioTemporalGraph stGraph = new SessionReader(session_file).read(0, varMaxT.getValue());
+		if(icyAssert(stGraph != null, "Could not read session file: "+session_file.getAbsolutePath()))
+			return;
+		
+		if(icyAssert(stGraph.size() == varMaxT.getValue(), 
+				"Session contains only "+stGraph.size()+" time points! Please reduce time points to load"))
+			return;
+		
+		if(varUpdatePainterMode.getValue())
+			removeAllOverlays();
+		
+		if(stGraph.hasTracking())
+			paintTrackingResult(stGraph);
+		else
+			sequence.addOverlay(new PolygonOverlay(stGraph,Color.red));
+		
+		if(varUseSwimmingPool.getValue())
+			pushToSwimingPool(stGraph);
+		
+		this.getUI().setProgressBarMessage("Session loaded!");
+	}
+
 	/**
 	 * Generates the absolute path for each input file
 	 * 
@@ -504,7 +577,8 @@ public class CellGraph extends EzPlug implements EzStoppable
 	 * Generates a spatio-temporal graph (stGraph) from the input files
 	 * 
 	 * @param input_file_paths input files for the single frames of the stGraph
-	 * @return a populated spatio-temporal graph 
+	 * @return a populated spatio-temporal graph, null if the generation
+	 * was interrupted or a frame could not be generated
 	 */
 	private SpatioTemporalGraph generateSpatioTemporalGraph(String[] input_file_paths) {
 		
@@ -512,18 +586,40 @@ public class CellGraph extends EzPlug implements EzStoppable
 		InputType input_type = varInput.getValue();
 		
 		SpatioTemporalGraphGenerator stGraphGenerator = 
-				new SpatioTemporalGraphGenerator(graph_type,input_type);
+				new SpatioTemporalGraphGenerator(graph_type,input_type,varAdjacency.getValue());
 		
 		this.getUI().setProgressBarMessage("Creating Spatial Graphs...");
-		for(int i = 0; i< input_file_paths.length; i++){
-			
-			if(stopFlag){
-				stopFlag = false;
-				return stGraphGenerator.getStGraph();
+		
+		//frames are generated independently by the workers and inserted in order
+		ExecutorService executor = Executors.newFixedThreadPool(varFrameThreadNo.getValue());
+		
+		try{
+			List<Future<FrameGraph>> pending_frames = new ArrayList<Future<FrameGraph>>();
+			for(int i = 0; i< input_file_paths.length; i++)
+				pending_frames.add(stGraphGenerator.submitFrame(executor, i, input_file_paths[i]));
+
+			for(int i = 0; i< input_file_paths.length; i++){
+
+				if(stopFlag){
+					stopFlag = false;
+					return null;
+				}
+
+				try{
+					stGraphGenerator.addFrame(pending_frames.get(i));
+				}
+				catch(IllegalStateException e){
+					//the incomplete graph is discarded
+					e.printStackTrace();
+					new AnnounceFrame(e.getMessage(),10);
+					return null;
+				}
+				this.getUI().setProgressBarValue(i/(double)input_file_paths.length);
 			}
-			
-			stGraphGenerator.addFrame(i, input_file_paths[i]);
-			this.getUI().setProgressBarValue(i/(double)input_file_paths.length);
+		}
+		finally{
+			//discards the frames not yet generated in case of interruption
+			executor.shutdownNow();
 		}
 		this.getUI().setProgressBarValue(0);
 		
@@ -587,11 +683,21 @@ public class CellGraph extends EzPlug implements EzStoppable
 					varLambda1.getValue(),
 					varLambda2.getValue());
 			break;
+		case SPARSE_ASSIGNMENT:
+			tracker = new SparseAssignmentTracking(
+					stGraph, 
+					varLinkrange.getValue(),
+					varLambda1.getValue(),
+					varLambda2.getValue());
+			break;
 		case LOAD_CSV_FILE:
 			String output_folder = varLoadFile.getValue().getAbsolutePath();
 			tracker = new CsvTrackReader(stGraph, output_folder);
 			break;
 		}
+		
+		if(tracker instanceof GraphTracking)
+			((GraphTracking)tracker).setThreadNo(varTrackingThreadNo.getValue());
 
 		// TODO try&catch
 		tracker.track();
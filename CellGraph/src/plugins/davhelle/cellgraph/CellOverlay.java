@@ -690,7 +690,7 @@ public class CellOverlay extends EzPlug implements EzVarListener<OverlayEnum>{
 			break;
 		case ELLIPSE_ELONGATION_RATIO:
 			sequence.addOverlay(
-					new ElongationRatioOverlay(stGraph,sequence));
+					new ElongationRatioOverlay(stGraph));
 			break;
 		case TRACKING_STABLE_ONLY:
 			sequence.addOverlay(
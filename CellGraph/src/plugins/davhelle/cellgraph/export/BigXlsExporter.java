@@ -5,7 +5,6 @@ import icy.gui.frame.progress.AnnounceFrame;
 import icy.sequence.Sequence;
 import icy.system.IcyExceptionHandler;
 import icy.util.XLSUtil;
-import ij.process.EllipseFitter;
 
 import java.io.IOException;
 import java.util.Map;
@@ -14,9 +13,9 @@ import jxl.write.WritableSheet;
 import jxl.write.WritableWorkbook;
 import jxl.write.WriteException;
 import plugins.adufour.ezplug.EzGUI;
+import plugins.davhelle.cellgraph.graphs.CellFeatures;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
-import plugins.davhelle.cellgraph.misc.EllipseFitGenerator;
 import plugins.davhelle.cellgraph.misc.VoronoiGenerator;
 import plugins.davhelle.cellgraph.nodes.Node;
 import plugins.davhelle.cellgraph.overlays.CellColorTagOverlay;
@@ -82,9 +81,6 @@ public class BigXlsExporter {
 	 * Voronoi Tesselation container 
 	 */
 	Map<Node, Geometry> voronoiTesselation;
-	
-	
-	Map<Node, EllipseFitter> fittedEllipses;
 
 	private boolean exprotTaggedOnly;
 
@@ -103,9 +99,6 @@ public class BigXlsExporter {
 		gui.setProgressBarMessage("Computing voronoi tesselation..");
 		voronoiTesselation = new VoronoiGenerator(stGraph,sequence).getNodeVoroniMapping();
 		
-		gui.setProgressBarMessage("Computing ellipse fitting..");
-		fittedEllipses = new EllipseFitGenerator(stGraph,sequence).getFittedEllipses();
-		
 		gui.setProgressBarMessage("Ready to write XLS file..");
 		
 		this.exprotTaggedOnly = exportTaggedOnly;
@@ -126,9 +119,6 @@ public class BigXlsExporter {
 		new AnnounceFrame("XLS-Export: Computing voronoi tesselation..",5);
 		voronoiTesselation = new VoronoiGenerator(stGraph,sequence).getNodeVoroniMapping();
 		
-		new AnnounceFrame("XLS-Export: Computing ellipse fitting..",5);
-		fittedEllipses = new EllipseFitGenerator(stGraph,sequence).getFittedEllipses();
-		
 		this.exprotTaggedOnly = exportTaggedOnly;
 		
 	}
@@ -163,7 +153,10 @@ public class BigXlsExporter {
 		XLSUtil.setCellString(sheet, col_no++, row_no, "onSegmentationBoundary");
 		
 		row_no++;
-		for(Node node: frame.vertexSet()){
+		CellFeatures features = frame.getFeatures();
+		for(int k=0; k<features.size(); k++){
+			Node node = features.getNode(k);
+			
 			//reset column
 			col_no = 0;
 
@@ -176,27 +169,26 @@ public class BigXlsExporter {
 					continue;
 			
 			//position
-			XLSUtil.setCellNumber(sheet, col_no++, row_no, node.getTrackID());
+			XLSUtil.setCellNumber(sheet, col_no++, row_no, features.getTrackID(k));
 			
 			
-			XLSUtil.setCellNumber(sheet, col_no++, row_no, node.getCentroid().getX());
-			XLSUtil.setCellNumber(sheet, col_no++, row_no, node.getCentroid().getY());
+			XLSUtil.setCellNumber(sheet, col_no++, row_no, features.getCentroidX(k));
+			XLSUtil.setCellNumber(sheet, col_no++, row_no, features.getCentroidY(k));
 			
 			//neighbor no
-			XLSUtil.setCellNumber(sheet, col_no++, row_no, frame.degreeOf(node));
+			XLSUtil.setCellNumber(sheet, col_no++, row_no, features.getNeighborNo(k));
 			
 			//area
-			XLSUtil.setCellNumber(sheet, col_no++, row_no, node.getGeometry().getArea());
+			XLSUtil.setCellNumber(sheet, col_no++, row_no, features.getArea(k));
 			double voronoiArea = voronoiTesselation.get(node).getArea();
-			if(node.onBoundary())
+			if(features.onBoundary(k))
 				voronoiArea = -1;
 			XLSUtil.setCellNumber(sheet, col_no++, row_no, voronoiArea);
 
 			//ellipse fit
-			EllipseFitter ef = fittedEllipses.get(node);
-			XLSUtil.setCellNumber(sheet, col_no++, row_no, ef.major);
-			XLSUtil.setCellNumber(sheet, col_no++, row_no, ef.minor);
-			XLSUtil.setCellNumber(sheet, col_no++, row_no, ef.angle);
+			XLSUtil.setCellNumber(sheet, col_no++, row_no, features.getEllipseMajor(k));
+			XLSUtil.setCellNumber(sheet, col_no++, row_no, features.getEllipseMinor(k));
+			XLSUtil.setCellNumber(sheet, col_no++, row_no, features.getEllipseAngle(k));
 			
 			//division & elimination
 			if(node.hasObservedDivision()){
@@ -216,7 +208,7 @@ public class BigXlsExporter {
 			}
 			
 			//border
-			String booleanString = String.valueOf(node.onBoundary()).toUpperCase();
+			String booleanString = String.valueOf(features.onBoundary(k)).toUpperCase();
 			XLSUtil.setCellString(sheet, col_no++, row_no, booleanString);
 			
 			//increase row
@@ -4,6 +4,9 @@ import java.awt.Color;
 
 import org.jgrapht.ext.VertexNameProvider;
 
+import plugins.davhelle.cellgraph.graphs.CellFeature;
+import plugins.davhelle.cellgraph.graphs.CellFeatures;
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.nodes.Division;
 import plugins.davhelle.cellgraph.nodes.Elimination;
 import plugins.davhelle.cellgraph.nodes.Node;
@@ -39,7 +42,7 @@ public class VertexLabelProvider implements VertexNameProvider<Node> {
 		
 		switch(export_field){
 		case AREA:
-			double vertex_area = vertex.getGeometry().getArea();
+			double vertex_area = getFeature(vertex, CellFeature.AREA);
 			vertex_label = Long.toString(Math.round(vertex_area));
 			break;
 		case DIVISION:
@@ -59,15 +62,15 @@ public class VertexLabelProvider implements VertexNameProvider<Node> {
 			if(vertex.getTrackID() != -1)
 				vertex_label = 	String.format("%d,%.2f,%.2f,%b",
 						vertex.getTrackID(),
-						vertex.getCentroid().getX(),
-						vertex.getCentroid().getY(),
+						getFeature(vertex, CellFeature.CENTROID_X),
+						getFeature(vertex, CellFeature.CENTROID_Y),
 						vertex.onBoundary());
 			break;
 		case COLOR_TAG:
 			vertex_label = Boolean.toString(vertex.getColorTag() == Color.red);
 			break;
 		case SEQ_AREA:			
-			double cell_area = vertex.getGeometry().getArea();
+			double cell_area = getFeature(vertex, CellFeature.AREA);
 			String csv_area_over_time = Integer.toString(vertex.getTrackID()) + "," + Long.toString(Math.round(cell_area));
 		
 			Node cell = vertex;
@@ -82,7 +85,7 @@ public class VertexLabelProvider implements VertexNameProvider<Node> {
 					csv_area_over_time += "," + Long.toString(Math.round(cell_area));
 				
 				//add new value at the end of the list
-				cell_area = cell.getGeometry().getArea();
+				cell_area = getFeature(cell, CellFeature.AREA);
 				csv_area_over_time += "," + Long.toString(Math.round(cell_area));
 				t++;
 					
@@ -95,11 +98,11 @@ public class VertexLabelProvider implements VertexNameProvider<Node> {
 			
 			builder.append(vertex.getTrackID());
 			addComma(builder);
-			builder.append(Math.round(vertex.getCentroid().getX()));
+			builder.append(Math.round(getFeature(vertex, CellFeature.CENTROID_X)));
 			addComma(builder);
-			builder.append(Math.round(vertex.getCentroid().getY()));
+			builder.append(Math.round(getFeature(vertex, CellFeature.CENTROID_Y)));
 			addComma(builder);
-			builder.append(vertex.getGeometry().getArea());
+			builder.append(getFeature(vertex, CellFeature.AREA));
 			addComma(builder);
 			builder.append(vertex.onBoundary());
 			addComma(builder);
@@ -181,12 +184,12 @@ public class VertexLabelProvider implements VertexNameProvider<Node> {
 	private String getSequentialNodeDegree(Node vertex) {
 		
 		String csv_degree_over_time = String.format("%d,%d",
-				vertex.getTrackID(),vertex.getNeighbors().size());
+				vertex.getTrackID(),(int)getFeature(vertex, CellFeature.NEIGHBOR_NO));
 		//TODO: This does not support missing time points!
 		Node cell = vertex;
 		while(cell.hasNext()){
 			cell = cell.getNext();
-			csv_degree_over_time += String.format(",%d", cell.getNeighbors().size());
+			csv_degree_over_time += String.format(",%d", (int)getFeature(cell, CellFeature.NEIGHBOR_NO));
 		}
 		
 		return csv_degree_over_time;
@@ -200,7 +203,7 @@ public class VertexLabelProvider implements VertexNameProvider<Node> {
 	 */
 	private String getSequentialYCoordinates(Node vertex) {
 		
-		double cell_y = vertex.getCentroid().getY();
+		double cell_y = getFeature(vertex, CellFeature.CENTROID_Y);
 		String csv_y_over_time = Integer.toString(vertex.getTrackID()) + "," + Long.toString(Math.round(cell_y));
 	
 		Node cell = vertex;
@@ -215,7 +218,7 @@ public class VertexLabelProvider implements VertexNameProvider<Node> {
 				csv_y_over_time += "," + Long.toString(Math.round(cell_y));
 			
 			//add new value at the end of the list
-			cell_y = cell.getCentroid().getY();
+			cell_y = getFeature(cell, CellFeature.CENTROID_Y);
 			csv_y_over_time += "," + Long.toString(Math.round(cell_y));
 			t++;
 				
@@ -232,7 +235,7 @@ public class VertexLabelProvider implements VertexNameProvider<Node> {
 	 */
 	private String getSequentialXCoordinates(Node vertex) {
 		
-		double cell_x = vertex.getCentroid().getX();
+		double cell_x = getFeature(vertex, CellFeature.CENTROID_X);
 		String csv_x_over_time = Integer.toString(vertex.getTrackID()) + "," + Long.toString(Math.round(cell_x));
 	
 		Node cell = vertex;
@@ -247,7 +250,7 @@ public class VertexLabelProvider implements VertexNameProvider<Node> {
 				csv_x_over_time += "," + Long.toString(Math.round(cell_x));
 			
 			//add new value at the end of the list
-			cell_x = cell.getCentroid().getX();
+			cell_x = getFeature(cell, CellFeature.CENTROID_X);
 			csv_x_over_time += "," + Long.toString(Math.round(cell_x));
 			t++;
 				
@@ -256,6 +259,36 @@ public class VertexLabelProvider implements VertexNameProvider<Node> {
 		return csv_x_over_time;
 	}
 
+	/**
+	 * Reads the feature from the feature table of the belonging frame
+	 * 
+	 * @param cell vertex to describe
+	 * @param feature AREA, CENTROID_X, CENTROID_Y or NEIGHBOR_NO
+	 * @return feature value, computed directly if the vertex is not part of its frame
+	 */
+	private double getFeature(Node cell, CellFeature feature){
+		FrameGraph frame = cell.getBelongingFrame();
+		if(frame != null){
+			CellFeatures features = frame.getFeatures();
+			int k = features.indexOf(cell);
+			if(k != -1)
+				return features.getValue(feature, k);
+		}
+		
+		switch(feature){
+		case AREA:
+			return cell.getGeometry().getArea();
+		case CENTROID_X:
+			return cell.getCentroid().getX();
+		case CENTROID_Y:
+			return cell.getCentroid().getY();
+		case NEIGHBOR_NO:
+			return cell.getNeighbors().size();
+		default:
+			throw new IllegalArgumentException("Unsupported feature: " + feature);
+		}
+	}
+
 	private void addComma(StringBuilder builder){
 		builder.append(',');
 	}
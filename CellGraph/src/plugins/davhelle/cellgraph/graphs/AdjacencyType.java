@@ -0,0 +1,26 @@
+package plugins.davhelle.cellgraph.graphs;
+
+/**
+ * Available methods to determine the neighborhood relationships 
+ * between cells when generating a {@link FrameGraph}
+ * 
+ * used by {@link FrameGenerator}.
+ * 
+ * @author Davide Heller
+ *
+ */
+public enum AdjacencyType {
+	/**
+	 * Pairwise intersection test of the cell polygons 
+	 * pre-filtered by an STRtree
+	 */
+	INTERSECTION,
+	
+	/**
+	 * Hashing of the boundary segments and vertices shared
+	 * by the cell polygons. Requires polygons with exactly
+	 * matching boundary coordinates, e.g. polygonized skeletons.
+	 * Sets the edge geometry and length during generation.
+	 */
+	SHARED_BOUNDARY
+}
@@ -0,0 +1,64 @@
+package plugins.davhelle.cellgraph.graphs;
+
+/**
+ * Enumeration of the per-cell features stored in {@link CellFeatures}
+ * 
+ * @author Davide Heller
+ *
+ */
+public enum CellFeature {
+	/**
+	 * Polygon area
+	 */
+	AREA,
+	
+	/**
+	 * Polygon perimeter
+	 */
+	PERIMETER,
+	
+	/**
+	 * Centroid x coordinate
+	 */
+	CENTROID_X,
+	
+	/**
+	 * Centroid y coordinate
+	 */
+	CENTROID_Y,
+	
+	/**
+	 * Number of neighbors in the frame, i.e. vertex degree
+	 */
+	NEIGHBOR_NO,
+	
+	/**
+	 * Tracking id
+	 */
+	TRACK_ID,
+	
+	/**
+	 * Major axis length of the best fit ellipse
+	 */
+	ELLIPSE_MAJOR,
+	
+	/**
+	 * Minor axis length of the best fit ellipse
+	 */
+	ELLIPSE_MINOR,
+	
+	/**
+	 * Major axis angle of the best fit ellipse in degrees
+	 */
+	ELLIPSE_ANGLE,
+	
+	/**
+	 * Elongation ratio of the best fit ellipse, i.e. major/minor axis
+	 */
+	ELONGATION_RATIO,
+	
+	/**
+	 * Segmentation border flag, 1 if on the border
+	 */
+	BOUNDARY,
+}
@@ -0,0 +1,81 @@
+package plugins.davhelle.cellgraph.graphs;
+
+/**
+ * Per-cell features of a whole {@link SpatioTemporalGraph}, addressed
+ * by (frame, cell index). The columns are held by every frame, see
+ * {@link FrameGraph#getFeatures()}, such that modifications of a frame
+ * only invalidate its own columns. Ranges over all frames are computed
+ * as single scans of the feature columns.
+ * 
+ * @author Davide Heller
+ *
+ */
+public class CellFeatureTable {
+	
+	/**
+	 * Described graph
+	 */
+	private final SpatioTemporalGraph stGraph;
+	
+	/**
+	 * @param stGraph graph to describe
+	 */
+	public CellFeatureTable(SpatioTemporalGraph stGraph){
+		this.stGraph = stGraph;
+	}
+	
+	/**
+	 * @return number of frames
+	 */
+	public int size(){
+		return stGraph.size();
+	}
+	
+	/**
+	 * @param frame_no frame number
+	 * @return feature columns of the frame
+	 */
+	public CellFeatures getFrame(int frame_no){
+		return stGraph.getFrame(frame_no).getFeatures();
+	}
+	
+	/**
+	 * @param feature feature to read
+	 * @param frame_no frame number
+	 * @param k cell index within the frame
+	 * @return value of the feature
+	 */
+	public double get(CellFeature feature, int frame_no, int k){
+		return getFrame(frame_no).getValue(feature, k);
+	}
+	
+	/**
+	 * @param feature feature to scan
+	 * @return smallest finite value of the feature in all frames, NaN if there is none
+	 */
+	public double getMinimum(CellFeature feature){
+		double min = Double.NaN;
+		for(int i=0; i<stGraph.size(); i++){
+			//empty frames have no minimum
+			double frame_min = getFrame(i).getMinimum(feature);
+			if(Double.isNaN(min) || frame_min < min)
+				min = frame_min;
+		}
+		return min;
+	}
+	
+	/**
+	 * @param feature feature to scan
+	 * @return largest finite value of the feature in all frames, NaN if there is none
+	 */
+	public double getMaximum(CellFeature feature){
+		double max = Double.NaN;
+		for(int i=0; i<stGraph.size(); i++){
+			//empty frames have no maximum
+			double frame_max = getFrame(i).getMaximum(feature);
+			if(Double.isNaN(max) || frame_max > max)
+				max = frame_max;
+		}
+		return max;
+	}
+}
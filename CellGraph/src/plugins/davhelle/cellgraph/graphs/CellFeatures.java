@@ -0,0 +1,390 @@
+package plugins.davhelle.cellgraph.graphs;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jgrapht.event.GraphEdgeChangeEvent;
+import org.jgrapht.event.GraphListener;
+import org.jgrapht.event.GraphVertexChangeEvent;
+
+import plugins.davhelle.cellgraph.misc.PolygonEllipseFitter;
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Columnar table of the per-cell features of a {@link FrameGraph}.
+ * Every feature is stored in a primitive array indexed by the position
+ * of the cell in the vertex set, so that overlays and exporters read
+ * contiguous values instead of recomputing them from the geometry.<br><br>
+ *
+ * The columns are built lazily at the first request and discarded
+ * whenever a vertex or an edge is added or removed. The ellipse columns
+ * are only built when first requested. Changes to a vertex which remains
+ * in the graph (geometry, boundary flag, tracking id) require an explicit
+ * {@link #invalidate()}, see {@link FrameGraph#invalidateFeatures()}.
+ *
+ * @author Davide Heller
+ *
+ */
+public class CellFeatures implements GraphListener<Node, Edge> {
+
+	/**
+	 * Described frame
+	 */
+	private final FrameGraph frame;
+
+	/**
+	 * Cells in vertex set order, null if not built
+	 */
+	private Node[] cells;
+
+	/**
+	 * Position of every cell in the columns
+	 */
+	private Map<Node, Integer> index;
+
+	private double[] area;
+	private double[] perimeter;
+	private double[] centroid_x;
+	private double[] centroid_y;
+	private int[] neighbor_no;
+	private int[] track_id;
+	private boolean[] boundary;
+
+	/**
+	 * Ellipse columns, null if not built
+	 */
+	private double[] ellipse_major;
+	private double[] ellipse_minor;
+	private double[] ellipse_angle;
+
+	/**
+	 * @param frame frame to describe
+	 */
+	public CellFeatures(FrameGraph frame){
+		this.frame = frame;
+		this.cells = null;
+		this.ellipse_major = null;
+	}
+
+	/**
+	 * Builds the geometric and topological columns if required
+	 */
+	private void build(){
+		if(cells != null)
+			return;
+
+		int cell_no = frame.vertexSet().size();
+		Node[] built_cells = new Node[cell_no];
+		index = new HashMap<Node, Integer>(2 * cell_no);
+		area = new double[cell_no];
+		perimeter = new double[cell_no];
+		centroid_x = new double[cell_no];
+		centroid_y = new double[cell_no];
+		neighbor_no = new int[cell_no];
+		track_id = new int[cell_no];
+		boundary = new boolean[cell_no];
+
+		int k = 0;
+		for(Node n: frame.vertexSet()){
+			built_cells[k] = n;
+			index.put(n, k);
+
+			area[k] = n.getGeometry().getArea();
+			perimeter[k] = n.getGeometry().getLength();
+			Point centroid = n.getCentroid();
+			centroid_x[k] = centroid.getX();
+			centroid_y[k] = centroid.getY();
+			neighbor_no[k] = frame.degreeOf(n);
+			track_id[k] = n.getTrackID();
+			boundary[k] = n.onBoundary();
+			k++;
+		}
+
+		cells = built_cells;
+	}
+
+	/**
+	 * Builds the ellipse columns if required
+	 */
+	private void buildEllipses(){
+		build();
+		if(ellipse_major != null)
+			return;
+
+		double[] major = new double[cells.length];
+		ellipse_minor = new double[cells.length];
+		ellipse_angle = new double[cells.length];
+
+		PolygonEllipseFitter ef = new PolygonEllipseFitter();
+		for(int k=0; k<cells.length; k++){
+			ef.fit(cells[k].getGeometry());
+			major[k] = ef.major;
+			ellipse_minor[k] = ef.minor;
+			ellipse_angle[k] = ef.angle;
+		}
+
+		ellipse_major = major;
+	}
+
+	/**
+	 * Discards all columns, they are rebuilt at the next request
+	 */
+	public synchronized void invalidate(){
+		cells = null;
+		index = null;
+		ellipse_major = null;
+		ellipse_minor = null;
+		ellipse_angle = null;
+	}
+
+	/**
+	 * @return number of cells
+	 */
+	public synchronized int size(){
+		build();
+		return cells.length;
+	}
+
+	/**
+	 * @param k cell index
+	 * @return cell at index k
+	 */
+	public synchronized Node getNode(int k){
+		build();
+		return cells[k];
+	}
+
+	/**
+	 * @param n cell of the frame
+	 * @return index of the cell, -1 if the cell does not belong to the frame
+	 */
+	public synchronized int indexOf(Node n){
+		build();
+		Integer k = index.get(n);
+		return k == null ? -1 : k;
+	}
+
+	/**
+	 * @param k cell index
+	 * @return area of the cell
+	 */
+	public synchronized double getArea(int k){
+		build();
+		return area[k];
+	}
+
+	/**
+	 * @param k cell index
+	 * @return perimeter of the cell
+	 */
+	public synchronized double getPerimeter(int k){
+		build();
+		return perimeter[k];
+	}
+
+	/**
+	 * @param k cell index
+	 * @return x coordinate of the cell centroid
+	 */
+	public synchronized double getCentroidX(int k){
+		build();
+		return centroid_x[k];
+	}
+
+	/**
+	 * @param k cell index
+	 * @return y coordinate of the cell centroid
+	 */
+	public synchronized double getCentroidY(int k){
+		build();
+		return centroid_y[k];
+	}
+
+	/**
+	 * @param k cell index
+	 * @return number of neighbors of the cell
+	 */
+	public synchronized int getNeighborNo(int k){
+		build();
+		return neighbor_no[k];
+	}
+
+	/**
+	 * @param k cell index
+	 * @return tracking id of the cell
+	 */
+	public synchronized int getTrackID(int k){
+		build();
+		return track_id[k];
+	}
+
+	/**
+	 * @param k cell index
+	 * @return true if the cell is on the segmentation border
+	 */
+	public synchronized boolean onBoundary(int k){
+		build();
+		return boundary[k];
+	}
+
+	/**
+	 * @param k cell index
+	 * @return major axis length of the best fit ellipse
+	 */
+	public synchronized double getEllipseMajor(int k){
+		buildEllipses();
+		return ellipse_major[k];
+	}
+
+	/**
+	 * @param k cell index
+	 * @return minor axis length of the best fit ellipse
+	 */
+	public synchronized double getEllipseMinor(int k){
+		buildEllipses();
+		return ellipse_minor[k];
+	}
+
+	/**
+	 * @param k cell index
+	 * @return major axis angle of the best fit ellipse in degrees
+	 */
+	public synchronized double getEllipseAngle(int k){
+		buildEllipses();
+		return ellipse_angle[k];
+	}
+
+	/**
+	 * @param k cell index
+	 * @return ratio between major and minor axis of the best fit ellipse
+	 */
+	public synchronized double getElongationRatio(int k){
+		buildEllipses();
+		return ellipse_major[k] / ellipse_minor[k];
+	}
+
+	/**
+	 * @param feature feature to read
+	 * @param k cell index
+	 * @return value of the feature, flags are returned as 0 or 1
+	 */
+	public synchronized double getValue(CellFeature feature, int k){
+		switch(feature){
+		case AREA:
+			return getArea(k);
+		case PERIMETER:
+			return getPerimeter(k);
+		case CENTROID_X:
+			return getCentroidX(k);
+		case CENTROID_Y:
+			return getCentroidY(k);
+		case NEIGHBOR_NO:
+			return getNeighborNo(k);
+		case TRACK_ID:
+			return getTrackID(k);
+		case ELLIPSE_MAJOR:
+			return getEllipseMajor(k);
+		case ELLIPSE_MINOR:
+			return getEllipseMinor(k);
+		case ELLIPSE_ANGLE:
+			return getEllipseAngle(k);
+		case ELONGATION_RATIO:
+			return getElongationRatio(k);
+		case BOUNDARY:
+			return onBoundary(k) ? 1 : 0;
+		default:
+			throw new IllegalArgumentException("Unknown feature: " + feature);
+		}
+	}
+
+	/**
+	 * @param feature feature to scan
+	 * @return smallest finite value of the feature, NaN if there is none
+	 */
+	public synchronized double getMinimum(CellFeature feature){
+		double min = Double.NaN;
+		for(double value: column(feature)){
+			//e.g. the elongation ratio of a degenerate cell
+			if(Double.isNaN(value) || Double.isInfinite(value))
+				continue;
+			if(Double.isNaN(min) || value < min)
+				min = value;
+		}
+		return min;
+	}
+
+	/**
+	 * @param feature feature to scan
+	 * @return largest finite value of the feature, NaN if there is none
+	 */
+	public synchronized double getMaximum(CellFeature feature){
+		double max = Double.NaN;
+		for(double value: column(feature)){
+			//e.g. the elongation ratio of a degenerate cell
+			if(Double.isNaN(value) || Double.isInfinite(value))
+				continue;
+			if(Double.isNaN(max) || value > max)
+				max = value;
+		}
+		return max;
+	}
+
+	/**
+	 * @param feature feature to read
+	 * @return column of the feature, integer and flag columns are converted
+	 */
+	private double[] column(CellFeature feature){
+		switch(feature){
+		case AREA:
+			build();
+			return area;
+		case PERIMETER:
+			build();
+			return perimeter;
+		case CENTROID_X:
+			build();
+			return centroid_x;
+		case CENTROID_Y:
+			build();
+			return centroid_y;
+		case ELLIPSE_MAJOR:
+			buildEllipses();
+			return ellipse_major;
+		case ELLIPSE_MINOR:
+			buildEllipses();
+			return ellipse_minor;
+		case ELLIPSE_ANGLE:
+			buildEllipses();
+			return ellipse_angle;
+		default:
+			double[] values = new double[size()];
+			for(int k=0; k<values.length; k++)
+				values[k] = getValue(feature, k);
+			return values;
+		}
+	}
+
+	@Override
+	public void vertexAdded(GraphVertexChangeEvent<Node> e) {
+		invalidate();
+	}
+
+	@Override
+	public void vertexRemoved(GraphVertexChangeEvent<Node> e) {
+		invalidate();
+	}
+
+	@Override
+	public void edgeAdded(GraphEdgeChangeEvent<Node, Edge> e) {
+		invalidate();
+	}
+
+	@Override
+	public void edgeRemoved(GraphEdgeChangeEvent<Node, Edge> e) {
+		invalidate();
+	}
+
+}
@@ -0,0 +1,246 @@
+package plugins.davhelle.cellgraph.graphs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jgrapht.event.GraphEdgeChangeEvent;
+import org.jgrapht.event.GraphListener;
+import org.jgrapht.event.GraphVertexChangeEvent;
+
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * Spatial lookup for the vertices of a {@link FrameGraph}. Two packed
+ * R-trees (JTS STRtree) over the cell envelopes and the cell centroids
+ * are built lazily at the first query and discarded whenever a vertex
+ * is added or removed.<br><br>
+ *
+ * Changes to the geometry of a vertex which remains in the graph
+ * require an explicit {@link #invalidate()}.
+ *
+ * @author Davide Heller
+ *
+ */
+public class CellSpatialIndex implements GraphListener<Node, Edge> {
+
+	/**
+	 * Indexed frame
+	 */
+	private final FrameGraph frame;
+
+	/**
+	 * Tree of the cell envelopes, null if not built
+	 */
+	private STRtree cell_tree;
+
+	/**
+	 * Tree of the cell centroids, null if not built
+	 */
+	private STRtree centroid_tree;
+
+	/**
+	 * Mean area per centroid used as initial search radius
+	 */
+	private double area_per_cell;
+
+	private final GeometryFactory factory;
+
+	/**
+	 * @param frame frame to index
+	 */
+	public CellSpatialIndex(FrameGraph frame){
+		this.frame = frame;
+		this.factory = new GeometryFactory();
+		this.cell_tree = null;
+		this.centroid_tree = null;
+	}
+
+	/**
+	 * Builds the trees if required. Once built the trees are
+	 * only read and can be queried concurrently.
+	 */
+	private void build(){
+		if(cell_tree != null)
+			return;
+
+		STRtree cells = new STRtree();
+		STRtree centroids = new STRtree();
+		Envelope extent = new Envelope();
+
+		for(Node n: frame.vertexSet()){
+			Envelope envelope = n.getGeometry().getEnvelopeInternal();
+			cells.insert(envelope, n);
+			centroids.insert(n.getCentroid().getEnvelopeInternal(), n);
+			extent.expandToInclude(envelope);
+		}
+
+		cells.build();
+		centroids.build();
+
+		int cell_no = frame.vertexSet().size();
+		area_per_cell = cell_no > 0 ? extent.getArea() / cell_no : 0;
+
+		centroid_tree = centroids;
+		cell_tree = cells;
+	}
+
+	/**
+	 * @return tree of the cell envelopes
+	 */
+	private synchronized STRtree getCellTree(){
+		build();
+		return cell_tree;
+	}
+	
+	/**
+	 * @return tree of the cell centroids
+	 */
+	private synchronized STRtree getCentroidTree(){
+		build();
+		return centroid_tree;
+	}
+	
+	/**
+	 * @return mean area per cell of the indexed extent
+	 */
+	private synchronized double getAreaPerCell(){
+		build();
+		return area_per_cell;
+	}
+
+	/**
+	 * Discards the trees, they are rebuilt at the next query
+	 */
+	public synchronized void invalidate(){
+		cell_tree = null;
+		centroid_tree = null;
+	}
+
+	/**
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return the cell containing the point, null if none
+	 */
+	@SuppressWarnings("unchecked")
+	public Node findCellAt(double x, double y){
+		Coordinate coordinate = new Coordinate(x, y);
+		Point point = factory.createPoint(coordinate);
+
+		List<Node> candidates = getCellTree().query(new Envelope(coordinate));
+		for(Node n: candidates)
+			if(n.getGeometry().contains(point))
+				return n;
+
+		return null;
+	}
+
+	/**
+	 * @param envelope query region
+	 * @return cells whose envelope intersects the region
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Node> queryEnvelope(Envelope envelope){
+		return new ArrayList<Node>(getCellTree().query(envelope));
+	}
+
+	/**
+	 * @param envelope query region
+	 * @return cells whose geometry intersects the region
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Node> cellsIntersecting(Envelope envelope){
+		Geometry region = factory.toGeometry(envelope);
+
+		List<Node> candidates = getCellTree().query(envelope);
+		List<Node> cells = new ArrayList<Node>(candidates.size());
+		for(Node n: candidates)
+			if(envelope.contains(n.getGeometry().getEnvelopeInternal()) ||
+					n.getGeometry().intersects(region))
+				cells.add(n);
+
+		return cells;
+	}
+
+	/**
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param k number of cells to retrieve
+	 * @return up to k cells ordered by increasing centroid distance to the point
+	 */
+	public List<Node> findNearestCells(double x, double y, int k){
+		STRtree tree = getCentroidTree();
+		
+		final Coordinate coordinate = new Coordinate(x, y);
+		int cell_no = frame.vertexSet().size();
+		k = Math.min(k, cell_no);
+		if(k <= 0)
+			return new ArrayList<Node>();
+
+		Comparator<Node> by_distance = new Comparator<Node>() {
+			@Override
+			public int compare(Node a, Node b) {
+				return Double.compare(
+						a.getCentroid().getCoordinate().distance(coordinate),
+						b.getCentroid().getCoordinate().distance(coordinate));
+			}
+		};
+
+		//grow the search square until it holds k centroids
+		double radius = Math.sqrt(getAreaPerCell() * k);
+		if(radius <= 0)
+			radius = 1;
+
+		List<Node> candidates = queryCentroids(tree, coordinate, radius);
+		while(candidates.size() < k){
+			radius *= 2;
+			candidates = queryCentroids(tree, coordinate, radius);
+		}
+
+		Collections.sort(candidates, by_distance);
+
+		//the square might miss closer centroids outside of it but within the k-th distance
+		double kth_distance = candidates.get(k - 1).getCentroid().getCoordinate().distance(coordinate);
+		if(kth_distance > radius){
+			candidates = queryCentroids(tree, coordinate, kth_distance);
+			Collections.sort(candidates, by_distance);
+		}
+
+		return new ArrayList<Node>(candidates.subList(0, k));
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Node> queryCentroids(STRtree tree, Coordinate center, double radius){
+		Envelope square = new Envelope(center);
+		square.expandBy(radius);
+		return new ArrayList<Node>(tree.query(square));
+	}
+
+	@Override
+	public void vertexAdded(GraphVertexChangeEvent<Node> e) {
+		invalidate();
+	}
+
+	@Override
+	public void vertexRemoved(GraphVertexChangeEvent<Node> e) {
+		invalidate();
+	}
+
+	@Override
+	public void edgeAdded(GraphEdgeChangeEvent<Node, Edge> e) {
+	}
+
+	@Override
+	public void edgeRemoved(GraphEdgeChangeEvent<Node, Edge> e) {
+	}
+
+}
@@ -4,10 +4,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map.Entry;
 
 import plugins.davhelle.cellgraph.io.InputType;
 import plugins.davhelle.cellgraph.io.VtkPolygonReader;
 import plugins.davhelle.cellgraph.io.PolygonReader;
+import plugins.davhelle.cellgraph.io.RasterSkeletonReader;
 import plugins.davhelle.cellgraph.io.SkeletonReader;
 import plugins.davhelle.cellgraph.io.WktPolygonImporter;
 import plugins.davhelle.cellgraph.nodes.Cell;
@@ -15,11 +17,16 @@ import plugins.davhelle.cellgraph.nodes.ComparablePolygon;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
 
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineSegment;
+import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 import com.vividsolutions.jts.index.strtree.STRtree;
+import com.vividsolutions.jts.operation.linemerge.LineMerger;
 
 /**
  * FrameGenerator is a helper class to create FrameGraph objects
@@ -34,15 +41,28 @@ public class FrameGenerator {
 	
 	PolygonReader polygonReader;
 	PreparedGeometryFactory cached_factory;
+	GeometryFactory factory;
+	AdjacencyType adjacency_type;
 	
 	/**
-	 * Initializes the parameters
+	 * Initializes the parameters, neighbors are found by 
+	 * intersection (see {@link AdjacencyType})
 	 * 
 	 * @param input_type type of file from which the polygons will be extracted
-	 * @param is_direct_input true if the files come from a known Segmentation Program
-	 * @param tool Segmentation program used to create the skeletons
 	 */
 	public FrameGenerator(InputType input_type){
+		this(input_type, AdjacencyType.INTERSECTION);
+	}
+	
+	/**
+	 * Initializes the parameters
+	 * 
+	 * @param input_type type of file from which the polygons will be extracted
+	 * @param adjacency_type method used to find the neighbors of each cell
+	 */
+	public FrameGenerator(InputType input_type, AdjacencyType adjacency_type){
+		
+		this.adjacency_type = adjacency_type;
 		
 		switch(input_type){
 		case SKELETON:
@@ -58,11 +78,17 @@ public class FrameGenerator {
 			
 			this.polygonReader = new WktPolygonImporter();
 			break;
+			
+		case SKELETON_RASTER:
+			
+			this.polygonReader = new RasterSkeletonReader();
+			break;
 		default:
 			break;		
 		}
 		
 		cached_factory = new PreparedGeometryFactory();
+		factory = new GeometryFactory();
 		
 	}
 	
@@ -89,16 +115,33 @@ public class FrameGenerator {
 
 	/**
 	 * Fills the frame with the geometries/cells found in the input polygonMesh
-	 * list. It uses the intersection method to determine the connectivity between
-	 * nodes of the CellGraph. An STR tree is used to improve efficiency. 
+	 * list. The connectivity between the nodes is determined with the method 
+	 * specified at construction, see {@link AdjacencyType}.
 	 * 
 	 * @param frame
 	 * @param polygonMesh
 	 */
 	public void populateFrame(FrameGraph frame, ArrayList<Polygon> polygonMesh) {
 		
-		//insert all polygons into graph as CellPolygons
-		ArrayList<Cell> cell_list = new ArrayList<Cell>();
+		switch(adjacency_type){
+		case SHARED_BOUNDARY:
+			populateFrameBySharedBoundary(frame, polygonMesh);
+			break;
+		case INTERSECTION:
+		default:
+			populateFrameByIntersection(frame, polygonMesh);
+			break;
+		}
+	}
+	
+	/**
+	 * Inserts the polygons as cells in geometric order (x,y)
+	 * 
+	 * @param frame frame to fill
+	 * @param polygonMesh input polygons
+	 * @return the inserted cells in insertion order
+	 */
+	private ArrayList<Cell> insertCells(FrameGraph frame, ArrayList<Polygon> polygonMesh){
 		
 		//order polygons according to cell center position
 		//in order to insert them into the graph in geometric order (x,y) 
@@ -109,16 +152,151 @@ public class FrameGenerator {
 		//order polygons according to comparator class
 		Arrays.sort(poly_array);
 		
-		//obtain the polygons back and create cells & index
-		STRtree index = new STRtree();
-		HashMap<Polygon, Cell> index_to_cell = new HashMap<Polygon, Cell>();
-
+		ArrayList<Cell> cell_list = new ArrayList<Cell>(poly_array.length);
 		for(ComparablePolygon polygon: poly_array){
-			Polygon cell_polygon = polygon.getPolygon();
-			
-			Cell c = new Cell(cell_polygon,frame);
+			Cell c = new Cell(polygon.getPolygon(),frame);
 			cell_list.add(c);
 			frame.addVertex(c);
+		}
+		
+		return cell_list;
+	}
+	
+	/**
+	 * Determines the connectivity by hashing the boundary of every 
+	 * polygon. Two cells sharing at least one boundary segment are 
+	 * linked and the shared segments are merged into the edge geometry, 
+	 * whose length is set as edge weight. Cells sharing only boundary 
+	 * vertices (e.g. diagonal cells at a four-way junction) are linked 
+	 * by a point geometry of length 0, as obtained by the intersection.
+	 * 
+	 * @param frame frame to fill
+	 * @param polygonMesh input polygons with exactly matching boundaries
+	 */
+	private void populateFrameBySharedBoundary(FrameGraph frame, ArrayList<Polygon> polygonMesh) {
+		
+		ArrayList<Cell> cell_list = insertCells(frame, polygonMesh);
+		
+		//segment -> first cell owning it, removed when the second owner is found
+		HashMap<LineSegment, Cell> segment_owner = new HashMap<LineSegment, Cell>();
+		//vertex -> cells sharing it
+		HashMap<Coordinate, ArrayList<Cell>> vertex_owners = new HashMap<Coordinate, ArrayList<Cell>>();
+		//edge -> shared segments
+		HashMap<Edge, ArrayList<LineSegment>> shared_segments = new HashMap<Edge, ArrayList<LineSegment>>();
+		
+		for(Cell c: cell_list){
+			Polygon polygon = (Polygon)c.getGeometry();
+			
+			hashRing(c, polygon.getExteriorRing(), frame, 
+					segment_owner, vertex_owners, shared_segments);
+			for(int i=0; i < polygon.getNumInteriorRing(); i++)
+				hashRing(c, polygon.getInteriorRingN(i), frame, 
+						segment_owner, vertex_owners, shared_segments);
+		}
+		
+		//edge geometry from the merged shared segments
+		for(Entry<Edge, ArrayList<LineSegment>> entry: shared_segments.entrySet()){
+			Edge e = entry.getKey();
+			
+			LineMerger merger = new LineMerger();
+			double length = 0;
+			for(LineSegment segment: entry.getValue()){
+				merger.add(segment.toGeometry(factory));
+				length += segment.getLength();
+			}
+			
+			@SuppressWarnings("unchecked")
+			ArrayList<LineString> merged = new ArrayList<LineString>(merger.getMergedLineStrings());
+			
+			Geometry edge_geometry;
+			if(merged.size() == 1)
+				edge_geometry = merged.get(0);
+			else
+				edge_geometry = factory.createMultiLineString(
+						merged.toArray(new LineString[merged.size()]));
+			
+			e.setGeometry(edge_geometry);
+			frame.setEdgeWeight(e, length);
+		}
+		
+		//point contacts
+		for(Entry<Coordinate, ArrayList<Cell>> entry: vertex_owners.entrySet()){
+			ArrayList<Cell> owners = entry.getValue();
+			if(owners.size() < 2)
+				continue;
+			
+			for(int i=0; i < owners.size(); i++)
+				for(int j=i+1; j < owners.size(); j++){
+					Cell a = owners.get(i);
+					Cell b = owners.get(j);
+					if(!frame.containsEdge(a, b)){
+						Edge e = frame.addEdge(a, b);
+						e.setFrame(frame);
+						e.setGeometry(factory.createPoint(entry.getKey()));
+						frame.setEdgeWeight(e, 0);
+					}
+				}
+		}
+	}
+	
+	/**
+	 * Registers the segments and vertices of a polygon ring and links 
+	 * the cell to the previous owner of any shared segment
+	 */
+	private void hashRing(Cell c, LineString ring, FrameGraph frame,
+			HashMap<LineSegment, Cell> segment_owner,
+			HashMap<Coordinate, ArrayList<Cell>> vertex_owners,
+			HashMap<Edge, ArrayList<LineSegment>> shared_segments){
+		
+		Coordinate[] coordinates = ring.getCoordinates();
+		
+		for(int k=0; k < coordinates.length - 1; k++){
+			
+			ArrayList<Cell> owners = vertex_owners.get(coordinates[k]);
+			if(owners == null){
+				owners = new ArrayList<Cell>(3);
+				vertex_owners.put(coordinates[k], owners);
+			}
+			if(!owners.contains(c))
+				owners.add(c);
+			
+			LineSegment segment = new LineSegment(coordinates[k], coordinates[k+1]);
+			segment.normalize();
+			
+			Cell other = segment_owner.remove(segment);
+			if(other == null || other == c){
+				segment_owner.put(segment, c);
+				continue;
+			}
+			
+			Edge e = frame.getEdge(other, c);
+			if(e == null){
+				e = frame.addEdge(other, c);
+				e.setFrame(frame);
+				shared_segments.put(e, new ArrayList<LineSegment>());
+			}
+			shared_segments.get(e).add(segment);
+		}
+	}
+	
+	/**
+	 * Determines the connectivity with the intersection method. 
+	 * An STR tree is used to improve efficiency. 
+	 * 
+	 * @param frame frame to fill
+	 * @param polygonMesh input polygons
+	 */
+	private void populateFrameByIntersection(FrameGraph frame, ArrayList<Polygon> polygonMesh) {
+		
+		//insert all polygons into graph as CellPolygons
+		ArrayList<Cell> cell_list = insertCells(frame, polygonMesh);
+		
+		//create cells index
+		STRtree index = new STRtree();
+		HashMap<Polygon, Cell> index_to_cell = new HashMap<Polygon, Cell>();
+
+		for(Cell c: cell_list){
+			Polygon cell_polygon = (Polygon)c.getGeometry();
 
 			//Populate tree and conversion map
 			index.insert(cell_polygon.getEnvelopeInternal(), cell_polygon);
@@ -150,8 +328,9 @@ public class FrameGenerator {
 			
 			for(Polygon intersection_neighbor: intersections){
 				
+				//skip self, identity since the geometry hash only reflects the envelope
 				Geometry geometry_b = intersection_neighbor;
-				if(geometry_a.hashCode() == geometry_b.hashCode())
+				if(geometry_a == geometry_b)
 					continue;
 				
 				Cell b = index_to_cell.get(intersection_neighbor);
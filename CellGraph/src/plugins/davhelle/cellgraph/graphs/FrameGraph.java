@@ -1,9 +1,14 @@
 package plugins.davhelle.cellgraph.graphs;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.jgrapht.alg.NeighborIndex;
+import org.jgrapht.event.GraphEdgeChangeEvent;
+import org.jgrapht.event.GraphListener;
+import org.jgrapht.event.GraphVertexChangeEvent;
 import org.jgrapht.graph.ListenableUndirectedWeightedGraph;
 
 import plugins.davhelle.cellgraph.nodes.Division;
@@ -11,7 +16,11 @@ import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Elimination;
 import plugins.davhelle.cellgraph.nodes.Node;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineSegment;
+import com.vividsolutions.jts.operation.linemerge.LineMerger;
 
 /**
  * Frame Graph represents the polygonal network abstraction of a 
@@ -33,6 +42,21 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 */
 	private NeighborIndex<Node, Edge> neighborList;
 	
+	/**
+	 * Rapid tracking id lookup
+	 */
+	private TrackIdIndex trackIdIndex;
+	
+	/**
+	 * Lazily built spatial lookup
+	 */
+	private CellSpatialIndex spatialIndex;
+	
+	/**
+	 * Lazily built per-cell feature columns
+	 */
+	private CellFeatures cellFeatures;
+	
 	/**
 	 * List of dividing vertices in this frame (tracking required)
 	 */
@@ -53,6 +77,40 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 * Linear Ring describing the boundary of the vertex geometries
 	 */
 	private Geometry boundary; 
+	/**
+	 * Segments of the boundary, merged into the boundary geometry at first request
+	 */
+	private ArrayList<LineSegment> boundary_segments;
+	/**
+	 * Number of changes to the vertices, edges or cell geometries
+	 */
+	private int modification_no;
+	
+	/**
+	 * Counts the vertex and edge changes of the frame
+	 */
+	private class ModificationCounter implements GraphListener<Node, Edge> {
+		
+		@Override
+		public void vertexAdded(GraphVertexChangeEvent<Node> e) {
+			modification_no++;
+		}
+		
+		@Override
+		public void vertexRemoved(GraphVertexChangeEvent<Node> e) {
+			modification_no++;
+		}
+		
+		@Override
+		public void edgeAdded(GraphEdgeChangeEvent<Node, Edge> e) {
+			modification_no++;
+		}
+		
+		@Override
+		public void edgeRemoved(GraphEdgeChangeEvent<Node, Edge> e) {
+			modification_no++;
+		}
+	}
 	
 	/**
 	 * Constructor builds an empty ListenableUndirectedGraph at first
@@ -69,12 +127,29 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 		this.neighborList = new NeighborIndex<Node, Edge>(this);
 		this.addGraphListener(neighborList);
 		
+		//create the tracking id index
+		this.trackIdIndex = new TrackIdIndex();
+		this.addGraphListener(trackIdIndex);
+		
+		//create the spatial index, built at first query
+		this.spatialIndex = new CellSpatialIndex(this);
+		this.addGraphListener(spatialIndex);
+		
+		//create the feature table, built at first request
+		this.cellFeatures = new CellFeatures(this);
+		this.addGraphListener(cellFeatures);
+		
+		//count the modifications for the derived descriptions
+		this.modification_no = 0;
+		this.addGraphListener(new ModificationCounter());
+		
 		//initialize division list
 		this.divisions = new ArrayList<Division>();
 		this.eliminations = new ArrayList<Elimination>();
 		
 		//initialize empty boundary
 		this.boundary = null;
+		this.boundary_segments = null;
 	}
 	
 	/**
@@ -182,14 +257,7 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 * @return true if a vertex with the tracking id is present
 	 */
 	public boolean hasTrackID(int track_id){
-		
-		boolean has_track_id = false;
-		for(Node n: this.vertexSet())
-			if(n.getTrackID() == track_id){
-				has_track_id = true;
-			}
-		
-		return has_track_id;
+		return trackIdIndex.contains(track_id);
 	}
 	
 	/**
@@ -199,11 +267,123 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 * @return vertex with the tracking id, if id not found null
 	 */
 	public Node getNode(int track_id){
-		for(Node n: this.vertexSet())
-			if(n.getTrackID() == track_id)
-				return n;
+		return trackIdIndex.get(track_id);
+	}
+	
+	/**
+	 * Updates the tracking id lookup after a vertex changed its tracking id.
+	 * Called by the vertex itself, see {@link Node#setTrackID(int)}
+	 * 
+	 * @param n vertex whose tracking id changed
+	 * @param old_track_id previous tracking id of the vertex
+	 */
+	public void updateTrackID(Node n, int old_track_id){
+		trackIdIndex.update(n, old_track_id);
+		cellFeatures.invalidate();
+	}
+
+	/**
+	 * Retrieves the node containing a point
+	 * 
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @return vertex whose geometry contains the point, null if none
+	 */
+	public Node findCellAt(double x, double y){
+		return spatialIndex.findCellAt(x, y);
+	}
+	
+	/**
+	 * Retrieves the nodes within a rectangular region
+	 * 
+	 * @param envelope query region
+	 * @return vertices whose geometry intersects the region
+	 */
+	public List<Node> cellsIntersecting(Envelope envelope){
+		return spatialIndex.cellsIntersecting(envelope);
+	}
+	
+	/**
+	 * Retrieves the candidate nodes for an overlap query, i.e. 
+	 * all nodes whose bounding box intersects the region
+	 * 
+	 * @param envelope query region
+	 * @return vertices whose envelope intersects the region
+	 */
+	public List<Node> cellsWithEnvelopeIntersecting(Envelope envelope){
+		return spatialIndex.queryEnvelope(envelope);
+	}
+	
+	/**
+	 * Retrieves the nodes closest to a point
+	 * 
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param k number of vertices to retrieve
+	 * @return up to k vertices ordered by the distance of their centroid
+	 */
+	public List<Node> findNearestCells(double x, double y, int k){
+		return spatialIndex.findNearestCells(x, y, k);
+	}
+	
+	/**
+	 * Discards the spatial index after the geometry of a vertex
+	 * has been modified. Adding or removing vertices does not require
+	 * this call.
+	 */
+	public void invalidateSpatialIndex(){
+		spatialIndex.invalidate();
+		modification_no++;
+	}
+	
+	/**
+	 * Counter of the modifications of the frame, i.e. of added or
+	 * removed vertices and edges and of changed cell geometries.
+	 * Descriptions derived from the frame are up to date as long
+	 * as the counter did not change.
+	 * 
+	 * @return current modification count
+	 */
+	public int getModificationNo(){
+		return modification_no;
+	}
+	
+	/**
+	 * Recomputes the geometry and weight of the edges of a vertex whose
+	 * geometry changed. Edges without geometry are left to be computed
+	 * on demand.
+	 * 
+	 * @param n vertex whose geometry changed
+	 */
+	public void updateEdgeGeometries(Node n){
+		if(!containsVertex(n))
+			return;
 		
-		return null;
+		for(Edge e: edgesOf(n)){
+			if(!e.hasGeometry())
+				continue;
+			
+			Geometry intersection = getEdgeSource(e).getGeometry().intersection(
+					getEdgeTarget(e).getGeometry());
+			e.setGeometry(intersection);
+			setEdgeWeight(e, intersection.getLength());
+		}
+	}
+	
+	/**
+	 * @return per-cell feature columns of the frame
+	 */
+	public CellFeatures getFeatures(){
+		return cellFeatures;
+	}
+	
+	/**
+	 * Discards the feature columns after a vertex has been modified,
+	 * e.g. its geometry or boundary flag. Adding or removing vertices
+	 * and edges does not require this call.
+	 */
+	public void invalidateFeatures(){
+		cellFeatures.invalidate();
 	}
 
 	/**
@@ -239,9 +419,8 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 		int[] node_ids = Edge.getCodePair(track_id);
 		Node[] nodes = new Node[2];
 		for(int i=0; i<2; i++){
-			if(hasTrackID(node_ids[i]))
-				nodes[i] = getNode(node_ids[i]);
-			else
+			nodes[i] = getNode(node_ids[i]);
+			if(nodes[i] == null)
 				return false;
 		}
 		
@@ -270,12 +449,35 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 */
 	public void setBoundary(Geometry boundary) {
 		this.boundary = boundary;		
+		this.boundary_segments = null;
+	}
+	
+	/**
+	 * Specify the boundary of the frame as collection of segments. The
+	 * boundary geometry is only built when requested by {@link #getBoundary()}
+	 * 
+	 * @param segments boundary segments
+	 */
+	public void setBoundarySegments(Collection<LineSegment> segments) {
+		this.boundary = null;
+		this.boundary_segments = new ArrayList<LineSegment>(segments);
 	}
 	
 	/**
 	 * @return the boundary of the object
 	 */
 	public Geometry getBoundary(){
+		if(boundary == null && boundary_segments != null){
+			GeometryFactory factory = new GeometryFactory();
+			LineMerger merger = new LineMerger();
+			for(LineSegment segment: boundary_segments)
+				merger.add(segment.toGeometry(factory));
+			
+			@SuppressWarnings("unchecked")
+			Collection<Geometry> lines = merger.getMergedLineStrings();
+			boundary = factory.buildGeometry(lines);
+			boundary_segments = null;
+		}
 		return boundary;
 	}
 	
@@ -283,6 +485,6 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 * @return true if the frame has a specified boundary object
 	 */
 	public boolean hasBoundary(){
-		return boundary != null;
+		return boundary != null || boundary_segments != null;
 	}
 }
@@ -1,5 +1,11 @@
 package plugins.davhelle.cellgraph.graphs;
 
+import java.util.Map;
+
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Geometry;
+
 /**
  * Parent class of {@link FrameGraph} containing all frames belonging 
  * to one series. With the frames being tracked, a temporal connectivity is
@@ -64,6 +70,31 @@ public interface SpatioTemporalGraph {
 	 */
 	public void setVoronoi(boolean new_state);
 	
+	/**
+	 * @return voronoi tile of every cell, null if no tesselation has been stored
+	 */
+	public Map<Node, Geometry> getVoronoiTesselation();
+	
+	/**
+	 * Stores the voronoi tesselation of the graph and sets the voronoi state
+	 * 
+	 * @param tesselation voronoi tile of every cell
+	 */
+	public void setVoronoiTesselation(Map<Node, Geometry> tesselation);
+	
+	/**
+	 * @return cache of the polygonal tiles, null if none has been stored
+	 */
+	public Object getTileCache();
+	
+	/**
+	 * Stores the cache of the polygonal tiles, its content is only
+	 * interpreted by the tile generator
+	 * 
+	 * @param cache cache of the polygonal tiles
+	 */
+	public void setTileCache(Object cache);
+	
 	/**
 	 * set whether or not an ellipse fitting is present
 	 * @param new_state
@@ -1,6 +1,13 @@
 package plugins.davhelle.cellgraph.graphs;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import plugins.davhelle.cellgraph.io.FileNameGenerator;
 import plugins.davhelle.cellgraph.io.InputType;
@@ -110,12 +117,25 @@ public class SpatioTemporalGraphGenerator {
 	 * @param input_type input format of the frames
 	 */
 	public SpatioTemporalGraphGenerator(GraphType type, InputType input_type){
+		this(type, input_type, AdjacencyType.INTERSECTION);
+	}
+	
+	/**
+	 * Spatio temporal graph generator that initializes the graph type,
+	 * the input_type and the method used to find the cell neighbors. 
+	 * Frames can be added with addFrame(i,path)
+	 * 
+	 * @param type type of graph to built
+	 * @param input_type input format of the frames
+	 * @param adjacency_type neighbor detection method, see {@link AdjacencyType}
+	 */
+	public SpatioTemporalGraphGenerator(GraphType type, InputType input_type, AdjacencyType adjacency_type){
 		switch(type){
 		case TISSUE_EVOLUTION:
 			this.stGraph = new TissueEvolution();
 		}
 		
-		this.frame_generator = new FrameGenerator(input_type);
+		this.frame_generator = new FrameGenerator(input_type, adjacency_type);
 		
 		this.file_name_generator = null;
 	}
@@ -137,6 +157,79 @@ public class SpatioTemporalGraphGenerator {
 		
 	}
 
+	/**
+	 * Submits the generation of a frame to a worker pool. Frames are
+	 * independent of each other, the returned frame has to be inserted 
+	 * with {@link #addFrame(Future)} to keep the graph in frame order.
+	 * 
+	 * @param executor worker pool generating the frame
+	 * @param frame_no frame number to generate
+	 * @param frame_file_name absolute path of the input file
+	 * @return pending frame, fails with a {@link FileNotFoundException} if the input file does not exist
+	 */
+	public Future<FrameGraph> submitFrame(ExecutorService executor, 
+			final int frame_no, final String frame_file_name){
+		
+		return executor.submit(new Callable<FrameGraph>() {
+			@Override
+			public FrameGraph call() throws Exception {
+				if(!new File(frame_file_name).exists())
+					throw new FileNotFoundException("Input file does not exist: "+frame_file_name);
+				
+				return frame_generator.generateFrame(frame_no, frame_file_name);
+			}
+		});
+	}
+	
+	/**
+	 * Waits for a frame submitted with {@link #submitFrame(ExecutorService, int, String)}
+	 * and inserts it into the spatiotemporal graph 
+	 * 
+	 * @param pending_frame the frame being generated
+	 * @throws IllegalStateException if the generation failed or was interrupted, 
+	 * the cause of the failure is attached
+	 */
+	public void addFrame(Future<FrameGraph> pending_frame){
+		
+		FrameGraph frame;
+		try {
+			frame = pending_frame.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating frames", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(
+					"Frame generation failed: " + e.getCause().getMessage(), e.getCause());
+		}
+		
+		stGraph.setFrame(frame, frame.getFrameNo());
+	}
+	
+	/**
+	 * Generates the frames of all input files using a bounded pool of 
+	 * worker threads. Frames are inserted in order of their frame number.
+	 * 
+	 * @param frame_file_names absolute input file path for every frame
+	 * @param thread_no maximum number of frames generated in parallel
+	 * @throws IllegalStateException if the generation of a frame failed
+	 */
+	public void addFrames(String[] frame_file_names, int thread_no){
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, thread_no));
+		
+		try{
+			ArrayList<Future<FrameGraph>> pending_frames = new ArrayList<Future<FrameGraph>>();
+			for(int i=0; i<frame_file_names.length; i++)
+				pending_frames.add(submitFrame(executor, i, frame_file_names[i]));
+		
+			for(Future<FrameGraph> pending_frame: pending_frames)
+				addFrame(pending_frame);
+		}
+		finally{
+			executor.shutdownNow();
+		}
+	}
+
 	/**
 	 * Checks if the file name generated for the specified time point exists
 	 * 
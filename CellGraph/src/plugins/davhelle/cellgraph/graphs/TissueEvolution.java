@@ -1,6 +1,11 @@
 package plugins.davhelle.cellgraph.graphs;
 
 import java.util.ArrayList;
+import java.util.Map;
+
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Geometry;
 
 /**
  * Standard implementation of StGraph for representing developing tissues
@@ -23,6 +28,14 @@ public class TissueEvolution implements SpatioTemporalGraph {
 	 * Flag if a voronoi diagram has been computed for the graph 
 	 */
 	private boolean has_voronoi;
+	/**
+	 * Voronoi tile of every cell, shared by all consumers of the tesselation
+	 */
+	private Map<Node, Geometry> voronoi_tesselation;
+	/**
+	 * Cache of the polygonal tiles, views on the edge geometries
+	 */
+	private Object tile_cache;
 	/**
 	 * Flag if ellipses have been fitted to the indiviual cell polygons
 	 */
@@ -34,6 +47,8 @@ public class TissueEvolution implements SpatioTemporalGraph {
 	public TissueEvolution(int time_points) {
 		this.has_tracking = false;
 		this.has_voronoi = false;
+		this.voronoi_tesselation = null;
+		this.tile_cache = null;
 		this.has_ellipse_fitting = false;
 		this.frames = new ArrayList<FrameGraph>(time_points);
 	}
@@ -93,6 +108,27 @@ public class TissueEvolution implements SpatioTemporalGraph {
 		this.has_voronoi = new_state;
 	}
 
+	@Override
+	public Map<Node, Geometry> getVoronoiTesselation() {
+		return voronoi_tesselation;
+	}
+
+	@Override
+	public void setVoronoiTesselation(Map<Node, Geometry> tesselation) {
+		this.voronoi_tesselation = tesselation;
+		this.has_voronoi = tesselation != null;
+	}
+
+	@Override
+	public Object getTileCache() {
+		return tile_cache;
+	}
+
+	@Override
+	public void setTileCache(Object cache) {
+		this.tile_cache = cache;
+	}
+
 	@Override
 	public boolean hasEllipseFitting() {
 		return has_ellipse_fitting;
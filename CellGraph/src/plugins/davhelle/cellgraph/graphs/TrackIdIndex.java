@@ -0,0 +1,237 @@
+package plugins.davhelle.cellgraph.graphs;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.jgrapht.event.GraphEdgeChangeEvent;
+import org.jgrapht.event.GraphListener;
+import org.jgrapht.event.GraphVertexChangeEvent;
+
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+/**
+ * Rapid tracking id lookup for the vertices of a {@link FrameGraph}.
+ * The index is kept up to date as graph listener and through
+ * {@link #update(Node, int)} when the tracking id of a vertex changes.<br><br>
+ *
+ * Tracking ids are stored in an open addressing hash table with primitive
+ * int keys. Ids shared by several vertices (e.g. -1 for untracked cells)
+ * keep the additional vertices in insertion order.
+ *
+ * @author Davide Heller
+ *
+ */
+public class TrackIdIndex implements GraphListener<Node, Edge> {
+
+	/**
+	 * Marker for free slots, tracking ids are never this small
+	 */
+	private static final int FREE = Integer.MIN_VALUE;
+
+	/**
+	 * Hash table keys (tracking ids)
+	 */
+	private int[] keys;
+	/**
+	 * Hash table values, either a Node or a LinkedHashSet of Nodes
+	 */
+	private Object[] values;
+	/**
+	 * Number of occupied slots
+	 */
+	private int size;
+
+	/**
+	 * Empty index
+	 */
+	public TrackIdIndex(){
+		allocate(64);
+	}
+
+	private void allocate(int capacity){
+		keys = new int[capacity];
+		values = new Object[capacity];
+		Arrays.fill(keys, FREE);
+		size = 0;
+	}
+
+	/**
+	 * @param track_id tracking id
+	 * @param mask table size - 1
+	 * @return preferred slot of the tracking id
+	 */
+	private static int home(int track_id, int mask){
+		int h = track_id * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * @param track_id tracking id
+	 * @return slot of the tracking id or of the free slot where it belongs
+	 */
+	private int slot(int track_id){
+		int mask = keys.length - 1;
+		int i = home(track_id, mask);
+		while(keys[i] != FREE && keys[i] != track_id)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	/**
+	 * @param track_id tracking id to look up
+	 * @return first inserted vertex with the tracking id, null if absent
+	 */
+	@SuppressWarnings("unchecked")
+	public Node get(int track_id){
+		Object value = values[slot(track_id)];
+		if(value instanceof LinkedHashSet)
+			return ((LinkedHashSet<Node>)value).iterator().next();
+		else
+			return (Node)value;
+	}
+
+	/**
+	 * @param track_id tracking id to look up
+	 * @return true if at least one vertex has the tracking id
+	 */
+	public boolean contains(int track_id){
+		return values[slot(track_id)] != null;
+	}
+
+	/**
+	 * Adds a vertex with its current tracking id
+	 *
+	 * @param n vertex to add
+	 */
+	@SuppressWarnings("unchecked")
+	public void add(Node n){
+		int track_id = n.getTrackID();
+		int i = slot(track_id);
+		Object value = values[i];
+
+		if(value == null){
+			keys[i] = track_id;
+			values[i] = n;
+
+			if(++size * 2 > keys.length)
+				rehash(keys.length * 2);
+		}
+		else if(value instanceof LinkedHashSet)
+			((LinkedHashSet<Node>)value).add(n);
+		else if(value != n){
+			LinkedHashSet<Node> shared = new LinkedHashSet<Node>();
+			shared.add((Node)value);
+			shared.add(n);
+			values[i] = shared;
+		}
+	}
+
+	/**
+	 * Removes a vertex from the index
+	 *
+	 * @param n vertex to remove
+	 * @param track_id tracking id under which the vertex was added
+	 * @return true if the vertex was found
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean remove(Node n, int track_id){
+		int i = slot(track_id);
+		Object value = values[i];
+
+		if(value instanceof LinkedHashSet){
+			LinkedHashSet<Node> shared = (LinkedHashSet<Node>)value;
+			if(!shared.remove(n))
+				return false;
+			if(shared.size() == 1)
+				values[i] = shared.iterator().next();
+			return true;
+		}
+
+		if(value == null || value != n)
+			return false;
+
+		//backward shift deletion to keep the probe sequences intact
+		int mask = keys.length - 1;
+		int j = i;
+		while(true){
+			j = (j + 1) & mask;
+			if(keys[j] == FREE)
+				break;
+			int h = home(keys[j], mask);
+			if(j > i ? (h <= i || h > j) : (h <= i && h > j)){
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = FREE;
+		values[i] = null;
+		size--;
+
+		return true;
+	}
+
+	/**
+	 * Moves a vertex to its new tracking id. Vertices which are
+	 * not part of the index are ignored.
+	 *
+	 * @param n vertex whose tracking id changed
+	 * @param old_track_id previous tracking id of the vertex
+	 */
+	public void update(Node n, int old_track_id){
+		if(old_track_id == n.getTrackID())
+			return;
+
+		if(remove(n, old_track_id))
+			add(n);
+	}
+
+	private void rehash(int capacity){
+		int[] old_keys = keys;
+		Object[] old_values = values;
+		allocate(capacity);
+
+		for(int k=0; k<old_keys.length; k++)
+			if(old_values[k] != null){
+				int i = slot(old_keys[k]);
+				keys[i] = old_keys[k];
+				values[i] = old_values[k];
+				size++;
+			}
+	}
+
+	@Override
+	public void vertexAdded(GraphVertexChangeEvent<Node> e) {
+		add(e.getVertex());
+	}
+
+	@Override
+	public void vertexRemoved(GraphVertexChangeEvent<Node> e) {
+		Node n = e.getVertex();
+		if(!remove(n, n.getTrackID())){
+			//tracking id changed without notification, search the vertex
+			for(int k=0; k<keys.length; k++)
+				if(values[k] != null && containsValue(values[k], n)){
+					remove(n, keys[k]);
+					break;
+				}
+		}
+	}
+
+	private boolean containsValue(Object value, Node n){
+		if(value instanceof LinkedHashSet)
+			return ((LinkedHashSet<?>)value).contains(n);
+		else
+			return value == n;
+	}
+
+	@Override
+	public void edgeAdded(GraphEdgeChangeEvent<Node, Edge> e) {
+	}
+
+	@Override
+	public void edgeRemoved(GraphEdgeChangeEvent<Node, Edge> e) {
+	}
+
+}
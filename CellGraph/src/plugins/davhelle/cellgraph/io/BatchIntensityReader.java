@@ -0,0 +1,313 @@
+package plugins.davhelle.cellgraph.io;
+
+import icy.sequence.Sequence;
+import icy.type.collection.array.Array1DUtil;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Measures the intensity of many geometries of a frame at once.<br><br>
+ *
+ * Every geometry added is rasterized into horizontal pixel spans and
+ * receives a label. A pixel belongs to a geometry if its center lies
+ * inside it, as for the AWT filling of a ROI shape. Geometries may overlap.
+ * The image plane is then read a single time, row by row, accumulating
+ * pixel count, sum, sum of squares, minimum and maximum of every label,
+ * from which all {@link IntensitySummaryType} values are derived. For
+ * {@link IntensitySummaryType#TopPercentMean} the pixel values of every
+ * label are additionally collected during the pass, if requested through
+ * {@link #setTopPercent(double)}, and the brightest ones selected in place.<br><br>
+ *
+ * Labels without pixels report -1.0 like a failed {@link IntensityReader} readout.
+ *
+ * @author Davide Heller
+ *
+ */
+public class BatchIntensityReader {
+
+	/**
+	 * Readout for labels without any measured pixel
+	 */
+	public static final double NO_READOUT = -1.0;
+
+	private final int width;
+	private final int height;
+
+	/**
+	 * Spans of every image row stored as (label, x_start, x_end) triplets, x_end exclusive
+	 */
+	private int[][] row_spans;
+	private int[] row_span_no;
+
+	/**
+	 * Number of labels assigned
+	 */
+	private int label_no;
+	/**
+	 * Number of rasterized pixels of every label
+	 */
+	private int[] span_pixels;
+	/**
+	 * Fraction of the brightest pixels used for the top percent mean, 0 if not computed
+	 */
+	private double top_percent;
+
+	//per label accumulators
+	private int[] count;
+	private double[] sum;
+	/**
+	 * Running mean and sum of squared deviations from it (Welford)
+	 */
+	private double[] running_mean;
+	private double[] m2;
+	private double[] min;
+	private double[] max;
+	private double[] top_mean;
+
+	/**
+	 * @param width image width
+	 * @param height image height
+	 */
+	public BatchIntensityReader(int width, int height){
+		this.width = width;
+		this.height = height;
+		this.row_spans = new int[height][];
+		this.row_span_no = new int[height];
+		this.label_no = 0;
+		this.span_pixels = new int[16];
+		this.top_percent = 0;
+		this.count = new int[0];
+	}
+	
+	/**
+	 * Enables the computation of {@link IntensitySummaryType#TopPercentMean}
+	 * in the next measurement. Requires to hold all measured pixel values.
+	 * 
+	 * @param top_percent fraction of the brightest pixels retained (e.g. 0.2 = 20 top-most percent), 0 to disable
+	 */
+	public void setTopPercent(double top_percent){
+		this.top_percent = top_percent;
+	}
+
+	/**
+	 * Rasterizes the polygons of the geometry (holes included)
+	 *
+	 * @param geometry measurement geometry
+	 * @return label with which to retrieve the intensity
+	 */
+	public int addGeometry(Geometry geometry){
+		int label = label_no++;
+		if(label == span_pixels.length)
+			span_pixels = Arrays.copyOf(span_pixels, label * 2);
+		if(geometry == null || geometry.isEmpty())
+			return label;
+
+		Envelope envelope = geometry.getEnvelopeInternal();
+		int y_start = Math.max(0, (int)Math.ceil(envelope.getMinY() - 0.5));
+		int y_end = Math.min(height, (int)Math.ceil(envelope.getMaxY() - 0.5));
+		if(y_start >= y_end)
+			return label;
+
+		//collect all ring segments as coordinate sequences
+		int ring_no = 0;
+		CoordinateSequence[] rings = new CoordinateSequence[8];
+		for(int i=0; i<geometry.getNumGeometries(); i++){
+			Geometry part = geometry.getGeometryN(i);
+			if(part instanceof Polygon){
+				Polygon polygon = (Polygon)part;
+				for(int j=-1; j<polygon.getNumInteriorRing(); j++){
+					LineString ring = j < 0 ? polygon.getExteriorRing() : polygon.getInteriorRingN(j);
+					if(ring_no == rings.length)
+						rings = Arrays.copyOf(rings, ring_no * 2);
+					rings[ring_no++] = ring.getCoordinateSequence();
+				}
+			}
+		}
+
+		//even-odd scanline through the pixel centers
+		double[] crossings = new double[16];
+		for(int y=y_start; y<y_end; y++){
+			double center_y = y + 0.5;
+			int crossing_no = 0;
+
+			for(int r=0; r<ring_no; r++){
+				CoordinateSequence ring = rings[r];
+				double x0 = ring.getX(0);
+				double y0 = ring.getY(0);
+				for(int k=1; k<ring.size(); k++){
+					double x1 = ring.getX(k);
+					double y1 = ring.getY(k);
+					if((y0 <= center_y) != (y1 <= center_y)){
+						if(crossing_no == crossings.length)
+							crossings = Arrays.copyOf(crossings, crossing_no * 2);
+						crossings[crossing_no++] = x0 + (center_y - y0) * (x1 - x0) / (y1 - y0);
+					}
+					x0 = x1;
+					y0 = y1;
+				}
+			}
+
+			Arrays.sort(crossings, 0, crossing_no);
+			for(int k=0; k+1<crossing_no; k+=2){
+				int x_start = Math.max(0, (int)Math.ceil(crossings[k] - 0.5));
+				int x_end = Math.min(width, (int)Math.ceil(crossings[k+1] - 0.5));
+				if(x_start < x_end)
+					addSpan(y, label, x_start, x_end);
+			}
+		}
+
+		return label;
+	}
+
+	private void addSpan(int y, int label, int x_start, int x_end){
+		int[] spans = row_spans[y];
+		int offset = 3 * row_span_no[y];
+		if(spans == null){
+			spans = new int[12];
+			row_spans[y] = spans;
+		}
+		else if(offset == spans.length){
+			spans = Arrays.copyOf(spans, spans.length * 2);
+			row_spans[y] = spans;
+		}
+		spans[offset] = label;
+		spans[offset + 1] = x_start;
+		spans[offset + 2] = x_end;
+		row_span_no[y]++;
+		span_pixels[label] += x_end - x_start;
+	}
+
+	/**
+	 * Reads the plane (t,z,c) of the sequence and measures all labels
+	 *
+	 * @param sequence image sequence to read the intensity from
+	 * @param z slice number to be analyzed
+	 * @param t time point to be analyzed
+	 * @param c channel number to be analyzed
+	 * @param ignored pixels to skip (row major), null to use all pixels
+	 */
+	public void measure(Sequence sequence, int z, int t, int c, BitSet ignored){
+		double[] pixels = Array1DUtil.arrayToDoubleArray(
+				sequence.getDataXY(t, z, c), sequence.isSignedDataType());
+		measure(pixels, ignored);
+	}
+
+	/**
+	 * Measures all labels in a single pass over the plane
+	 *
+	 * @param pixels image plane in row major order
+	 * @param ignored pixels to skip (row major), null to use all pixels
+	 */
+	public void measure(double[] pixels, BitSet ignored){
+		count = new int[label_no];
+		sum = new double[label_no];
+		running_mean = new double[label_no];
+		m2 = new double[label_no];
+		min = new double[label_no];
+		max = new double[label_no];
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		
+		double[][] values = null;
+		if(top_percent > 0){
+			values = new double[label_no][];
+			for(int label=0; label<label_no; label++)
+				values[label] = new double[span_pixels[label]];
+		}
+
+		for(int y=0; y<height; y++){
+			int[] spans = row_spans[y];
+			int row_offset = y * width;
+			for(int s=0; s<row_span_no[y]; s++){
+				int label = spans[3*s];
+				int x_end = row_offset + spans[3*s + 2];
+				for(int i=row_offset + spans[3*s + 1]; i<x_end; i++){
+					if(ignored != null && ignored.get(i))
+						continue;
+
+					double value = pixels[i];
+					count[label]++;
+					sum[label] += value;
+					double delta = value - running_mean[label];
+					running_mean[label] += delta / count[label];
+					m2[label] += delta * (value - running_mean[label]);
+					if(value < min[label])
+						min[label] = value;
+					if(value > max[label])
+						max[label] = value;
+					if(values != null)
+						values[label][count[label] - 1] = value;
+				}
+			}
+		}
+		
+		top_mean = null;
+		if(values != null){
+			top_mean = new double[label_no];
+			for(int label=0; label<label_no; label++){
+				int n = count[label];
+				if(n == 0)
+					continue;
+				int top_size = IntensityStatistics.getTopSize(n, top_percent);
+				IntensityStatistics.selectTop(values[label], n, top_size);
+				top_mean[label] = IntensityStatistics.summarize(
+						values[label], n - top_size, n, IntensitySummaryType.Mean);
+			}
+		}
+	}
+
+	/**
+	 * @param label label returned by {@link #addGeometry(Geometry)}
+	 * @param summaryType summary statistic
+	 * @return intensity readout of the last measurement
+	 */
+	public double getIntensity(int label, IntensitySummaryType summaryType){
+		if(label >= count.length || count[label] == 0)
+			return NO_READOUT;
+
+		int n = count[label];
+		switch (summaryType) {
+		case Max:
+			return max[label];
+		case Mean:
+			return sum[label] / n;
+		case Min:
+			return min[label];
+		case StandardDeviation:
+			return Math.sqrt(m2[label] / n);
+		case Sum:
+			return sum[label];
+		case TopPercentMean:
+			if(top_mean == null){
+				System.out.println("Top percent mean not computed, see setTopPercent");
+				return NO_READOUT;
+			}
+			return top_mean[label];
+		default:
+			System.out.println("Unknown Image Summary Method");
+			return NO_READOUT;
+		}
+	}
+
+	/**
+	 * @param label label returned by {@link #addGeometry(Geometry)}
+	 * @return number of pixels measured for the label
+	 */
+	public int getPixelNo(int label){
+		return label < count.length ? count[label] : 0;
+	}
+
+	/**
+	 * @return number of labels assigned
+	 */
+	public int size(){
+		return label_no;
+	}
+}
@@ -5,6 +5,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import plugins.davhelle.cellgraph.export.ExportFieldType;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
@@ -14,13 +22,15 @@ import plugins.davhelle.cellgraph.nodes.Elimination;
 import plugins.davhelle.cellgraph.nodes.Node;
 import plugins.davhelle.cellgraph.tracking.TrackingAlgorithm;
 
-import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.GeometryFactory;
-import com.vividsolutions.jts.geom.Point;
-
 /**
  * Simple Reader Class for saved tracking files written by CsvTrackWriter.
- * Extend TrackingAlgorithm such that it can be substituted to a normal tracking algorithm.
+ * Extend TrackingAlgorithm such that it can be substituted to a normal tracking algorithm.<br><br>
+ * 
+ * The tracking files are streamed line by line and split at the commas
+ * without regular expressions. Cells are located with the spatial index
+ * of their frame and ancestors with the tracking id index. The frames are
+ * parsed in parallel while the links to the previous frames are set
+ * sequentially in frame order.
  * 
  * @author Davide Heller
  *
@@ -37,6 +47,31 @@ public class CsvTrackReader extends TrackingAlgorithm{
 	 */
 	private int linkage_threshold;
 	
+	/**
+	 * Number of frames parsed concurrently
+	 */
+	private int thread_no;
+	
+	/**
+	 * Cells found in a tracking file with the tracking ids read, in file order
+	 */
+	private static class FramePositions {
+		
+		private Node[] cells = new Node[64];
+		private int[] track_ids = new int[64];
+		private int size = 0;
+		
+		void add(Node cell, int track_id){
+			if(size == cells.length){
+				cells = Arrays.copyOf(cells, size * 2);
+				track_ids = Arrays.copyOf(track_ids, size * 2);
+			}
+			cells[size] = cell;
+			track_ids[size] = track_id;
+			size++;
+		}
+	}
+	
 	/**
 	 * Matching pattern for coordinate files
 	 */
@@ -68,6 +103,16 @@ public class CsvTrackReader extends TrackingAlgorithm{
 		 //default linkage range (how many frame to go back to find a cell with the same id)
 		 //might be adapted. TODO
 		 this.linkage_threshold = 5;
+		 this.thread_no = Runtime.getRuntime().availableProcessors();
+	}
+	
+	/**
+	 * Sets the number of frames parsed concurrently
+	 * 
+	 * @param thread_no number of workers, 1 to read sequentially
+	 */
+	public void setThreadNo(int thread_no){
+		this.thread_no = Math.max(1, thread_no);
 	}
 	
 	@Override
@@ -83,11 +128,153 @@ public class CsvTrackReader extends TrackingAlgorithm{
 	 * Reads coordinates of tracked cells
 	 */
 	public void readTrackingIds(){
-		for(int i=0; i < stGraph.size(); i++){
-			FrameGraph frame = stGraph.getFrame(i);
-			String file_name = input_directory + String.format(tracking_file_pattern,i);
-			File input_file = new File(file_name);
-			read(frame,input_file,ExportFieldType.TRACKING_POSITION);
+		
+		if(thread_no == 1 || stGraph.size() < 2){
+			for(int i=0; i < stGraph.size(); i++){
+				FrameGraph frame = stGraph.getFrame(i);
+				linkPositions(frame, readPositions(frame, getTrackingFile(i)));
+			}
+			return;
+		}
+		
+		//frames are parsed independently and linked in order as they become available
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(stGraph.size(), thread_no));
+		
+		try{
+			List<Future<FramePositions>> pending_frames = new ArrayList<Future<FramePositions>>();
+			for(int i=0; i < stGraph.size(); i++){
+				final FrameGraph frame = stGraph.getFrame(i);
+				final File input_file = getTrackingFile(i);
+				pending_frames.add(executor.submit(new Callable<FramePositions>() {
+					@Override
+					public FramePositions call() throws Exception {
+						return readPositions(frame, input_file);
+					}
+				}));
+			}
+			
+			for(int i=0; i < stGraph.size(); i++)
+				linkPositions(stGraph.getFrame(i), pending_frames.get(i).get());
+			
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading tracking files", e);
+		} catch (ExecutionException e) {
+			//parse failures reach the caller as in the sequential reader
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if(cause instanceof Error)
+				throw (Error)cause;
+			throw new IllegalStateException(cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * @param frame_no time point
+	 * @return tracking file of the time point
+	 */
+	private File getTrackingFile(int frame_no){
+		String file_name = input_directory + String.format(tracking_file_pattern,frame_no);
+		return new File(file_name);
+	}
+	
+	/**
+	 * Reads the tracking positions of a frame and assigns the tracking id 
+	 * and boundary flag to the cells found. Only modifies the given frame.
+	 * 
+	 * @param frame frameGraph to apply the tracking to
+	 * @param input_file tracking file of the frame
+	 * @return cells found with their tracking id, in file order
+	 */
+	private FramePositions readPositions(FrameGraph frame, File input_file){
+		
+		FramePositions positions = new FramePositions();
+		int[] field_start = new int[5];
+		
+		try{
+			FileInputStream fis = new FileInputStream(input_file);
+			BufferedReader br = new BufferedReader(new InputStreamReader(fis,"UTF-8"));
+			String line;
+			
+			while ((line = br.readLine()) != null) {
+				field_start = splitFields(line, field_start);
+				int cell_id = parseInt(line, field_start, 0);
+				double cell_x = Double.parseDouble(getField(line, field_start, 1));
+				double cell_y = Double.parseDouble(getField(line, field_start, 2));
+				boolean cell_on_border = parseBoolean(line, field_start, 3);
+
+				Node matching_cell = frame.findCellAt(cell_x, cell_y);
+
+				if(matching_cell == null){
+					System.out.printf("Could not find matching cell for:%d [%d,%.2f,%.2f]\n",
+							cell_id,
+							frame.getFrameNo(),
+							cell_x,
+							cell_y);
+					continue;
+				}
+
+				matching_cell.setTrackID(cell_id);
+				matching_cell.setBoundary(cell_on_border);
+				positions.add(matching_cell, cell_id);
+			}
+			br.close();
+
+		}catch (IOException e){
+			e.printStackTrace();
+		}
+		
+		return positions;
+	}
+	
+	/**
+	 * Links the cells read for a frame to their ancestors with the same
+	 * tracking id within the linkage threshold. Requires all previous 
+	 * frames to be linked.
+	 * 
+	 * @param frame frameGraph the positions belong to
+	 * @param positions cells found in the tracking file of the frame
+	 */
+	private void linkPositions(FrameGraph frame, FramePositions positions){
+		
+		for(int k=0; k < positions.size; k++){
+			Node matching_cell = positions.cells[k];
+			int cell_id = positions.track_ids[k];
+			
+			//restore the id of this row in case a later row reassigned the cell
+			matching_cell.setTrackID(cell_id);
+			
+			if(frame.getFrameNo() == 0)
+				matching_cell.setFirst(matching_cell);
+			else{
+				Node previous_cell = null;
+				boolean found_ancestor = false;
+				int previous_frame_no = frame.getFrameNo() - 1;
+
+				while(!found_ancestor && 
+						previous_frame_no >= 0 &&
+						frame.getFrameNo() - previous_frame_no < linkage_threshold){
+
+					FrameGraph previous_frame = stGraph.getFrame(previous_frame_no);
+
+					previous_cell = previous_frame.getNode(cell_id);
+					if(previous_cell != null)
+						found_ancestor = true;
+					previous_frame_no = previous_frame_no - 1;
+				}
+
+				if(found_ancestor)
+					updateCorrespondence(matching_cell, previous_cell);
+				else
+					//problem of dividing cells
+					//how to make the daughter cells fall in
+					//in the first if clause
+					//maybe a special clause if you are the *first*
+					matching_cell.setFirst(matching_cell);
+			}
 		}
 	}
 	
@@ -116,7 +303,7 @@ public class CsvTrackReader extends TrackingAlgorithm{
 	}
 	
 	/**
-	 * Reader function to populate individual frames (frameGraphs) of the spatiotemporal graph.
+	 * Reader function for the division and elimination events of the spatiotemporal graph.
 	 * 
 	 * @param frame frameGraph to apply the tracking to
 	 * @param input_file file to be read
@@ -124,129 +311,48 @@ public class CsvTrackReader extends TrackingAlgorithm{
 	 */
 	private void read(FrameGraph frame, File input_file,ExportFieldType export_field){
 
+		int[] field_start = new int[5];
+		
 		try{
 			FileInputStream fis = new FileInputStream(input_file);
 			BufferedReader br = new BufferedReader(new InputStreamReader(fis,"UTF-8"));
-			GeometryFactory gf = new GeometryFactory();
 			String line;
 			
 			while ((line = br.readLine()) != null) {
-				String[] content = line.split(",");
-				int cell_id = Integer.parseInt(content[0]);
+				field_start = splitFields(line, field_start);
+				int cell_id = parseInt(line, field_start, 0);
 			    
 			    switch(export_field){
-			    	case TRACKING_POSITION:
-			    		
-			    		double cell_x = Double.parseDouble(content[1]);
-			    		double cell_y = Double.parseDouble(content[2]);
-			    		boolean cell_on_border = Boolean.parseBoolean(content[3]);
-
-			    		Node matching_cell = null;
-			    		
-			    		Point point = gf.createPoint(
-			    				new Coordinate( cell_x, cell_y ));
-			    		for(Node cell: frame.vertexSet())
-			    			if(cell.getGeometry().contains(point)){
-			    				matching_cell = cell;
-			    				break;
-			    			}
-			    		
-			    		if(matching_cell == null){
-			    			System.out.printf("Could not find matching cell for:%d [%d,%.2f,%.2f]\n",
-			    					cell_id,
-			    					frame.getFrameNo(),
-			    					cell_x,
-			    					cell_y);
-			    			continue;
-			    		}
-			    		
-			    		matching_cell.setTrackID(cell_id);
-			    		matching_cell.setBoundary(cell_on_border);
-			    		
-			    		if(frame.getFrameNo() == 0)
-			    			matching_cell.setFirst(matching_cell);
-			    		else{
-			    			Node previous_cell = null;
-			    			boolean found_ancestor = false;
-			    			int previous_frame_no = frame.getFrameNo() - 1;
-			    			
-			    			while(!found_ancestor && 
-			    					previous_frame_no >= 0 &&
-			    					frame.getFrameNo() - previous_frame_no < linkage_threshold){
-
-			    				FrameGraph previous_frame = stGraph.getFrame(previous_frame_no);
-
-			    				for(Node cell: previous_frame.vertexSet())
-			    					if(cell.getTrackID() == cell_id){
-			    						previous_cell = cell;
-			    						found_ancestor = true;
-			    						break;
-			    					}
-			    				previous_frame_no = previous_frame_no - 1;
-			    			}
-			    			
-			    			if(found_ancestor)
-			    				updateCorrespondence(matching_cell, previous_cell);
-			    			else
-			    				//problem of dividing cells
-			    				//how to make the daughter cells fall in
-			    				//in the first if clause
-			    				//maybe a special clause if you are the *first*
-			    				matching_cell.setFirst(matching_cell);
-			    		}			    					    		
-			    		
-			    		
-			    		break;
 			    	case DIVISION:
-			    		int division_time_point = Integer.parseInt(content[1]);
+			    		int division_time_point = parseInt(line, field_start, 1);
 			    		
 			    		//safety check, skip division if corresponding frame is missing
 			    		if(division_time_point >= stGraph.size())
 			    			continue;
 			    		
-			    		int child1_id = Integer.parseInt(content[2]);
-			    		int child2_id = Integer.parseInt(content[3]);
-			    		
-			    		Node mother = null;
-			    		Node child1 = null;
-			    		Node child2 = null;
+			    		int child1_id = parseInt(line, field_start, 2);
+			    		int child2_id = parseInt(line, field_start, 3);
 			    		
-			    		for(Node cell:frame.vertexSet())
-			    			if(cell.getTrackID() == cell_id){
-			    				mother = cell;
-			    				break;
-			    			}
+			    		Node mother = frame.getNode(cell_id);
 			    		
 			    		FrameGraph division_frame = stGraph.getFrame(division_time_point);
 			    		
-			    		for(Node cell:division_frame.vertexSet()){
-			    			if(cell.getTrackID() == child1_id)
-			    				child1 = cell;
-			    			else if(cell.getTrackID() == child2_id)
-			    				child2 = cell;
-			    			else if(child1 != null && child2 != null)
-			    				break;
-			    		}
+			    		Node child1 = division_frame.getNode(child1_id);
+			    		Node child2 = division_frame.getNode(child2_id);
 			    		
 			    		Node future_mother = getMostRecentCorrespondence(division_time_point, mother);
 			    		new Division(future_mother,child1,child2);
 						break;
 						
 					case ELIMINATION:
-						int elimination_frame_no = Integer.parseInt(content[1]);
+						int elimination_frame_no = parseInt(line, field_start, 1);
 						
 						//safety check, skip elimination if corresponding frame is missing
 			    		if(elimination_frame_no > stGraph.size())
 			    			continue;
 						
 						FrameGraph elimination_frame = stGraph.getFrame(elimination_frame_no);
-						Node eliminated_cell = null;
-						
-						for(Node cell:elimination_frame.vertexSet())
-			    			if(cell.getTrackID() == cell_id){
-			    				eliminated_cell = cell;
-			    				break;
-			    			}
+						Node eliminated_cell = elimination_frame.getNode(cell_id);
 						
 						new Elimination(eliminated_cell);
 						break;
@@ -263,4 +369,105 @@ public class CsvTrackReader extends TrackingAlgorithm{
 	}
 
 
+	/**
+	 * Locates the fields of a csv line without regular expressions.
+	 * Field k spans from field_start[k] to field_start[k+1]-1, the 
+	 * entry after the last field holds the line length + 1.
+	 * 
+	 * @param line csv line
+	 * @param field_start buffer for the field starts, reused if large enough
+	 * @return field starts, possibly a larger buffer
+	 */
+	static int[] splitFields(String line, int[] field_start){
+		int field_no = 0;
+		field_start[field_no++] = 0;
+		for(int i=0; i<line.length(); i++)
+			if(line.charAt(i) == ','){
+				if(field_no + 1 == field_start.length)
+					field_start = Arrays.copyOf(field_start, field_start.length * 2);
+				field_start[field_no++] = i + 1;
+			}
+		
+		field_start[field_no] = line.length() + 1;
+		//mark the unused entries
+		if(field_no + 1 < field_start.length)
+			field_start[field_no + 1] = -1;
+		
+		return field_start;
+	}
+	
+	/**
+	 * @param field_start field starts computed by {@link #splitFields(String, int[])}
+	 * @param k field index
+	 * @return true if the line has a field k
+	 */
+	private static boolean hasField(int[] field_start, int k){
+		for(int j=0; j<=k+1; j++)
+			if(j == field_start.length || field_start[j] < 0)
+				return false;
+		return true;
+	}
+	
+	/**
+	 * @param line csv line
+	 * @param field_start field starts computed by {@link #splitFields(String, int[])}
+	 * @param k field index
+	 * @return content of field k
+	 */
+	static String getField(String line, int[] field_start, int k){
+		if(!hasField(field_start, k))
+			throw new ArrayIndexOutOfBoundsException(k);
+		return line.substring(field_start[k], field_start[k + 1] - 1);
+	}
+	
+	/**
+	 * Parses a decimal integer field without creating a substring
+	 * 
+	 * @param line csv line
+	 * @param field_start field starts computed by {@link #splitFields(String, int[])}
+	 * @param k field index
+	 * @return integer value of field k
+	 */
+	static int parseInt(String line, int[] field_start, int k){
+		if(!hasField(field_start, k))
+			throw new ArrayIndexOutOfBoundsException(k);
+		
+		int from = field_start[k];
+		int to = field_start[k + 1] - 1;
+		boolean negative = from < to && line.charAt(from) == '-';
+		if(negative || (from < to && line.charAt(from) == '+'))
+			from++;
+		if(from == to || to - from > 10)
+			return Integer.parseInt(line.substring(field_start[k], to));
+		
+		long value = 0;
+		for(int i=from; i<to; i++){
+			int digit = line.charAt(i) - '0';
+			if(digit < 0 || digit > 9)
+				return Integer.parseInt(line.substring(field_start[k], to));
+			value = value * 10 + digit;
+		}
+		
+		value = negative ? -value : value;
+		if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+			return Integer.parseInt(line.substring(field_start[k], to));
+		
+		return (int)value;
+	}
+	
+	/**
+	 * @param line csv line
+	 * @param field_start field starts computed by {@link #splitFields(String, int[])}
+	 * @param k field index
+	 * @return true if field k equals "true", ignoring case, as {@link Boolean#parseBoolean(String)}
+	 */
+	static boolean parseBoolean(String line, int[] field_start, int k){
+		if(!hasField(field_start, k))
+			throw new ArrayIndexOutOfBoundsException(k);
+		
+		int from = field_start[k];
+		int length = field_start[k + 1] - 1 - from;
+		return length == 4 && line.regionMatches(true, from, "true", 0, 4);
+	}
+
 }
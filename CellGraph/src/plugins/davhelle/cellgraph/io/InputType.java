@@ -21,4 +21,16 @@ public enum InputType {
 	 * Well-known-text polygons 
 	 */
 	WKT,
+	
+	/**
+	 * Skeleton bitmap image polygonized directly on the
+	 * pixel raster (see {@link RasterSkeletonReader})
+	 */
+	SKELETON_RASTER,
+	
+	/**
+	 * Binary session file with polygons, neighbors and tracking 
+	 * of all frames (see {@link SessionWriter})
+	 */
+	SESSION,
 }
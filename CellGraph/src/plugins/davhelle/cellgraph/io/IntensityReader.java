@@ -5,8 +5,11 @@ import icy.roi.ROI;
 import icy.roi.ROIUtil;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceDataIterator;
-import icy.type.collection.array.Array1DUtil;
 import icy.type.point.Point5D;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
 import plugins.kernel.roi.roi2d.ROI2DArea;
 
 /**
@@ -58,6 +61,10 @@ public class IntensityReader {
 			case Sum:
 				intensity_readout = ROIUtil.getSumIntensity(sequence, roi, z, t, c);
 				break;
+			case TopPercentMean:
+				intensity_readout = measureRoiIntensity(
+						sequence, roi, z, t, c, summaryType, summaryType.getTopPercent(), false);
+				break;
 			default:
 				System.out.println("Unknown Image Summary Method");
 			}
@@ -74,17 +81,19 @@ public class IntensityReader {
 	
 	/**
 	 * Method adds two more parameters with which to prune the
-	 * pixels taken into account for the measurement.
+	 * pixels taken into account for the measurement. The pixel values
+	 * of the ROI are read once and the top-most values are selected
+	 * in place (quickselect), no full image copy is made.
 	 * 
 	 * @param sequence
 	 * @param roi
 	 * @param z
 	 * @param t
 	 * @param c
-	 * @param summaryType
+	 * @param summaryType summary of the retained pixels (TopPercentMean is their mean)
 	 * @param topPercent Percentage that should be retained for measurement (e.g. 0.2 = 20 top-most percent)
 	 * @param addROItoSequence Flag whether to add or not the pruned ROI to the sequence
-	 * @return
+	 * @return intensity readout, NaN if the ROI contains no pixel
 	 */
 	public static double measureRoiIntensity(
 			Sequence sequence,
@@ -95,63 +104,99 @@ public class IntensityReader {
 			IntensitySummaryType summaryType,
 			double topPercent, boolean addROItoSequence){
 		
-		// Initialize an array to contain the top-percentage highest values 
+		// Read the pixels of the roi
+		double[] values = new double[64];
+		int value_no = 0;
 		
-		double numPixels = roi.getNumberOfPoints();
-        int top_size = (int) Math.round(numPixels * topPercent);
-        //Safety fall back in case of a small ROI
-        if(top_size < 1)
-        	top_size = 1;
-        double[] topIntensities = new double[top_size];
-
-        // Iterate through the pixels of the rois and only keep the top most
-        SequenceDataIterator it = new 
-        		SequenceDataIterator(sequence, roi, false, z, t, c);
-        
-        while (!it.done())
-        {
-            final double value = it.get();
-
-            if(value > topIntensities[0]){
-	        
-            		//index to substitute
-            		int subIdx=0;
-            	
-            		//find highest compatible value
-            		for(int i=1; i < top_size; i++)
-	            		if(value > topIntensities[i])
-	            			subIdx++;
-	            		else
-	            			break;
-            		
-            		//shift values below (first is always eliminated)
-	            	for(int i=1; i < subIdx; i++)
-	            		topIntensities[i-1] = topIntensities[i];
-	            	
-	            	//insert value into array
-	            	topIntensities[subIdx] = value;
-	            	
-            }
-
-            it.next();
-        }
-
-        double threshold = topIntensities[0];
-        
-		double[] doubleArray = Array1DUtil.arrayToDoubleArray(
-			     sequence.getDataXY(0, 0, 0), sequence.isSignedDataType());
-		boolean[] mask = new boolean[doubleArray.length];
-        
-		for (int i = 0; i < doubleArray.length; i++)
-		     mask[i] = !(doubleArray[i] > threshold);
-		BooleanMask2D mask2d = new BooleanMask2D(sequence.getBounds2D(), mask); 
+		SequenceDataIterator it = new 
+				SequenceDataIterator(sequence, roi, false, z, t, c);
 		
-		ROI topROI = ROIUtil.subtract(roi, new ROI2DArea(mask2d));
-		if(addROItoSequence)
-			sequence.addROI(topROI);
+		while (!it.done())
+		{
+			if(value_no == values.length)
+				values = Arrays.copyOf(values, value_no * 2);
+			values[value_no++] = it.get();
+			it.next();
+		}
+		
+		if(value_no == 0)
+			return Double.NaN;
+		
+		int top_size = IntensityStatistics.getTopSize(value_no, topPercent);
+		double threshold = IntensityStatistics.selectTop(values, value_no, top_size);
 		
-        return measureRoiIntensity(sequence, topROI, z, t, c, summaryType);
+		if(addROItoSequence){
+			//the selection might contain only some of the pixels equal to the threshold
+			int tie_no = 0;
+			for(int i=value_no - top_size; i<value_no; i++)
+				if(values[i] == threshold)
+					tie_no++;
+			
+			sequence.addROI(createTopRoi(sequence, roi, z, t, c, threshold, tie_no));
+		}
+		
+		return IntensityStatistics.summarize(values, value_no - top_size, value_no, summaryType);
 	}
 	
+	/**
+	 * Creates the ROI of the pixels of roi which are above the threshold
+	 * and of the first tie_no pixels equal to it, i.e. of exactly the pixels
+	 * measured by TopPercentMean
+	 * 
+	 * @param threshold smallest retained value
+	 * @param tie_no number of retained pixels equal to the threshold
+	 * @return pruned ROI
+	 */
+	private static ROI createTopRoi(
+			Sequence sequence, ROI roi, int z, int t, int c, double threshold, int tie_no){
+		
+		int[] xs = new int[64];
+		int[] ys = new int[64];
+		int point_no = 0;
+		
+		SequenceDataIterator it = new 
+				SequenceDataIterator(sequence, roi, false, z, t, c);
+		while (!it.done())
+		{
+			double value = it.get();
+			boolean retained = value > threshold;
+			//ties are broken by the iteration order
+			if(value == threshold && tie_no > 0){
+				retained = true;
+				tie_no--;
+			}
+			
+			if(retained){
+				if(point_no == xs.length){
+					xs = Arrays.copyOf(xs, point_no * 2);
+					ys = Arrays.copyOf(ys, point_no * 2);
+				}
+				xs[point_no] = it.getPositionX();
+				ys[point_no] = it.getPositionY();
+				point_no++;
+			}
+			it.next();
+		}
+		
+		// Mask limited to the bounds of the retained pixels
+		int min_x = Integer.MAX_VALUE, min_y = Integer.MAX_VALUE;
+		int max_x = Integer.MIN_VALUE, max_y = Integer.MIN_VALUE;
+		for(int i=0; i<point_no; i++){
+			min_x = Math.min(min_x, xs[i]);
+			min_y = Math.min(min_y, ys[i]);
+			max_x = Math.max(max_x, xs[i]);
+			max_y = Math.max(max_y, ys[i]);
+		}
+		
+		int width = max_x - min_x + 1;
+		int height = max_y - min_y + 1;
+		boolean[] mask = new boolean[width * height];
+		for(int i=0; i<point_no; i++)
+			mask[(ys[i] - min_y) * width + xs[i] - min_x] = true;
+		
+		BooleanMask2D mask2d = new BooleanMask2D(
+				new Rectangle(min_x, min_y, width, height), mask);
+		return new ROI2DArea(mask2d);
+	}
 	
 }
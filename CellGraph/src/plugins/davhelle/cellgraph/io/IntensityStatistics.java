@@ -0,0 +1,126 @@
+package plugins.davhelle.cellgraph.io;
+
+/**
+ * Summary statistics over primitive pixel value arrays, 
+ * including the in place selection of the brightest values
+ * used by the top percent measurements.
+ * 
+ * @author Davide Heller
+ *
+ */
+class IntensityStatistics {
+	
+	/**
+	 * @param value_no number of pixels
+	 * @param topPercent fraction of pixels to retain
+	 * @return number of pixels retained, at least one
+	 */
+	static int getTopSize(int value_no, double topPercent){
+		int top_size = (int) Math.round(value_no * topPercent);
+		//Safety fall back in case of a small ROI
+		if(top_size < 1)
+			top_size = 1;
+		if(top_size > value_no)
+			top_size = value_no;
+		return top_size;
+	}
+	
+	/**
+	 * Reorders the values so that the top_size largest values 
+	 * occupy the end of the range [0,value_no)
+	 * 
+	 * @param values values to select from, reordered in place
+	 * @param value_no number of values
+	 * @param top_size number of largest values to select
+	 * @return the smallest selected value
+	 */
+	static double selectTop(double[] values, int value_no, int top_size){
+		int k = value_no - top_size;
+		int left = 0;
+		int right = value_no - 1;
+		
+		while(left < right){
+			//median of three pivot
+			int mid = (left + right) >>> 1;
+			if(values[mid] < values[left])
+				swap(values, mid, left);
+			if(values[right] < values[left])
+				swap(values, right, left);
+			if(values[right] < values[mid])
+				swap(values, right, mid);
+			double pivot = values[mid];
+			
+			int i = left;
+			int j = right;
+			while(i <= j){
+				while(values[i] < pivot)
+					i++;
+				while(values[j] > pivot)
+					j--;
+				if(i <= j){
+					swap(values, i, j);
+					i++;
+					j--;
+				}
+			}
+			
+			if(k <= j)
+				right = j;
+			else if(k >= i)
+				left = i;
+			else
+				break;
+		}
+		
+		return values[k];
+	}
+	
+	private static void swap(double[] values, int i, int j){
+		double tmp = values[i];
+		values[i] = values[j];
+		values[j] = tmp;
+	}
+	
+	/**
+	 * Summary statistic of a range of values
+	 * 
+	 * @param values values to summarize
+	 * @param from first index (inclusive)
+	 * @param to last index (exclusive)
+	 * @param summaryType summary statistic, TopPercentMean is the mean of the range 
+	 * @return summary of the range
+	 */
+	static double summarize(double[] values, int from, int to, IntensitySummaryType summaryType){
+		int n = to - from;
+		double sum = 0;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for(int i=from; i<to; i++){
+			sum += values[i];
+			min = Math.min(min, values[i]);
+			max = Math.max(max, values[i]);
+		}
+		
+		switch (summaryType) {
+		case Max:
+			return max;
+		case Min:
+			return min;
+		case Sum:
+			return sum;
+		case StandardDeviation:
+			double mean = sum / n;
+			double variance = 0;
+			for(int i=from; i<to; i++)
+				variance += (values[i] - mean) * (values[i] - mean);
+			return Math.sqrt(variance / n);
+		case Mean:
+		case TopPercentMean:
+			return sum / n;
+		default:
+			System.out.println("Unknown Image Summary Method");
+			return -1.0;
+		}
+	}
+
+}
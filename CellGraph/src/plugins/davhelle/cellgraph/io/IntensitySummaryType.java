@@ -15,19 +15,36 @@ public enum IntensitySummaryType {
 	Max("max"),
 	Min("min"),
 	Sum("sum"),
-	StandardDeviation("sd");
+	StandardDeviation("sd"),
+	TopPercentMean("top 20% mean", 0.2);
 	
 	/**
 	 * Description String visualized by the {@link CellOverlay} plugin
 	 */
 	private String description;
+	/**
+	 * Fraction of the brightest pixels retained, 0 if all pixels are used
+	 */
+	private double topPercent;
 	/**
 	 * @param description the description of the overlay
 	 */
-	private IntensitySummaryType(String description){this.description = description;}
+	private IntensitySummaryType(String description){this(description, 0);}
+	/**
+	 * @param description the description of the overlay
+	 * @param topPercent fraction of the brightest pixels retained
+	 */
+	private IntensitySummaryType(String description, double topPercent){
+		this.description = description;
+		this.topPercent = topPercent;
+	}
 	/**
 	 * @return the description of the overlay
 	 */
 	public String getDescription(){return description;}
+	/**
+	 * @return fraction of the brightest pixels retained (e.g. 0.2 = 20 top-most percent), 0 if all pixels are used
+	 */
+	public double getTopPercent(){return topPercent;}
 	
 }
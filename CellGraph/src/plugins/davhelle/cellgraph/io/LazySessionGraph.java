@@ -0,0 +1,591 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.io.SessionReader.FrameRecord;
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Division;
+import plugins.davhelle.cellgraph.nodes.Elimination;
+import plugins.davhelle.cellgraph.nodes.HandleCell;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Spatio-temporal graph backed by a session file written by
+ * {@link SessionWriter}. Frames stay serialized on disk and are only
+ * decoded when requested through {@link #getFrame(int)}. The most
+ * recently used frames are kept in a size-bounded cache, evicted frames
+ * can be garbage collected once no longer referenced elsewhere. Until
+ * then the same frame instance is returned by every call.<br><br>
+ *
+ * Cells are {@link HandleCell}s: the temporal links address the linked
+ * cell by frame and stored cell index instead of keeping a reference,
+ * while divisions and eliminations are restored on access. Cells of
+ * different frames therefore do not keep each other in memory. Opening
+ * the graph scans the file once to index the events, which are the only
+ * data kept for all frames.<br><br>
+ *
+ * The stored frames are read only, modifications of a frame are lost
+ * with its eviction. Frames set with {@link #setFrame(FrameGraph, int)}
+ * replace the stored ones and are kept in memory.
+ *
+ * @author Davide Heller
+ *
+ */
+public class LazySessionGraph implements SpatioTemporalGraph, HandleCell.Resolver {
+
+	/**
+	 * Default number of frames kept in memory
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 16;
+
+	/**
+	 * Session file location
+	 */
+	private final File session_file;
+
+	/**
+	 * Decoder of the frame blocks creating session cells
+	 */
+	private final SessionReader reader;
+
+	/**
+	 * Recently used frames, in access order
+	 */
+	private final LinkedHashMap<Integer, SessionFrame> cache;
+
+	/**
+	 * Every materialized frame, until garbage collected
+	 */
+	private WeakReference<SessionFrame>[] frame_refs;
+
+	/**
+	 * Frames replacing the stored ones
+	 */
+	private final Map<Integer, FrameGraph> replaced_frames;
+
+	private int stored_frame_no;
+	private int frame_no;
+	private double scale;
+	private long[] offsets;
+
+	/**
+	 * Stored events by id, (mother, child1, child2) and (cell) as
+	 * (frame, cell index) pairs
+	 */
+	private Map<Integer, int[]> division_records;
+	private Map<Integer, double[]> division_orientations;
+	private Map<Integer, int[]> elimination_records;
+
+	/**
+	 * Event ids registered in every frame
+	 */
+	private int[][] frame_divisions;
+	private int[][] frame_eliminations;
+
+	/**
+	 * Restored events, shared while in use
+	 */
+	private final Map<Integer, WeakReference<Division>> divisions;
+	private final Map<Integer, WeakReference<Elimination>> eliminations;
+
+	private boolean has_tracking;
+	private boolean has_voronoi;
+	private boolean has_ellipse_fitting;
+	private Map<Node, Geometry> voronoi_tesselation;
+	private Object tile_cache;
+
+	/**
+	 * Frame of a session file, the events are restored on access
+	 */
+	private class SessionFrame extends FrameGraph {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Cells in stored order
+		 */
+		private Node[] cells;
+
+		private SessionFrame(int frame_no){
+			super(frame_no);
+		}
+
+		@Override
+		public Iterator<Division> divisionIterator() {
+			List<Division> frame_events = new ArrayList<Division>();
+			for(int id: frame_divisions[getFrameNo()]){
+				Division division = getDivision(id);
+				if(division != null)
+					frame_events.add(division);
+			}
+
+			Iterator<Division> added = super.divisionIterator();
+			while(added.hasNext())
+				frame_events.add(added.next());
+
+			return frame_events.iterator();
+		}
+
+		@Override
+		public int getDivisionNo() {
+			int n = 0;
+			for(Iterator<Division> it = divisionIterator(); it.hasNext(); it.next())
+				n++;
+			return n;
+		}
+
+		@Override
+		public Iterator<Elimination> eliminationIterator() {
+			List<Elimination> frame_events = new ArrayList<Elimination>();
+			for(int id: frame_eliminations[getFrameNo()]){
+				Elimination elimination = getElimination(id);
+				if(elimination != null)
+					frame_events.add(elimination);
+			}
+
+			Iterator<Elimination> added = super.eliminationIterator();
+			while(added.hasNext())
+				frame_events.add(added.next());
+
+			return frame_events.iterator();
+		}
+
+		@Override
+		public int getEliminationNo() {
+			int n = 0;
+			for(Iterator<Elimination> it = eliminationIterator(); it.hasNext(); it.next())
+				n++;
+			return n;
+		}
+	}
+
+	/**
+	 * Cell of a session file, the events are restored on access
+	 */
+	private class SessionCell extends HandleCell {
+
+		/**
+		 * Position of the cell in the stored frame
+		 */
+		private int index;
+		private int division_id;
+		private int origin_id;
+		private int elimination_id;
+
+		private SessionCell(Polygon cell_polygon, FrameGraph parent){
+			super(cell_polygon, parent, LazySessionGraph.this);
+			this.index = -1;
+			this.division_id = -1;
+			this.origin_id = -1;
+			this.elimination_id = -1;
+		}
+
+		@Override
+		public Division getDivision() {
+			if(division_id == -1)
+				return super.getDivision();
+			return LazySessionGraph.this.getDivision(division_id);
+		}
+
+		@Override
+		public void setDivision(Division division) {
+			division_id = -1;
+			super.setDivision(division);
+		}
+
+		@Override
+		public boolean hasObservedDivision() {
+			return division_id != -1 || super.hasObservedDivision();
+		}
+
+		@Override
+		public Division getOrigin() {
+			if(origin_id == -1)
+				return super.getOrigin();
+			return LazySessionGraph.this.getDivision(origin_id);
+		}
+
+		@Override
+		public void setOrigin(Division origin) {
+			origin_id = -1;
+			super.setOrigin(origin);
+		}
+
+		@Override
+		public boolean hasObservedOrigin() {
+			return origin_id != -1 || super.hasObservedOrigin();
+		}
+
+		@Override
+		public Elimination getElimination() {
+			if(elimination_id == -1)
+				return super.getElimination();
+			return LazySessionGraph.this.getElimination(elimination_id);
+		}
+
+		@Override
+		public void setElimination(Elimination elimination) {
+			elimination_id = -1;
+			super.setElimination(elimination);
+		}
+
+		@Override
+		public boolean hasObservedElimination() {
+			return elimination_id != -1 || super.hasObservedElimination();
+		}
+
+		/**
+		 * @return graph which stores the cell
+		 */
+		private LazySessionGraph getGraph(){
+			return LazySessionGraph.this;
+		}
+	}
+
+	/**
+	 * Opens a session file with the default cache size
+	 *
+	 * @param session_file file written by {@link SessionWriter}
+	 */
+	public LazySessionGraph(File session_file){
+		this(session_file, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Opens a session file and indexes the events
+	 *
+	 * @param session_file file written by {@link SessionWriter}
+	 * @param cache_size number of frames kept in memory
+	 */
+	public LazySessionGraph(File session_file, final int cache_size){
+		this.session_file = session_file;
+		this.reader = new SessionReader(session_file){
+			@Override
+			Cell createCell(Polygon polygon, FrameGraph frame) {
+				return new SessionCell(polygon, frame);
+			}
+		};
+
+		this.cache = new LinkedHashMap<Integer, SessionFrame>(2 * cache_size, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, SessionFrame> eldest) {
+				return size() > cache_size;
+			}
+		};
+		this.replaced_frames = new HashMap<Integer, FrameGraph>();
+		this.divisions = new HashMap<Integer, WeakReference<Division>>();
+		this.eliminations = new HashMap<Integer, WeakReference<Elimination>>();
+
+		this.has_voronoi = false;
+		this.has_ellipse_fitting = false;
+		this.voronoi_tesselation = null;
+		this.tile_cache = null;
+
+		index();
+	}
+
+	/**
+	 * Reads the header and scans all frame blocks for events
+	 */
+	@SuppressWarnings("unchecked")
+	private void index(){
+		stored_frame_no = 0;
+		division_records = new HashMap<Integer, int[]>();
+		division_orientations = new HashMap<Integer, double[]>();
+		elimination_records = new HashMap<Integer, int[]>();
+
+		try{
+			RandomAccessFile file = new RandomAccessFile(session_file, "r");
+			try{
+				if(reader.readHeader(file)){
+					int stored = file.readInt();
+					scale = file.readDouble();
+					has_tracking = file.readBoolean();
+					offsets = SessionReader.readOffsets(file, stored);
+
+					frame_divisions = new int[stored][];
+					frame_eliminations = new int[stored][];
+					for(int i=0; i<stored; i++)
+						indexFrame(i, reader.readFrame(null,
+								SessionReader.readBlock(file, offsets, i), scale, 0, stored));
+
+					stored_frame_no = stored;
+				}
+			}finally{
+				file.close();
+			}
+		}catch(IOException e){
+			e.printStackTrace();
+			System.out.println("Something went wrong while attempting to read: "+session_file);
+		}
+
+		frame_no = stored_frame_no;
+		frame_refs = new WeakReference[stored_frame_no];
+	}
+
+	/**
+	 * @param i frame position
+	 * @param record scanned frame block
+	 */
+	private void indexFrame(int i, FrameRecord record){
+		frame_divisions[i] = new int[record.divisions.size()];
+		for(int d=0; d<record.divisions.size(); d++){
+			int[] division_record = record.divisions.get(d);
+			frame_divisions[i][d] = division_record[0];
+			division_records.put(division_record[0], division_record);
+			division_orientations.put(division_record[0], record.division_orientations.get(d));
+		}
+
+		frame_eliminations[i] = new int[record.eliminations.size()];
+		for(int l=0; l<record.eliminations.size(); l++){
+			int[] elimination_record = record.eliminations.get(l);
+			frame_eliminations[i][l] = elimination_record[0];
+			elimination_records.put(elimination_record[0], elimination_record);
+		}
+	}
+
+	@Override
+	public synchronized FrameGraph getFrame(int frame_no) {
+		if(replaced_frames.containsKey(frame_no))
+			return replaced_frames.get(frame_no);
+
+		if(frame_no >= stored_frame_no)
+			return null;
+
+		SessionFrame frame = cache.get(frame_no);
+		if(frame != null)
+			return frame;
+
+		if(frame_refs[frame_no] != null)
+			frame = frame_refs[frame_no].get();
+
+		if(frame == null){
+			frame = readFrame(frame_no);
+			if(frame == null)
+				return null;
+			frame_refs[frame_no] = new WeakReference<SessionFrame>(frame);
+		}
+
+		cache.put(frame_no, frame);
+		return frame;
+	}
+
+	/**
+	 * Decodes a stored frame and sets the cell handles
+	 *
+	 * @param frame_no frame position
+	 * @return decoded frame, null if the file could not be read
+	 */
+	private SessionFrame readFrame(int frame_no){
+		SessionFrame frame = new SessionFrame(frame_no);
+		FrameRecord record;
+
+		try{
+			RandomAccessFile file = new RandomAccessFile(session_file, "r");
+			try{
+				record = reader.readFrame(frame,
+						SessionReader.readBlock(file, offsets, frame_no), scale, 0, stored_frame_no);
+			}finally{
+				file.close();
+			}
+		}catch(IOException e){
+			e.printStackTrace();
+			System.out.println("Something went wrong while attempting to read frame "+
+					frame_no+" of: "+session_file);
+			return null;
+		}
+
+		frame.cells = record.cells;
+		for(int k=0; k<record.cells.length; k++){
+			SessionCell cell = (SessionCell)record.cells[k];
+			int[] links = record.links;
+			cell.index = k;
+
+			if(links[6 * k] != -1)
+				cell.setFirstHandle(links[6 * k], links[6 * k + 1]);
+			if(links[6 * k + 2] != -1)
+				cell.setPreviousHandle(links[6 * k + 2], links[6 * k + 3]);
+			if(links[6 * k + 4] != -1)
+				cell.setNextHandle(links[6 * k + 4], links[6 * k + 5]);
+
+			cell.division_id = record.events[3 * k];
+			cell.origin_id = record.events[3 * k + 1];
+			cell.elimination_id = record.events[3 * k + 2];
+			cell.setErrorTag(record.error_tags[k]);
+		}
+
+		return frame;
+	}
+
+	/**
+	 * @param frame_no frame position
+	 * @param index cell index within the stored frame
+	 * @return stored cell, null if the frame has been replaced
+	 */
+	@Override
+	public Node getCell(int frame_no, int index){
+		if(frame_no < 0)
+			return null;
+		FrameGraph frame = getFrame(frame_no);
+		if(!(frame instanceof SessionFrame))
+			return null;
+		return ((SessionFrame)frame).cells[index];
+	}
+
+	/**
+	 * @param n node to address
+	 * @return index of a stored cell of this graph, -1 for any other node
+	 */
+	@Override
+	public synchronized int indexOf(Node n){
+		if(!(n instanceof SessionCell))
+			return -1;
+
+		SessionCell cell = (SessionCell)n;
+		if(cell.getGraph() != this || replaced_frames.containsKey(cell.getFrameNo()))
+			return -1;
+
+		return cell.index;
+	}
+
+	/**
+	 * @param id stored division id
+	 * @return restored division, null if unknown or if a participant is missing
+	 */
+	private synchronized Division getDivision(int id){
+		WeakReference<Division> reference = divisions.get(id);
+		Division division = reference == null ? null : reference.get();
+		if(division != null || !division_records.containsKey(id))
+			return division;
+
+		int[] record = division_records.get(id);
+		Node mother = getCell(record[1], record[2]);
+		Node child1 = getCell(record[3], record[4]);
+		Node child2 = getCell(record[5], record[6]);
+		if(mother == null || child1 == null || child2 == null)
+			return null;
+
+		division = new Division(mother, child1, child2, child1.getBelongingFrame());
+		double[] orientations = division_orientations.get(id);
+		division.setDivisionOrientation(orientations[0]);
+		division.setLongestMotherAxisOrientation(orientations[1]);
+		division.setNewJunctionOrientation(orientations[2]);
+
+		divisions.put(id, new WeakReference<Division>(division));
+		return division;
+	}
+
+	/**
+	 * @param id stored elimination id
+	 * @return restored elimination, null if unknown or if the cell is missing
+	 */
+	private synchronized Elimination getElimination(int id){
+		WeakReference<Elimination> reference = eliminations.get(id);
+		Elimination elimination = reference == null ? null : reference.get();
+		if(elimination != null || !elimination_records.containsKey(id))
+			return elimination;
+
+		int[] record = elimination_records.get(id);
+		Node cell = getCell(record[1], record[2]);
+		if(cell == null)
+			return null;
+
+		elimination = new Elimination(cell, cell.getFrameNo());
+		eliminations.put(id, new WeakReference<Elimination>(elimination));
+		return elimination;
+	}
+
+	/**
+	 * @return number of frames currently held by the cache
+	 */
+	public synchronized int getCachedFrameNo(){
+		return cache.size();
+	}
+
+	@Override
+	public synchronized void setFrame(FrameGraph graph, int frame_no) {
+		replaced_frames.put(frame_no, graph);
+		this.frame_no = Math.max(this.frame_no, frame_no + 1);
+	}
+
+	@Override
+	public synchronized int size() {
+		return frame_no;
+	}
+
+	@Override
+	public boolean hasTracking() {
+		return has_tracking;
+	}
+
+	@Override
+	public boolean hasVoronoi() {
+		return has_voronoi;
+	}
+
+	@Override
+	public boolean hasEllipseFitting() {
+		return has_ellipse_fitting;
+	}
+
+	@Override
+	public void setTracking(boolean new_state) {
+		this.has_tracking = new_state;
+	}
+
+	@Override
+	public void setVoronoi(boolean new_state) {
+		this.has_voronoi = new_state;
+	}
+
+	/**
+	 * The tesselation references the cells of all frames
+	 * and keeps them in memory while set.
+	 */
+	@Override
+	public Map<Node, Geometry> getVoronoiTesselation() {
+		return voronoi_tesselation;
+	}
+
+	@Override
+	public void setVoronoiTesselation(Map<Node, Geometry> tesselation) {
+		this.voronoi_tesselation = tesselation;
+		this.has_voronoi = tesselation != null;
+	}
+
+	/**
+	 * The cached tiles reference the cells of all frames
+	 * and keep them in memory while set.
+	 */
+	@Override
+	public Object getTileCache() {
+		return tile_cache;
+	}
+
+	@Override
+	public void setTileCache(Object cache) {
+		this.tile_cache = cache;
+	}
+
+	@Override
+	public void setEllipseFitting(boolean new_state) {
+		this.has_ellipse_fitting = new_state;
+	}
+
+}
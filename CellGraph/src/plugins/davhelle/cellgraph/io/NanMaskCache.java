@@ -0,0 +1,221 @@
+package plugins.davhelle.cellgraph.io;
+
+import icy.sequence.Sequence;
+import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceEvent.SequenceEventSourceType;
+import icy.sequence.SequenceListener;
+
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Shared cache of the pixels without signal, i.e. not above 0, of every
+ * image plane. The masks are computed lazily from the raw plane data as
+ * compact bitsets (row major, set bit = no signal) and the least recently
+ * used ones are evicted once the capacity is reached.<br><br>
+ *
+ * Sequences are referenced weakly, masks of closed sequences are never
+ * matched again and disappear with the eviction. The masks of a sequence
+ * are dropped as soon as the sequence reports a change of its data or
+ * is closed.
+ *
+ * @author Davide Heller
+ *
+ */
+public class NanMaskCache {
+
+	/**
+	 * Maximal number of planes kept in memory
+	 */
+	public static final int CAPACITY = 32;
+
+	private static final LinkedHashMap<PlaneKey, BitSet> masks =
+			new LinkedHashMap<PlaneKey, BitSet>(CAPACITY, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<PlaneKey, BitSet> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+
+	/**
+	 * Incremented by every invalidation, masks computed across an
+	 * invalidation might be stale and are not stored
+	 */
+	private static long invalidation_no = 0;
+
+	/**
+	 * Sequences whose changes are followed by {@link #listener}
+	 */
+	private static final Set<Sequence> watched_sequences =
+			Collections.newSetFromMap(new WeakHashMap<Sequence, Boolean>());
+
+	/**
+	 * Drops the masks of a sequence whose pixels changed or which was closed
+	 */
+	private static final SequenceListener listener = new SequenceListener() {
+
+		@Override
+		public void sequenceChanged(SequenceEvent sequenceEvent) {
+			if(sequenceEvent.getSourceType() == SequenceEventSourceType.SEQUENCE_DATA)
+				invalidate(sequenceEvent.getSequence());
+		}
+
+		@Override
+		public void sequenceClosed(Sequence sequence) {
+			invalidate(sequence);
+			synchronized (masks) {
+				watched_sequences.remove(sequence);
+			}
+			sequence.removeListener(this);
+		}
+	};
+
+	/**
+	 * Identifies a plane of a sequence
+	 */
+	private static class PlaneKey {
+
+		private final WeakReference<Sequence> sequence;
+		private final int hash;
+		private final int t;
+		private final int z;
+		private final int c;
+
+		PlaneKey(Sequence sequence, int t, int z, int c){
+			this.sequence = new WeakReference<Sequence>(sequence);
+			this.t = t;
+			this.z = z;
+			this.c = c;
+			this.hash = ((System.identityHashCode(sequence) * 31 + t) * 31 + z) * 31 + c;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof PlaneKey))
+				return false;
+			PlaneKey other = (PlaneKey)obj;
+			Sequence s = sequence.get();
+			return s != null && s == other.sequence.get() &&
+					t == other.t && z == other.z && c == other.c;
+		}
+	}
+
+	/**
+	 * Returns the mask of the pixels without signal of a plane.
+	 * The returned bitset is shared and must not be modified.
+	 *
+	 * @param sequence image sequence
+	 * @param t time point
+	 * @param z slice number
+	 * @param c channel number
+	 * @return pixels not above 0 (row major)
+	 */
+	public static BitSet getMask(Sequence sequence, int t, int z, int c){
+		PlaneKey key = new PlaneKey(sequence, t, z, c);
+		long computed_after;
+
+		synchronized (masks) {
+			BitSet mask = masks.get(key);
+			if(mask != null)
+				return mask;
+
+			if(watched_sequences.add(sequence))
+				sequence.addListener(listener);
+
+			computed_after = invalidation_no;
+		}
+
+		BitSet mask = computeMask(
+				sequence.getDataXY(t, z, c), sequence.isSignedDataType());
+
+		synchronized (masks) {
+			if(invalidation_no == computed_after)
+				masks.put(key, mask);
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Removes all masks of a sequence. Called automatically when the
+	 * sequence data changes.
+	 *
+	 * @param sequence sequence whose pixels changed
+	 */
+	public static void invalidate(Sequence sequence){
+		synchronized (masks) {
+			invalidation_no++;
+			Iterator<PlaneKey> it = masks.keySet().iterator();
+			while(it.hasNext()){
+				Sequence s = it.next().sequence.get();
+				if(s == null || s == sequence)
+					it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Tests the raw plane data without converting it to double
+	 *
+	 * @param data primitive array of the plane
+	 * @param signed whether integer data is signed
+	 * @return pixels not above 0 (row major)
+	 * @throws IllegalArgumentException if the data is not a primitive pixel array
+	 */
+	static BitSet computeMask(Object data, boolean signed){
+		BitSet mask;
+		if(data instanceof byte[]){
+			byte[] values = (byte[])data;
+			mask = new BitSet(values.length);
+			for(int i=0; i<values.length; i++)
+				if(signed ? values[i] <= 0 : values[i] == 0)
+					mask.set(i);
+		}
+		else if(data instanceof short[]){
+			short[] values = (short[])data;
+			mask = new BitSet(values.length);
+			for(int i=0; i<values.length; i++)
+				if(signed ? values[i] <= 0 : values[i] == 0)
+					mask.set(i);
+		}
+		else if(data instanceof int[]){
+			int[] values = (int[])data;
+			mask = new BitSet(values.length);
+			for(int i=0; i<values.length; i++)
+				if(signed ? values[i] <= 0 : values[i] == 0)
+					mask.set(i);
+		}
+		else if(data instanceof float[]){
+			float[] values = (float[])data;
+			mask = new BitSet(values.length);
+			for(int i=0; i<values.length; i++)
+				if(!(values[i] > 0))
+					mask.set(i);
+		}
+		else if(data instanceof double[]){
+			double[] values = (double[])data;
+			mask = new BitSet(values.length);
+			for(int i=0; i<values.length; i++)
+				if(!(values[i] > 0))
+					mask.set(i);
+		}
+		else
+			throw new IllegalArgumentException(
+					"Unsupported image data type for the nan mask: "+
+					(data == null ? "null" : data.getClass().getSimpleName()));
+		return mask;
+	}
+}
@@ -8,6 +8,9 @@ import com.vividsolutions.jts.geom.Polygon;
  * JTS polygon structure from a given input 
  * file.
  * 
+ * Frames are read concurrently by the graph generation,
+ * implementations must not share parsing state between calls. 
+ * 
  * @author Davide Heller
  */
 public interface PolygonReader {
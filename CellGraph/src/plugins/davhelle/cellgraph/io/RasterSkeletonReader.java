@@ -0,0 +1,417 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.vividsolutions.jts.algorithm.CGAlgorithms;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateArrays;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * RasterSkeletonReader converts a skeleton image into a JTS Polygon
+ * collection without building any intermediate JTS line work.<br><br>
+ *
+ * The skeleton pixels are interpreted as vertices of a planar graph
+ * which follows the same connectivity rules as {@link SkeletonReader}.
+ * The connectivity of every pixel is stored as a bit mask and the faces
+ * of the graph are traced directly on the raster, labeling every directed
+ * pixel connection with the face it bounds. As in the JTS Polygonizer
+ * dangling lines and cut edges are discarded, bounded faces become
+ * polygon shells and inner rings are assigned as holes to the smallest
+ * shell containing them. The resulting cells are therefore the same as
+ * the ones obtained by {@link SkeletonReader}.
+ *
+ * @author Davide Heller
+ *
+ */
+public class RasterSkeletonReader extends SkeletonReader {
+
+	/**
+	 * Pixel offsets of the 8 connection directions in clockwise
+	 * order (image coordinates): E, SE, S, SW, W, NW, N, NE
+	 */
+	private static final int[] DX = { 1, 1, 0,-1,-1,-1, 0, 1};
+	private static final int[] DY = { 0, 1, 1, 1, 0,-1,-1,-1};
+
+	/**
+	 * JTS factory for the output geometries
+	 */
+	private GeometryFactory factory;
+
+	public RasterSkeletonReader(){
+		super();
+		factory = new GeometryFactory();
+	}
+
+	@Override
+	public ArrayList<Polygon> extractPolygons(String file_name){
+		SkeletonMask skeleton = readSkeleton(file_name);
+		return polygonize(skeleton);
+	}
+
+	/**
+	 * Converts a skeleton map into the polygons enclosed by
+	 * the skeleton lines.
+	 *
+	 * @param skeleton binary skeleton mask
+	 * @return collection of JTS polygons representing the cells
+	 */
+	public ArrayList<Polygon> polygonize(SkeletonMask skeleton){
+
+		ArrayList<Polygon> polygons = new ArrayList<Polygon>();
+
+		if(skeleton.getWidth() < 3 || skeleton.getHeight() < 3)
+			return polygons;
+
+		FaceTracer tracer = new FaceTracer(skeleton);
+
+		//as in the JTS Polygonizer: no dangles and no cut edges
+		tracer.removeDangles();
+		tracer.labelFaces(false);
+		tracer.removeCutEdges();
+
+		//shells and holes are traced in opposite orientation
+		tracer.labelFaces(true);
+
+		ArrayList<LinearRing> shells = tracer.shells;
+		ArrayList<ArrayList<LinearRing>> holes = new ArrayList<ArrayList<LinearRing>>(shells.size());
+		for(int i=0; i<shells.size(); i++)
+			holes.add(null);
+
+		for(LinearRing hole: tracer.holes){
+			int shell_idx = findShellContaining(hole, shells);
+			if(shell_idx == -1)
+				continue;
+
+			if(holes.get(shell_idx) == null)
+				holes.set(shell_idx, new ArrayList<LinearRing>());
+			holes.get(shell_idx).add(hole);
+		}
+
+		for(int i=0; i<shells.size(); i++){
+			ArrayList<LinearRing> shell_holes = holes.get(i);
+			LinearRing[] hole_array = null;
+			if(shell_holes != null)
+				hole_array = shell_holes.toArray(new LinearRing[shell_holes.size()]);
+
+			polygons.add(factory.createPolygon(shells.get(i), hole_array));
+		}
+
+		return polygons;
+	}
+
+	/**
+	 * Finds the smallest shell containing the hole ring following
+	 * the same criteria as the JTS Polygonizer. Rings without a
+	 * containing shell are the outer boundaries of the skeleton.
+	 *
+	 * @param hole ring to be assigned
+	 * @param shells candidate shell rings
+	 * @return index of the containing shell or -1 if none
+	 */
+	private int findShellContaining(LinearRing hole, ArrayList<LinearRing> shells){
+
+		Envelope hole_env = hole.getEnvelopeInternal();
+		Coordinate[] hole_coordinates = hole.getCoordinates();
+
+		int min_shell_idx = -1;
+		Envelope min_shell_env = null;
+
+		for(int i=0; i<shells.size(); i++){
+			LinearRing shell = shells.get(i);
+			Envelope shell_env = shell.getEnvelopeInternal();
+
+			if(shell_env.equals(hole_env) || !shell_env.contains(hole_env))
+				continue;
+
+			Coordinate[] shell_coordinates = shell.getCoordinates();
+			Coordinate test_point = CoordinateArrays.ptNotInList(hole_coordinates, shell_coordinates);
+			if(test_point == null || !CGAlgorithms.isPointInRing(test_point, shell_coordinates))
+				continue;
+
+			if(min_shell_env == null || min_shell_env.contains(shell_env)){
+				min_shell_idx = i;
+				min_shell_env = shell_env;
+			}
+		}
+
+		return min_shell_idx;
+	}
+
+	/**
+	 * Working data of a single polygonization. Pixels are addressed
+	 * by their linear index (y * width + x) and every connected pixel
+	 * receives a compact vertex index for the face labels.
+	 */
+	private class FaceTracer {
+
+		private final int width;
+		private final int[] offset;
+
+		/**
+		 * Connection bit mask for every pixel (bit d set if connected in direction d)
+		 */
+		private final byte[] adjacency;
+		/**
+		 * Compact vertex index of each connected pixel, -1 otherwise
+		 */
+		private final int[] vertex_index;
+		/**
+		 * Linear pixel index of every vertex
+		 */
+		private final int[] vertex_pixel;
+		/**
+		 * Face label of every directed connection (vertex * 8 + direction), 0 if unlabeled
+		 */
+		private final int[] face_label;
+
+		/**
+		 * Ring extraction buffers
+		 */
+		private int[] ring_buffer;
+		private int[] ring_position;
+
+		final ArrayList<LinearRing> shells;
+		final ArrayList<LinearRing> holes;
+
+		FaceTracer(SkeletonMask skeleton){
+
+			this.width = skeleton.getWidth();
+			int height = skeleton.getHeight();
+
+			this.offset = new int[8];
+			for(int d=0; d<8; d++)
+				offset[d] = DY[d] * width + DX[d];
+
+			this.adjacency = new byte[width * height];
+			this.vertex_index = new int[width * height];
+
+			//skeleton connectivity as in SkeletonReader, the image border is ignored
+			int vertex_no = 0;
+			for(int y=1; y < height - 1; y++)
+				for(int x=1; x < width - 1; x++){
+
+					int mask = 0;
+					if(skeleton.isSet(x, y)){
+						boolean e  = isSet(skeleton, x+1, y  );
+						boolean w  = isSet(skeleton, x-1, y  );
+						boolean s  = isSet(skeleton, x  , y+1);
+						boolean n  = isSet(skeleton, x  , y-1);
+
+						if(e) mask |= 1;
+						if(isSet(skeleton, x+1, y+1) && !s && !e) mask |= 1 << 1;
+						if(s) mask |= 1 << 2;
+						if(isSet(skeleton, x-1, y+1) && !w && !s) mask |= 1 << 3;
+						if(w) mask |= 1 << 4;
+						if(isSet(skeleton, x-1, y-1) && !w && !n) mask |= 1 << 5;
+						if(n) mask |= 1 << 6;
+						if(isSet(skeleton, x+1, y-1) && !n && !e) mask |= 1 << 7;
+					}
+
+					int p = y * width + x;
+					adjacency[p] = (byte)mask;
+					if(mask != 0)
+						vertex_no++;
+				}
+
+			Arrays.fill(vertex_index, -1);
+			this.vertex_pixel = new int[vertex_no];
+			int v = 0;
+			for(int p=0; p<adjacency.length; p++)
+				if(adjacency[p] != 0){
+					vertex_index[p] = v;
+					vertex_pixel[v++] = p;
+				}
+
+			this.face_label = new int[vertex_no * 8];
+			this.shells = new ArrayList<LinearRing>();
+			this.holes = new ArrayList<LinearRing>();
+		}
+
+		private boolean isSet(SkeletonMask skeleton, int x, int y){
+			return x > 0 && y > 0 &&
+					x < skeleton.getWidth() - 1 && y < skeleton.getHeight() - 1 &&
+					skeleton.isSet(x, y);
+		}
+
+		private void disconnect(int p, int d){
+			adjacency[p] &= ~(1 << d);
+			adjacency[p + offset[d]] &= ~(1 << ((d + 4) & 7));
+		}
+
+		/**
+		 * Iteratively removes all pixels with a single connection
+		 */
+		void removeDangles(){
+			int[] stack = new int[vertex_pixel.length];
+			int top = 0;
+			for(int p: vertex_pixel)
+				if(Integer.bitCount(adjacency[p] & 0xff) == 1)
+					stack[top++] = p;
+
+			while(top > 0){
+				int p = stack[--top];
+				int mask = adjacency[p] & 0xff;
+				if(Integer.bitCount(mask) != 1)
+					continue;
+
+				int d = Integer.numberOfTrailingZeros(mask);
+				int q = p + offset[d];
+				disconnect(p, d);
+
+				if(Integer.bitCount(adjacency[q] & 0xff) == 1)
+					stack[top++] = q;
+			}
+		}
+
+		/**
+		 * Removes all connections which have the same face on both sides
+		 */
+		void removeCutEdges(){
+			for(int v=0; v<vertex_pixel.length; v++){
+				int p = vertex_pixel[v];
+				for(int d=0; d<4; d++){
+					if((adjacency[p] & (1 << d)) == 0)
+						continue;
+
+					int twin = vertex_index[p + offset[d]] * 8 + ((d + 4) & 7);
+					if(face_label[v * 8 + d] == face_label[twin])
+						disconnect(p, d);
+				}
+			}
+		}
+
+		/**
+		 * Direction of the next connection along the face,
+		 * i.e. the sharpest right turn with respect to the
+		 * incoming direction (faces lie right of the connections).
+		 */
+		private int nextDirection(int p, int incoming){
+			int mask = adjacency[p] & 0xff;
+			int reverse = (incoming + 4) & 7;
+			for(int k=1; k<=8; k++){
+				int d = (reverse - k) & 7;
+				if((mask & (1 << d)) != 0)
+					return d;
+			}
+			return -1;
+		}
+
+		/**
+		 * Traces all faces of the current connectivity
+		 *
+		 * @param extract_rings true if rings should be converted into shells and holes
+		 */
+		void labelFaces(boolean extract_rings){
+
+			Arrays.fill(face_label, 0);
+			if(extract_rings){
+				ring_buffer = new int[64];
+				ring_position = new int[vertex_pixel.length];
+				Arrays.fill(ring_position, -1);
+			}
+
+			int face_no = 0;
+			for(int v=0; v<vertex_pixel.length; v++){
+				int start = vertex_pixel[v];
+				for(int start_d=0; start_d<8; start_d++){
+
+					if((adjacency[start] & (1 << start_d)) == 0 || face_label[v * 8 + start_d] != 0)
+						continue;
+
+					face_no++;
+					int ring_size = 0;
+					int p = start;
+					int d = start_d;
+					do{
+						face_label[vertex_index[p] * 8 + d] = face_no;
+
+						if(extract_rings){
+							if(ring_size == ring_buffer.length)
+								ring_buffer = Arrays.copyOf(ring_buffer, ring_size * 2);
+							ring_buffer[ring_size++] = p;
+						}
+
+						p = p + offset[d];
+						d = nextDirection(p, d);
+					}while(p != start || d != start_d);
+
+					if(extract_rings)
+						splitRings(ring_size);
+				}
+			}
+		}
+
+		/**
+		 * Splits a face boundary which visits a pixel more than
+		 * once into simple rings.
+		 *
+		 * @param ring_size number of pixels in the ring buffer
+		 */
+		private void splitRings(int ring_size){
+
+			int top = 0;
+			for(int i=0; i<ring_size; i++){
+				int p = ring_buffer[i];
+				int v = vertex_index[p];
+				int k = ring_position[v];
+
+				if(k >= 0){
+					addRing(k, top);
+					for(int j=k+1; j<top; j++)
+						ring_position[vertex_index[ring_buffer[j]]] = -1;
+					top = k + 1;
+				}
+				else{
+					ring_position[v] = top;
+					ring_buffer[top++] = p;
+				}
+			}
+
+			addRing(0, top);
+			for(int j=0; j<top; j++)
+				ring_position[vertex_index[ring_buffer[j]]] = -1;
+		}
+
+		/**
+		 * Converts the pixel ring buffer[from,to) into a closed JTS ring.
+		 * Rings are written in reverse order to match the orientation
+		 * of the JTS Polygonizer (clockwise shells, counter-clockwise holes).
+		 */
+		private void addRing(int from, int to){
+
+			int n = to - from;
+			if(n < 3)
+				return;
+
+			long area = 0;
+			for(int i=from; i<to; i++){
+				int p = ring_buffer[i];
+				int q = ring_buffer[i + 1 < to ? i + 1 : from];
+				area += (long)(p % width) * (q / width) - (long)(q % width) * (p / width);
+			}
+
+			if(area == 0)
+				return;
+
+			Coordinate[] coordinates = new Coordinate[n + 1];
+			for(int i=0; i<n; i++){
+				int p = ring_buffer[to - 1 - i];
+				coordinates[i] = new Coordinate(p % width, p / width);
+			}
+			coordinates[n] = new Coordinate(coordinates[0]);
+
+			LinearRing ring = factory.createLinearRing(coordinates);
+
+			//bounded faces are traced clockwise in image coordinates
+			if(area > 0)
+				shells.add(ring);
+			else
+				holes.add(ring);
+		}
+	}
+}
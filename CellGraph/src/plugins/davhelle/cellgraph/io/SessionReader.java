@@ -0,0 +1,496 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Division;
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Elimination;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+
+/**
+ * Loads a spatio-temporal graph saved by {@link SessionWriter}.
+ * Frames, cells, edges with their weights, tracking links and events are
+ * rebuilt directly from the file without segmentation, adjacency or tracking
+ * steps. Edge geometries are not stored and are recomputed on demand.<br><br>
+ *
+ * A range of frames can be loaded on its own. The loaded frames are
+ * renumbered from 0, links to cells outside of the range are dropped
+ * together with the divisions and eliminations involving them.
+ *
+ * @author Davide Heller
+ *
+ */
+public class SessionReader {
+
+	/**
+	 * Session file location
+	 */
+	private final File session_file;
+
+	private final GeometryFactory factory;
+
+	/**
+	 * Cells and unresolved references of a decoded frame block
+	 */
+	static class FrameRecord {
+
+		/**
+		 * Decoded cells, null if the frame was only scanned
+		 */
+		Node[] cells;
+		int[] track_ids;
+		/**
+		 * (frame, cell) pairs of first, previous and next of every cell, frame -1 if null
+		 */
+		int[] links;
+		/**
+		 * Division, origin and elimination id of every cell, -1 if none
+		 */
+		int[] events;
+		int[] error_tags;
+
+		/**
+		 * (id, mother frame, mother cell, child1 frame, child1 cell, child2 frame, child2 cell) of every division
+		 */
+		ArrayList<int[]> divisions = new ArrayList<int[]>();
+		ArrayList<double[]> division_orientations = new ArrayList<double[]>();
+		/**
+		 * (id, frame, cell) of every elimination
+		 */
+		ArrayList<int[]> eliminations = new ArrayList<int[]>();
+	}
+
+	/**
+	 * @param session_file file written by {@link SessionWriter}
+	 */
+	public SessionReader(File session_file){
+		this.session_file = session_file;
+		this.factory = new GeometryFactory();
+	}
+
+	/**
+	 * @return number of frames stored in the session, -1 if the file cannot be read
+	 */
+	public int getFrameNo(){
+		try{
+			RandomAccessFile file = new RandomAccessFile(session_file, "r");
+			try{
+				return readHeader(file) ? file.readInt() : -1;
+			}finally{
+				file.close();
+			}
+		}catch(IOException e){
+			e.printStackTrace();
+			return -1;
+		}
+	}
+
+	/**
+	 * Loads all frames of the session
+	 *
+	 * @return spatio-temporal graph, null if the file could not be read
+	 */
+	public SpatioTemporalGraph read(){
+		return read(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Loads a range of frames of the session
+	 *
+	 * @param first_frame first frame to load
+	 * @param frame_no number of frames to load, limited to the frames available
+	 * @return spatio-temporal graph with frames renumbered from 0, null if the file could not be read
+	 */
+	public SpatioTemporalGraph read(int first_frame, int frame_no){
+		try{
+			RandomAccessFile file = new RandomAccessFile(session_file, "r");
+			try{
+				return read(file, first_frame, frame_no);
+			}finally{
+				file.close();
+			}
+		}catch(IOException e){
+			e.printStackTrace();
+			System.out.println("Something went wrong while attempting to read: "+session_file);
+			return null;
+		}
+	}
+
+	/**
+	 * Checks the magic number and the format version
+	 *
+	 * @param file session file positioned at the start
+	 * @return true if the format is supported
+	 * @throws IOException
+	 */
+	boolean readHeader(RandomAccessFile file) throws IOException{
+		if(file.readInt() != SessionWriter.MAGIC){
+			System.out.println("Not a CellGraph session file: "+session_file);
+			return false;
+		}
+
+		int version = file.readInt();
+		if(version != SessionWriter.VERSION){
+			System.out.println("Unsupported session file version "+version+": "+session_file);
+			return false;
+		}
+
+		return true;
+	}
+
+	private SpatioTemporalGraph read(RandomAccessFile file, int first_frame, int frame_no) throws IOException{
+
+		if(!readHeader(file))
+			return null;
+
+		int stored_frame_no = file.readInt();
+		double scale = file.readDouble();
+		boolean has_tracking = file.readBoolean();
+
+		first_frame = Math.max(0, Math.min(first_frame, stored_frame_no));
+		frame_no = (int)Math.max(0, Math.min((long)frame_no, stored_frame_no - first_frame));
+
+		long[] offsets = readOffsets(file, stored_frame_no);
+
+		TissueEvolution stGraph = new TissueEvolution(frame_no);
+		FrameRecord[] records = new FrameRecord[frame_no];
+
+		for(int i=0; i<frame_no; i++){
+			FrameGraph frame = new FrameGraph(i);
+			records[i] = readFrame(frame, readBlock(file, offsets, first_frame + i),
+					scale, first_frame, frame_no);
+			stGraph.setFrame(frame, i);
+		}
+
+		//temporal links
+		for(FrameRecord record: records)
+			for(int k=0; k<record.cells.length; k++){
+				Node n = record.cells[k];
+				n.setFirst(resolve(records, record.links, 6 * k));
+				n.setPrevious(resolve(records, record.links, 6 * k + 2));
+				n.setNext(resolve(records, record.links, 6 * k + 4));
+			}
+
+		//events, created in frame order as registered in the frames
+		Map<Integer, Division> divisions = new HashMap<Integer, Division>();
+		Map<Integer, Elimination> eliminations = new HashMap<Integer, Elimination>();
+		for(FrameRecord record: records){
+			for(int d=0; d<record.divisions.size(); d++){
+				int[] division_record = record.divisions.get(d);
+				Node mother = resolve(records, division_record, 1);
+				Node child1 = resolve(records, division_record, 3);
+				Node child2 = resolve(records, division_record, 5);
+				if(mother == null || child1 == null || child2 == null)
+					continue;
+
+				Division division = new Division(mother, child1, child2);
+				double[] orientations = record.division_orientations.get(d);
+				division.setDivisionOrientation(orientations[0]);
+				division.setLongestMotherAxisOrientation(orientations[1]);
+				division.setNewJunctionOrientation(orientations[2]);
+				divisions.put(division_record[0], division);
+			}
+
+			for(int[] elimination_record: record.eliminations){
+				Node cell = resolve(records, elimination_record, 1);
+				if(cell != null)
+					eliminations.put(elimination_record[0], new Elimination(cell));
+			}
+		}
+
+		//the event constructors propagate to the linked cells, restore the saved state
+		for(FrameRecord record: records)
+			for(int k=0; k<record.cells.length; k++){
+				Node n = record.cells[k];
+				n.setDivision(divisions.get(record.events[3 * k]));
+				n.setOrigin(divisions.get(record.events[3 * k + 1]));
+				n.setElimination(eliminations.get(record.events[3 * k + 2]));
+				n.setErrorTag(record.error_tags[k]);
+			}
+
+		stGraph.setTracking(has_tracking);
+
+		return stGraph;
+	}
+
+	/**
+	 * Reads the frame index, the block of a frame ends where the next one starts
+	 *
+	 * @param file session file
+	 * @param stored_frame_no number of frames in the session
+	 * @return offset of every frame block followed by the offset of the index
+	 * @throws IOException
+	 */
+	static long[] readOffsets(RandomAccessFile file, int stored_frame_no) throws IOException{
+		file.seek(file.length() - 8);
+		long index_offset = file.readLong();
+
+		long[] offsets = new long[stored_frame_no + 1];
+		file.seek(index_offset);
+		for(int i=0; i<stored_frame_no; i++)
+			offsets[i] = file.readLong();
+		offsets[stored_frame_no] = index_offset;
+
+		return offsets;
+	}
+
+	/**
+	 * @param file session file
+	 * @param offsets frame offsets, see {@link #readOffsets(RandomAccessFile, int)}
+	 * @param i frame to read
+	 * @return frame block of the frame
+	 * @throws IOException
+	 */
+	static DataInputStream readBlock(RandomAccessFile file, long[] offsets, int i) throws IOException{
+		byte[] block = new byte[(int)(offsets[i + 1] - offsets[i])];
+		file.seek(offsets[i]);
+		file.readFully(block);
+		return new DataInputStream(new ByteArrayInputStream(block));
+	}
+
+	/**
+	 * @param records decoded frames
+	 * @param references (frame, cell) pairs
+	 * @param k position of the pair
+	 * @return referenced node, null if not loaded
+	 */
+	private static Node resolve(FrameRecord[] records, int[] references, int k){
+		int frame = references[k];
+		if(frame < 0)
+			return null;
+		return records[frame].cells[references[k + 1]];
+	}
+
+	/**
+	 * Decodes a frame block and adds the cells and edges to the frame.
+	 * Without frame only the tracking ids, references and events are
+	 * decoded, geometries and edges are skipped.
+	 *
+	 * @param frame empty frame to fill, null to scan the block
+	 * @param in frame block
+	 * @param scale coordinate resolution
+	 * @param first_frame first frame loaded
+	 * @param frame_no number of frames loaded
+	 * @return cells with their unresolved references
+	 * @throws IOException
+	 */
+	FrameRecord readFrame(FrameGraph frame, DataInputStream in,
+			double scale, int first_frame, int frame_no) throws IOException{
+
+		boolean scan = frame == null;
+
+		if(in.readBoolean()){
+			String file_source = in.readUTF();
+			if(!scan)
+				frame.setFileSource(file_source);
+		}
+
+		if(in.readBoolean()){
+			byte[] boundary = new byte[readVarInt(in)];
+			in.readFully(boundary);
+			if(!scan)
+				try{
+					frame.setBoundary(new WKBReader(factory).read(boundary));
+				}catch(ParseException e){
+					throw new IOException("Corrupted frame boundary: "+e.getMessage());
+				}
+		}
+
+		FrameRecord record = new FrameRecord();
+		int cell_no = readVarInt(in);
+		record.cells = scan ? null : new Node[cell_no];
+		record.track_ids = new int[cell_no];
+		record.links = new int[6 * cell_no];
+		record.events = new int[3 * cell_no];
+		record.error_tags = new int[cell_no];
+
+		long[] last = new long[2];
+		for(int k=0; k<cell_no; k++){
+			Cell cell = null;
+			if(scan)
+				skipPolygon(in, last);
+			else
+				cell = createCell(readPolygon(in, scale, last), frame);
+
+			record.track_ids[k] = readSignedVarInt(in);
+			int flags = in.readUnsignedByte();
+			record.error_tags[k] = readSignedVarInt(in);
+			Color color_tag = null;
+			if((flags & SessionWriter.FLAG_COLOR_TAG) != 0)
+				color_tag = new Color(in.readInt(), true);
+
+			for(int l=0; l<3; l++)
+				readReference(in, record.links, 6 * k + 2 * l, first_frame, frame_no);
+
+			for(int l=0; l<3; l++)
+				record.events[3 * k + l] = readSignedVarInt(in);
+
+			if(scan)
+				continue;
+
+			cell.setTrackID(record.track_ids[k]);
+			cell.setBoundary((flags & SessionWriter.FLAG_BOUNDARY) != 0);
+			cell.setColorTag(color_tag);
+			frame.addVertex(cell);
+			record.cells[k] = cell;
+		}
+
+		int edge_no = readVarInt(in);
+		for(int e=0; e<edge_no; e++){
+			int source = readVarInt(in);
+			int target = readVarInt(in);
+			double weight = in.readDouble();
+			if(!scan){
+				Edge edge = frame.addEdge(record.cells[source], record.cells[target]);
+				if(edge != null)
+					frame.setEdgeWeight(edge, weight);
+			}
+		}
+
+		int division_no = readVarInt(in);
+		for(int d=0; d<division_no; d++){
+			int[] division_record = new int[7];
+			division_record[0] = readVarInt(in);
+			for(int l=0; l<3; l++)
+				readReference(in, division_record, 1 + 2 * l, first_frame, frame_no);
+			record.divisions.add(division_record);
+			record.division_orientations.add(new double[]{
+					in.readDouble(), in.readDouble(), in.readDouble()});
+		}
+
+		int elimination_no = readVarInt(in);
+		for(int l=0; l<elimination_no; l++){
+			int[] elimination_record = new int[3];
+			elimination_record[0] = readVarInt(in);
+			readReference(in, elimination_record, 1, first_frame, frame_no);
+			record.eliminations.add(elimination_record);
+		}
+
+		return record;
+	}
+
+	/**
+	 * Reads a node reference as (loaded frame, cell) pair, frame -1 if
+	 * null or outside of the loaded range
+	 */
+	private static void readReference(DataInputStream in, int[] references, int k,
+			int first_frame, int frame_no) throws IOException{
+		int frame = readVarInt(in) - 1;
+		int cell = frame < 0 ? -1 : readVarInt(in);
+
+		frame -= first_frame;
+		if(frame < 0 || frame >= frame_no || cell < 0){
+			references[k] = -1;
+			references[k + 1] = -1;
+		}
+		else{
+			references[k] = frame;
+			references[k + 1] = cell;
+		}
+	}
+
+	/**
+	 * Creates the node of a decoded cell polygon
+	 *
+	 * @param polygon cell geometry
+	 * @param frame frame containing the cell
+	 * @return new cell, not yet added to the frame
+	 */
+	Cell createCell(Polygon polygon, FrameGraph frame){
+		return new Cell(polygon, frame);
+	}
+
+	/**
+	 * Skips the polygon rings while keeping track of the last coordinate
+	 */
+	private static void skipPolygon(DataInputStream in, long[] last) throws IOException{
+		int ring_no = readVarInt(in);
+		for(int r=0; r<ring_no; r++){
+			int point_no = readVarInt(in);
+			for(int k=0; k<point_no; k++){
+				last[0] += readSignedVarLong(in);
+				last[1] += readSignedVarLong(in);
+			}
+		}
+	}
+
+	/**
+	 * Reads the polygon rings and closes them
+	 *
+	 * @param in frame block
+	 * @param scale coordinate resolution
+	 * @param last last decoded fixed point coordinate, updated
+	 * @return cell polygon
+	 * @throws IOException
+	 */
+	private Polygon readPolygon(DataInputStream in, double scale, long[] last) throws IOException{
+		int ring_no = readVarInt(in);
+		if(ring_no == 0)
+			return factory.createPolygon(null, null);
+
+		LinearRing[] rings = new LinearRing[ring_no];
+		for(int r=0; r<ring_no; r++){
+			int point_no = readVarInt(in);
+			Coordinate[] coordinates = new Coordinate[point_no + 1];
+			for(int k=0; k<point_no; k++){
+				last[0] += readSignedVarLong(in);
+				last[1] += readSignedVarLong(in);
+				coordinates[k] = new Coordinate(last[0] / scale, last[1] / scale);
+			}
+			coordinates[point_no] = new Coordinate(coordinates[0]);
+			rings[r] = factory.createLinearRing(coordinates);
+		}
+
+		LinearRing[] holes = new LinearRing[ring_no - 1];
+		System.arraycopy(rings, 1, holes, 0, holes.length);
+		return factory.createPolygon(rings[0], holes);
+	}
+
+	static int readVarInt(DataInputStream in) throws IOException{
+		return (int)readVarLong(in);
+	}
+
+	static int readSignedVarInt(DataInputStream in) throws IOException{
+		int value = (int)readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static long readSignedVarLong(DataInputStream in) throws IOException{
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Reads an unsigned value in groups of 7 bits as written by {@link SessionWriter}
+	 */
+	static long readVarLong(DataInputStream in) throws IOException{
+		long value = 0;
+		int shift = 0;
+		int b;
+		do{
+			b = in.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		}while((b & 0x80) != 0);
+		return value;
+	}
+}
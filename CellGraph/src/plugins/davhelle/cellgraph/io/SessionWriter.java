@@ -0,0 +1,496 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.nodes.Division;
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Elimination;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Writes a complete spatio-temporal graph, geometries, adjacency and
+ * tracking included, to a single binary session file which
+ * {@link SessionReader} loads back without any geometric recomputation.<br><br>
+ *
+ * File layout (version 2, big endian):
+ * <pre>
+ * header:  magic, version, frame number, coordinate scale, tracking flag
+ * frames:  one block per frame, see below
+ * index:   offset of every frame block (long)
+ * trailer: offset of the index (long)
+ * </pre>
+ *
+ * Every frame block contains the frame boundary (WKB), the cells in vertex order, the edges as
+ * pairs of cell indices followed by the edge weight, and the divisions and eliminations observed
+ * in the frame. A cell is stored as its polygon rings followed by track id,
+ * boundary flag, error and color tag, the first/previous/next links and the
+ * ids of its division, origin and elimination events. Links are stored as
+ * (frame, cell index) references. Edge geometries are not stored, they
+ * are recomputed from the cell polygons where needed (see
+ * {@link plugins.davhelle.cellgraph.misc.PolygonalCellTileGenerator}).<br><br>
+ *
+ * Coordinates are rounded to multiples of 1/scale and written as
+ * zig-zag encoded variable length differences to the previous vertex.
+ * The frame index allows to load single frame ranges.<br><br>
+ *
+ * Frames are written one after the other and the writer only keeps the
+ * cell indices of a few recently referenced frames, so that graphs that
+ * materialize frames on demand (e.g. {@link LazySessionGraph}) are
+ * written without loading all frames at once.
+ *
+ * @author Davide Heller
+ *
+ */
+public class SessionWriter {
+
+	public static final String DESCRIPTION =
+			"Saves the loaded spatiotemporal graph, i.e. cell polygons,<br/>" +
+			" neighbors and tracking, as a single binary session file.<br/><br/>" +
+			" Sessions reload without segmentation or tracking steps";
+
+	/**
+	 * File name extension of session files
+	 */
+	public static final String FILE_EXTENSION = ".cgs";
+
+	/**
+	 * First bytes of every session file ("CGSN")
+	 */
+	static final int MAGIC = 0x4347534E;
+
+	/**
+	 * Current format version
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * Default coordinate resolution, 1/1000 px
+	 */
+	public static final double DEFAULT_SCALE = 1000.0;
+
+	//cell flags
+	static final int FLAG_BOUNDARY = 1;
+	static final int FLAG_COLOR_TAG = 2;
+
+	/**
+	 * Number of frames whose cell indices are kept
+	 */
+	private static final int INDEXED_FRAMES = 4;
+
+	/**
+	 * Cell indices of a frame in vertex order
+	 */
+	private static class CellIndex {
+		private final FrameGraph frame;
+		private final Map<Node, Integer> index;
+
+		private CellIndex(FrameGraph frame){
+			this.frame = frame;
+			this.index = new HashMap<Node, Integer>(2 * frame.size());
+			int k = 0;
+			for(Node n: frame.vertexSet())
+				index.put(n, k++);
+		}
+	}
+
+	/**
+	 * Graph to be written out
+	 */
+	private final SpatioTemporalGraph stGraph;
+
+	/**
+	 * Coordinate resolution
+	 */
+	private final double scale;
+
+	/**
+	 * Cell indices of the recently referenced frames, by frame position
+	 */
+	private Map<Integer, CellIndex> cell_indices;
+
+	/**
+	 * First division and elimination id of every frame, events are
+	 * numbered in frame order
+	 */
+	private int[] division_offset;
+	private int[] elimination_offset;
+
+	/**
+	 * Ids of the events looked up so far, weak to keep the frames collectable
+	 */
+	private Map<Division, Integer> division_ids;
+	private Map<Elimination, Integer> elimination_ids;
+
+	/**
+	 * Set up the writer
+	 *
+	 * @param stGraph graph to be written out
+	 */
+	public SessionWriter(SpatioTemporalGraph stGraph){
+		this(stGraph, DEFAULT_SCALE);
+	}
+
+	/**
+	 * Set up the writer
+	 *
+	 * @param stGraph graph to be written out
+	 * @param scale coordinate resolution, coordinates are rounded to multiples of 1/scale
+	 */
+	public SessionWriter(SpatioTemporalGraph stGraph, double scale){
+		this.stGraph = stGraph;
+		this.scale = scale;
+	}
+
+	/**
+	 * Writes the session file. An incomplete file is removed if the writing fails.
+	 *
+	 * @param output_file destination file
+	 * @throws IOException if the file cannot be written or a cell geometry is not a polygon
+	 */
+	public void write(File output_file) throws IOException{
+
+		indexGraph();
+
+		boolean complete = false;
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(output_file), 1 << 16));
+		try{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(stGraph.size());
+			out.writeDouble(scale);
+			out.writeBoolean(stGraph.hasTracking());
+
+			//DataOutputStream counts in int, files might exceed 2GB
+			long position = out.size();
+			long[] frame_offsets = new long[stGraph.size()];
+			ByteArrayOutputStream frame_buffer = new ByteArrayOutputStream(1 << 16);
+			for(int i=0; i < stGraph.size(); i++){
+				frame_offsets[i] = position;
+
+				frame_buffer.reset();
+				writeFrame(stGraph.getFrame(i), i, new DataOutputStream(frame_buffer));
+				frame_buffer.writeTo(out);
+				position += frame_buffer.size();
+			}
+
+			long index_offset = position;
+			for(long offset: frame_offsets)
+				out.writeLong(offset);
+			out.writeLong(index_offset);
+
+			out.close();
+			complete = true;
+		}
+		finally{
+			if(!complete){
+				try{
+					out.close();
+				}catch(IOException e){
+					//the original failure is reported
+				}
+				output_file.delete();
+			}
+
+			cell_indices = null;
+			division_offset = null;
+			elimination_offset = null;
+			division_ids = null;
+			elimination_ids = null;
+		}
+	}
+
+	/**
+	 * Counts the events of every frame to number them in frame order
+	 */
+	private void indexGraph(){
+		cell_indices = new LinkedHashMap<Integer, CellIndex>(2 * INDEXED_FRAMES, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, CellIndex> eldest){
+				return size() > INDEXED_FRAMES;
+			}
+		};
+		division_ids = new WeakHashMap<Division, Integer>();
+		elimination_ids = new WeakHashMap<Elimination, Integer>();
+
+		division_offset = new int[stGraph.size() + 1];
+		elimination_offset = new int[stGraph.size() + 1];
+		for(int i=0; i < stGraph.size(); i++){
+			FrameGraph frame = stGraph.getFrame(i);
+			division_offset[i + 1] = division_offset[i] + count(frame.divisionIterator());
+			elimination_offset[i + 1] = elimination_offset[i] + count(frame.eliminationIterator());
+		}
+	}
+
+	private static int count(Iterator<?> it){
+		int n = 0;
+		while(it.hasNext()){
+			it.next();
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @param n node
+	 * @return position of the node in its frame, -1 if the frame is not part of the graph
+	 */
+	private int cellIndex(Node n){
+		int frame_position = framePosition(n);
+		if(frame_position < 0)
+			return -1;
+
+		CellIndex frame_cells = cell_indices.get(frame_position);
+		if(frame_cells == null || frame_cells.frame != n.getBelongingFrame()){
+			frame_cells = new CellIndex(n.getBelongingFrame());
+			cell_indices.put(frame_position, frame_cells);
+		}
+
+		Integer index = frame_cells.index.get(n);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param n node
+	 * @return frame position of the node, -1 if outside of the graph
+	 */
+	private int framePosition(Node n){
+		if(n.getBelongingFrame() == null)
+			return -1;
+		int frame_no = n.getBelongingFrame().getFrameNo();
+		if(frame_no < 0 || frame_no >= stGraph.size())
+			return -1;
+		return stGraph.getFrame(frame_no) == n.getBelongingFrame() ? frame_no : -1;
+	}
+
+	/**
+	 * @param frame frame to encode
+	 * @param frame_position position of the frame in the graph
+	 * @param out frame block destination
+	 * @throws IOException
+	 */
+	private void writeFrame(FrameGraph frame, int frame_position, DataOutputStream out) throws IOException{
+
+		out.writeBoolean(frame.hasFileSource());
+		if(frame.hasFileSource())
+			out.writeUTF(frame.getFileSource());
+
+		//frame boundary as well known binary
+		out.writeBoolean(frame.hasBoundary());
+		if(frame.hasBoundary()){
+			byte[] boundary = new WKBWriter().write(frame.getBoundary());
+			writeVarInt(out, boundary.length);
+			out.write(boundary);
+		}
+
+		//cells
+		writeVarInt(out, frame.size());
+		Map<Node, Integer> frame_cells = cellIndex(frame, frame_position);
+		long[] last = new long[2];
+		for(Node n: frame.vertexSet()){
+			writeGeometry(out, n.getGeometry(), last);
+
+			writeSignedVarInt(out, n.getTrackID());
+			int flags = 0;
+			if(n.onBoundary())
+				flags |= FLAG_BOUNDARY;
+			if(n.hasColorTag())
+				flags |= FLAG_COLOR_TAG;
+			out.writeByte(flags);
+			writeSignedVarInt(out, n.getErrorTag());
+			if(n.hasColorTag())
+				out.writeInt(n.getColorTag().getRGB());
+
+			writeReference(out, n.getFirst());
+			writeReference(out, n.getPrevious());
+			writeReference(out, n.getNext());
+
+			writeSignedVarInt(out, divisionId(n.getDivision()));
+			writeSignedVarInt(out, divisionId(n.getOrigin()));
+			writeSignedVarInt(out, eliminationId(n.getElimination()));
+		}
+
+		//adjacency
+		writeVarInt(out, frame.edgeSet().size());
+		for(Edge e: frame.edgeSet()){
+			writeVarInt(out, frame_cells.get(frame.getEdgeSource(e)));
+			writeVarInt(out, frame_cells.get(frame.getEdgeTarget(e)));
+			out.writeDouble(frame.getEdgeWeight(e));
+		}
+
+		//events observed in the frame
+		writeVarInt(out, count(frame.divisionIterator()));
+		Iterator<Division> division_it = frame.divisionIterator();
+		for(int d=0; division_it.hasNext(); d++){
+			Division division = division_it.next();
+			writeVarInt(out, division_offset[frame_position] + d);
+			writeReference(out, division.getMother());
+			writeReference(out, division.getChild1());
+			writeReference(out, division.getChild2());
+			out.writeDouble(division.getDivisionOrientation());
+			out.writeDouble(division.getLongestMotherAxisOrientation());
+			out.writeDouble(division.getNewJunctionOrientation());
+		}
+
+		writeVarInt(out, count(frame.eliminationIterator()));
+		Iterator<Elimination> elimination_it = frame.eliminationIterator();
+		for(int l=0; elimination_it.hasNext(); l++){
+			Elimination elimination = elimination_it.next();
+			writeVarInt(out, elimination_offset[frame_position] + l);
+			writeReference(out, elimination.getCell());
+		}
+	}
+
+	/**
+	 * @param frame frame being written
+	 * @param frame_position position of the frame in the graph
+	 * @return cell indices of the frame
+	 */
+	private Map<Node, Integer> cellIndex(FrameGraph frame, int frame_position){
+		CellIndex frame_cells = new CellIndex(frame);
+		cell_indices.put(frame_position, frame_cells);
+		return frame_cells.index;
+	}
+
+	/**
+	 * @param division division event, can be null
+	 * @return id of the division, -1 if null or not registered in its frame
+	 */
+	private int divisionId(Division division){
+		if(division == null)
+			return -1;
+
+		if(!division_ids.containsKey(division)){
+			int frame_position = division.getTimePoint();
+			if(frame_position < 0 || frame_position >= stGraph.size())
+				return -1;
+
+			Iterator<Division> division_it = stGraph.getFrame(frame_position).divisionIterator();
+			for(int d=0; division_it.hasNext(); d++)
+				division_ids.put(division_it.next(), division_offset[frame_position] + d);
+		}
+
+		Integer id = division_ids.get(division);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param elimination elimination event, can be null
+	 * @return id of the elimination, -1 if null or not registered in its frame
+	 */
+	private int eliminationId(Elimination elimination){
+		if(elimination == null)
+			return -1;
+
+		if(!elimination_ids.containsKey(elimination)){
+			int frame_position = elimination.getTimePoint();
+			if(frame_position < 0 || frame_position >= stGraph.size())
+				return -1;
+
+			Iterator<Elimination> elimination_it = stGraph.getFrame(frame_position).eliminationIterator();
+			for(int l=0; elimination_it.hasNext(); l++)
+				elimination_ids.put(elimination_it.next(), elimination_offset[frame_position] + l);
+		}
+
+		Integer id = elimination_ids.get(elimination);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Writes the rings of a polygon, without the closing vertex,
+	 * as coordinate differences to the previous vertex
+	 *
+	 * @param out destination
+	 * @param geometry cell geometry
+	 * @param last last written fixed point coordinate, updated
+	 * @throws IOException if the geometry is not a polygon
+	 */
+	private void writeGeometry(DataOutputStream out, Geometry geometry, long[] last) throws IOException{
+		if(!(geometry instanceof Polygon))
+			throw new IOException("Unsupported cell geometry: " + 
+					(geometry == null ? "null" : geometry.getGeometryType()));
+
+		if(geometry.isEmpty()){
+			writeVarInt(out, 0);
+			return;
+		}
+
+		Polygon polygon = (Polygon)geometry;
+		writeVarInt(out, 1 + polygon.getNumInteriorRing());
+		for(int r=-1; r<polygon.getNumInteriorRing(); r++){
+			CoordinateSequence ring = r < 0 ?
+					polygon.getExteriorRing().getCoordinateSequence() :
+					polygon.getInteriorRingN(r).getCoordinateSequence();
+
+			int point_no = ring.size() - 1;
+			writeVarInt(out, point_no);
+			for(int k=0; k<point_no; k++){
+				long x = Math.round(ring.getX(k) * scale);
+				long y = Math.round(ring.getY(k) * scale);
+				writeSignedVarLong(out, x - last[0]);
+				writeSignedVarLong(out, y - last[1]);
+				last[0] = x;
+				last[1] = y;
+			}
+		}
+	}
+
+	/**
+	 * Writes a node reference as frame position + 1 (0 for null) and cell index
+	 *
+	 * @param out destination
+	 * @param n referenced node, can be null
+	 * @throws IOException
+	 */
+	private void writeReference(DataOutputStream out, Node n) throws IOException{
+		int index = n == null ? -1 : cellIndex(n);
+		if(index < 0){
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, framePosition(n) + 1);
+		writeVarInt(out, index);
+	}
+
+	static void writeVarInt(DataOutputStream out, int value) throws IOException{
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	static void writeSignedVarInt(DataOutputStream out, int value) throws IOException{
+		writeVarLong(out, ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+	}
+
+	static void writeSignedVarLong(DataOutputStream out, long value) throws IOException{
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Writes an unsigned value in groups of 7 bits, lowest first,
+	 * the high bit marks whether another group follows
+	 */
+	static void writeVarLong(DataOutputStream out, long value) throws IOException{
+		while((value & ~0x7FL) != 0){
+			out.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+}
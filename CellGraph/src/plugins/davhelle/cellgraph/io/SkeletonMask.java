@@ -0,0 +1,297 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.util.Arrays;
+
+/**
+ * Binary pixel mask of a skeleton image stored as one byte per pixel
+ * (1 for skeleton, 0 for background) in row major order.<br><br>
+ *
+ * Offers the in-process binarization and thinning (Zhang-Suen)
+ * required by {@link SkeletonReader} to obtain one pixel wide
+ * 8-connected skeleton lines.
+ *
+ * @author Davide Heller
+ *
+ */
+public class SkeletonMask {
+
+	/**
+	 * Mask dimensions
+	 */
+	private final int width;
+	private final int height;
+
+	/**
+	 * Pixel values, index = y * width + x
+	 */
+	private final byte[] mask;
+
+	/**
+	 * Empty mask
+	 *
+	 * @param width mask width
+	 * @param height mask height
+	 */
+	public SkeletonMask(int width, int height){
+		this(width, height, new byte[width * height]);
+	}
+
+	/**
+	 * Mask wrapping an existing buffer with values 0/1
+	 *
+	 * @param width mask width
+	 * @param height mask height
+	 * @param mask pixel buffer of size width*height
+	 */
+	public SkeletonMask(int width, int height, byte[] mask){
+		this.width = width;
+		this.height = height;
+		this.mask = mask;
+	}
+
+	/**
+	 * Binarizes an 8-bit gray buffer in place using the iterative
+	 * intermeans (IsoData) threshold. Pixels brighter than the
+	 * threshold are considered skeleton.
+	 *
+	 * @param gray 8-bit pixel buffer, overwritten with the mask values
+	 * @param width image width
+	 * @param height image height
+	 * @return mask backed by the input buffer
+	 */
+	public static SkeletonMask binarize(byte[] gray, int width, int height){
+
+		long[] histogram = new long[256];
+		for(byte value: gray)
+			histogram[value & 0xff]++;
+
+		int threshold = isoDataThreshold(histogram);
+
+		for(int i=0; i<gray.length; i++)
+			gray[i] = (gray[i] & 0xff) > threshold ? (byte)1 : (byte)0;
+
+		return new SkeletonMask(width, height, gray);
+	}
+
+	/**
+	 * Iterative intermeans threshold. For a two valued image the
+	 * threshold lies between the two values.
+	 *
+	 * @param histogram 256 bin histogram
+	 * @return threshold value, 255 if the image is uniform
+	 */
+	private static int isoDataThreshold(long[] histogram){
+
+		int min = 0;
+		while(min < 255 && histogram[min] == 0)
+			min++;
+		int max = 255;
+		while(max > 0 && histogram[max] == 0)
+			max--;
+
+		if(min >= max)
+			return 255;
+
+		int threshold = (min + max) / 2;
+		int previous = -1;
+		while(threshold != previous){
+			previous = threshold;
+
+			double sum_below = 0, count_below = 0;
+			double sum_above = 0, count_above = 0;
+			for(int i=min; i<=max; i++)
+				if(i <= threshold){
+					sum_below += (double)i * histogram[i];
+					count_below += histogram[i];
+				}
+				else{
+					sum_above += (double)i * histogram[i];
+					count_above += histogram[i];
+				}
+
+			double mean_below = sum_below / count_below;
+			double mean_above = count_above > 0 ? sum_above / count_above : max;
+			threshold = (int)((mean_below + mean_above) / 2);
+		}
+
+		return threshold;
+	}
+
+	/**
+	 * Thins the mask to one pixel wide lines with the Zhang-Suen
+	 * algorithm. The one pixel wide mask border is cleared first.
+	 */
+	public void thin(){
+
+		clearBorder();
+
+		//candidate list of all foreground pixels
+		int foreground_no = 0;
+		for(byte value: mask)
+			if(value != 0)
+				foreground_no++;
+
+		int[] foreground = new int[foreground_no];
+		int k = 0;
+		for(int p=0; p<mask.length; p++)
+			if(mask[p] != 0)
+				foreground[k++] = p;
+
+		int[] to_delete = new int[foreground_no];
+		boolean changed = true;
+
+		while(changed){
+			changed = false;
+
+			for(int step=0; step<2; step++){
+
+				int delete_no = 0;
+				for(int i=0; i<foreground_no; i++)
+					if(isDeletable(foreground[i], step))
+						to_delete[delete_no++] = foreground[i];
+
+				if(delete_no == 0)
+					continue;
+
+				changed = true;
+				for(int i=0; i<delete_no; i++)
+					mask[to_delete[i]] = 0;
+
+				//compact the candidate list
+				int remaining = 0;
+				for(int i=0; i<foreground_no; i++)
+					if(mask[foreground[i]] != 0)
+						foreground[remaining++] = foreground[i];
+				foreground_no = remaining;
+			}
+		}
+
+		//Zhang-Suen leaves 4-connected staircases, reduce them to diagonal steps
+		for(int i=0; i<foreground_no; i++)
+			if(isStaircaseCorner(foreground[i]))
+				mask[foreground[i]] = 0;
+	}
+
+	/**
+	 * Tests whether a pixel is the redundant corner of a 4-connected
+	 * staircase, i.e. it has two orthogonal neighbors at a right angle
+	 * and its removal does not change the 8-connectivity
+	 * (Yokoi connectivity number equals one).
+	 *
+	 * @param p linear pixel index
+	 * @return true if the pixel can be removed
+	 */
+	private boolean isStaircaseCorner(int p){
+
+		int e  = mask[p + 1];
+		int ne = mask[p - width + 1];
+		int n  = mask[p - width];
+		int nw = mask[p - width - 1];
+		int w  = mask[p - 1];
+		int sw = mask[p + width - 1];
+		int s  = mask[p + width];
+		int se = mask[p + width + 1];
+
+		boolean corner = (n & e) + (e & s) + (s & w) + (w & n) > 0;
+		if(!corner)
+			return false;
+
+		//connectivity number on the complemented neighborhood
+		int connectivity =
+				(1 - e) - (1 - e) * (1 - ne) * (1 - n) +
+				(1 - n) - (1 - n) * (1 - nw) * (1 - w) +
+				(1 - w) - (1 - w) * (1 - sw) * (1 - s) +
+				(1 - s) - (1 - s) * (1 - se) * (1 - e);
+
+		return connectivity == 1;
+	}
+
+	/**
+	 * Zhang-Suen deletion test for an interior pixel
+	 *
+	 * @param p linear pixel index
+	 * @param step sub-iteration (0 or 1)
+	 * @return true if the pixel can be removed
+	 */
+	private boolean isDeletable(int p, int step){
+
+		//neighbors P2..P9 clockwise starting north
+		int p2 = mask[p - width];
+		int p3 = mask[p - width + 1];
+		int p4 = mask[p + 1];
+		int p5 = mask[p + width + 1];
+		int p6 = mask[p + width];
+		int p7 = mask[p + width - 1];
+		int p8 = mask[p - 1];
+		int p9 = mask[p - width - 1];
+
+		int b = p2 + p3 + p4 + p5 + p6 + p7 + p8 + p9;
+		if(b < 2 || b > 6)
+			return false;
+
+		int a = 0;
+		if(p2 == 0 && p3 == 1) a++;
+		if(p3 == 0 && p4 == 1) a++;
+		if(p4 == 0 && p5 == 1) a++;
+		if(p5 == 0 && p6 == 1) a++;
+		if(p6 == 0 && p7 == 1) a++;
+		if(p7 == 0 && p8 == 1) a++;
+		if(p8 == 0 && p9 == 1) a++;
+		if(p9 == 0 && p2 == 1) a++;
+		if(a != 1)
+			return false;
+
+		if(step == 0)
+			return p2 * p4 * p6 == 0 && p4 * p6 * p8 == 0;
+		else
+			return p2 * p4 * p8 == 0 && p2 * p6 * p8 == 0;
+	}
+
+	/**
+	 * Clears the one pixel wide border of the mask
+	 */
+	public void clearBorder(){
+		if(width == 0 || height == 0)
+			return;
+
+		Arrays.fill(mask, 0, width, (byte)0);
+		Arrays.fill(mask, (height - 1) * width, height * width, (byte)0);
+		for(int y=1; y<height - 1; y++){
+			mask[y * width] = 0;
+			mask[y * width + width - 1] = 0;
+		}
+	}
+
+	/**
+	 * @param x column
+	 * @param y row
+	 * @return true if the pixel is part of the skeleton, false if unset or outside
+	 */
+	public boolean isSet(int x, int y){
+		return x >= 0 && y >= 0 && x < width && y < height && mask[y * width + x] != 0;
+	}
+
+	/**
+	 * @param x column
+	 * @param y row
+	 * @param value true to mark the pixel as skeleton
+	 */
+	public void set(int x, int y, boolean value){
+		mask[y * width + x] = value ? (byte)1 : (byte)0;
+	}
+
+	/**
+	 * @return mask width
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * @return mask height
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+}
@@ -1,11 +1,10 @@
 package plugins.davhelle.cellgraph.io;
 
-import icy.image.IcyBufferedImage;
 import icy.image.ImageUtil;
-import icy.type.collection.array.Array1DUtil;
-import ij.ImagePlus;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -19,8 +18,8 @@ import com.vividsolutions.jts.operation.polygonize.Polygonizer;
  * SkeletonReader allows direct input of a Skeleton image which 
  * is converted into a JTS Polygon collection. 
  * 
- * Currently skeleton/membrane signal is required to have value 255
- * and be 8-connected.
+ * The skeleton/membrane signal is separated from the background
+ * by an automatic threshold and thinned to be 8-connected.
  * 
  * @author Davide Heller
  *
@@ -40,22 +39,90 @@ public class SkeletonReader implements PolygonReader{
 		lineFactory = new GeometryFactory();
 	}
 
-	private BufferedImage reskeletonize(String file_name) {
+	/**
+	 * Reads the skeleton image and reduces it to a one pixel wide
+	 * binary mask. The image is decoded once into an 8-bit buffer
+	 * which is then binarized and thinned in place (Zhang-Suen),
+	 * no intermediate image copies are created. The one pixel wide
+	 * image border is always left empty.
+	 * 
+	 * @param file_name File name of the skeleton image
+	 * @return binary skeleton mask
+	 */
+	protected SkeletonMask readSkeleton(String file_name){
 		
-		BufferedImage raw_img;
-		ImagePlus original_image = new ImagePlus(file_name);
+		BufferedImage raw_img = ImageUtil.load(file_name);
 		
-		ij.IJ.run(original_image, "8-bit","");
-		ij.IJ.run(original_image, "Make Binary", "");
-		ij.IJ.run(original_image, "Skeletonize", "");
+		int skeleton_width = raw_img.getWidth();
+		int skeleton_height = raw_img.getHeight();
 		
-		raw_img = original_image.getBufferedImage();
+		byte[] gray = toGrayBuffer(raw_img);
+		raw_img = null;
 		
-		return raw_img;
+		//reskeletonize the image
+		SkeletonMask skeleton = SkeletonMask.binarize(gray, skeleton_width, skeleton_height);
+		skeleton.thin();
+		
+		return skeleton;
 	}
 	
 	/**
-	 * Given the boolean map, first a line collection is 
+	 * Converts the decoded image into an 8-bit gray buffer.
+	 * Single band images with more than 8 bits are scaled
+	 * linearly between their minimum and maximum value, color
+	 * images are converted by averaging the RGB components.
+	 * 
+	 * @param img decoded image
+	 * @return 8-bit buffer in row major order
+	 */
+	private static byte[] toGrayBuffer(BufferedImage img){
+		
+		int width = img.getWidth();
+		int height = img.getHeight();
+		byte[] gray = new byte[width * height];
+		
+		Raster raster = img.getRaster();
+		int[] row = new int[width];
+		
+		if(raster.getNumBands() == 1 && !(img.getColorModel() instanceof IndexColorModel)){
+			
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			for(int y=0; y<height; y++){
+				raster.getSamples(0, y, width, 1, 0, row);
+				for(int x=0; x<width; x++){
+					if(row[x] < min) min = row[x];
+					if(row[x] > max) max = row[x];
+				}
+			}
+			
+			boolean scale = max > 255 || min < 0;
+			double factor = max > min ? 255.0 / (max - min) : 0;
+			
+			for(int y=0; y<height; y++){
+				raster.getSamples(0, y, width, 1, 0, row);
+				int idx = y * width;
+				for(int x=0; x<width; x++)
+					gray[idx + x] = scale ? 
+							(byte)((row[x] - min) * factor) : (byte)row[x];
+			}
+		}
+		else{
+			for(int y=0; y<height; y++){
+				img.getRGB(0, y, width, 1, row, 0, width);
+				int idx = y * width;
+				for(int x=0; x<width; x++){
+					int rgb = row[x];
+					gray[idx + x] = (byte)((((rgb >> 16) & 0xff) + ((rgb >> 8) & 0xff) + (rgb & 0xff)) / 3);
+				}
+			}
+		}
+		
+		return gray;
+	}
+	
+	/**
+	 * Given the skeleton mask, first a line collection is 
 	 * build and then the latter is converted into a 
 	 * Polygon collection by the Polygonizer function of JTS.
 	 * 
@@ -71,52 +138,27 @@ public class SkeletonReader implements PolygonReader{
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public ArrayList<Polygon> extractPolygons(String file_name){
 		
-		BufferedImage raw_img = ImageUtil.load(file_name);
-		
-		//reskeletonize the images
-		raw_img = reskeletonize(file_name);
+		SkeletonMask skeleton = readSkeleton(file_name);
 		
-		IcyBufferedImage img = IcyBufferedImage.createFrom(raw_img);
-		
-		// test output: Icy.getMainInterface().addSequence(new Sequence(img));
-				
-		Object imageData = img.getDataXY( 0 );
-		
-		// Get a copy of the data in double.
-		double[] dataBuffer = Array1DUtil.arrayToDoubleArray( imageData , img.isSignedDataType() );
-			
-		int skeleton_width = img.getWidth();
-		int skeleton_height = img.getHeight();
-		
-		boolean[][] skeleton = new boolean[skeleton_width][skeleton_height];
-		
-		int idx = 0;
-		for(int i=1; i<skeleton_height - 1; i++){
-			idx = i * img.getWidth();
-			for(int j=1; j < skeleton_width -1; j++){
-				//TODO what if the white value is not 255
-				if(dataBuffer[idx + j] == 255.0){
-					skeleton[j][i] = true;
-				}
-			}
-		}
+		int skeleton_width = skeleton.getWidth();
+		int skeleton_height = skeleton.getHeight();
 		
 		Collection line_collection = new ArrayList();
 		for(int i=1; i<skeleton_height - 1; i++)
 			for(int j=1; j < skeleton_width -1; j++)
-				if(skeleton[j][i]){
+				if(skeleton.isSet(j, i)){
 					//if adjacent not free don't connect
-					if(skeleton[j+1][i  ]) // rx
-						//if(!skeleton[j+1][i-1] && !skeleton[j+1][i+1])
+					if(skeleton.isSet(j+1, i)) // rx
+						//if(!skeleton.isSet(j+1, i-1) && !skeleton.isSet(j+1, i+1))
 							line_collection.add(buildLine(j,i,j+1,i));  
-					if(skeleton[j-1][i+1]) //llx
-						if(!skeleton[j-1][i  ] && !skeleton[j  ][i+1])
+					if(skeleton.isSet(j-1, i+1)) //llx
+						if(!skeleton.isSet(j-1, i) && !skeleton.isSet(j, i+1))
 							line_collection.add(buildLine(j,i,j-1,i+1));  
-					if(skeleton[j  ][i+1]) //lcx - vertical junction doesn't need check
-						//if(!skeleton[j-1][i+1] && !skeleton[j+1][i+1])
+					if(skeleton.isSet(j, i+1)) //lcx - vertical junction doesn't need check
+						//if(!skeleton.isSet(j-1, i+1) && !skeleton.isSet(j+1, i+1))
 							line_collection.add(buildLine(j,i,j,i+1));  
-					if(skeleton[j+1][i+1]) //lrw
-						if(!skeleton[j  ][i+1] && !skeleton[j+1][i  ])
+					if(skeleton.isSet(j+1, i+1)) //lrw
+						if(!skeleton.isSet(j, i+1) && !skeleton.isSet(j+1, i))
 							line_collection.add(buildLine(j,i,j+1,i+1));  
 				}
 					
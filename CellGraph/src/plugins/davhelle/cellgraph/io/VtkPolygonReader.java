@@ -26,19 +26,14 @@ import com.vividsolutions.jts.operation.polygonize.Polygonizer;
  */
 public class VtkPolygonReader implements PolygonReader{
 	
-	/**
-	 * VTK polygon data reader
-	 */
-	vtkPolyDataReader reader;
-	
 	public VtkPolygonReader(){	
-		reader = new vtkPolyDataReader();	
 	}
 	
 	/**
+	 * @param reader VTK polygon data reader
 	 * @return true if the data is not vtk polygon data (polydata)
 	 */
-	private boolean is_not_polydata(){
+	private boolean is_not_polydata(vtkPolyDataReader reader){
 		return reader.IsFilePolyData() != 1;
 	}
 	
@@ -51,14 +46,15 @@ public class VtkPolygonReader implements PolygonReader{
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public ArrayList<Polygon> extractPolygons(String file_name){
 		
-		//define input
+		//define input, the VTK reader is stateful and therefore not shared
+		vtkPolyDataReader reader = new vtkPolyDataReader();
 		reader.SetFileName(file_name);
 		vtkPolyData polydata = new vtkPolyData();
         reader.SetOutput(polydata);
         reader.Update();
         
 		//check for data correctness        
-		if(is_not_polydata()){
+		if(is_not_polydata(reader)){
 			new AnnounceFrame("NO Poly data found in: "+file_name);
 			return null;
 		}
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKTFileReader;
@@ -21,16 +22,26 @@ import com.vividsolutions.jts.io.WKTReader;
 public class WktPolygonImporter implements PolygonReader{
 
 	/**
-	 * JTS well known text reader
+	 * JTS geometry factory shared by the well known text readers
 	 */
-	private WKTReader reader;
+	private GeometryFactory factory;
 
 	public WktPolygonImporter() {
 		
-		reader = new WKTReader();
+		factory = new GeometryFactory();
 		
 	}
 	
+	/**
+	 * The JTS WKTReader keeps the parsing state, a new reader 
+	 * is used for every file so that files can be read concurrently
+	 * 
+	 * @return JTS well known text reader
+	 */
+	private WKTReader createReader(){
+		return new WKTReader(factory);
+	}
+	
 	/**
 	 * Extracts individual JTS geometry from file
 	 * 
@@ -43,7 +54,7 @@ public class WktPolygonImporter implements PolygonReader{
 		ArrayList<Geometry> stored_geometries = null;
 		
 		File file = new File(file_name);
-		WKTFileReader file_reader = new WKTFileReader(file, reader);
+		WKTFileReader file_reader = new WKTFileReader(file, createReader());
 		
 		try {
 			stored_geometries = (ArrayList<Geometry>) file_reader.read();
@@ -66,7 +77,7 @@ public class WktPolygonImporter implements PolygonReader{
 		ArrayList<Polygon> stored_polygons = null;
 		
 		File file = new File(file_name);
-		WKTFileReader file_reader = new WKTFileReader(file, reader);
+		WKTFileReader file_reader = new WKTFileReader(file, createReader());
 		
 		try {
 			stored_polygons = (ArrayList<Polygon>) file_reader.read();
@@ -1,8 +1,6 @@
 package plugins.davhelle.cellgraph.misc;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
 
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
@@ -12,13 +10,14 @@ import plugins.davhelle.cellgraph.nodes.Node;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
-import com.vividsolutions.jts.operation.union.CascadedPolygonUnion;
 
 /**
  * Class identifies the cells which constitute the border 
  * of the given geometry collection. The task is achieved by consid-
- * ering the union of all cells and asking which polygons
- * intersect with the outer ring.  
+ * ering the segments of all cell polygons: segments which are not
+ * shared with a neighboring cell form the outer ring, see {@link BorderTopology}.
+ * The boundary geometry of every frame is assembled from these segments
+ * only when requested through {@link FrameGraph#getBoundary()}.
  * 
  * @author Davide Heller
  *
@@ -34,14 +33,17 @@ public class BorderCells{
 	 */
 	private PreparedGeometryFactory cached_factory;
 	/**
-	 * Array for boundary geometries
+	 * Segment topology of every frame, kept to peel layers incrementally
 	 */
-	private Geometry[] boundaries;
+	private BorderTopology[] topologies;
 	
 	/**
 	 * @return the boundaries for all frames
 	 */
 	public Geometry[] getBoundaries() {
+		Geometry[] boundaries = new Geometry[stGraph.size()];
+		for(int i=0; i<stGraph.size(); i++)
+			boundaries[i] = stGraph.getFrame(i).getBoundary();
 		return boundaries;
 	}
 
@@ -53,7 +55,7 @@ public class BorderCells{
 	public BorderCells(SpatioTemporalGraph stGraph) {
 		//Set data structures
 		this.stGraph = stGraph;
-		boundaries = new Geometry[stGraph.size()];
+		topologies = new BorderTopology[stGraph.size()];
 		cached_factory = new PreparedGeometryFactory();
 	}
 	
@@ -68,35 +70,16 @@ public class BorderCells{
 		
 		 //TODO: split the method to allow for separate removal and labeling of boundary cells
 		
-		for(int time_point_i=0; time_point_i<stGraph.size();time_point_i++){
-			
-			long s = System.currentTimeMillis();
-			FrameGraph frame_i = stGraph.getFrame(time_point_i);
-			
-			Geometry old_boundary = findBorderCells(frame_i);
-			long e1 = System.currentTimeMillis() - s;
-			
-			removeBoundaryLayer(frame_i, old_boundary);
-			long e2 = System.currentTimeMillis() - e1 - s;
-			
-			Geometry new_boundary = findBorderCells(frame_i);
-			long e3 = System.currentTimeMillis() - e2 - e1 - s;
-			
-			markBorderCells(frame_i, new_boundary);
-			long e4 = System.currentTimeMillis() - e3 - e2 - e1 - s;		
-
-			boundaries[time_point_i] = new_boundary;
-			
-			System.out.printf("Boundary %d:\t%d\t%d\t%d\t%d\n",time_point_i,e1,e2,e3,e4);
-			
-		}
+		for(int time_point_i=0; time_point_i<stGraph.size();time_point_i++)
+			removeLayer(time_point_i);
 		
 	}
 	
 	
 	/**
 	 * Detects and removes all border cells of the frame at the specified time point
-	 * in the stGraph set through the constructor.
+	 * in the stGraph set through the constructor. Repeated calls only update the
+	 * cells next to the removed layer.
 	 * 
 	 * @param time_point_i time point to be processed
 	 */
@@ -105,20 +88,25 @@ public class BorderCells{
 		if(time_point_i < 0 || time_point_i > stGraph.size() - 1)
 			time_point_i = 0;
 
-		FrameGraph frame_i = stGraph.getFrame(time_point_i);
-		
-		Geometry boundary = findBorderCells(frame_i);
-		removeBoundaryLayer(frame_i, boundary);
-		
-		//update boundary
-		Geometry new_boundary = findBorderCells(frame_i);
-		markBorderCells(frame_i, new_boundary);
-		
-		boundaries[time_point_i] = new_boundary;
+		removeLayer(time_point_i);
 
 		System.out.println("Removed one outer layer!");
 		
 	}
+	
+	/**
+	 * Removes the border cells of a frame and marks the new border cells
+	 * 
+	 * @param time_point_i time point to be processed
+	 */
+	private void removeLayer(int time_point_i){
+		BorderTopology topology = findBorderCells(time_point_i);
+		
+		if(!topology.removeCells(topology.getBorderCells()))
+			System.out.println("Elimination went wrong, please check!");
+		
+		markBorderCells(topology);
+	}
 
 	/**
 	 * Removes all cells that intersect the border from the input frame
@@ -151,40 +139,45 @@ public class BorderCells{
 	public void markOnly() {
 		
 		//Identify the boundary for every frame
-		for(int time_point_i=0; time_point_i<stGraph.size();time_point_i++){
-			FrameGraph frame_i = stGraph.getFrame(time_point_i);
-			Geometry boundary = findBorderCells(frame_i);
-			markBorderCells(frame_i,boundary);
-			boundaries[time_point_i] = boundary;
-		}
+		for(int time_point_i=0; time_point_i<stGraph.size();time_point_i++)
+			findBorderCells(time_point_i);
 	}
 
 	/**
-	 * Find the border geometry by computing the union of all cells
+	 * Finds the border segments of a frame and marks the border cells. The
+	 * topology of previous calls is reused if the frame was not modified since.
 	 * 
-	 * @param frame_i frame to compute the border for
-	 * @return LineString geometry representing the border
+	 * @param time_point_i frame to compute the border for
+	 * @return segment topology of the frame
 	 */
-	private Geometry findBorderCells(FrameGraph frame_i) {
-
-		//set up polygon container
-		Geometry[] output = new Geometry[frame_i.size()];
-		Iterator<Node> node_it = frame_i.iterator();
-		for(int i=0; i<frame_i.size(); i++){
-			output[i] = node_it.next().getGeometry();
-		}		
+	private BorderTopology findBorderCells(int time_point_i) {
 
-		//create union
-		Geometry union = CascadedPolygonUnion.union(Arrays.asList(output));
-
-		//Compute boundary ring (linear ring)
-		Geometry boundary = union.getBoundary();
+		FrameGraph frame_i = stGraph.getFrame(time_point_i);
+		BorderTopology topology = topologies[time_point_i];
 		
-		markBorderCells(frame_i, boundary);
+		if(topology == null || topology.getFrame() != frame_i || !topology.isValid()){
+			topology = new BorderTopology(frame_i);
+			topologies[time_point_i] = topology;
+		}
+		
+		markBorderCells(topology);
 		
-		return boundary;
+		return topology;
 	}
-
+	
+	/**
+	 * Marks the border cells of the topology and sets 
+	 * the frame boundary to its border segments
+	 * 
+	 * @param topology segment topology of a frame
+	 */
+	private void markBorderCells(BorderTopology topology){
+		for(Node n: topology.getBorderCells())
+			n.setBoundary(true);
+		
+		topology.getFrame().setBoundarySegments(topology.getBorderSegments());
+	}
+	
 	/**
 	 * Mark all the nodes that intersect the boundary Geometry
 	 * 
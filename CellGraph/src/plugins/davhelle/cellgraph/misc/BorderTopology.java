@@ -0,0 +1,270 @@
+package plugins.davhelle.cellgraph.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineSegment;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Segment based description of the border of a frame. Every polygon
+ * segment is hashed together with the cells owning it: segments of
+ * the tissue interior are shared by two cells while the segments of
+ * the border have a single owner. A border cell is a cell owning a
+ * border segment or touching one with one of its vertices.<br><br>
+ *
+ * Segments without a second owner are only accepted as border if
+ * no neighboring cell covers them, which keeps the detection correct
+ * for meshes where neighbors do not share the exact same vertices.<br><br>
+ *
+ * Removing the border cells only updates the segments of the removed
+ * cells, so that several layers can be peeled incrementally.
+ *
+ * @author Davide Heller
+ *
+ */
+class BorderTopology {
+
+	/**
+	 * Maximal distance of a segment midpoint to a covering neighbor
+	 */
+	private static final double TOLERANCE = 1e-6;
+
+	private final FrameGraph frame;
+	private final GeometryFactory factory;
+
+	/**
+	 * Cells owning every segment of the frame
+	 */
+	private HashMap<LineSegment, Node[]> segment_owners;
+	/**
+	 * Cells owning every vertex of the frame
+	 */
+	private HashMap<Coordinate, ArrayList<Node>> vertex_owners;
+	/**
+	 * Segments currently on the border
+	 */
+	private LinkedHashSet<LineSegment> border_segments;
+	/**
+	 * Modification count of the frame described
+	 */
+	private int modification_no;
+
+	/**
+	 * Hashes all segments of the frame and detects the border segments
+	 *
+	 * @param frame frame to analyze
+	 */
+	BorderTopology(FrameGraph frame){
+		this.frame = frame;
+		this.factory = new GeometryFactory();
+		this.segment_owners = new HashMap<LineSegment, Node[]>();
+		this.vertex_owners = new HashMap<Coordinate, ArrayList<Node>>();
+		this.border_segments = new LinkedHashSet<LineSegment>();
+
+		for(Node n: frame.vertexSet())
+			for(LineSegment segment: getSegments(n)){
+				Node[] owners = segment_owners.get(segment);
+				if(owners == null)
+					segment_owners.put(segment, new Node[]{n});
+				else{
+					owners = Arrays.copyOf(owners, owners.length + 1);
+					owners[owners.length - 1] = n;
+					segment_owners.put(segment, owners);
+				}
+
+				addVertexOwner(segment.p0, n);
+				addVertexOwner(segment.p1, n);
+			}
+
+		for(LineSegment segment: segment_owners.keySet())
+			if(isBorderSegment(segment))
+				border_segments.add(segment);
+
+		this.modification_no = frame.getModificationNo();
+	}
+
+	private void addVertexOwner(Coordinate vertex, Node n){
+		ArrayList<Node> cells = vertex_owners.get(vertex);
+		if(cells == null){
+			cells = new ArrayList<Node>(3);
+			vertex_owners.put(vertex, cells);
+		}
+		if(!cells.contains(n))
+			cells.add(n);
+	}
+
+	private void removeVertexOwner(Coordinate vertex, Node n){
+		ArrayList<Node> cells = vertex_owners.get(vertex);
+		if(cells != null){
+			cells.remove(n);
+			if(cells.isEmpty())
+				vertex_owners.remove(vertex);
+		}
+	}
+
+	/**
+	 * @param n cell
+	 * @return normalized segments of all rings of the cell
+	 */
+	private ArrayList<LineSegment> getSegments(Node n){
+		ArrayList<LineSegment> segments = new ArrayList<LineSegment>();
+		Geometry geometry = n.getGeometry();
+		for(int i=0; i<geometry.getNumGeometries(); i++){
+			Geometry part = geometry.getGeometryN(i);
+			if(part instanceof Polygon){
+				Polygon polygon = (Polygon)part;
+				addSegments(polygon.getExteriorRing(), segments);
+				for(int j=0; j<polygon.getNumInteriorRing(); j++)
+					addSegments(polygon.getInteriorRingN(j), segments);
+			}
+		}
+		return segments;
+	}
+
+	private void addSegments(LineString ring, ArrayList<LineSegment> segments){
+		Coordinate[] coordinates = ring.getCoordinates();
+		for(int k=0; k<coordinates.length-1; k++){
+			if(coordinates[k].equals2D(coordinates[k+1]))
+				continue;
+			LineSegment segment = new LineSegment(coordinates[k], coordinates[k+1]);
+			segment.normalize();
+			segments.add(segment);
+		}
+	}
+
+	/**
+	 * @param segment hashed segment
+	 * @return true if the segment has a single owner which no neighbor covers
+	 */
+	private boolean isBorderSegment(LineSegment segment){
+		Node[] owners = segment_owners.get(segment);
+		if(owners == null || owners.length != 1)
+			return false;
+
+		Geometry midpoint = factory.createPoint(segment.midPoint());
+		for(Node neighbor: frame.getNeighborsOf(owners[0]))
+			if(neighbor.getGeometry().isWithinDistance(midpoint, TOLERANCE))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * @return segments of the border
+	 */
+	Collection<LineSegment> getBorderSegments(){
+		return border_segments;
+	}
+
+	/**
+	 * @return cells owning or touching a border segment
+	 */
+	Set<Node> getBorderCells(){
+		Set<Node> border_cells = new LinkedHashSet<Node>();
+		for(LineSegment segment: border_segments){
+			border_cells.add(segment_owners.get(segment)[0]);
+			border_cells.addAll(vertex_owners.get(segment.p0));
+			border_cells.addAll(vertex_owners.get(segment.p1));
+		}
+		return border_cells;
+	}
+
+	/**
+	 * Removes cells from the frame and updates the border with
+	 * the segments that were shared with the removed cells
+	 *
+	 * @param cells cells to remove
+	 * @return false if a cell could not be removed from the frame
+	 */
+	boolean removeCells(Collection<Node> cells){
+		boolean removed_all = true;
+
+		//remaining neighbors might own segments that were covered by the removed cells
+		Set<Node> affected = new HashSet<Node>();
+		for(Node n: cells)
+			affected.addAll(frame.getNeighborsOf(n));
+		affected.removeAll(cells);
+
+		Set<LineSegment> candidates = new HashSet<LineSegment>();
+		for(Node n: cells){
+			if(!frame.removeVertex(n))
+				removed_all = false;
+
+			for(LineSegment segment: getSegments(n)){
+				Node[] owners = segment_owners.get(segment);
+				if(owners == null)
+					continue;
+
+				owners = without(owners, n);
+				if(owners.length == 0){
+					segment_owners.remove(segment);
+					border_segments.remove(segment);
+					candidates.remove(segment);
+				}
+				else{
+					segment_owners.put(segment, owners);
+					candidates.add(segment);
+				}
+
+				removeVertexOwner(segment.p0, n);
+				removeVertexOwner(segment.p1, n);
+			}
+		}
+
+		for(Node n: affected)
+			for(LineSegment segment: getSegments(n))
+				candidates.add(segment);
+
+		for(LineSegment segment: candidates)
+			if(!border_segments.contains(segment) && isBorderSegment(segment))
+				border_segments.add(segment);
+
+		//the own removals are already reflected in the segments
+		modification_no = frame.getModificationNo();
+
+		return removed_all;
+	}
+
+	/**
+	 * @param owners cells owning a segment
+	 * @param n cell to remove
+	 * @return owners without n
+	 */
+	private static Node[] without(Node[] owners, Node n){
+		for(int i=0; i<owners.length; i++)
+			if(owners[i] == n){
+				Node[] remaining = new Node[owners.length - 1];
+				System.arraycopy(owners, 0, remaining, 0, i);
+				System.arraycopy(owners, i + 1, remaining, i, owners.length - i - 1);
+				return remaining;
+			}
+		return owners;
+	}
+
+	/**
+	 * @return the frame described
+	 */
+	FrameGraph getFrame(){
+		return frame;
+	}
+
+	/**
+	 * @return true if the frame was not modified since the last update
+	 */
+	boolean isValid(){
+		return frame.getModificationNo() == modification_no;
+	}
+}
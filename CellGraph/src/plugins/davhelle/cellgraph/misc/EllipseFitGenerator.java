@@ -11,9 +11,16 @@ import ij.process.ImageProcessor;
 
 import java.awt.Shape;
 import java.awt.geom.Line2D;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.nodes.Node;
 
@@ -24,12 +31,13 @@ import com.vividsolutions.jts.geom.Geometry;
 /**
  * Generates EllipseFitter for SpatioTemporalGraph Object
  * 
- * Uses ImageJ's 'Fit ellipse' function see source code here:
+ * Follows ImageJ's 'Fit ellipse' function see source code here:
  * ij.process.EllipseFitter
  * 
- * Every cell geometry is transformed to a ImageJ ROI and
- * the ellipseFit is computed for the latter. A map of ellipse
- * fitter objects and nodes is created.
+ * The moments of every cell geometry are computed analytically
+ * with {@link PolygonEllipseFitter}, frames are processed in parallel.
+ * A map of ellipse fitter objects and nodes is created. The original
+ * raster based fit is available through {@link #computeEllipseFit(ImageProcessor, Node)}.
  * 
  * @author Davide Heller
  *
@@ -53,36 +61,85 @@ public class EllipseFitGenerator {
 	}
 	
 	/**
-	 * Constructor that reads the graph to be analyzed and the original image dimensions to
-	 * position the ellipses correctly in imageJ
+	 * Constructor that reads the graph to be analyzed. The analytic fit does not 
+	 * depend on the image dimensions, they are kept for the raster fit signature
 	 * 
 	 * @param stGraph input graph
 	 * @param imgWidth graph input file's width 
 	 * @param imgHeight graph input file's height
+	 * @throws IllegalStateException if the ellipses of a frame could not be fitted
 	 */
 	public EllipseFitGenerator(SpatioTemporalGraph stGraph,int imgWidth,int imgHeight){
 		
 		fittedElipses = new HashMap<Node, EllipseFitter>();
 		sw = new ShapeWriter();
 		
-		//initialize data structure for using imageJs roi functions
-		//TODO missing flexibility for different image formats
-		ImagePlus imp = NewImage.createByteImage(
-				"New image", imgWidth, imgHeight, 1, NewImage.FILL_BLACK);
-		ImageProcessor ip = imp.getProcessor();
+		int thread_no = Math.min(stGraph.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, thread_no));
 		
 		//Compute fitted ellipses for all cells in stGraph
-		for(int i=0; i<stGraph.size(); i++)
-			for(Node n: stGraph.getFrame(i).vertexSet()){
-				EllipseFitter ef = computeEllipseFit(ip, n);
-				fittedElipses.put(n, ef);	
+		try{
+			ArrayList<Future<Map<Node, EllipseFitter>>> pending_frames = 
+					new ArrayList<Future<Map<Node, EllipseFitter>>>();
+			
+			for(int i=0; i<stGraph.size(); i++){
+				final FrameGraph frame_i = stGraph.getFrame(i);
+				pending_frames.add(executor.submit(new Callable<Map<Node, EllipseFitter>>() {
+					@Override
+					public Map<Node, EllipseFitter> call() throws Exception {
+						return computeEllipseFits(frame_i);
+					}
+				}));
 			}
-		
-		imp.close();
+			
+			for(Future<Map<Node, EllipseFitter>> pending_frame: pending_frames){
+				try {
+					fittedElipses.putAll(pending_frame.get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while fitting the ellipses", e);
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Ellipse fitting failed", e.getCause());
+				}
+			}
+		}
+		finally{
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Computes the analytic ellipse fit for all cells of a frame
+	 * 
+	 * @param frame frame to analyze
+	 * @return Ellipse fitting of every cell in the frame
+	 */
+	public static Map<Node, EllipseFitter> computeEllipseFits(FrameGraph frame){
+		Map<Node, EllipseFitter> frame_ellipses = new HashMap<Node, EllipseFitter>();
+		for(Node n: frame.vertexSet()){
+			PolygonEllipseFitter ef = new PolygonEllipseFitter();
+			ef.fit(n.getGeometry());
+			frame_ellipses.put(n, ef);
+		}
+		return frame_ellipses;
+	}
+	
+	/**
+	 * Creates the imageJ processor required by {@link #computeEllipseFit(ImageProcessor, Node)}
+	 * 
+	 * @param imgWidth graph input file's width 
+	 * @param imgHeight graph input file's height
+	 * @return empty byte processor of the image size
+	 */
+	public static ImageProcessor createRasterProcessor(int imgWidth, int imgHeight){
+		//TODO missing flexibility for different image formats
+		ImagePlus imp = NewImage.createByteImage(
+				"New image", imgWidth, imgHeight, 1, NewImage.FILL_BLACK);
+		return imp.getProcessor();
 	}
 	
 	/**
-	 * Computes the ellipsFit for an individual node
+	 * Computes the raster based ellipsFit of ImageJ for an individual node
 	 * 
 	 * @param ip imageJ processor on which the node geometry will be projected
 	 * @param n input node
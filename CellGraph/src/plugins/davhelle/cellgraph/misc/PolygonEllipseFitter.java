@@ -0,0 +1,178 @@
+package plugins.davhelle.cellgraph.misc;
+
+import ij.process.EllipseFitter;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Analytic version of ImageJ's {@link EllipseFitter}. Instead of
+ * rasterizing the cell into a mask, the second order moments are
+ * computed exactly from the polygon vertices using Green's theorem.
+ * The ellipse parameters are then derived with the same formulas as
+ * ImageJ, i.e. major, minor, angle, theta, xCenter and yCenter follow
+ * the same conventions and the ellipse area equals the polygon area.<br><br>
+ *
+ * As for the raster fit, where the cell outline is filled, holes
+ * of the polygon are ignored. The outline fields of ImageJ
+ * (xCoordinates, yCoordinates) are not filled.
+ *
+ * @author Davide Heller
+ *
+ */
+public class PolygonEllipseFitter extends EllipseFitter {
+
+	static final double HALFPI = 1.5707963267949;
+
+	/**
+	 * Moment accumulators: area, first and second order moments
+	 */
+	private double m00, m10, m01, m20, m02, m11;
+
+	/**
+	 * Fits the ellipse to the outline of the polygons contained in the geometry
+	 *
+	 * @param geometry cell geometry
+	 */
+	public void fit(Geometry geometry){
+		m00 = m10 = m01 = m20 = m02 = m11 = 0;
+
+		//moments are accumulated relative to an origin close to the geometry for accuracy
+		Coordinate origin = geometry.getEnvelopeInternal().centre();
+		if(origin == null){
+			major = minor = angle = theta = 0;
+			return;
+		}
+
+		for(int i=0; i<geometry.getNumGeometries(); i++){
+			Geometry part = geometry.getGeometryN(i);
+			if(part instanceof Polygon){
+				Polygon polygon = (Polygon)part;
+				addRing(polygon.getExteriorRing(), origin);
+			}
+		}
+
+		if(m00 <= 0){
+			major = minor = angle = theta = 0;
+			xCenter = origin.x;
+			yCenter = origin.y;
+			return;
+		}
+
+		double xm = m10 / m00;
+		double ym = m01 / m00;
+		double u20 = m20 / m00 - xm * xm;
+		double u02 = m02 / m00 - ym * ym;
+		double u11 = m11 / m00 - xm * ym;
+
+		computeParameters(u20, u02, u11, m00);
+
+		xCenter = origin.x + xm;
+		yCenter = origin.y + ym;
+	}
+
+	/**
+	 * Adds the moments of the area enclosed by the ring
+	 *
+	 * @param ring closed line string
+	 * @param origin reference point for the coordinates
+	 */
+	private void addRing(LineString ring, Coordinate origin){
+		CoordinateSequence sequence = ring.getCoordinateSequence();
+		int n = sequence.size();
+		if(n < 4)
+			return;
+
+		double a = 0, sx = 0, sy = 0, sxx = 0, syy = 0, sxy = 0;
+
+		double x0 = sequence.getX(0) - origin.x;
+		double y0 = sequence.getY(0) - origin.y;
+		for(int i=1; i<n; i++){
+			double x1 = sequence.getX(i) - origin.x;
+			double y1 = sequence.getY(i) - origin.y;
+
+			double cross = x0 * y1 - x1 * y0;
+			a += cross;
+			sx += (x0 + x1) * cross;
+			sy += (y0 + y1) * cross;
+			sxx += (x0 * x0 + x0 * x1 + x1 * x1) * cross;
+			syy += (y0 * y0 + y0 * y1 + y1 * y1) * cross;
+			sxy += (x0 * y1 + 2 * x0 * y0 + 2 * x1 * y1 + x1 * y0) * cross;
+
+			x0 = x1;
+			y0 = y1;
+		}
+
+		//orient the ring contribution independently of the vertex order
+		double sign = a < 0 ? -1 : 1;
+
+		m00 += sign * a / 2;
+		m10 += sign * sx / 6;
+		m01 += sign * sy / 6;
+		m20 += sign * sxx / 12;
+		m02 += sign * syy / 12;
+		m11 += sign * sxy / 24;
+	}
+
+	/**
+	 * Ellipse parameters from the central moments, same
+	 * derivation as in ij.process.EllipseFitter
+	 *
+	 * @param u20 central moment x^2
+	 * @param u02 central moment y^2
+	 * @param u11 central moment xy
+	 * @param area area to which the ellipse is scaled
+	 */
+	private void computeParameters(double u20, double u02, double u11, double area){
+		double m4 = 4.0 * Math.abs(u02 * u20 - u11 * u11);
+		if(m4 < 0.000001)
+			m4 = 0.000001;
+
+		double a11 = u02 / m4;
+		double a12 = u11 / m4;
+		double a22 = u20 / m4;
+
+		double tmp = a11 - a22;
+		if(tmp == 0.0)
+			tmp = 0.000001;
+		theta = Math.atan(2.0 * a12 / tmp) / 2.0;
+		if(theta < 0.0)
+			theta += HALFPI;
+		if(a12 > 0.0)
+			theta += HALFPI;
+		else if(a12 == 0.0){
+			if(a22 > a11){
+				theta = 0.0;
+				tmp = a22;
+				a22 = a11;
+				a11 = tmp;
+			}
+			else if(a11 != a22)
+				theta = HALFPI;
+		}
+
+		tmp = Math.sin(theta);
+		if(tmp == 0.0)
+			tmp = 0.000001;
+		double z = a12 * Math.cos(theta) / tmp;
+		major = Math.sqrt(1.0 / Math.abs(a22 + z));
+		minor = Math.sqrt(1.0 / Math.abs(a11 - z));
+
+		//equalize areas
+		double scale = Math.sqrt(area / (Math.PI * major * minor));
+		major = major * scale * 2.0;
+		minor = minor * scale * 2.0;
+		angle = 180.0 * theta / Math.PI;
+		if(angle == 180.0)
+			angle = 0.0;
+		if(major < minor){
+			tmp = major;
+			major = minor;
+			minor = tmp;
+		}
+	}
+
+}
@@ -1,7 +1,5 @@
 package plugins.davhelle.cellgraph.misc;
 
-import java.util.HashMap;
-
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
@@ -11,7 +9,11 @@ import com.vividsolutions.jts.geom.Geometry;
 /**
  * PolygonalCellTile generates a Tile representation of a 
  * more complex cell geometry. A tile is defined by a minimal
- * set of faces determined by the number of neighbors shared by the cell.
+ * set of faces determined by the number of neighbors shared by the cell.<br><br>
+ * 
+ * The faces are the geometries of the cell's {@link Edge} objects, the tile
+ * only provides a cell centered view on them. Edge geometries missing
+ * in the frame are computed once and stored in the edge.
  * 
  * @author Davide Heller
  *
@@ -19,7 +21,7 @@ import com.vividsolutions.jts.geom.Geometry;
 public class PolygonalCellTile {
 
 	Node source_node;
-	HashMap<Node,Geometry> source_tiles; 
+	FrameGraph frame;
 	
 	/**
 	 * Finds the connecting cell edges to the respective neighbors
@@ -31,38 +33,38 @@ public class PolygonalCellTile {
 	public PolygonalCellTile(Node n){
 		
 		this.source_node = n;
-		this.source_tiles = new HashMap<Node, Geometry>();
+		this.frame = source_node.getBelongingFrame(); 
 		
-		FrameGraph frame = source_node.getBelongingFrame(); 
-		Geometry source_geo = source_node.getGeometry();
-
-		for(Node neighbor: n.getNeighbors()){
-			
-			Edge e = frame.getEdge(source_node, neighbor);
+		for(Edge e: frame.edgesOf(source_node))
+			computeEdgeGeometry(frame, e);
+	}
+	
+	/**
+	 * Computes the geometry of an edge as intersection of its cells 
+	 * unless already present. The length of the geometry becomes the
+	 * edge weight.
+	 * 
+	 * @param frame frame containing the edge
+	 * @param e edge to compute the geometry for
+	 * @return the edge geometry
+	 */
+	public static Geometry computeEdgeGeometry(FrameGraph frame, Edge e){
+		
+		if(!e.hasGeometry()){
+			Geometry source_geo = frame.getEdgeSource(e).getGeometry();
+			Geometry target_geo = frame.getEdgeTarget(e).getGeometry();
+			Geometry intersection = source_geo.intersection(target_geo);
 			
-			if(e.hasGeometry()){
-				source_tiles.put(neighbor, e.getGeometry());
-			}
-			else{
-				Geometry neighbor_geo = neighbor.getGeometry();
-				Geometry intersection = source_geo.intersection(neighbor_geo);
-				
-				source_tiles.put(neighbor, intersection);
-				
-				//updated weighted graph with edge length
-				double intersection_length = intersection.getLength();
-				
-				frame.setEdgeWeight(e, intersection_length);
-				e.setGeometry(intersection);
-			}
-
+			//updated weighted graph with edge length
+			frame.setEdgeWeight(e, intersection.getLength());
+			e.setGeometry(intersection);
 			
-			//int intersection_geometry_no = intersection.getNumGeometries();
 			//intersection length and geometry number can differ 
 			//since an oblique geometry has length 1.41 
 			//versus length 1 of a vertical and horizontal geometry
-		
 		}
+		
+		return e.getGeometry();
 	}
 
 	/**
@@ -71,7 +73,7 @@ public class PolygonalCellTile {
 	 * @return the number of intersections
 	 */
 	public int getTileIntersectionNo(){
-		return source_tiles.size();
+		return frame.degreeOf(source_node);
 	}
 	
 	/**
@@ -82,8 +84,9 @@ public class PolygonalCellTile {
 	 * @return intersection geometry
 	 */
 	public Geometry getTileEdge(Node neighbor){
-		if(source_tiles.containsKey(neighbor))
-			return source_tiles.get(neighbor);
+		if(frame.containsVertex(source_node) && frame.containsVertex(neighbor) && 
+				frame.containsEdge(source_node, neighbor))
+			return computeEdgeGeometry(frame, frame.getEdge(source_node, neighbor));
 		else
 			return null;
 	}
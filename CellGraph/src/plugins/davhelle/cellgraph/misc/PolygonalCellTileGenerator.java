@@ -1,20 +1,86 @@
 package plugins.davhelle.cellgraph.misc;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import plugins.adufour.ezplug.EzPlug;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
 
 /**
- * Class to generate the PolygonalCellTiles for an entire graph at once
+ * Class to generate the PolygonalCellTiles for an entire graph at once.
+ * Frames are processed in parallel, every edge geometry is computed once.
+ * The tiles are cached in the graph (see {@link SpatioTemporalGraph#getTileCache()})
+ * and the tiles of a frame are reused as long as the frame is not modified
+ * (see {@link FrameGraph#getModificationNo()}).
  * 
  * @author Davide Heller
  *
  */
 public class PolygonalCellTileGenerator {
 	
+	/**
+	 * Tiles of every frame together with the state of the frame they describe
+	 */
+	private static class TileCache {
+		
+		private final FrameGraph[] frames;
+		private final int[] modification_nos;
+		private final ArrayList<Map<Node, PolygonalCellTile>> frame_tiles;
+		/**
+		 * Tiles of all frames, null if a frame has been updated since the last merge
+		 */
+		private Map<Node, PolygonalCellTile> tiles;
+		
+		private TileCache(int frame_no){
+			this.frames = new FrameGraph[frame_no];
+			this.modification_nos = new int[frame_no];
+			this.frame_tiles = new ArrayList<Map<Node, PolygonalCellTile>>(frame_no);
+			for(int i=0; i<frame_no; i++)
+				frame_tiles.add(null);
+			this.tiles = null;
+		}
+		
+		/**
+		 * @param stGraph graph described by the cache
+		 * @return frames replaced or modified since their tiles were created
+		 */
+		private ArrayList<Integer> getStaleFrames(SpatioTemporalGraph stGraph){
+			ArrayList<Integer> stale_frames = new ArrayList<Integer>();
+			for(int i=0; i<frames.length; i++){
+				FrameGraph frame_i = stGraph.getFrame(i);
+				if(frames[i] != frame_i || modification_nos[i] != frame_i.getModificationNo())
+					stale_frames.add(i);
+			}
+			return stale_frames;
+		}
+		
+		private void setFrame(int i, FrameGraph frame, int modification_no, 
+				Map<Node, PolygonalCellTile> tiles_i){
+			frames[i] = frame;
+			modification_nos[i] = modification_no;
+			frame_tiles.set(i, tiles_i);
+			tiles = null;
+		}
+		
+		private Map<Node, PolygonalCellTile> getTiles(){
+			if(tiles == null){
+				tiles = new HashMap<Node, PolygonalCellTile>();
+				for(Map<Node, PolygonalCellTile> tiles_i: frame_tiles)
+					tiles.putAll(tiles_i);
+			}
+			return tiles;
+		}
+	}
+	
 	/**
 	 * Static method create polygonal tiles for all cells in the input stGraph. Gives progress back to
 	 * EzPlug GUI using setProgressBarMessage
@@ -22,22 +88,31 @@ public class PolygonalCellTileGenerator {
 	 * @param stGraph input graph
 	 * @param plugin EzPlugin that launches the method
 	 * @return Map of nodes to their polygon tile
+	 * @throws IllegalStateException if the tiles of a frame could not be generated
 	 */
-	public static HashMap<Node, PolygonalCellTile> createPolygonalTiles(SpatioTemporalGraph stGraph, EzPlug plugin) {
+	public static Map<Node, PolygonalCellTile> createPolygonalTiles(SpatioTemporalGraph stGraph, EzPlug plugin) {
 		plugin.getUI().setProgressBarMessage("Identifying tiles...");
 
-		HashMap<Node,PolygonalCellTile> cell_tiles = new HashMap<Node, PolygonalCellTile>();
-		for(int i=0; i < stGraph.size(); i++){
-			plugin.getUI().setProgressBarValue((double)i/stGraph.size());
-			FrameGraph frame = stGraph.getFrame(i);
-			for(Node n: frame.vertexSet()){
-				PolygonalCellTile tile = new PolygonalCellTile(n);
-				cell_tiles.put(n, tile);
+		TileCache cache = getCache(stGraph);
+		ArrayList<Integer> stale_frames = cache.getStaleFrames(stGraph);
+		if(stale_frames.isEmpty())
+			return cache.getTiles();
+		
+		int[] modification_nos = getModificationNos(stGraph, stale_frames);
+		ArrayList<Future<Map<Node, PolygonalCellTile>>> pending_frames = submitFrames(stGraph, stale_frames);
+		try{
+			for(int k=0; k < pending_frames.size(); k++){
+				plugin.getUI().setProgressBarValue((double)k/stale_frames.size());
+				int i = stale_frames.get(k);
+				cache.setFrame(i, stGraph.getFrame(i), modification_nos[k], getFrame(pending_frames.get(k)));
 			}
+		}catch(IllegalStateException e){
+			cancel(pending_frames);
+			throw e;
 		}
 		plugin.getUI().setProgressBarValue(1.0);
-		System.out.println();
-		return cell_tiles;
+		
+		return cache.getTiles();
 	}
 
 	/**
@@ -45,21 +120,134 @@ public class PolygonalCellTileGenerator {
 	 * 
 	 * @param stGraph input graph
 	 * @return Map of nodes to their polygon tile
+	 * @throws IllegalStateException if the tiles of a frame could not be generated
 	 */
-	public static HashMap<Node, PolygonalCellTile> createPolygonalTiles(SpatioTemporalGraph stGraph) {
+	public static Map<Node, PolygonalCellTile> createPolygonalTiles(SpatioTemporalGraph stGraph) {
 		System.out.println("Identifying the tiles..");
-		HashMap<Node,PolygonalCellTile> cell_tiles = new HashMap<Node, PolygonalCellTile>();
-		for(int i=0; i < stGraph.size(); i++){
-			printProgressBar(i, stGraph.size());
-			FrameGraph frame = stGraph.getFrame(i);
-			for(Node n: frame.vertexSet()){
-				PolygonalCellTile tile = new PolygonalCellTile(n);
-				cell_tiles.put(n, tile);
+		
+		TileCache cache = getCache(stGraph);
+		ArrayList<Integer> stale_frames = cache.getStaleFrames(stGraph);
+		if(stale_frames.isEmpty())
+			return cache.getTiles();
+		
+		int[] modification_nos = getModificationNos(stGraph, stale_frames);
+		ArrayList<Future<Map<Node, PolygonalCellTile>>> pending_frames = submitFrames(stGraph, stale_frames);
+		try{
+			for(int k=0; k < pending_frames.size(); k++){
+				printProgressBar(k, stale_frames.size());
+				int i = stale_frames.get(k);
+				cache.setFrame(i, stGraph.getFrame(i), modification_nos[k], getFrame(pending_frames.get(k)));
 			}
+		}catch(IllegalStateException e){
+			cancel(pending_frames);
+			throw e;
 		}
-		printProgressBar(stGraph.size(), stGraph.size());
+		printProgressBar(stale_frames.size(), stale_frames.size());
 		System.out.println();
-		return cell_tiles;
+		
+		return cache.getTiles();
+	}
+	
+	/**
+	 * @param stGraph graph to process
+	 * @return tile cache stored in the graph, a new one if absent or of a different length
+	 */
+	private static TileCache getCache(SpatioTemporalGraph stGraph){
+		Object cache = stGraph.getTileCache();
+		if(cache instanceof TileCache && ((TileCache)cache).frames.length == stGraph.size())
+			return (TileCache)cache;
+		
+		TileCache new_cache = new TileCache(stGraph.size());
+		stGraph.setTileCache(new_cache);
+		return new_cache;
+	}
+	
+	/**
+	 * @param stGraph input graph
+	 * @param frame_ids frames to process
+	 * @return modification count of the frames before their tiles are generated
+	 */
+	private static int[] getModificationNos(SpatioTemporalGraph stGraph, ArrayList<Integer> frame_ids){
+		int[] modification_nos = new int[frame_ids.size()];
+		for(int k=0; k<modification_nos.length; k++)
+			modification_nos[k] = stGraph.getFrame(frame_ids.get(k)).getModificationNo();
+		return modification_nos;
+	}
+	
+	/**
+	 * Submits the tile generation of the frames to a pool with one worker per processor
+	 * 
+	 * @param stGraph input graph
+	 * @param frame_ids frames to process
+	 * @return pending tiles of every frame, in the order of frame_ids
+	 */
+	private static ArrayList<Future<Map<Node, PolygonalCellTile>>> submitFrames(
+			SpatioTemporalGraph stGraph, ArrayList<Integer> frame_ids){
+		
+		int thread_no = Math.min(frame_ids.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, thread_no));
+		
+		ArrayList<Future<Map<Node, PolygonalCellTile>>> pending_frames = 
+				new ArrayList<Future<Map<Node, PolygonalCellTile>>>();
+		for(int i: frame_ids){
+			final FrameGraph frame = stGraph.getFrame(i);
+			pending_frames.add(executor.submit(new Callable<Map<Node, PolygonalCellTile>>() {
+				@Override
+				public Map<Node, PolygonalCellTile> call() throws Exception {
+					return createFrameTiles(frame);
+				}
+			}));
+		}
+		
+		//let the workers finish the submitted frames
+		executor.shutdown();
+		return pending_frames;
+	}
+	
+	/**
+	 * Waits for the tiles of a frame
+	 * 
+	 * @param pending_frame tiles being generated
+	 * @return tiles of the frame
+	 * @throws IllegalStateException if the generation failed or was interrupted
+	 */
+	private static Map<Node, PolygonalCellTile> getFrame(
+			Future<Map<Node, PolygonalCellTile>> pending_frame){
+		try {
+			return pending_frame.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while identifying the tiles", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Tile generation failed", e.getCause());
+		}
+	}
+	
+	/**
+	 * Stops the generation of the frames not yet added
+	 * 
+	 * @param pending_frames tiles being generated
+	 */
+	private static void cancel(ArrayList<Future<Map<Node, PolygonalCellTile>>> pending_frames){
+		for(Future<Map<Node, PolygonalCellTile>> pending_frame: pending_frames)
+			pending_frame.cancel(true);
+	}
+	
+	/**
+	 * Computes the missing edge geometries of a frame, 
+	 * each one once, and creates the tiles of its cells
+	 * 
+	 * @param frame frame to process
+	 * @return Map of the frame's nodes to their polygon tile
+	 */
+	public static Map<Node, PolygonalCellTile> createFrameTiles(FrameGraph frame){
+		for(Edge e: frame.edgeSet())
+			PolygonalCellTile.computeEdgeGeometry(frame, e);
+		
+		Map<Node,PolygonalCellTile> frame_tiles = new HashMap<Node, PolygonalCellTile>();
+		for(Node n: frame.vertexSet())
+			frame_tiles.put(n, new PolygonalCellTile(n));
+		return frame_tiles;
 	}
 	
 	
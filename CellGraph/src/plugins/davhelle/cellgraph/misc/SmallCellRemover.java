@@ -96,14 +96,20 @@ public class SmallCellRemover {
 					if(max_length_candidate != null){
 						
 						//neighbor gains all neighbors of to_small_cell not yet connected and so do those
+						ArrayList<Edge> new_edges = new ArrayList<Edge>();
 						for(Node neighbor: cell.getNeighbors())
 							if(neighbor != max_length_candidate && !max_length_candidate.getNeighbors().contains(neighbor)){
 								Edge newEdge = frame.addEdge(max_length_candidate, neighbor);
 								newEdge.setFrame(frame);
+								new_edges.add(newEdge);
 							}
 
-						//max_area_candidate obtains union with to_small_cell as new area
+						//max_area_candidate obtains union with to_small_cell as new area,
+						//this also updates the geometry and weight of its existing edges
 						max_length_candidate.setGeometry(max_length_candidate.getGeometry().union(small_cell_geom));
+						
+						for(Edge newEdge: new_edges)
+							PolygonalCellTile.computeEdgeGeometry(frame, newEdge);
 
 					}
 				}
@@ -2,7 +2,7 @@ package plugins.davhelle.cellgraph.misc;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Map;
 
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
@@ -207,7 +207,7 @@ public class T1Transition {
 	 * 
 	 * @param cell_tiles
 	 */
-	public void findSideGain(HashMap<Node, PolygonalCellTile> cell_tiles) {
+	public void findSideGain(Map<Node, PolygonalCellTile> cell_tiles) {
 		
 		FrameGraph previous_frame = stGraph.getFrame(detectionTimePoint - 1);
 		
@@ -6,7 +6,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.nodes.Node;
 
@@ -18,10 +24,15 @@ import com.vividsolutions.jts.triangulate.VoronoiDiagramBuilder;
 
 /**
  * Generates a voronoi tesselation from the centroids of all cells in a frame.
- * Computes the difference between the voronoi cell area and the original cell area.
+ * Computes the difference between the voronoi cell area and the original cell area.<br><br>
+ *
+ * Based on the JTS VoronoiDiagramBuilder. Every voronoi polygon carries its
+ * site coordinate as user data, which is used to map the polygon back to the
+ * cell. Frames are computed in parallel and the resulting tesselation is stored
+ * in the graph (see {@link SpatioTemporalGraph#getVoronoiTesselation()}) so that
+ * later requests reuse it as long as the cells of the graph and their centroids
+ * do not change.
  *
- * Based on the JTS VoronoiDiagramBuilder.
- * 
  * @author Davide Heller
  *
  */
@@ -29,61 +40,174 @@ public class VoronoiGenerator {
 
 	private Map<Node, Geometry> nodeVoronoiMap;
 	private Map<Node, Double> areaDifferenceMap;
-	
+
 	/**
 	 * @param stGraph graph for which to compute the voronoi tesselation
 	 * @param sequence image connected to the stGraph
 	 */
 	public VoronoiGenerator(SpatioTemporalGraph stGraph, Sequence sequence) {
-		
-		this.nodeVoronoiMap = new HashMap<Node,Geometry>();
+		this(stGraph, sequence.getWidth(), sequence.getHeight());
+	}
+
+	/**
+	 * @param stGraph graph for which to compute the voronoi tesselation
+	 * @param width width of the image connected to the stGraph
+	 * @param height height of the image connected to the stGraph
+	 */
+	public VoronoiGenerator(SpatioTemporalGraph stGraph, int width, int height) {
+
+		if(isCached(stGraph))
+			this.nodeVoronoiMap = stGraph.getVoronoiTesselation();
+		else{
+			//only complete tesselations are stored, failures propagate
+			this.nodeVoronoiMap = computeTesselation(stGraph, new Envelope(0, width, 0, height));
+			stGraph.setVoronoiTesselation(nodeVoronoiMap);
+		}
+
+		//Compute area difference between polygonal cell and voronoi cell
 		this.areaDifferenceMap = new HashMap<Node, Double>();
-		
-		System.out.println(sequence.getWidth() + "," + sequence.getHeight());
-		
-		//for every frame
+		for(Map.Entry<Node, Geometry> entry: nodeVoronoiMap.entrySet()){
+			double cell_area = entry.getKey().getGeometry().getArea();
+			double voronoi_area = entry.getValue().getArea();
+			areaDifferenceMap.put(entry.getKey(), cell_area - voronoi_area);
+		}
+	}
+
+	/**
+	 * A stored tesselation is valid if it covers exactly the cells
+	 * currently contained in the graph and every tile was built from
+	 * the current centroid of its cell, i.e. geometry changes through
+	 * {@link Node#setGeometry(Geometry)} invalidate the tesselation
+	 *
+	 * @param stGraph graph to check
+	 * @return true if the graph holds a valid voronoi tesselation
+	 */
+	private static boolean isCached(SpatioTemporalGraph stGraph){
+		if(!stGraph.hasVoronoi())
+			return false;
+
+		Map<Node, Geometry> tesselation = stGraph.getVoronoiTesselation();
+		if(tesselation == null)
+			return false;
+
+		int cell_no = 0;
 		for(int i=0; i<stGraph.size(); i++){
-			
-			//Set up JTS Voronoi diagram builder
-			VoronoiDiagramBuilder vdb = new VoronoiDiagramBuilder();
-			vdb.setClipEnvelope(new Envelope(0, sequence.getWidth(), 0, sequence.getHeight()));
-			Collection<Coordinate> coords = new ArrayList<Coordinate>();
-
-			for(Node cell: stGraph.getFrame(i).vertexSet())
-				coords.add(cell.getCentroid().getCoordinate());
-			
-			//set voronoi diagram sites with cell center coordinates
-			vdb.setSites(coords);
-			
-			Geometry voronoiDiagram = vdb.getDiagram(new GeometryFactory());
-			
-			//find mapping between voronoi_polygons and cell_centers
-			for(int j=0; j<voronoiDiagram.getNumGeometries(); j++){
-					Geometry voroniPolygon = voronoiDiagram.getGeometryN(j);
-					for(Node cell: stGraph.getFrame(i).vertexSet()){
-						if(voroniPolygon.contains(cell.getCentroid())){
-							nodeVoronoiMap.put(cell, voroniPolygon);		
-							
-							//Compute area differnce between polygonal cell and area
-							double cell_area = cell.getGeometry().getArea();
-							double voronoi_area = voroniPolygon.getArea();
-							double area_difference = cell_area - voronoi_area;
-							
-							areaDifferenceMap.put(cell, area_difference);
-						}
-						
+			FrameGraph frame_i = stGraph.getFrame(i);
+			for(Node cell: frame_i.vertexSet()){
+				Geometry tile = tesselation.get(cell);
+				if(tile == null)
+					return false;
+
+				//tiles carry the site they were computed from
+				Object site = tile.getUserData();
+				if(!(site instanceof Coordinate) ||
+						!((Coordinate)site).equals2D(cell.getCentroid().getCoordinate()))
+					return false;
+			}
+			cell_no += frame_i.vertexSet().size();
+		}
+
+		return cell_no == tesselation.size();
+	}
+
+	/**
+	 * Computes the tesselation of all frames using one worker per processor
+	 *
+	 * @param stGraph graph to analyze
+	 * @param clip_envelope image extent to which the diagram is clipped
+	 * @return voronoi tile of every cell
+	 * @throws IllegalStateException if the tesselation of a frame failed
+	 */
+	private static Map<Node, Geometry> computeTesselation(
+			SpatioTemporalGraph stGraph, final Envelope clip_envelope){
+
+		Map<Node, Geometry> tesselation = new HashMap<Node, Geometry>();
+
+		int thread_no = Math.min(stGraph.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, thread_no));
+
+		try{
+			ArrayList<Future<Map<Node, Geometry>>> pending_frames =
+					new ArrayList<Future<Map<Node, Geometry>>>();
+
+			for(int i=0; i<stGraph.size(); i++){
+				final FrameGraph frame_i = stGraph.getFrame(i);
+				pending_frames.add(executor.submit(new Callable<Map<Node, Geometry>>() {
+					@Override
+					public Map<Node, Geometry> call() throws Exception {
+						return computeFrame(frame_i, clip_envelope);
 					}
+				}));
+			}
+
+			for(Future<Map<Node, Geometry>> pending_frame: pending_frames){
+				try {
+					tesselation.putAll(pending_frame.get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while computing the voronoi tesselation", e);
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Voronoi tesselation failed", e.getCause());
+				}
 			}
 		}
+		finally{
+			executor.shutdownNow();
+		}
+
+		return tesselation;
+	}
+
+	/**
+	 * Computes the voronoi tesselation of a single frame
+	 *
+	 * @param frame frame to analyze
+	 * @param clip_envelope image extent to which the diagram is clipped
+	 * @return voronoi tile of every cell of the frame
+	 */
+	static Map<Node, Geometry> computeFrame(FrameGraph frame, Envelope clip_envelope){
+
+		//Set up JTS Voronoi diagram builder
+		VoronoiDiagramBuilder vdb = new VoronoiDiagramBuilder();
+		vdb.setClipEnvelope(clip_envelope);
+		Collection<Coordinate> coords = new ArrayList<Coordinate>();
+
+		//cells sharing the same centroid share the same voronoi site
+		Map<Coordinate, ArrayList<Node>> site_cells = new HashMap<Coordinate, ArrayList<Node>>();
+		for(Node cell: frame.vertexSet()){
+			Coordinate centroid = cell.getCentroid().getCoordinate();
+			coords.add(centroid);
+
+			if(!site_cells.containsKey(centroid))
+				site_cells.put(centroid, new ArrayList<Node>(1));
+			site_cells.get(centroid).add(cell);
+		}
+
+		//set voronoi diagram sites with cell center coordinates
+		vdb.setSites(coords);
+
+		Geometry voronoiDiagram = vdb.getDiagram(new GeometryFactory());
+
+		//map voronoi polygons to cells through their site coordinate
+		Map<Node, Geometry> frame_tesselation = new HashMap<Node, Geometry>();
+		for(int j=0; j<voronoiDiagram.getNumGeometries(); j++){
+			Geometry voronoiPolygon = voronoiDiagram.getGeometryN(j);
+			ArrayList<Node> cells = site_cells.get(voronoiPolygon.getUserData());
+			if(cells != null)
+				for(Node cell: cells)
+					frame_tesselation.put(cell, voronoiPolygon);
+		}
+
+		return frame_tesselation;
 	}
-	
+
 	/**
 	 * @return Voronoi tesselation map
 	 */
 	public Map<Node,Geometry> getNodeVoroniMapping(){
 		return nodeVoronoiMap;
 	}
-	
+
 	/**
 	 * @return Area difference map between the voronoi tesselation and the actual cell area
 	 */
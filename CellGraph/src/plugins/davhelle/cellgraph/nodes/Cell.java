@@ -165,7 +165,12 @@ public class Cell implements Node {
 
 	@Override
 	public void setTrackID(int tracking_id) {
+		int old_track_id = this.track_id;
 		this.track_id = tracking_id;
+		
+		//keep the tracking id lookup of the frame up to date
+		if(parent != null)
+			parent.updateTrackID(this, old_track_id);
 	}
 
 	@Override
@@ -196,6 +201,9 @@ public class Cell implements Node {
 	public void setBoundary(boolean onBoundary) {
 		this.is_on_boundary = onBoundary;
 		
+		//the feature table of the frame holds the old flag
+		if(parent != null)
+			parent.invalidateFeatures();
 	}
 
 	@Override
@@ -283,6 +291,12 @@ public class Cell implements Node {
 		//update centroid information as well
 		this.centroid = geometry.getCentroid();
 		
+		//the spatial lookup, features and edges of the frame refer to the old geometry
+		if(parent != null){
+			parent.invalidateSpatialIndex();
+			parent.invalidateFeatures();
+			parent.updateEdgeGeometries(this);
+		}
 	}
 
 	@Override
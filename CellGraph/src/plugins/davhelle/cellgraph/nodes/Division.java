@@ -122,6 +122,29 @@ public class Division {
 		
 	}
 	
+	/**
+	 * Restores a stored division, e.g. from a session file. Neither the
+	 * participating nodes nor the division frame are modified.
+	 * 
+	 * @param mother node dividing
+	 * @param child1 first children node
+	 * @param child2 second children node
+	 * @param division_frame frame in which the children appear
+	 */
+	public Division(Node mother, Node child1, Node child2, FrameGraph division_frame) {
+		
+		this.mother = mother;
+		this.child1 = child1;
+		this.child2 = child2;
+		this.division_frame = division_frame;
+		this.time_point = division_frame.getFrameNo();
+		
+		divisionOrientation = 0.0;
+		longestMotherAxisOrientation = 0.0;
+		newJunctionOrientation = 0.0;
+		planeGeometry = null;
+	}
+	
 	/**
 	 * Define division assuming that child track-IDs have already been 
 	 * set and the entire graph has been tracked.
@@ -46,6 +46,18 @@ public class Elimination {
 		}
 	}
 	
+	/**
+	 * Restores a stored elimination, e.g. from a session file.
+	 * Neither the cell nor its frame are modified.
+	 * 
+	 * @param eliminated_cell last reference to the cell that is eliminated
+	 * @param time_point time point at which the cell was last seen
+	 */
+	public Elimination(Node eliminated_cell, int time_point){
+		this.cell = eliminated_cell;
+		this.time_point = time_point;
+	}
+	
 	/**
 	 * @return the last occurrence of the cell
 	 */
@@ -0,0 +1,177 @@
+package plugins.davhelle.cellgraph.nodes;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Cell whose temporal links (first, previous and next) are stored as
+ * (frame number, cell index) handles and resolved through a
+ * {@link Resolver} at every access. Cells of different frames do
+ * therefore not reference each other, which allows a graph to
+ * release frames that are not in use, see
+ * {@link plugins.davhelle.cellgraph.io.LazySessionGraph}.<br><br>
+ *
+ * The cell index is the position of the cell in the fixed cell order
+ * of its frame kept by the resolver, e.g. the order of a session file.
+ * Unlike tracking ids it identifies a single cell. Nodes that the
+ * resolver cannot address are linked as in {@link Cell}.
+ *
+ * @author Davide Heller
+ *
+ */
+public class HandleCell extends Cell {
+
+	/**
+	 * Fixed cell order of the frames of a graph
+	 */
+	public interface Resolver {
+
+		/**
+		 * @param frame_no frame number
+		 * @param index cell index within the frame
+		 * @return cell at the index, null if absent
+		 */
+		Node getCell(int frame_no, int index);
+
+		/**
+		 * @param n node to address
+		 * @return index of the node within its frame, -1 if it cannot be addressed
+		 */
+		int indexOf(Node n);
+	}
+
+	/**
+	 * Frame number of unset handles
+	 */
+	private static final int NO_HANDLE = -1;
+
+	/**
+	 * Cell order through which the handles are resolved
+	 */
+	private final Resolver resolver;
+
+	private int first_frame;
+	private int first_index;
+	private int previous_frame;
+	private int previous_index;
+	private int next_frame;
+	private int next_index;
+
+	/**
+	 * @param cell_polygon JTS geometry representing the cell
+	 * @param parent FrameGraph containing the node
+	 * @param resolver cell order through which the temporal links are resolved
+	 */
+	public HandleCell(Polygon cell_polygon, FrameGraph parent, Resolver resolver) {
+		super(cell_polygon, parent);
+		this.resolver = resolver;
+		this.first_frame = NO_HANDLE;
+		this.previous_frame = NO_HANDLE;
+		this.next_frame = NO_HANDLE;
+	}
+
+	/**
+	 * @param frame_no frame of the first occurrence, -1 to unset
+	 * @param index cell index of the first occurrence
+	 */
+	public void setFirstHandle(int frame_no, int index){
+		super.setFirst(null);
+		first_frame = frame_no;
+		first_index = index;
+	}
+
+	/**
+	 * @param frame_no frame of the previous occurrence, -1 to unset
+	 * @param index cell index of the previous occurrence
+	 */
+	public void setPreviousHandle(int frame_no, int index){
+		super.setPrevious(null);
+		previous_frame = frame_no;
+		previous_index = index;
+	}
+
+	/**
+	 * @param frame_no frame of the next occurrence, -1 to unset
+	 * @param index cell index of the next occurrence
+	 */
+	public void setNextHandle(int frame_no, int index){
+		super.setNext(null);
+		next_frame = frame_no;
+		next_index = index;
+	}
+
+	@Override
+	public Node getFirst() {
+		if(first_frame == NO_HANDLE)
+			return super.getFirst();
+		return resolver.getCell(first_frame, first_index);
+	}
+
+	@Override
+	public void setFirst(Node first) {
+		int index = indexOf(first);
+		if(index != -1)
+			setFirstHandle(first.getFrameNo(), index);
+		else{
+			first_frame = NO_HANDLE;
+			super.setFirst(first);
+		}
+	}
+
+	@Override
+	public Node getPrevious() {
+		if(previous_frame == NO_HANDLE)
+			return super.getPrevious();
+		return resolver.getCell(previous_frame, previous_index);
+	}
+
+	@Override
+	public void setPrevious(Node last_node) {
+		int index = indexOf(last_node);
+		if(index != -1)
+			setPreviousHandle(last_node.getFrameNo(), index);
+		else{
+			previous_frame = NO_HANDLE;
+			super.setPrevious(last_node);
+		}
+	}
+
+	@Override
+	public boolean hasPrevious() {
+		return previous_frame != NO_HANDLE || super.hasPrevious();
+	}
+
+	@Override
+	public Node getNext() {
+		if(next_frame == NO_HANDLE)
+			return super.getNext();
+		return resolver.getCell(next_frame, next_index);
+	}
+
+	@Override
+	public void setNext(Node next_node) {
+		int index = indexOf(next_node);
+		if(index != -1)
+			setNextHandle(next_node.getFrameNo(), index);
+		else{
+			next_frame = NO_HANDLE;
+			super.setNext(next_node);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next_frame != NO_HANDLE || super.hasNext();
+	}
+
+	/**
+	 * @param n node to link
+	 * @return cell index of the node, -1 if it has to be linked by reference
+	 */
+	private int indexOf(Node n){
+		if(n == null || n.getBelongingFrame() == null)
+			return -1;
+		return resolver.indexOf(n);
+	}
+}
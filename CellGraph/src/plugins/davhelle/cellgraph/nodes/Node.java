@@ -57,7 +57,8 @@ public interface Node{
 	
 	/**
 	 * Assign a tracking id to the node after tracking
-	 * in time.
+	 * in time. Implementations notify the belonging frame
+	 * through {@link FrameGraph#updateTrackID(Node, int)}.
 	 * 
 	 * @param tracking_id
 	 */
@@ -6,9 +6,11 @@ import java.awt.Graphics2D;
 import java.awt.geom.Line2D;
 
 import jxl.write.WritableSheet;
+import plugins.davhelle.cellgraph.graphs.CellFeature;
+import plugins.davhelle.cellgraph.graphs.CellFeatureTable;
+import plugins.davhelle.cellgraph.graphs.CellFeatures;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
-import plugins.davhelle.cellgraph.nodes.Node;
 
 /**
  * Overlay to highlight the area of cells in a gradient fashion  
@@ -37,22 +39,16 @@ public class AreaGradientOverlay extends StGraphOverlay{
 		super("Cell area",spatioTemporalGraph);
 	
 		//define the gradient color scheme
-		double min_area = Double.MAX_VALUE;
-		double max_area = Double.MIN_VALUE;
+		CellFeatureTable features = new CellFeatureTable(stGraph);
+		double max = features.getMaximum(CellFeature.AREA);
+		double min = features.getMinimum(CellFeature.AREA);
 		
-		for(int i=0; i < stGraph.size(); i++){
-			for(Node node: stGraph.getFrame(i).vertexSet()){
-				double node_area = node.getGeometry().getArea();
-				if( node_area > max_area)
-					max_area = node_area;
-				if( node_area < min_area)
-					min_area = node_area;
-			}
+		//keep the default range if the graph has no cells
+		if(!Double.isNaN(max)){
+			super.setGradientMaximum(max);
+			super.setGradientMinimum(min);
 		}
 		
-		super.setGradientMaximum(max_area);
-		super.setGradientMinimum(min_area);
-		
 		//default blue -> red color scheme
 		super.setGradientScale(0.5);
 		super.setGradientShift(0.5);
@@ -62,13 +58,14 @@ public class AreaGradientOverlay extends StGraphOverlay{
 
 	@Override
 	public void paintFrame(Graphics2D g, FrameGraph frame_i) {
-		for(Node cell: frame_i.vertexSet()){
+		CellFeatures features = frame_i.getFeatures();
+		for(int k=0; k<features.size(); k++){
 			
-			double cell_area = cell.getGeometry().getArea();
+			double cell_area = features.getArea(k);
 			
 			g.setColor(super.getScaledColor(cell_area));
 			
-			g.fill((cell.toShape()));
+			g.fill((features.getNode(k).toShape()));
 		}
 	}
 
@@ -78,11 +75,10 @@ public class AreaGradientOverlay extends StGraphOverlay{
 		XLSUtil.setCellString(sheet, 0, 0, "Cell id");
 		XLSUtil.setCellString(sheet, 1, 0, "Cell area");
 
-		int row_no = 1;
-		for(Node node: frame.vertexSet()){
-			XLSUtil.setCellNumber(sheet, 0, row_no, node.getTrackID());
-			XLSUtil.setCellNumber(sheet, 1, row_no, node.getGeometry().getArea());
-			row_no++;
+		CellFeatures features = frame.getFeatures();
+		for(int k=0; k<features.size(); k++){
+			XLSUtil.setCellNumber(sheet, 0, k + 1, features.getTrackID(k));
+			XLSUtil.setCellNumber(sheet, 1, k + 1, features.getArea(k));
 		}
 	}
 
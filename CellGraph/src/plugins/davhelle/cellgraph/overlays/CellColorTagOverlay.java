@@ -6,7 +6,6 @@ import icy.gui.dialog.OpenDialog;
 import icy.gui.dialog.SaveDialog;
 import icy.gui.frame.progress.AnnounceFrame;
 import icy.roi.ROI;
-import icy.roi.ROIUtil;
 import icy.sequence.Sequence;
 import icy.system.IcyExceptionHandler;
 import icy.util.XLSUtil;
@@ -49,15 +48,13 @@ import plugins.adufour.ezplug.EzVarListener;
 import plugins.davhelle.cellgraph.export.BigXlsExporter;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
-import plugins.davhelle.cellgraph.io.IntensityReader;
+import plugins.davhelle.cellgraph.io.BatchIntensityReader;
 import plugins.davhelle.cellgraph.io.IntensitySummaryType;
-import plugins.davhelle.cellgraph.overlays.EdgeOrientationOverlay;
+import plugins.davhelle.cellgraph.io.NanMaskCache;
 import plugins.davhelle.cellgraph.misc.CellColor;
-import plugins.davhelle.cellgraph.misc.ShapeRoi;
 import plugins.davhelle.cellgraph.misc.JxlUtils;
 import plugins.davhelle.cellgraph.nodes.Division;
 import plugins.davhelle.cellgraph.nodes.Node;
-import plugins.kernel.roi.roi2d.ROI2DArea;
 
 import com.vividsolutions.jts.awt.ShapeWriter;
 import com.vividsolutions.jts.geom.Coordinate;
@@ -83,10 +80,6 @@ public class CellColorTagOverlay extends StGraphOverlay implements EzVarListener
 	private static final String CONVERT_ROI = "Convert ROI";
 	private static final String ERASE_TAGS = "Erase tags";
 	private static final String IMPORT_FILE = "Import File";
-	/**
-	 * JTS Geometry factory convert mouse clicks in JTS Points
-	 */
-	private GeometryFactory factory;
 	/**
 	 * GUI handle of the color selection
 	 */
@@ -116,7 +109,10 @@ public class CellColorTagOverlay extends StGraphOverlay implements EzVarListener
 	private EzVarBoolean showIntensity;
 	private EzVarEnum<IntensitySummaryType> summary_type;
 	private HashMap<Node,Shape> cell_rings;
-	private ROI2DArea[] nanAreaRoi;
+	/**
+	 * Ring geometries used for the intensity measurement
+	 */
+	private HashMap<Node,Geometry> cell_ring_geometries;
 	
 	/**
 	 * Description string for GUI use
@@ -147,13 +143,13 @@ public class CellColorTagOverlay extends StGraphOverlay implements EzVarListener
 			EzVarEnum<IntensitySummaryType> varIntensitySummaryType,
 			EzVarInteger varIntensityChannel) {
 		super("Cell Color Tag",stGraph);
-		this.factory = new GeometryFactory();
 		this.tag_color = varCellColor;
 		this.writer = new ShapeWriter();
 		this.sequence = sequence;
 		this.drawColorTag = drawColorTag;
 		
 		this.cell_rings = new HashMap<Node, Shape>();
+		this.cell_ring_geometries = new HashMap<Node, Geometry>();
 		this.showIntensity = varShowIntensity; 
 		this.bufferWidth = varBufferWidth;
 		this.bufferWidth.addVarChangeListener(this);
@@ -168,8 +164,6 @@ public class CellColorTagOverlay extends StGraphOverlay implements EzVarListener
 			}
 		}
 		
-		this.nanAreaRoi = new ROI2DArea[stGraph.size()];
-		
 	}
 	
 	@Override
@@ -178,28 +172,27 @@ public class CellColorTagOverlay extends StGraphOverlay implements EzVarListener
 		
 		if(time_point < stGraph.size()){
 			
-			//create point Geometry
+			//click position
 			Coordinate point_coor = new Coordinate(imagePoint.getX(), imagePoint.getY());
-			Point point_geometry = factory.createPoint(point_coor);			
 			
 			FrameGraph frame_i = stGraph.getFrame(time_point);
-			for(Node cell: frame_i.vertexSet())
-			 	if(cell.getGeometry().contains(point_geometry)){
-			 		tags_exist = true;
-			 		
-			 		Color new_tag = tag_color.getValue().getColor();
+			Node cell = frame_i.findCellAt(point_coor.x, point_coor.y);
+			if(cell != null){
+				tags_exist = true;
+				
+				Color new_tag = tag_color.getValue().getColor();
 
-			 		if(cell.hasColorTag()){
-			 			Color current_tag = cell.getColorTag();
-			 			if(current_tag == new_tag)
-			 				propagateTag(cell,null);
-			 			else
-			 				propagateTag(cell,new_tag);
-			 		} else 
-			 			propagateTag(cell,new_tag);
-			 		
-			 		painterChanged();
-			 	}
+				if(cell.hasColorTag()){
+					Color current_tag = cell.getColorTag();
+					if(current_tag == new_tag)
+						propagateTag(cell,null);
+					else
+						propagateTag(cell,new_tag);
+				} else 
+					propagateTag(cell,new_tag);
+				
+				painterChanged();
+			}
 			
 		}
 
@@ -242,6 +235,7 @@ public class CellColorTagOverlay extends StGraphOverlay implements EzVarListener
 		Geometry final_geo = buffer_geo.difference(reduced_geo);
 		Shape buffer_shape = writer.toShape(final_geo);
 		this.cell_rings.put(n, buffer_shape);
+		this.cell_ring_geometries.put(n, final_geo);
 	}
 	
 	@Override
@@ -274,10 +268,6 @@ public class CellColorTagOverlay extends StGraphOverlay implements EzVarListener
 			if(showIntensity.getValue()){
 				try {
 					
-					for(int i=0; i < stGraph.size(); i++)
-						this.nanAreaRoi[i] = EdgeOrientationOverlay.computeNanAreaROI(
-								sequence,i,0,channelNumber.getValue());
-					
 					String file_name = SaveDialog.chooseFile(
 							"Choose save location","/Users/davide/",
 							"test_file", XLSUtil.FILE_DOT_EXTENSION);
@@ -518,30 +508,25 @@ public class CellColorTagOverlay extends StGraphOverlay implements EzVarListener
 	
 	private double getCellIntensity(Node node) {
 		
-		assert(cell_rings.containsKey(node));
+		assert(cell_ring_geometries.containsKey(node));
 		
-		Shape cell_shape = cell_rings.get(node);
-
 		int z=0;
 		int t=node.getFrameNo();
 		int c=channelNumber.getValue();
 		
-		ROI cell_roi_wo_nan = null;
-		try{
-			ShapeRoi cell_roi = new ShapeRoi(cell_shape);
-			cell_roi_wo_nan = ROIUtil.subtract(cell_roi, nanAreaRoi[t]);
-		}catch(Exception ex){
+		//pixels without signal are excluded
+		BatchIntensityReader reader = new BatchIntensityReader(
+				sequence.getWidth(), sequence.getHeight());
+		int label = reader.addGeometry(cell_ring_geometries.get(node));
+		reader.setTopPercent(summary_type.getValue().getTopPercent());
+		reader.measure(sequence, z, t, c, NanMaskCache.getMask(sequence, t, z, c));
+		
+		double mean_intensity = reader.getIntensity(label, summary_type.getValue());
+		if(mean_intensity == BatchIntensityReader.NO_READOUT){
 			Point centroid = node.getGeometry().getCentroid();
 			System.out.printf("Problems at %.2f %.2f",centroid.getX(),centroid.getY());
-			return -1.0;
 		}
 		
-		//TODO possibly use getIntensityInfo here
-		
-		double mean_intensity = 
-				IntensityReader.measureRoiIntensity(
-						sequence, cell_roi_wo_nan, z, t, c, summary_type.getValue());
-		
 		return mean_intensity;
 	}
 
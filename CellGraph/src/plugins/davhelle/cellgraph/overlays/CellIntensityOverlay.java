@@ -1,7 +1,5 @@
 package plugins.davhelle.cellgraph.overlays;
 
-import icy.roi.ROI;
-import icy.roi.ROIUtil;
 import icy.sequence.Sequence;
 import icy.util.XLSUtil;
 
@@ -9,6 +7,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.awt.geom.Line2D;
+import java.util.BitSet;
 import java.util.HashMap;
 
 import jxl.write.WritableSheet;
@@ -19,15 +18,13 @@ import plugins.adufour.ezplug.EzVarInteger;
 import plugins.adufour.ezplug.EzVarListener;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
-import plugins.davhelle.cellgraph.io.IntensityReader;
+import plugins.davhelle.cellgraph.io.BatchIntensityReader;
 import plugins.davhelle.cellgraph.io.IntensitySummaryType;
-import plugins.davhelle.cellgraph.misc.ShapeRoi;
+import plugins.davhelle.cellgraph.io.NanMaskCache;
 import plugins.davhelle.cellgraph.nodes.Node;
-import plugins.kernel.roi.roi2d.ROI2DArea;
 
 import com.vividsolutions.jts.awt.ShapeWriter;
 import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.geom.Point;
 
 /**
  * Overlay to measure the junction intensity for each cell.
@@ -73,7 +70,10 @@ public class CellIntensityOverlay extends StGraphOverlay implements EzVarListene
 	private EzVarInteger channelNumber;
 	private EzVarEnum<IntensitySummaryType> summary_type;
 	private HashMap<Node,Shape> cell_rings;
-	private ROI2DArea[] nanAreaRoi;
+	/**
+	 * Ring geometries used for the intensity measurement
+	 */
+	private HashMap<Node,Geometry> cell_ring_geometries;
 
 	private int totalCellNumber;
 	
@@ -93,7 +93,7 @@ public class CellIntensityOverlay extends StGraphOverlay implements EzVarListene
 		this.bufferWidth.addVarChangeListener(this);
 		this.channelNumber = varIntensityChannel;
 		this.summary_type = varIntensitySummaryType;
-		this.nanAreaRoi = new ROI2DArea[stGraph.size()];
+		this.cell_ring_geometries = new HashMap<Node, Geometry>();
 		
 		totalCellNumber = 0;
 		for(int i=0; i<stGraph.size(); i++)
@@ -121,35 +121,39 @@ public class CellIntensityOverlay extends StGraphOverlay implements EzVarListene
 		Geometry final_geo = buffer_geo.difference(reduced_geo);
 		Shape buffer_shape = writer.toShape(final_geo);
 		this.cell_rings.put(n, buffer_shape);
+		this.cell_ring_geometries.put(n, final_geo);
 	}
 	
-	private double getCellIntensity(Node node) {
-		
-		assert(cell_rings.containsKey(node));
+	/**
+	 * Measures the ring intensity of all cells in the frame with a single
+	 * pass over the image. Pixels without signal (i.e. not above 0) are excluded.
+	 * 
+	 * @param frame frame to measure
+	 * @return intensity of every cell
+	 */
+	private HashMap<Node, Double> computeFrameIntensities(FrameGraph frame) {
 		
-		Shape cell_shape = cell_rings.get(node);
-
 		int z=0;
-		int t=node.getFrameNo();
+		int t=frame.getFrameNo();
 		int c=channelNumber.getValue();
 		
-		ROI cell_roi_wo_nan = null;
-		try{
-			ShapeRoi cell_roi = new ShapeRoi(cell_shape);
-			cell_roi_wo_nan = ROIUtil.subtract(cell_roi, nanAreaRoi[t]);
-		}catch(Exception ex){
-			Point centroid = node.getGeometry().getCentroid();
-			System.out.printf("Problems at %.2f %.2f",centroid.getX(),centroid.getY());
-			return -1.0;
+		BatchIntensityReader reader = new BatchIntensityReader(
+				sequence.getWidth(), sequence.getHeight());
+		HashMap<Node, Integer> labels = new HashMap<Node, Integer>();
+		for(Node node: frame.vertexSet()){
+			assert(cell_ring_geometries.containsKey(node));
+			labels.put(node, reader.addGeometry(cell_ring_geometries.get(node)));
 		}
 		
-		//TODO possibly use getIntensityInfo here
+		BitSet nan_mask = NanMaskCache.getMask(sequence, t, z, c);
+		reader.setTopPercent(summary_type.getValue().getTopPercent());
+		reader.measure(sequence, z, t, c, nan_mask);
 		
-		double mean_intensity = 
-				IntensityReader.measureRoiIntensity(
-						sequence, cell_roi_wo_nan, z, t, c, summary_type.getValue());
+		HashMap<Node, Double> intensities = new HashMap<Node, Double>();
+		for(Node node: frame.vertexSet())
+			intensities.put(node, reader.getIntensity(labels.get(node), summary_type.getValue()));
 		
-		return mean_intensity;
+		return intensities;
 	}
 
 
@@ -185,10 +189,9 @@ public class CellIntensityOverlay extends StGraphOverlay implements EzVarListene
 		
 		int i = frame.getFrameNo();
 		
-		gui.setProgressBarMessage("Computing Nan ROI for frame "+i);
+		gui.setProgressBarMessage("Measuring intensities for frame "+i);
 		
-		this.nanAreaRoi[i] = EdgeOrientationOverlay.computeNanAreaROI(
-				sequence,i,0,channelNumber.getValue());
+		HashMap<Node, Double> intensities = computeFrameIntensities(frame);
 		
 		gui.setProgressBarMessage("Exporting frame "+i);
 
@@ -218,7 +221,7 @@ public class CellIntensityOverlay extends StGraphOverlay implements EzVarListene
 			XLSUtil.setCellNumber(sheet, col_y, row_no, yStart);
 			
 			double area = node.getGeometry().getArea();
-			double intensity = getCellIntensity(node);
+			double intensity = intensities.get(node);
 			XLSUtil.setCellNumber(sheet, col_area, row_no, area);
 			XLSUtil.setCellNumber(sheet, col_intensity, row_no, intensity);
 
@@ -19,8 +19,6 @@ import plugins.davhelle.cellgraph.nodes.Node;
 import plugins.davhelle.cellgraph.tracking.TrackingFeedback;
 
 import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.GeometryFactory;
-import com.vividsolutions.jts.geom.Point;
 
 /**
  * Class for helping the visualization of Segmentation errors and make each error "clickable"
@@ -33,11 +31,6 @@ import com.vividsolutions.jts.geom.Point;
  */
 public class CorrectionOverlay extends StGraphOverlay {
 	
-	/**
-	 * JTS factory to transform clicks to JTS points
-	 */
-	private GeometryFactory factory;
-	
 	/**
 	 * Description string for GUI use
 	 */
@@ -55,7 +48,6 @@ public class CorrectionOverlay extends StGraphOverlay {
 	 */
 	public CorrectionOverlay(SpatioTemporalGraph stGraph) {
 		super("Tracking Corrections",stGraph);
-		this.factory = new GeometryFactory();
 		
 		System.out.println("Looking for potential False positives (FP) and negatives (FN)");
 		markFalsePositives();
@@ -120,27 +112,26 @@ public class CorrectionOverlay extends StGraphOverlay {
 		
 		if(time_point < stGraph.size()){
 			
-			//create point Geometry
+			//click position
 			Coordinate point_coor = new Coordinate(imagePoint.getX(), imagePoint.getY());
-			Point point_geometry = factory.createPoint(point_coor);			
 			
 			FrameGraph frame_i = stGraph.getFrame(time_point);
-			for(Node cell: frame_i.vertexSet())
-			 	if(cell.getGeometry().contains(point_geometry) && 
-			 			cell.getErrorTag() == TrackingFeedback.FALSE_POSITIVE.numeric_code){
-			 		cell.setErrorTag(TrackingFeedback.DEFAULT.numeric_code);
-			 		System.out.println("Corrected potential FP: "+cell.getTrackID());
-			 	}
+			Node cell = frame_i.findCellAt(point_coor.x, point_coor.y);
+			if(cell != null && 
+					cell.getErrorTag() == TrackingFeedback.FALSE_POSITIVE.numeric_code){
+				cell.setErrorTag(TrackingFeedback.DEFAULT.numeric_code);
+				System.out.println("Corrected potential FP: "+cell.getTrackID());
+			}
 			
 			if(time_point > 0){
 				//Help the user see a cell that went missing from the previous frame
 				FrameGraph previous_frame = stGraph.getFrame(time_point - 1);
-				for(Node cell: previous_frame.vertexSet())
-					if(cell.getGeometry().contains(point_geometry) && 
-							cell.getErrorTag() == TrackingFeedback.FALSE_NEGATIVE.numeric_code){
-				 		cell.setErrorTag(TrackingFeedback.DEFAULT.numeric_code);
-				 		System.out.println("Corrected potential FN: "+cell.getTrackID());
-				 	}
+				Node previous_cell = previous_frame.findCellAt(point_coor.x, point_coor.y);
+				if(previous_cell != null && 
+						previous_cell.getErrorTag() == TrackingFeedback.FALSE_NEGATIVE.numeric_code){
+					previous_cell.setErrorTag(TrackingFeedback.DEFAULT.numeric_code);
+					System.out.println("Corrected potential FN: "+previous_cell.getTrackID());
+				}
 			}
 		}
 
@@ -224,41 +224,39 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 			Point point_geometry = factory.createPoint(point_coor);			
 			
 			FrameGraph frame_i = stGraph.getFrame(time_point);
-			for(Node cell: frame_i.vertexSet()){
-			 	Geometry cellGeometry = cell.getGeometry();
-				
-			 	//if cell contains click search it's edges
-			 	if(cellGeometry.contains(point_geometry)){
-			 		for(Node neighbor: cell.getNeighbors()){
-			 			Edge edge = frame_i.getEdge(cell, neighbor);
-			 			
-			 			//get edge geometry
-			 			if(!edge.hasGeometry())
-			 				edge.computeGeometry(frame_i);
-			 				
-			 			if(!measurement_geometries.containsKey(edge)){
-			 				Geometry measurement_geometry = computeMeasurementGeometry(edge,frame_i);
-			 				measurement_geometries.put(edge, measurement_geometry);
-			 			}
-			 			
-			 			Geometry intersection = measurement_geometries.get(edge);
-			 			Geometry envelope = intersection.buffer(CLICK_BUFFER_WIDTH);
-			 			
-			 			//check if click falls into envelope
-			 			if(envelope.contains(point_geometry)){
-			 				tags_exist = true;
-			 				
-			 				if(edge.hasColorTag()){
-			 					if(edge.getColorTag() == colorTag)
-			 						propagateTag(edge,null);
-			 					else
-			 						propagateTag(edge,colorTag);
-			 				}
-			 				else
-			 					initializeTag(edge,colorTag,frame_i);
-			 			}
-			 		}
-			 	}
+			Node cell = frame_i.findCellAt(point_coor.x, point_coor.y);
+			
+			//if cell contains click search it's edges
+			if(cell != null){
+				for(Node neighbor: cell.getNeighbors()){
+					Edge edge = frame_i.getEdge(cell, neighbor);
+					
+					//get edge geometry
+					if(!edge.hasGeometry())
+						edge.computeGeometry(frame_i);
+						
+					if(!measurement_geometries.containsKey(edge)){
+						Geometry measurement_geometry = computeMeasurementGeometry(edge,frame_i);
+						measurement_geometries.put(edge, measurement_geometry);
+					}
+					
+					Geometry intersection = measurement_geometries.get(edge);
+					Geometry envelope = intersection.buffer(CLICK_BUFFER_WIDTH);
+					
+					//check if click falls into envelope
+					if(envelope.contains(point_geometry)){
+						tags_exist = true;
+						
+						if(edge.hasColorTag()){
+							if(edge.getColorTag() == colorTag)
+								propagateTag(edge,null);
+							else
+								propagateTag(edge,colorTag);
+						}
+						else
+							initializeTag(edge,colorTag,frame_i);
+					}
+				}
 			}
 		}
 	}
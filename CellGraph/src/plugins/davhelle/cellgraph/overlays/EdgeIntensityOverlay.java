@@ -1,7 +1,5 @@
 package plugins.davhelle.cellgraph.overlays;
 
-import icy.roi.ROI;
-import icy.roi.ROIUtil;
 import icy.sequence.Sequence;
 import icy.util.XLSUtil;
 
@@ -12,6 +10,11 @@ import java.awt.geom.Line2D;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import jxl.write.WritableSheet;
 import plugins.adufour.ezplug.EzGUI;
@@ -20,9 +23,8 @@ import plugins.adufour.ezplug.EzVarEnum;
 import plugins.adufour.ezplug.EzVarInteger;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
-import plugins.davhelle.cellgraph.io.IntensityReader;
+import plugins.davhelle.cellgraph.io.BatchIntensityReader;
 import plugins.davhelle.cellgraph.io.IntensitySummaryType;
-import plugins.davhelle.cellgraph.misc.ShapeRoi;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
 
@@ -55,12 +57,8 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 			"NOTE:<br/>" +
 			"- The color gradient is normalized by frame.<br/>" + 
 			"- [ring mode] edge union intersected with cell area<br/>"+
-			"- [Measure all frames] may take very long!";
+			"- [Measure all frames] measures the frames in parallel";
 
-	/**
-	 * JTS to AWT shape writer
-	 */
-	private ShapeWriter writer;
 	/**
 	 * Connected Icy sequence to retrieve the intensity from
 	 */
@@ -75,10 +73,6 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 	private EzVarBoolean fillEdgeCheckbox;
 	
 	//Containers
-	/**
-	 * ROI representation for each edge
-	 */
-	private HashMap<Edge,ROI> buffer_roi;
 	/**
 	 * AWT Shape representation for each edge 
 	 */
@@ -103,9 +97,9 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 	private HashMap<Node,Double> cell_edges;
 	
 	/**
-	 * Mean Edge Intensities for every cell 
+	 * Union of the edge envelopes of every cell
 	 */
-	private HashMap<Node,ROI> cell_rings;
+	private HashMap<Node,Geometry> cell_rings;
 	
 	private HashMap<Node,Shape> cell_buffer_shape;
 	
@@ -173,9 +167,7 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 		
 		this.gui = gui;
 		this.fillEdgeCheckbox = varFillingCheckbox;
-		this.writer = new ShapeWriter();
 		this.buffer_shape = new	HashMap<Edge, Shape>();
-		this.buffer_roi = new HashMap<Edge, ROI>();
 		this.buffer_geo = new HashMap<Edge, Geometry>();
 		this.normalizedEdgeIntensity = new HashMap<Edge, Double>();
 		this.relativeEdgeIntensity = new HashMap<Edge, Double>();
@@ -187,7 +179,7 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 		this.channelNumber = channelNumber;
 		this.summary_type = intensitySummaryType;
 		this.analyzeAllFrames = varMeasureAllFrames;
-		this.cell_rings = new HashMap<Node, ROI>();
+		this.cell_rings = new HashMap<Node, Geometry>();
 		this.cell_intensity = new HashMap<Node, Double>();
 		this.cell_buffer_shape = new HashMap<Node, Shape>();
 		this.ring_mode = varRingMode;
@@ -199,10 +191,7 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 		min = new double[frame_no];
 		max = new double[frame_no];
 		
-		for(int i = 0; i < frame_no; i++){
-			FrameGraph frame_i = stGraph.getFrame(i);
-			computeFrameIntensities(frame_i);
-		}
+		computeIntensities(frame_no);
 		
 		super.setGradientScale(-0.4);
 		super.setGradientShift(0.8);
@@ -210,286 +199,295 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 	}
 
 	/**
-	 * Computes the edge intensities for all edges in the graph
+	 * Computes the edge intensities for the first frame_no frames of the graph.
+	 * Frames are measured in parallel using one worker per processor.
 	 * 
-	 * @param frame_i frame to measure
+	 * @param frame_no number of frames to measure
+	 * @throws IllegalStateException if the measurement of a frame failed
 	 */
-	private void computeFrameIntensities(FrameGraph frame_i) {
+	private void computeIntensities(int frame_no) {
 		
 		//Initialize Progress bar
 		gui.setProgressBarValue(0.01);
-		int gui_counter = 0;
+		gui.setProgressBarMessage(String.format("Computing Edge Intensities in %d frame(s)...", frame_no));
 		
-		double total_count = 2 * frame_i.edgeSet().size();
-		if(zallen_normalization)
-			total_count += frame_i.vertexSet().size();
+		//GUI values are read once here, the workers only receive plain values
+		final IntensitySummaryType summary = summary_type.getValue();
 		
-		int frameNo = frame_i.getFrameNo();
-		String frame_str = String.format(" in frame %d...",
-				frameNo);
+		int thread_no = Math.min(frame_no, Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, thread_no));
 		
-		//Compute individual edge intensities
-		gui.setProgressBarMessage("Computing Edge Geometries"+frame_str);
-		for(Edge e: frame_i.edgeSet()){
-			if(!e.hasGeometry())
-				e.computeGeometry(frame_i);
-			gui.setProgressBarValue(gui_counter++/total_count);
+		try{
+			ArrayList<Future<FrameIntensities>> pending_frames = 
+					new ArrayList<Future<FrameIntensities>>();
+			
+			for(int i = 0; i < frame_no; i++){
+				final FrameGraph frame_i = stGraph.getFrame(i);
+				pending_frames.add(executor.submit(new Callable<FrameIntensities>() {
+					@Override
+					public FrameIntensities call() throws Exception {
+						return new FrameIntensities(frame_i, summary);
+					}
+				}));
+			}
+			
+			for(int i = 0; i < frame_no; i++){
+				try {
+					addFrameIntensities(pending_frames.get(i).get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while computing edge intensities", e);
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Edge intensity measurement failed in frame " + i, e.getCause());
+				}
+				gui.setProgressBarValue((i + 1) / (double)frame_no);
+			}
 		}
-		
-		gui.setProgressBarMessage("Computing Edge Intensities"+frame_str);
-		for(Edge e: frame_i.edgeSet()){
-			computeEdgeIntensity(e,frame_i);
-			gui.setProgressBarValue(gui_counter++/total_count);
+		finally{
+			executor.shutdownNow();
 		}
-
-		//Edge Normalization and limit identification
-		
-		this.min[frameNo] = Double.MAX_VALUE;
-		this.max[frameNo] = Double.MIN_VALUE;
-
-		if(zallen_normalization){
+	}
+	
+	/**
+	 * Adds the measurements of a frame to the overlay
+	 * 
+	 * @param frame_intensities measurements of a frame
+	 */
+	private void addFrameIntensities(FrameIntensities frame_intensities){
+		int frameNo = frame_intensities.frameNo;
+		this.min[frameNo] = frame_intensities.min;
+		this.max[frameNo] = frame_intensities.max;
+		
+		buffer_geo.putAll(frame_intensities.buffer_geo);
+		buffer_shape.putAll(frame_intensities.buffer_shape);
+		relativeEdgeIntensity.putAll(frame_intensities.relativeEdgeIntensity);
+		normalizedEdgeIntensity.putAll(frame_intensities.normalizedEdgeIntensity);
+		cell_background.putAll(frame_intensities.cell_background);
+		cell_edges.putAll(frame_intensities.cell_edges);
+		cell_rings.putAll(frame_intensities.cell_rings);
+		cell_intensity.putAll(frame_intensities.cell_intensity);
+		cell_buffer_shape.putAll(frame_intensities.cell_buffer_shape);
+	}
+	
+	/**
+	 * Measurements of a single frame. Only uses frame local 
+	 * containers so that several frames can be measured in parallel.
+	 */
+	private class FrameIntensities {
+		
+		private final int frameNo;
+		private double min;
+		private double max;
+		
+		/**
+		 * JTS to AWT shape writer of this frame (not thread safe)
+		 */
+		private final ShapeWriter frame_writer;
+		
+		private final HashMap<Edge,Shape> buffer_shape;
+		private final HashMap<Edge,Geometry> buffer_geo;
+		private final HashMap<Edge,Double> relativeEdgeIntensity;
+		private final HashMap<Edge,Double> normalizedEdgeIntensity;
+		private final HashMap<Node,Double> cell_background;
+		private final HashMap<Node,Double> cell_edges;
+		private final HashMap<Node,Geometry> cell_rings;
+		private final HashMap<Node,Double> cell_intensity;
+		private final HashMap<Node,Shape> cell_buffer_shape;
+		
+		/**
+		 * Computes the edge intensities for all edges in the frame
+		 * 
+		 * @param frame_i frame to measure
+		 * @param summary intensity summary of every measured region
+		 */
+		FrameIntensities(FrameGraph frame_i, IntensitySummaryType summary) {
+			
+			this.frameNo = frame_i.getFrameNo();
+			this.frame_writer = new ShapeWriter();
+			this.buffer_shape = new HashMap<Edge, Shape>();
+			this.buffer_geo = new HashMap<Edge, Geometry>();
+			this.relativeEdgeIntensity = new HashMap<Edge, Double>();
+			this.normalizedEdgeIntensity = new HashMap<Edge, Double>();
+			this.cell_background = new HashMap<Node, Double>();
+			this.cell_edges = new HashMap<Node, Double>();
+			this.cell_rings = new HashMap<Node, Geometry>();
+			this.cell_intensity = new HashMap<Node, Double>();
+			this.cell_buffer_shape = new HashMap<Node, Shape>();
+			
+			//Compute individual edge geometries
+			for(Edge e: frame_i.edgeSet())
+				if(!e.hasGeometry())
+					e.computeGeometry(frame_i);
 			
-			//normalization through nearby
-			//cell intensities (see zallen paper)
+			//Rasterize all measurement geometries and measure them in one pass
+			BatchIntensityReader reader = new BatchIntensityReader(
+					sequence.getWidth(), sequence.getHeight());
 			
-			gui.setProgressBarMessage("Computing Cell Intensities"+frame_str);
+			HashMap<Edge,Integer> edge_labels = new HashMap<Edge, Integer>();
+			for(Edge e: frame_i.edgeSet())
+				edge_labels.put(e, reader.addGeometry(computeEdgeBuffer(e)));
+			
+			//the edge ring of every cell is computed once from its adjacency
+			HashMap<Node,Integer> ring_labels = new HashMap<Node, Integer>();
+			HashMap<Node,Integer> interior_labels = new HashMap<Node, Integer>();
 			for(Node n: frame_i.vertexSet()){
-				computeCellIntensity(n);
-				gui.setProgressBarValue(gui_counter++/total_count);
+				Geometry cell_ring = computeEdgeRing(n, frame_i);
+				cell_rings.put(n, cell_ring);
+				ring_labels.put(n, reader.addGeometry(cell_ring));
+				
+				if(cell_ring == null)
+					continue;
+				
+				//ring part within the cell, i.e. the union of the edge buffers intersected with the cell
+				Geometry cell_buffer = cell_ring.intersection(n.getGeometry());
+				cell_buffer_shape.put(n, frame_writer.toShape(cell_buffer));
+				
+				if(zallen_normalization){
+					//Interior region without the edges
+					Geometry interior = n.getGeometry().difference(cell_ring);
+					interior_labels.put(n, reader.addGeometry(interior));
+				}
+			}
+			
+			reader.setTopPercent(summary.getTopPercent());
+			reader.measure(sequence, 0, frameNo, channelNumber, null);
+			
+			for(Edge e: frame_i.edgeSet())
+				e.setValue(reader.getIntensity(edge_labels.get(e), summary));
+			
+			for(Node n: interior_labels.keySet()){
+				cell_background.put(n, reader.getIntensity(interior_labels.get(n), summary));
+				cell_edges.put(n, reader.getIntensity(ring_labels.get(n), summary));
 			}
+			
+			//ring intensity
+			for(Node n: frame_i.vertexSet())
+				cell_intensity.put(n, reader.getIntensity(ring_labels.get(n), summary));
+
+			//Edge Normalization and limit identification
+			
+			this.min = Double.MAX_VALUE;
+			this.max = Double.MIN_VALUE;
 
 			for(Edge e: frame_i.edgeSet()){
 
-				double rel_value = computeRelativeEdgeIntensity(e,frame_i);
+				double rel_value;
+				if(zallen_normalization)
+					//normalization through nearby
+					//cell intensities (see zallen paper)
+					rel_value = computeRelativeEdgeIntensity(e,frame_i);
+				else
+					//put same raw values in data fields
+					rel_value = e.getValue();
+				
 				relativeEdgeIntensity.put(e, rel_value);
 
-				if(rel_value > max[frameNo])
-					max[frameNo] = rel_value;
-				else if(rel_value < min[frameNo])
-					min[frameNo] = rel_value;
+				if(rel_value > max)
+					max = rel_value;
+				else if(rel_value < min)
+					min = rel_value;
 			}
-		}
-		else{
+			
+			//Normalize
 			for(Edge e: frame_i.edgeSet()){
-
-				double rel_value = e.getValue();
-				//put same raw values in data fields
-				relativeEdgeIntensity.put(e, rel_value);
-
-				if(rel_value > max[frameNo])
-					max[frameNo] = rel_value;
-				else if(rel_value < min[frameNo])
-					min[frameNo] = rel_value;
+				//update from relative to normalized
+				double rel_value = relativeEdgeIntensity.get(e);
+				double normalized_value = 
+						(rel_value - min)/(max - min);
+				normalizedEdgeIntensity.put(e,normalized_value);
 			}
 		}
 		
-		//Normalize
-		for(Edge e: frame_i.edgeSet()){
-			//update from relative to normalized
-			double rel_value = relativeEdgeIntensity.get(e);
-			double normalized_value = 
-					(rel_value - min[frameNo])/(max[frameNo] - min[frameNo]);
-			normalizedEdgeIntensity.put(e,normalized_value);
-
-		}
-		
-		//ring intensity
-		for(Node n: frame_i.vertexSet()){
-			ROI cell_ring = computeEdgeRing(n, frame_i);
-			cell_rings.put(n, cell_ring);
-			double intensity = computeRingIntensity(n,frame_i);
-			cell_intensity.put(n, intensity);
+		/**
+		 * Computes the edge envelope (specified by bufferWidth) with which 
+		 * the underlying intensity of the edge is measured
+		 * 
+		 * @param e edge to measure
+		 * @return edge envelope
+		 */
+		private Geometry computeEdgeBuffer(Edge e){
 			
-			Geometry geo = n.getGeometry();
-			ArrayList<Geometry> boundaries = new ArrayList<Geometry>();
-			for(Node neighbor: frame_i.vertexSet()){
-				Edge e = frame_i.getEdge(n, neighbor);
-				if(buffer_geo.containsKey(e)){
-					Geometry buffer = buffer_geo.get(e);
-					Geometry intersection = buffer.intersection(geo);
-					boundaries.add(intersection);
-				}
-			}
-			Geometry union = CascadedPolygonUnion.union(boundaries);
-			Shape cell_buffer = writer.toShape(union);
-			cell_buffer_shape.put(n,cell_buffer);
+			Geometry edge_geo = e.getGeometry();
 			
-		}
+			Geometry edge_buffer = edge_geo.buffer(bufferWidth);
 			
-	}
-	
-	/**
-	 * Compute underlying intensity for edge using a ROI corresponding
-	 * to the edge envelope (specified by bufferWidth)
-	 * 
-	 * @param e edge to measure
-	 * @param frame_i frame to which the edge belongs
-	 * @return mean intensity value of pixels within the edge envelope
-	 */
-	private double computeEdgeIntensity(Edge e, FrameGraph frame_i){
-		
-		Geometry edge_geo = e.getGeometry();
-		
-		Geometry edge_buffer = edge_geo.buffer(bufferWidth);
-		
-		this.buffer_geo.put(e, edge_buffer);
-		
-		Shape egde_shape = writer.toShape(edge_buffer);
-		
-		this.buffer_shape.put(e, egde_shape);
-		
-		
-		//TODO possibly add a direct ROI field to edge class
-		ShapeRoi edge_roi = null;
-		try{
-			edge_roi = new ShapeRoi(egde_shape);
-		}catch(Exception ex){
-			Point centroid = e.getGeometry().getCentroid();
-			System.out.printf("Problems at %.2f %.2f",centroid.getX(),centroid.getY());
-			return -1.0;
+			this.buffer_geo.put(e, edge_buffer);
+			
+			Shape egde_shape = frame_writer.toShape(edge_buffer);
+			
+			this.buffer_shape.put(e, egde_shape);
+			
+			return edge_buffer;
 		}
-		
-		buffer_roi.put(e, edge_roi);
-		
-		int z=0;
-		int t=frame_i.getFrameNo();
-		int c=channelNumber;
-		
-		//TODO possibly use getIntensityInfo here
-		
-		double mean_intensity = 
-				IntensityReader.measureRoiIntensity(
-						sequence, edge_roi, z, t, c, summary_type.getValue());
-
-		e.setValue(mean_intensity);
-		
-		return mean_intensity;
-	}
-	
-	/**
-	 * Split the cell geometry in two between edges and inside
-	 * and compute the separate intensity. 
-	 * 
-	 * Populate cell_background and cell_edges fields
-	 * 
-	 * @param s cell to be computed
-	 */
-	private void computeCellIntensity(Node s){
-		
-		//who are the flanking cells?
-		FrameGraph frame = s.getBelongingFrame();
-		
-		if(s.getNeighbors().isEmpty())
-			return;
-		
-		ROI edge_union = computeEdgeRing(s, frame);
-		
-		//Define Interior Roi region
-		ShapeRoi s_roi = new ShapeRoi(writer.toShape(s.getGeometry()));
-		s_roi.setC(0);
-		s_roi.setT(0);
-		s_roi.setZ(0);
-		ROI s_minimal = ROIUtil.subtract(s_roi, edge_union);
-		
-		//Compute intensities
-		int z=0;
-		int t=frame.getFrameNo();
-		int c=channelNumber;
-		double s_mean = IntensityReader.measureRoiIntensity(
-				sequence, s_minimal, z, t, c, summary_type.getValue());
-		double mean_edge_intensity = IntensityReader.measureRoiIntensity(
-				sequence, edge_union, z, t, c, summary_type.getValue());
-
-		//Save results
-		cell_background.put(s,s_mean);
-		cell_edges.put(s, mean_edge_intensity);
-	}
 
-	/**
-	 * Computes the union geometries of all edges of a cell
-	 * 
-	 * @param s
-	 * @param frame
-	 * @return
-	 */
-	private ROI computeEdgeRing(Node s, FrameGraph frame) {
-		//combine edge rois
-		ArrayList<ROI> rois = new ArrayList<ROI>();
-		for(Node t: frame.getNeighborsOf(s)){
-			Edge e = frame.getEdge(s, t);
-			rois.add(buffer_roi.get(e));
-		}
-		
-		//Define Edge Roi region
-		ROI edge_union = ROIUtil.getUnion(rois);
-		return edge_union;
-	}
-	
-	private double computeRingIntensity(Node s,FrameGraph frame){
-		if(cell_rings.containsKey(s)){
-			ROI s_ring = cell_rings.get(s); 
-			//Compute intensities
-			int z=0;
-			int t=frame.getFrameNo();
-			int c=channelNumber;
-			double s_mean = IntensityReader.measureRoiIntensity(
-					sequence, s_ring, z, t, c, summary_type.getValue());
-			return s_mean;
-		}
-		else{
-			return -1.0;
+		/**
+		 * Computes the union geometries of all edges of a cell
+		 * 
+		 * @param s cell
+		 * @param frame frame of the cell
+		 * @return union of the edge envelopes of the cell, null if the cell has no neighbors
+		 */
+		private Geometry computeEdgeRing(Node s, FrameGraph frame) {
+			//combine edge envelopes
+			ArrayList<Geometry> buffers = new ArrayList<Geometry>();
+			for(Edge e: frame.edgesOf(s))
+				buffers.add(buffer_geo.get(e));
+			
+			//Define Edge ring region
+			Geometry edge_union = CascadedPolygonUnion.union(buffers);
+			return edge_union;
 		}
-	}
-	
-	/**
-	 * Every edge is normalized by taking into account the first order neighborhood
-	 * 
-	 * The edge intensity is first made relative by subtracting the average cell intensity
-	 * of the neighborhood and than divided by the relative average intensity of neighboring
-	 * edges (1st neighborhood cells).
-	 * 
-	 * Int = intensity
-	 * Bg = Background
-	 * 1stOrderN = 1st Order Neighborhood (i.e. the neighborhood of the edge's cells)
-	 * 
-	 * adapted from Zallen et al.
-	 * 
-	 * relativeInt = (edgeInt - 1stOrderNBgInt)/(1stOrderNEdgeInt - 1stOrderNCellBgInt)
-	 * 
-	 * @param e edge to be normalized
-	 * @param frame frame from which to measure intensities for the normalization
-	 * @return
-	 */
-	private double computeRelativeEdgeIntensity(Edge e, FrameGraph frame){
-		
-		Node source = frame.getEdgeSource(e);
-		Node target = frame.getEdgeTarget(e);
-		
-		//dubious definition
-		//what about including 1 order of neigborhood?
-		//i.e. 
 		
-		HashSet<Node> firstOrderNeighbors = new HashSet<Node>();
-		firstOrderNeighbors.addAll(source.getNeighbors());
-		firstOrderNeighbors.addAll(target.getNeighbors());
-		
-		double sum_cell_background = 0;
-		double sum_cell_edges = 0;
-		
-		for(Node n: firstOrderNeighbors){
-			sum_cell_background += cell_background.get(n);
-			sum_cell_edges += cell_edges.get(n);
+		/**
+		 * Every edge is normalized by taking into account the first order neighborhood
+		 * 
+		 * The edge intensity is first made relative by subtracting the average cell intensity
+		 * of the neighborhood and than divided by the relative average intensity of neighboring
+		 * edges (1st neighborhood cells).
+		 * 
+		 * Int = intensity
+		 * Bg = Background
+		 * 1stOrderN = 1st Order Neighborhood (i.e. the neighborhood of the edge's cells)
+		 * 
+		 * adapted from Zallen et al.
+		 * 
+		 * relativeInt = (edgeInt - 1stOrderNBgInt)/(1stOrderNEdgeInt - 1stOrderNCellBgInt)
+		 * 
+		 * @param e edge to be normalized
+		 * @param frame frame from which to measure intensities for the normalization
+		 * @return
+		 */
+		private double computeRelativeEdgeIntensity(Edge e, FrameGraph frame){
+			
+			Node source = frame.getEdgeSource(e);
+			Node target = frame.getEdgeTarget(e);
+			
+			//dubious definition
+			//what about including 1 order of neigborhood?
+			//i.e. 
+			
+			HashSet<Node> firstOrderNeighbors = new HashSet<Node>();
+			firstOrderNeighbors.addAll(frame.getNeighborsOf(source));
+			firstOrderNeighbors.addAll(frame.getNeighborsOf(target));
+			
+			double sum_cell_background = 0;
+			double sum_cell_edges = 0;
+			
+			for(Node n: firstOrderNeighbors){
+				sum_cell_background += cell_background.get(n);
+				sum_cell_edges += cell_edges.get(n);
+			}
+			
+			double mean_cell_background = sum_cell_background/firstOrderNeighbors.size();
+			double mean_cell_edges = sum_cell_edges/firstOrderNeighbors.size();
+			
+			double rel_edge_value = e.getValue() - mean_cell_background;
+			double rel_neighborEdge_value = mean_cell_edges	 - mean_cell_background;
+			
+			double normalized_value = rel_edge_value / rel_neighborEdge_value;
+			
+			return normalized_value;
 		}
-		
-		double mean_cell_background = sum_cell_background/firstOrderNeighbors.size();
-		double mean_cell_edges = sum_cell_edges/firstOrderNeighbors.size();
-		
-		double rel_edge_value = e.getValue() - mean_cell_background;
-		double rel_neighborEdge_value = mean_cell_edges	 - mean_cell_background;
-		
-		double normalized_value = rel_edge_value / rel_neighborEdge_value;
-		
-		return normalized_value;
 	}
 
 	@Override
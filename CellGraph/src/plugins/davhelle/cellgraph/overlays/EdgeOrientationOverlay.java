@@ -1,11 +1,6 @@
 package plugins.davhelle.cellgraph.overlays;
 
-import icy.roi.BooleanMask2D;
-import icy.roi.ROI;
-import plugins.kernel.roi.roi2d.ROI2DArea;
-import icy.roi.ROIUtil;
 import icy.sequence.Sequence;
-import icy.type.collection.array.Array1DUtil;
 import icy.util.XLSUtil;
 import ij.process.EllipseFitter;
 
@@ -27,11 +22,11 @@ import plugins.adufour.ezplug.EzVarEnum;
 import plugins.adufour.ezplug.EzVarListener;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
-import plugins.davhelle.cellgraph.io.IntensityReader;
+import plugins.davhelle.cellgraph.io.BatchIntensityReader;
 import plugins.davhelle.cellgraph.io.IntensitySummaryType;
+import plugins.davhelle.cellgraph.io.NanMaskCache;
 import plugins.davhelle.cellgraph.misc.EllipseFitGenerator;
 import plugins.davhelle.cellgraph.misc.PolygonalCellTileGenerator;
-import plugins.davhelle.cellgraph.misc.ShapeRoi;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
 
@@ -86,9 +81,9 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 	private HashMap<Edge,Line2D.Double> edgeOrientations;
 	
 	/**
-	 * Container for containing the buffer shape for the edge measurement
+	 * Container for containing the buffer geometry for the edge measurement
 	 */
-	private HashMap<Edge,ROI> edgeROIs; 
+	private HashMap<Edge,Geometry> edgeBuffers; 
 	
 	/**
 	 * Container for containing the buffer shape for the edge measurement
@@ -100,8 +95,6 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 	 */
 	private Map<Node, Line2D.Double> cellOrientation;
 
-	private ROI2DArea nanAreaRoi;
-	
 	/**
 	 * Intensity Summary type
 	 */
@@ -134,37 +127,15 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 		
 		this.edgeOrientations = computeEdgeOrientations();
 		
-		this.nanAreaRoi = computeNanAreaROI(sequence,0,0,0);
-		
 		bufferWidth.addVarChangeListener(this);
 		this.writer = new ShapeWriter();
-		this.edgeROIs = new HashMap<Edge, ROI>();
+		this.edgeBuffers = new HashMap<Edge, Geometry>();
 		this.edgeShapes = new HashMap<Edge, Shape>();
 		computeEdgeShapes();
 		initializeTrackingIds();
 		
 	}
 
-	/**
-	 * @param sequence
-	 */
-	public static ROI2DArea computeNanAreaROI(Sequence sequence, int t, int z, int c) {
-		//from icy's tutorials
-
-		// consider first image and first channel only here
-		double[] doubleArray = Array1DUtil.arrayToDoubleArray(
-		     sequence.getDataXY(t, z, c), sequence.isSignedDataType());
-		boolean[] mask = new boolean[doubleArray.length];
-		
-		double threshold = 0.0;
-		
-		for (int i = 0; i < doubleArray.length; i++)
-		     mask[i] = !(doubleArray[i] > threshold);
-		BooleanMask2D mask2d = new BooleanMask2D(sequence.getBounds2D(), mask); 
-		
-		return new ROI2DArea(mask2d);
-	}
-	
 	/**
 	 * initializes the tracking ids of both nodes and edges,
 	 * i.e. increasing integers for nodes and long cantor pairing of vertices for edges
@@ -194,28 +165,7 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 			Shape s = writer.toShape(buffer);
 			
 			edgeShapes.put(e, s);
-			
-			//TODO possibly add a direct ROI field to edge class
-			ShapeRoi edge_roi = null;
-			try{
-				edge_roi = new ShapeRoi(s);
-			}catch(Exception ex){
-				Point centroid = e.getGeometry().getCentroid();
-				System.out.printf("Problems at %.2f %.2f",centroid.getX(),centroid.getY());
-			}
-			
-			ROI edge_wo_nan = null;
-			try{
-				edge_wo_nan = ROIUtil.subtract(edge_roi, nanAreaRoi);
-			}catch(UnsupportedOperationException ex){
-				Point centroid = e.getGeometry().getCentroid();
-	
-				System.out.printf("Problems at %.2f %.2f: EdgeRoi area %.2f but intersection not available\n",
-						centroid.getX(),centroid.getY(),
-						buffer.getArea());
-			}
-			
-			edgeROIs.put(e, edge_wo_nan);
+			edgeBuffers.put(e, buffer);
 		}
 	}
 
@@ -256,35 +206,39 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 	}
 	
 	/**
-	 * Compute underlying intensity for edge using a ROI corresponding
-	 * to the edge envelope (specified by bufferWidth)
+	 * Compute underlying intensity for all edges of a frame using the edge envelopes 
+	 * (specified by bufferWidth). Pixels without signal in the first plane are excluded.
 	 * 
-	 * @param e edge to measure
-	 * @param frame_i frame to which the edge belongs
-	 * @return mean intensity value of pixels within the edge envelope
+	 * @param frame_i frame to measure
+	 * @return intensity value of pixels within the edge envelope for every edge
 	 */
-	private double computeEdgeIntensity(Edge e, FrameGraph frame_i){
-		
-		ROI edge_wo_nan = edgeROIs.get(e);
-		
-		if(edge_wo_nan == null){
-			Point centroid = e.getGeometry().getCentroid();
-			System.out.printf("Could not compute intensity for edge @[%.2f,%.2f]\n",
-					centroid.getX(),centroid.getY());
-			return -1;
-		}
+	private HashMap<Edge, Double> computeEdgeIntensities(FrameGraph frame_i){
 		
 		int z=0;
 		int t=frame_i.getFrameNo();
 		int c=channelNumber;
 		
-		//TODO possibly use getIntensityInfo here
-		double mean_intensity = 
-				IntensityReader.measureRoiIntensity(
-						sequence, edge_wo_nan, z, t, c, summary_type.getValue());
-
-		return mean_intensity;
+		BatchIntensityReader reader = new BatchIntensityReader(
+				sequence.getWidth(), sequence.getHeight());
+		HashMap<Edge, Integer> labels = new HashMap<Edge, Integer>();
+		for(Edge e: frame_i.edgeSet())
+			labels.put(e, reader.addGeometry(edgeBuffers.get(e)));
 		
+		reader.setTopPercent(summary_type.getValue().getTopPercent());
+		reader.measure(sequence, z, t, c, NanMaskCache.getMask(sequence, 0, 0, 0));
+		
+		HashMap<Edge, Double> edge_intensities = new HashMap<Edge, Double>();
+		for(Edge e: frame_i.edgeSet()){
+			double intensity = reader.getIntensity(labels.get(e), summary_type.getValue());
+			if(intensity == BatchIntensityReader.NO_READOUT){
+				Point centroid = e.getGeometry().getCentroid();
+				System.out.printf("Could not compute intensity for edge @[%.2f,%.2f]\n",
+						centroid.getX(),centroid.getY());
+			}
+			edge_intensities.put(e, intensity);
+		}
+		
+		return edge_intensities;
 	}
 
 	@Override
@@ -306,7 +260,6 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 			
 			g.setColor(new Color(1.0f, 0.0f, 0.0f, 0.5f));
 			g.fill(edgeShapes.get(e));
-			//sequence.addROI(edgeROIs.get(e)); //debug only
 		}
 		
 		
@@ -415,6 +368,8 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 		XLSUtil.setCellString(sheet, c++, r, "Edge orientation");
 		
 		
+		HashMap<Edge, Double> edge_intensities = computeEdgeIntensities(frame);
+		
 		for(Node n: frame.vertexSet()){
 			for(Node neighbor: n.getNeighbors()){
 				//reset column and increment row
@@ -437,7 +392,7 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 				Edge e = frame.getEdge(n, neighbor);
 				XLSUtil.setCellNumber(sheet, c++, r, e.getTrackId());
 				XLSUtil.setCellNumber(sheet, c++, r, frame.getEdgeWeight(e));
-				XLSUtil.setCellNumber(sheet, c++, r, computeEdgeIntensity(e, frame));
+				XLSUtil.setCellNumber(sheet, c++, r, edge_intensities.get(e));
 				double edge_orientation = computeAngle(edgeOrientations.get(e));
 				//XLSUtil.setCellString(sheet, c++, r, String.format("%.2f",edge_orientation));
 				XLSUtil.setCellNumber(sheet, c++, r, edge_orientation);
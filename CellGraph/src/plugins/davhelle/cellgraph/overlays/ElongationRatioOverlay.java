@@ -2,19 +2,18 @@ package plugins.davhelle.cellgraph.overlays;
 
 import icy.sequence.Sequence;
 import icy.util.XLSUtil;
-import ij.process.EllipseFitter;
 
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.geom.Line2D;
-import java.util.HashMap;
-import java.util.Map;
 
 import jxl.write.WritableSheet;
+import plugins.davhelle.cellgraph.graphs.CellFeature;
+import plugins.davhelle.cellgraph.graphs.CellFeatureTable;
+import plugins.davhelle.cellgraph.graphs.CellFeatures;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
-import plugins.davhelle.cellgraph.misc.EllipseFitGenerator;
 import plugins.davhelle.cellgraph.nodes.Node;
 
 /**
@@ -31,46 +30,42 @@ public class ElongationRatioOverlay extends StGraphOverlay{
 	public static final String DESCRIPTION = 
 			"Color codes the cell according to their elongation ratio and<br/>"+
 			"writes the elongation factor within every cell";
-	/**
-	 * Elongation ratio for each node
-	 */
-	private Map<Node, java.lang.Double> elongationRatios;
 
 	/**
+	 * The ellipses are fitted analytically to the cell polygons, see
+	 * {@link plugins.davhelle.cellgraph.misc.PolygonEllipseFitter}
+	 * 
 	 * @param spatioTemporalGraph graph to be analyzed
-	 * @param sequence image to be used for ellipse estimation
 	 */
-	public ElongationRatioOverlay(
-			SpatioTemporalGraph spatioTemporalGraph, Sequence sequence) {
+	public ElongationRatioOverlay(SpatioTemporalGraph spatioTemporalGraph) {
 		super("EllipseRatio Coloring",spatioTemporalGraph);
 
-		Map<Node, EllipseFitter> fittedEllipses = new EllipseFitGenerator(stGraph,sequence).getFittedEllipses();
-	
-		double min = java.lang.Double.MAX_VALUE;
-		double max = java.lang.Double.MIN_VALUE;
-		
-		this.elongationRatios = new HashMap<Node, java.lang.Double>();
+		//degenerate cells with infinite ratio are not part of the range
+		CellFeatureTable features = new CellFeatureTable(stGraph);
+		double min = features.getMinimum(CellFeature.ELONGATION_RATIO);
+		double max = features.getMaximum(CellFeature.ELONGATION_RATIO);
 		
-		for(Node n: fittedEllipses.keySet()){
-			EllipseFitter ef = fittedEllipses.get(n);
-			double elongation_ratio = ef.major/ef.minor;
-			
-			elongationRatios.put(n, elongation_ratio);
-
-			if(elongation_ratio > max)
-				max = elongation_ratio;
-			else if(elongation_ratio < min)
-				min = elongation_ratio;
+		if(!Double.isNaN(max)){
+			super.setGradientMaximum(max);
+			super.setGradientMinimum(min);
 		}
-		
-		super.setGradientMaximum(max);
-		super.setGradientMinimum(min);
 		super.setGradientScale(0.4);
 		super.setGradientShift(0.4);
 		super.setGradientControlsVisibility(true);
 
 	}
 
+	/**
+	 * @param spatioTemporalGraph graph to be analyzed
+	 * @param sequence not used, the ellipses only depend on the cell polygons
+	 * @deprecated use {@link #ElongationRatioOverlay(SpatioTemporalGraph)}
+	 */
+	@Deprecated
+	public ElongationRatioOverlay(
+			SpatioTemporalGraph spatioTemporalGraph, Sequence sequence) {
+		this(spatioTemporalGraph);
+	}
+
 	@Override
 	public void paintFrame(Graphics2D g, FrameGraph frame_i)
 	{
@@ -80,13 +75,16 @@ public class ElongationRatioOverlay extends StGraphOverlay{
 
 		g.setFont(new Font("TimesRoman", Font.PLAIN, fontSize));
 		
-		for(Node n: frame_i.vertexSet()){
+		CellFeatures features = frame_i.getFeatures();
+		for(int k=0; k<features.size(); k++){
+			
+			Node n = features.getNode(k);
 
 			if(show_only_divsion)
 				if(!n.hasObservedDivision())
 					continue;
 
-			double elongation_ratio = elongationRatios.get(n);
+			double elongation_ratio = features.getElongationRatio(k);
 
 			Color hsbColor = super.getScaledColor(elongation_ratio);
 
@@ -100,8 +98,8 @@ public class ElongationRatioOverlay extends StGraphOverlay{
 			g.setColor(Color.black);
 			g.drawString(String.format("%.1f",
 					elongation_ratio), 
-					(float)n.getCentroid().getX(), 
-					(float)n.getCentroid().getY());
+					(float)features.getCentroidX(k), 
+					(float)features.getCentroidY(k));
 		}
 
 	}
@@ -114,21 +112,12 @@ public class ElongationRatioOverlay extends StGraphOverlay{
 		XLSUtil.setCellString(sheet, 2, 0, "Centroid y");
 		XLSUtil.setCellString(sheet, 3, 0, "Elongation Ratio");
 
-		int row_no = 1;
-
-		for(Node n: frame.vertexSet()){
-			if(elongationRatios.containsKey(n)){
-				
-				double elongation_ratio = elongationRatios.get(n);
-			
-				XLSUtil.setCellNumber(sheet, 0, row_no, n.getTrackID());
-				XLSUtil.setCellNumber(sheet, 1, row_no, n.getCentroid().getX());
-				XLSUtil.setCellNumber(sheet, 2, row_no, n.getCentroid().getY());
-				XLSUtil.setCellNumber(sheet, 3, row_no, elongation_ratio);
-				
-				row_no++;
-
-			}
+		CellFeatures features = frame.getFeatures();
+		for(int k=0; k<features.size(); k++){
+			XLSUtil.setCellNumber(sheet, 0, k + 1, features.getTrackID(k));
+			XLSUtil.setCellNumber(sheet, 1, k + 1, features.getCentroidX(k));
+			XLSUtil.setCellNumber(sheet, 2, k + 1, features.getCentroidY(k));
+			XLSUtil.setCellNumber(sheet, 3, k + 1, features.getElongationRatio(k));
 		}
 		
 	}
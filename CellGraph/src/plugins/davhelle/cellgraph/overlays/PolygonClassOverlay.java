@@ -8,12 +8,11 @@ import java.awt.Graphics2D;
 import java.awt.geom.Line2D;
 
 import jxl.write.WritableSheet;
+import plugins.davhelle.cellgraph.graphs.CellFeatures;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.nodes.Node;
 
-import com.vividsolutions.jts.geom.Coordinate;
-
 /**
  * Overlay to represent the neighborhood degree with either
  * numbers or colors. Color scheme follows the convention established
@@ -58,16 +57,16 @@ public class PolygonClassOverlay extends StGraphOverlay{
 
 		g.setFont(new Font("TimesRoman", Font.PLAIN, 15));
 
-		for(Node cell: frame_i.vertexSet())
+		CellFeatures features = frame_i.getFeatures();
+		for(int k=0; k<features.size(); k++)
 		{
 
-			if(cell.onBoundary())
+			if(features.onBoundary(k))
 				continue;
 
-			Coordinate centroid = 
-					cell.getCentroid().getCoordinate();
+			Node cell = features.getNode(k);
 
-			int cell_degree = frame_i.degreeOf(cell);
+			int cell_degree = features.getNeighborNo(k);
 
 			if(highlight_no != 0)
 				if(cell_degree != highlight_no)
@@ -76,8 +75,8 @@ public class PolygonClassOverlay extends StGraphOverlay{
 			if(use_numbers){
 				g.setColor(Color.white);
 				g.drawString(Integer.toString(cell_degree), 
-						(float)centroid.x - 2  , 
-						(float)centroid.y + 2);
+						(float)features.getCentroidX(k) - 2  , 
+						(float)features.getCentroidY(k) + 2);
 			}
 			else{
 				switch(cell_degree){
@@ -126,13 +125,14 @@ public class PolygonClassOverlay extends StGraphOverlay{
 
 		int row_no = 1;
 
-		for(Node n: frame.vertexSet()){
-			if(!n.onBoundary()){
-				int neighbor_no = frame.degreeOf(n);
+		CellFeatures features = frame.getFeatures();
+		for(int k=0; k<features.size(); k++){
+			if(!features.onBoundary(k)){
+				int neighbor_no = features.getNeighborNo(k);
 
-				XLSUtil.setCellNumber(sheet, 0, row_no, n.getTrackID());
-				XLSUtil.setCellNumber(sheet, 1, row_no, n.getCentroid().getX());
-				XLSUtil.setCellNumber(sheet, 2, row_no, n.getCentroid().getY());
+				XLSUtil.setCellNumber(sheet, 0, row_no, features.getTrackID(k));
+				XLSUtil.setCellNumber(sheet, 1, row_no, features.getCentroidX(k));
+				XLSUtil.setCellNumber(sheet, 2, row_no, features.getCentroidY(k));
 				XLSUtil.setCellNumber(sheet, 3, row_no, neighbor_no);
 
 				row_no++;
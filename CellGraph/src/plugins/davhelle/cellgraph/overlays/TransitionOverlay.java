@@ -9,7 +9,7 @@ import java.awt.event.ActionEvent;
 import java.awt.geom.Line2D;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Map;
 
 import jxl.write.WritableSheet;
 import plugins.davhelle.cellgraph.CellOverlay;
@@ -62,8 +62,8 @@ public class TransitionOverlay extends StGraphOverlay{
 				stGraph);
 		
 		//TODO move createPolygonalTiles to PolygonalCellTile class
-		HashMap<Node, PolygonalCellTile> cell_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph,plugin);
-		HashMap<Long, boolean[]> tracked_edges = EdgeTracking.trackEdges(stGraph, plugin);
+		Map<Node, PolygonalCellTile> cell_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph,plugin);
+		Map<Long, boolean[]> tracked_edges = EdgeTracking.trackEdges(stGraph, plugin);
 		
 		plugin.getUI().setProgressBarMessage("Analyzing Transitions..");
 		this.transitions = DetectT1Transition.findTransitions(
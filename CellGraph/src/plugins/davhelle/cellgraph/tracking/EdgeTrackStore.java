@@ -0,0 +1,349 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+
+/**
+ * Presence table of tracked edges produced by {@link EdgeTracking}.
+ * Every edge, identified by the pair code of its cells' tracking ids,
+ * owns a row of a bit matrix (edges x frames) telling whether the edge
+ * is present at the respective time point.<br><br>
+ *
+ * Pair codes are mapped to rows by an open addressing hash table with
+ * primitive long keys. The store is exposed as read-only Map view:
+ * {@link #get(Object)} returns a new boolean array built from the
+ * corresponding row.
+ *
+ * @author Davide Heller
+ *
+ */
+public class EdgeTrackStore extends AbstractMap<Long, boolean[]> {
+
+	/**
+	 * Marker for free slots
+	 */
+	private static final long FREE = Long.MIN_VALUE;
+
+	/**
+	 * Number of frames tracked
+	 */
+	private final int frame_no;
+	/**
+	 * Number of 64 bit words per row
+	 */
+	private final int words_per_edge;
+
+	/**
+	 * Hash table of pair codes and corresponding rows
+	 */
+	private long[] keys;
+	private int[] rows;
+	private int size;
+
+	/**
+	 * Row data: presence bits and cell tracking ids
+	 */
+	private long[] presence;
+	private int[] row_cells;
+	private int row_no;
+
+	/**
+	 * @param frame_no number of frames to track
+	 * @param expected_edges expected number of edges
+	 */
+	public EdgeTrackStore(int frame_no, int expected_edges){
+		this.frame_no = frame_no;
+		this.words_per_edge = (frame_no + 63) >>> 6;
+
+		int capacity = 16;
+		while(capacity * 3 < expected_edges * 4)
+			capacity <<= 1;
+		allocate(capacity);
+
+		int row_capacity = Math.max(expected_edges, 1);
+		this.presence = new long[row_capacity * words_per_edge];
+		this.row_cells = new int[row_capacity * 2];
+		this.row_no = 0;
+	}
+
+	private void allocate(int capacity){
+		keys = new long[capacity];
+		rows = new int[capacity];
+		Arrays.fill(keys, FREE);
+		size = 0;
+	}
+
+	/**
+	 * @param code pair code
+	 * @return table index of the code or of the free slot where it belongs
+	 */
+	private int slot(long code){
+		int mask = keys.length - 1;
+		long h = code * 0x9E3779B97F4A7C15L;
+		int i = (int)(h ^ (h >>> 32)) & mask;
+		while(keys[i] != FREE && keys[i] != code)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	/**
+	 * @param code pair code
+	 * @return row of the edge, -1 if not tracked
+	 */
+	private int row(long code){
+		int i = slot(code);
+		return keys[i] == FREE ? -1 : rows[i];
+	}
+
+	/**
+	 * Adds an edge to the store, edges already present are ignored
+	 *
+	 * @param code pair code of the edge
+	 * @param cell_a tracking id of the first cell
+	 * @param cell_b tracking id of the second cell
+	 */
+	void add(long code, int cell_a, int cell_b){
+		int i = slot(code);
+		if(keys[i] != FREE)
+			return;
+
+		if(2 * row_no == row_cells.length){
+			int row_capacity = row_no * 2;
+			presence = Arrays.copyOf(presence, row_capacity * words_per_edge);
+			row_cells = Arrays.copyOf(row_cells, row_capacity * 2);
+		}
+
+		keys[i] = code;
+		rows[i] = row_no;
+		row_cells[2 * row_no] = cell_a;
+		row_cells[2 * row_no + 1] = cell_b;
+		row_no++;
+
+		if(++size * 4 > keys.length * 3)
+			rehash(keys.length * 2);
+	}
+
+	/**
+	 * Marks an edge as present at a time point, unknown edges are ignored
+	 *
+	 * @param code pair code of the edge
+	 * @param frame time point
+	 */
+	void setPresent(long code, int frame){
+		int row = row(code);
+		if(row != -1)
+			presence[row * words_per_edge + (frame >>> 6)] |= 1L << frame;
+	}
+
+	/**
+	 * Removes an edge from the store
+	 *
+	 * @param code pair code of the edge
+	 */
+	void delete(long code){
+		int i = slot(code);
+		if(keys[i] == FREE)
+			return;
+
+		//backward shift deletion to keep the probe sequences intact
+		int mask = keys.length - 1;
+		int j = i;
+		while(true){
+			j = (j + 1) & mask;
+			if(keys[j] == FREE)
+				break;
+			long h = keys[j] * 0x9E3779B97F4A7C15L;
+			int home = (int)(h ^ (h >>> 32)) & mask;
+			if(j > i ? (home <= i || home > j) : (home <= i && home > j)){
+				keys[i] = keys[j];
+				rows[i] = rows[j];
+				i = j;
+			}
+		}
+		keys[i] = FREE;
+		size--;
+	}
+
+	/**
+	 * Removes all edges of which at least one cell
+	 * is not present in the given frame
+	 *
+	 * @param frame frame to check
+	 */
+	void removeMissing(FrameGraph frame){
+		int[] to_eliminate = new int[size];
+		int eliminate_no = 0;
+		for(int i=0; i<keys.length; i++)
+			if(keys[i] != FREE){
+				int row = rows[i];
+				if(!frame.hasTrackID(row_cells[2 * row]) || !frame.hasTrackID(row_cells[2 * row + 1]))
+					to_eliminate[eliminate_no++] = i;
+			}
+
+		long[] codes = new long[eliminate_no];
+		for(int k=0; k<eliminate_no; k++)
+			codes[k] = keys[to_eliminate[k]];
+		for(long code: codes)
+			delete(code);
+	}
+
+	private void rehash(int capacity){
+		long[] old_keys = keys;
+		int[] old_rows = rows;
+		allocate(capacity);
+
+		for(int k=0; k<old_keys.length; k++)
+			if(old_keys[k] != FREE){
+				int i = slot(old_keys[k]);
+				keys[i] = old_keys[k];
+				rows[i] = old_rows[k];
+				size++;
+			}
+	}
+
+	/**
+	 * @param code pair code of the edge
+	 * @param frame time point
+	 * @return true if the edge is tracked and present at the time point
+	 */
+	public boolean isPresent(long code, int frame){
+		int row = row(code);
+		return row != -1 && isPresentInRow(row, frame);
+	}
+
+	private boolean isPresentInRow(int row, int frame){
+		return (presence[row * words_per_edge + (frame >>> 6)] & (1L << frame)) != 0;
+	}
+
+	/**
+	 * @param code pair code of the edge
+	 * @return tracking ids of the two cells of the edge, null if not tracked
+	 */
+	public int[] getCells(long code){
+		int row = row(code);
+		if(row == -1)
+			return null;
+		return new int[]{row_cells[2 * row], row_cells[2 * row + 1]};
+	}
+
+	/**
+	 * @return number of frames tracked
+	 */
+	public int getFrameNo(){
+		return frame_no;
+	}
+
+	/**
+	 * Iterates the table slots holding tracked edges
+	 */
+	private abstract class SlotIterator<T> implements Iterator<T> {
+
+		private int next = advance(0);
+
+		private int advance(int i){
+			while(i < keys.length && keys[i] == FREE)
+				i++;
+			return i;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < keys.length;
+		}
+
+		protected int nextSlot(){
+			if(!hasNext())
+				throw new NoSuchElementException();
+			int current = next;
+			next = advance(next + 1);
+			return current;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("EdgeTrackStore is read-only");
+		}
+	}
+
+	/**
+	 * @param row row index
+	 * @return presence array of the row
+	 */
+	private boolean[] rowToArray(int row){
+		boolean[] edge_track = new boolean[frame_no];
+		for(int frame=0; frame<frame_no; frame++)
+			edge_track[frame] = isPresentInRow(row, frame);
+		return edge_track;
+	}
+
+	@Override
+	public boolean[] get(Object key) {
+		if(!(key instanceof Long))
+			return null;
+		int row = row((Long)key);
+		return row == -1 ? null : rowToArray(row);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof Long && row((Long)key) != -1;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Set<Long> keySet() {
+		return new AbstractSet<Long>() {
+			@Override
+			public Iterator<Long> iterator() {
+				return new SlotIterator<Long>() {
+					@Override
+					public Long next() {
+						return keys[nextSlot()];
+					}
+				};
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<Long, boolean[]>> entrySet() {
+		return new AbstractSet<Entry<Long, boolean[]>>() {
+			@Override
+			public Iterator<Entry<Long, boolean[]>> iterator() {
+				return new SlotIterator<Entry<Long, boolean[]>>() {
+					@Override
+					public Entry<Long, boolean[]> next() {
+						int i = nextSlot();
+						return new SimpleImmutableEntry<Long, boolean[]>(keys[i], rowToArray(rows[i]));
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+}
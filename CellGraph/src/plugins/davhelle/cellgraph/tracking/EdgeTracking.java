@@ -1,8 +1,5 @@
 package plugins.davhelle.cellgraph.tracking;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-
 import plugins.adufour.ezplug.EzPlug;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
@@ -33,11 +30,9 @@ public class EdgeTracking {
 	 * tells if the edge is present or not at the corresponding time point. The key of the map is
 	 * the cantor paring of the edges vertex ids.
 	 */
-	public static HashMap<Long, boolean[]> trackEdges(
+	public static EdgeTrackStore trackEdges(
 			SpatioTemporalGraph stGraph) {
-		HashMap<Long, boolean[]> tracked_edges = new HashMap<Long,boolean[]>();
-		
-		initializeTrackedEdges(stGraph, tracked_edges);
+		EdgeTrackStore tracked_edges = initializeTrackedEdges(stGraph);
 		for(int i=1; i<stGraph.size(); i++)
 			analyzeFrame(stGraph, tracked_edges, i);
 		
@@ -53,13 +48,12 @@ public class EdgeTracking {
 	 * tells if the edge is present or not at the corresponding time point. The key of the map is
 	 * the cantor paring of the edges vertex ids.
 	 */
-	public static HashMap<Long, boolean[]> trackEdges(
+	public static EdgeTrackStore trackEdges(
 			SpatioTemporalGraph stGraph, EzPlug plugin) {
-		HashMap<Long, boolean[]> tracked_edges = new HashMap<Long,boolean[]>();
 		plugin.getUI().setProgressBarMessage("Tracking Edges..");
 		plugin.getUI().setProgressBarValue(0.0);
 		
-		initializeTrackedEdges(stGraph, tracked_edges);
+		EdgeTrackStore tracked_edges = initializeTrackedEdges(stGraph);
 		for(int i=1; i<stGraph.size(); i++){
 			analyzeFrame(stGraph, tracked_edges, i);
 			plugin.getUI().setProgressBarValue((double)i/stGraph.size());
@@ -68,34 +62,40 @@ public class EdgeTracking {
 	}
 
 	/**
-	 * Initializes the boolean arrays for each edge in the first frame
+	 * Initializes the presence rows for each edge in the first frame
 	 * 
 	 * @param stGraph graph to analyze
-	 * @param tracked_edges empty map
+	 * @return store containing the edges of the first frame
 	 */
-	private static void initializeTrackedEdges(SpatioTemporalGraph stGraph,
-			HashMap<Long, boolean[]> tracked_edges) {
+	private static EdgeTrackStore initializeTrackedEdges(SpatioTemporalGraph stGraph) {
 		FrameGraph first_frame = stGraph.getFrame(0);
+		EdgeTrackStore tracked_edges = new EdgeTrackStore(
+				stGraph.size(), first_frame.edgeSet().size());
+		
 		for(Edge e: first_frame.edgeSet())
 			if(e.canBeTracked(first_frame)){
-				long track_code = e.getPairCode(first_frame);
-				tracked_edges.put(track_code, new boolean[stGraph.size()]);
-				tracked_edges.get(track_code)[0] = true;
+				int a = first_frame.getEdgeSource(e).getTrackID();
+				int b = first_frame.getEdgeTarget(e).getTrackID();
+				long track_code = Edge.computePairCode(a, b);
+				tracked_edges.add(track_code, a, b);
+				tracked_edges.setPresent(track_code, 0);
 			}
+		
+		return tracked_edges;
 	}
 	
 	/**
-	 * Given the initialized map (see initializeTrackedEdges method)
-	 * the analyzeFrame method fills the map for the time point i
+	 * Given the initialized store (see initializeTrackedEdges method)
+	 * the analyzeFrame method fills the store for the time point i
 	 * by verifying the presence of each included edge at the
 	 * frame i of the stGraph. 
 	 * 
 	 * @param stGraph graph to analyze
-	 * @param tracked_edges initialized output map
+	 * @param tracked_edges initialized output store
 	 * @param i time point to analyze
 	 */
 	private static void analyzeFrame(SpatioTemporalGraph stGraph,
-			HashMap<Long, boolean[]> tracked_edges, int i) {
+			EdgeTrackStore tracked_edges, int i) {
 		FrameGraph frame_i = stGraph.getFrame(i);
 		trackEdgesInFrame(tracked_edges, frame_i);
 		removeUntrackedEdges(tracked_edges, frame_i);
@@ -104,19 +104,17 @@ public class EdgeTracking {
 	/**
 	 * Checks the presence of edges in frame_i
 	 * 
-	 * @param tracked_edges presence map
+	 * @param tracked_edges presence store
 	 * @param frame_i frame to check
 	 */
 	private static void trackEdgesInFrame(
-			HashMap<Long, boolean[]> tracked_edges,
+			EdgeTrackStore tracked_edges,
 			FrameGraph frame_i) {
 		
+		int frame_no = frame_i.getFrameNo();
 		for(Edge e: frame_i.edgeSet())
-			if(e.canBeTracked(frame_i)){
-				long edge_track_code = e.getPairCode(frame_i);
-				if(tracked_edges.containsKey(edge_track_code))
-					tracked_edges.get(edge_track_code)[frame_i.getFrameNo()] = true;
-			}
+			if(e.canBeTracked(frame_i))
+				tracked_edges.setPresent(e.getPairCode(frame_i), frame_no);
 	}
 	
 	/**
@@ -126,21 +124,12 @@ public class EdgeTracking {
 	 * (i.e. cells are still there but not neighbors anymore) and
 	 * lost edges because of missing cells (possible segmentation mistake or elimination) 
 	 * 
-	 * @param tracked_edges presence map
+	 * @param tracked_edges presence store
 	 * @param frame_i frame to check
 	 */
 	private static void removeUntrackedEdges(
-			HashMap<Long, boolean[]> tracked_edges, FrameGraph frame_i) {
+			EdgeTrackStore tracked_edges, FrameGraph frame_i) {
 		//introduce the difference between lost edge because of tracking and because of T1
-		ArrayList<Long> to_eliminate = new ArrayList<Long>();
-		for(long track_code:tracked_edges.keySet())
-			for(int track_id: Edge.getCodePair(track_code))
-				if(!frame_i.hasTrackID(track_id)){
-					to_eliminate.add(track_code);
-					break;
-				}
-		
-		for(long track_code:to_eliminate)
-			tracked_edges.remove(track_code);
+		tracked_edges.removeMissing(frame_i);
 	}
 }
@@ -8,6 +8,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.nodes.ComparableNode;
@@ -15,10 +18,7 @@ import plugins.davhelle.cellgraph.nodes.Division;
 import plugins.davhelle.cellgraph.nodes.Elimination;
 import plugins.davhelle.cellgraph.nodes.Node;
 
-import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.Point;
-import com.vividsolutions.jts.geom.prep.PreparedGeometry;
-import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 import com.vividsolutions.jts.operation.distance.DistanceOp;
 
 /**
@@ -128,11 +128,43 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 	
 	
 	/**
-	 * Caching for performance increase
-	 * on repetitive intersection operation 
-	 * on the same geometry.
+	 * Spatially indexed overlap search used
+	 * to propagate the cells over the linkrange
 	 */
-	private PreparedGeometryFactory cached_factory;
+	private OverlapPropagation propagation;
+	
+	/**
+	 * Cell and intersection areas shared by
+	 * all phases of a tracking run
+	 */
+	private OverlapCache overlap_cache;
+	
+	/**
+	 * Number of workers scoring the candidates of a frame
+	 */
+	private int thread_no;
+	
+	/**
+	 * Pool scoring the candidates during a tracking run,
+	 * null if the candidates are scored sequentially
+	 */
+	private ForkJoinPool scoring_pool;
+	
+	/**
+	 * Score of a candidate group for a node of the current frame.
+	 * A score without first node marks the node as "lost bride",
+	 * i.e. resets its candidate list.
+	 */
+	private static class CandidateScore {
+		
+		private final Node first;
+		private final double value;
+		
+		CandidateScore(Node first, double value){
+			this.first = first;
+			this.value = value;
+		}
+	}
 
 	
 	/**
@@ -160,35 +192,58 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 		this.lambda1 = lambda1;
 		this.lambda2 = lambda2;
 		this.coverage_factor = 0.5;
-		
-		cached_factory = new PreparedGeometryFactory();
+		this.thread_no = Runtime.getRuntime().availableProcessors();
+	}
+	
+	/**
+	 * Sets the number of workers scoring the candidates of a frame.
+	 * The results do not depend on it.
+	 * 
+	 * @param thread_no number of workers, 1 to score sequentially
+	 */
+	public void setThreadNo(int thread_no){
+		this.thread_no = Math.max(1, thread_no);
 	}
 	
 	@Override
 	public void track(){
 		
-		//link time points and propagate their information
-		for(int time_point = 0; time_point < stGraph.size(); time_point++){
-			System.out.println("\n*** Linking frame "+time_point+" ***\n");
-			
-			if(time_point > 0){
-				
-				//Build two maps to store the candidates
-				Map<Node, List<ComparableNode>> grooms = new HashMap<Node, List<ComparableNode>>();
-				Map<Node, List<ComparableNode>> brides = new HashMap<Node, List<ComparableNode>>();;
+		overlap_cache = new OverlapCache();
+		propagation = new OverlapPropagation(10, overlap_cache);
+		scoring_pool = thread_no > 1 ? new ForkJoinPool(thread_no) : null;
+		
+		try{
+			//link time points and propagate their information
+			for(int time_point = 0; time_point < stGraph.size(); time_point++){
+				System.out.println("\n*** Linking frame "+time_point+" ***\n");
 
-				//Evaluate the candidates according to a distance criteria
-				evaluateCandidates(grooms, brides, time_point);
-				
-				//Link the candidates according to a matching algorithm
-				Map<String, Stack<Node>> unmarried = linkCandidates(grooms,brides);
-				
-				//Analyze unmarried/unlinked nodes
-				analyze_unmarried(unmarried, time_point);
+				//frames outside the linkrange window are not compared anymore
+				overlap_cache.releaseBefore(time_point - linkrange);
+
+				if(time_point > 0){
+
+					//Build two maps to store the candidates
+					Map<Node, List<ComparableNode>> grooms = new HashMap<Node, List<ComparableNode>>();
+					Map<Node, List<ComparableNode>> brides = new HashMap<Node, List<ComparableNode>>();;
+
+					//Evaluate the candidates according to a distance criteria
+					evaluateCandidates(grooms, brides, time_point);
+
+					//Link the candidates according to a matching algorithm
+					Map<String, Stack<Node>> unmarried = linkCandidates(grooms,brides);
+
+					//Analyze unmarried/unlinked nodes
+					analyze_unmarried(unmarried, time_point);
+				}
+
+				//add candidates to the successive frames
+				propagateTimePoint(time_point);	
 			}
-			
-			//add candidates to the successive frames
-			propagateTimePoint(time_point);	
+		}
+		finally{
+			if(scoring_pool != null)
+				scoring_pool.shutdownNow();
+			scoring_pool = null;
 		}
 		
 		reviewDivisionsAndEliminations();
@@ -252,34 +307,24 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 	 */
 	private void propagateTimePoint(int time_point) {
 		
-		//TODO Update with STR-tree for spatial indexing
+		//prepared geometries of earlier frames are not needed anymore
+		propagation.releaseBefore(time_point);
 		
 		for(Node current: stGraph.getFrame(time_point).vertexSet())
 		{	
-			PreparedGeometry cached_current = cached_factory.create(current.getGeometry());
-			
 			//only propagate what has been successfully in current frame.
 			if(current.getTrackID() != -1)
 			{	
 				for(int i=1; i <= linkrange && time_point + i < stGraph.size(); i++)
-					for(Node next: stGraph.getFrame(time_point + i).vertexSet()) {
-						Geometry next_geometry = next.getGeometry();
-						
-						if(cached_current.intersects(next_geometry))
-						{
-							
-							Geometry intersection = next_geometry.intersection(current.getGeometry());
-							if(intersection.getArea() > 10){
-								next.addParentCandidate(current);
-
-								if( VERBOSE && current.getTrackID() == follow_ID)
-									System.out.printf("%d propagated to [%.0f,%.0f] @ frame %d",
-											follow_ID,
-											next.getCentroid().getX(),
-											next.getCentroid().getY(),
-											time_point+i);
-							}
-						}
+					for(Node next: propagation.findOverlapping(current, stGraph.getFrame(time_point + i))) {
+						next.addParentCandidate(current);
+
+						if( VERBOSE && current.getTrackID() == follow_ID)
+							System.out.printf("%d propagated to [%.0f,%.0f] @ frame %d",
+									follow_ID,
+									next.getCentroid().getX(),
+									next.getCentroid().getY(),
+									time_point+i);
 					}								
 			}
 			
@@ -444,12 +489,12 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 
 								//check if current swap better than previous
 								//check fit neighbor <> untracked
-								Geometry nIu = neighbor.getGeometry().intersection(untracked.getGeometry());
-								double nIuFIT = nIu.getArea() / neighbor.getGeometry().getArea();
+								double nIuFIT = overlap_cache.getIntersectionArea(neighbor, untracked) / 
+										overlap_cache.getArea(neighbor);
 
 								//check fit lost <> neighbor's correspondence
-								Geometry lIc = last_correspondence.getGeometry().intersection(futureN.getGeometry());
-								double lIcFIT = lIc.getArea() / last_correspondence.getGeometry().getArea();
+								double lIcFIT = overlap_cache.getIntersectionArea(last_correspondence, futureN) / 
+										overlap_cache.getArea(last_correspondence);
 
 								//create comparable Node with the sum of fits
 								ComparableNode candidate = new ComparableNode(neighbor, nIuFIT + lIcFIT);
@@ -636,10 +681,9 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 					}
 
 					//assumption 4: mother cell should share the biggest intersection with the untracked cell
-					Geometry motherIntersection = untracked.getGeometry().intersection(
-							motherCandidate.getGeometry());
+					double motherIntersection = overlap_cache.getIntersectionArea(untracked, motherCandidate);
 					
-					ComparableNode candidate = new ComparableNode(brotherCandidate, motherIntersection.getArea());
+					ComparableNode candidate = new ComparableNode(brotherCandidate, motherIntersection);
 					
 					if(candidate.compareTo(bestBrotherCandidate) > 0)
 						bestBrotherCandidate = candidate;
@@ -656,33 +700,27 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 			Node brother2 = bestBrotherCandidate.getNode();
 			Node mother = brother2.getPrevious();
 			
-			//Geometry acronyms
-			//TODO extend use downwards
-			Geometry b1 = brother1.getGeometry();
-			Geometry b2 = brother2.getGeometry();
-			Geometry m = mother.getGeometry();
-			
 			boolean use_condition_5 = false;
 			//assumption 5: mother's area should be bigger than the child's combined area	
 			if(use_condition_5){
-				double combined_area = brother1.getGeometry().getArea() + brother2.getGeometry().getArea();
-				double mother_area = mother.getGeometry().getArea();
+				double combined_area = overlap_cache.getArea(brother1) + overlap_cache.getArea(brother2);
+				double mother_area = overlap_cache.getArea(mother);
 				
 				if( mother_area < combined_area * increase_factor)
 					continue;
 			}
 
 			//assumption 6: both children should be covered by at least 60% by the mother cell
-			Geometry ib1 = b1.intersection(m);
-			Geometry ib2 = b2.intersection(m);
+			double coverage_b1 = overlap_cache.getIntersectionArea(brother1, mother) / overlap_cache.getArea(brother1);
+			double coverage_b2 = overlap_cache.getIntersectionArea(brother2, mother) / overlap_cache.getArea(brother2);
 			
-			if((ib1.getArea()/b1.getArea()) < coverage_factor){
-				if(VERBOSE) System.out.println("Insufficient coverage b1: "+ib1.getArea()/b1.getArea());
+			if(coverage_b1 < coverage_factor){
+				if(VERBOSE) System.out.println("Insufficient coverage b1: "+coverage_b1);
 				continue;
 			}
 			
-			if((ib2.getArea()/b2.getArea()) < coverage_factor){
-				if(VERBOSE) System.out.println("Insufficient coverage b2: "+ib2.getArea()/b2.getArea());
+			if(coverage_b2 < coverage_factor){
+				if(VERBOSE) System.out.println("Insufficient coverage b2: "+coverage_b2);
 				continue;
 			}
 			
@@ -761,107 +799,202 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 			Map<Node, List<ComparableNode>> current_map, int time_point) {
 		
 		//visit all nodes of the current frame
-		for(Node current: stGraph.getFrame(time_point).vertexSet()){
-			
-			//initialize reference towards which distances are computed
-			Point current_cell_center = current.getCentroid();
-			
-			//given ancestor candidates compute mean distances
-			//based on individual nodes linking to the same first() node.
-			
-			List<Node> candidates = current.getParentCandidates();
+		List<Node> current_nodes = new ArrayList<Node>(stGraph.getFrame(time_point).vertexSet());
+		List<CandidateScore>[] scores = scoreFrame(current_nodes, time_point);
+		
+		//fill the maps in the order of the frame, as if scored sequentially
+		for(int i=0; i<current_nodes.size(); i++){
+			Node current = current_nodes.get(i);
 			
-			//if no candidates are given add it as "lost bride"
-			//could be set more stringent with frame_0_union.buffer(-10.0)
-			if(candidates.size() == 0){
-				if(frame_0_union.contains(current_cell_center) && !current.onBoundary())
+			for(CandidateScore score: scores[i]){
+				
+				//lost bride
+				if(score.first == null){
 					current_map.put(current, new ArrayList<ComparableNode>());
-			}
-			else{
+					continue;
+				}
 				
-				while(candidates.size() > 0){
+				//assign candidate to both maps with the respective distance
 
-					Iterator<Node> candidate_it = candidates.iterator();
+				//first -> current
+				if(!first_map.containsKey(score.first))
+					first_map.put(score.first, new ArrayList<ComparableNode>());
 
-					Node voted = candidate_it.next();
-					Node first = voted.getFirst();
-					candidate_it.remove();
-					
-					//Check whether the cell is part of a division, if yes to 
-					//avoid that the candidate approach is biased by the mother
-					//cell 
-					if(voted.hasObservedDivision()){
-						Division division = voted.getDivision();
-						if(time_point > division.getTimePoint())
-							if(division.isMother(voted)){
-								//TODO eliminate all mother candidates and use hasOrigin instead of time_point check
-								continue;
-						}
+				ComparableNode candidate_distance = new ComparableNode(current,score.value);
+				first_map.get(score.first).add(candidate_distance);
+
+				//current -> first
+				if(!current_map.containsKey(current))
+					current_map.put(current, new ArrayList<ComparableNode>());
+
+				current_map.get(current).add(new ComparableNode(score.first, score.value));
+
+				//the two maps will be later matched by solving an abstracted
+				//stable marriage problem
+			}
+		}
+	}
+	
+	/**
+	 * Scores the candidates of all nodes of a frame. The nodes are split
+	 * in contiguous blocks scored by the workers of the scoring pool, 
+	 * scoring only reads the graph and the candidates of each node.
+	 * 
+	 * @param current_nodes nodes of the current frame
+	 * @param time_point time point of the current frame being considered
+	 * @return candidate scores of every node, in node order
+	 */
+	@SuppressWarnings("unchecked")
+	private List<CandidateScore>[] scoreFrame(final List<Node> current_nodes, final int time_point){
+		
+		final List<CandidateScore>[] scores = new List[current_nodes.size()];
+		
+		if(scoring_pool == null){
+			for(int i=0; i<current_nodes.size(); i++)
+				scores[i] = scoreCandidates(current_nodes.get(i), time_point);
+			return scores;
+		}
+		
+		//few blocks per worker to balance the uneven candidate numbers
+		int block_no = Math.max(1, Math.min(current_nodes.size(), 4 * thread_no));
+		List<Future<?>> pending_blocks = new ArrayList<Future<?>>();
+		for(int b=0; b<block_no; b++){
+			final int from = b * current_nodes.size() / block_no;
+			final int to = (b + 1) * current_nodes.size() / block_no;
+			pending_blocks.add(scoring_pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					for(int i=from; i<to; i++)
+						scores[i] = scoreCandidates(current_nodes.get(i), time_point);
+				}
+			}));
+		}
+		
+		for(Future<?> pending_block: pending_blocks){
+			try {
+				pending_block.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while scoring frame " + time_point, e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Scoring failed in frame " + time_point, e.getCause());
+			}
+		}
+		
+		return scores;
+	}
+	
+	/**
+	 * Computes the distance to every group of candidates sharing 
+	 * the same first node. Consumes the parent candidates of the node.
+	 * 
+	 * @param current node of the current frame
+	 * @param time_point time point of the current frame being considered
+	 * @return candidate scores in evaluation order
+	 */
+	private List<CandidateScore> scoreCandidates(Node current, int time_point){
+		
+		List<CandidateScore> scores = new ArrayList<CandidateScore>();
+		
+		//initialize reference towards which distances are computed
+		Point current_cell_center = current.getCentroid();
+		
+		//given ancestor candidates compute mean distances
+		//based on individual nodes linking to the same first() node.
+		
+		List<Node> candidates = current.getParentCandidates();
+		
+		//if no candidates are given add it as "lost bride"
+		//could be set more stringent with frame_0_union.buffer(-10.0)
+		if(candidates.size() == 0){
+			if(frame_0_union.contains(current_cell_center) && !current.onBoundary())
+				scores.add(new CandidateScore(null, 0));
+		}
+		else{
+			
+			while(candidates.size() > 0){
+
+				Iterator<Node> candidate_it = candidates.iterator();
+
+				Node voted = candidate_it.next();
+				Node first = voted.getFirst();
+				candidate_it.remove();
+				
+				//Check whether the cell is part of a division, if yes to 
+				//avoid that the candidate approach is biased by the mother
+				//cell 
+				if(voted.hasObservedDivision()){
+					Division division = voted.getDivision();
+					if(time_point > division.getTimePoint())
+						if(division.isMother(voted)){
+							//TODO eliminate all mother candidates and use hasOrigin instead of time_point check
+							continue;
 					}
-					
-					Point voted_centroid = voted.getCentroid();
+				}
+				
+				Point voted_centroid = voted.getCentroid();
 
+				
+				//VIABILITY CHECK BASED ON FIRST FRAME GEOMETRY
+				//Cell could be either new (division/seg.error), 
+				//thus not associated to any first node 
+				//TODO more stringent version with frame_0_union.buffer(-10.0)?
+				if(first == null){
+					if(frame_0_union.contains(voted_centroid) && !voted.onBoundary())
+						scores.add(new CandidateScore(null, 0));
+					continue;
+				}
+				
+				
+				//compute a value for the entire first group
+				double group_value = Double.MAX_VALUE;
+				
+				switch(distance_criteria){
+				
+				case OVERLAP_WITH_MIN_DISTANCE:
 					
-					//VIABILITY CHECK BASED ON FIRST FRAME GEOMETRY
-					//Cell could be either new (division/seg.error), 
-					//thus not associated to any first node 
-					//TODO more stringent version with frame_0_union.buffer(-10.0)?
-					if(first == null){
-						if(frame_0_union.contains(voted_centroid) && !voted.onBoundary())
-							current_map.put(current, new ArrayList<ComparableNode>());
-						continue;
-					}
+					if(VERBOSE && voted.getTrackID() == follow_ID)
+						System.out.printf("%d to [%.0f,%.0f]:\n",
+								voted.getTrackID(),
+								current_cell_center.getX(),
+								current_cell_center.getY());
 					
+					double candidate_dist = DistanceOp.distance(
+							voted_centroid,
+							current_cell_center);
 					
-					//compute a value for the entire first group
-					double group_value = Double.MAX_VALUE;
+					//compute difference in area
+					double area_candidate = overlap_cache.getArea(voted);
+					double area_current = overlap_cache.getArea(current);
 					
-					switch(distance_criteria){
+					//compute the intersection between the two cell geometries
+					double intersection = overlap_cache.getIntersectionArea(current, voted);
+					double normalized_overlap = intersection / (area_candidate + area_current);
+					double reciprocal_overlap = 1 / normalized_overlap;
 					
-					case OVERLAP_WITH_MIN_DISTANCE:
-						
-						if(VERBOSE && voted.getTrackID() == follow_ID)
-							System.out.printf("%d to [%.0f,%.0f]:\n",
-									voted.getTrackID(),
-									current_cell_center.getX(),
-									current_cell_center.getY());
-						
-						double candidate_dist = DistanceOp.distance(
-								voted_centroid,
-								current_cell_center);
-						
-						//compute difference in area
-						double area_candidate = voted.getGeometry().getArea();
-						double area_current = current.getGeometry().getArea();
-						
-						//compute the intersection between the two cell geometries
-						Geometry intersection = current.getGeometry().intersection(voted.getGeometry());
-						double normalized_overlap = intersection.getArea() / (area_candidate + area_current);
-						double reciprocal_overlap = 1 / normalized_overlap;
-						
-						//time influence (maximally reduce candidate score by 20%)
-						double time_multiplier = 0.5;
-						
-						//time distance (recent candidates should count more)
-						int candidate_frame_no = voted.getBelongingFrame().getFrameNo();
-						double time_difference = time_point - candidate_frame_no;
-						double time_weight = 1 - (time_multiplier/time_difference);
-						
-						double weighted_candidateDistance = 
-								lambda1 * candidate_dist +
-								lambda2 * reciprocal_overlap;
-						
-						double time_weighted_candidateDistance = weighted_candidateDistance * time_weight;
-
-						if(VERBOSE && voted.getTrackID() == follow_ID)
-							System.out.printf("\t%.2f\t%.2f\t[dist:\t%.2f\tarea:\t%.2f\n",
-									time_weighted_candidateDistance,
-									weighted_candidateDistance,
-									candidate_dist,
-									reciprocal_overlap);
-						
-						
-						weighted_candidateDistance = time_weighted_candidateDistance;
+					//time influence (maximally reduce candidate score by 20%)
+					double time_multiplier = 0.5;
+					
+					//time distance (recent candidates should count more)
+					int candidate_frame_no = voted.getBelongingFrame().getFrameNo();
+					double time_difference = time_point - candidate_frame_no;
+					double time_weight = 1 - (time_multiplier/time_difference);
+					
+					double weighted_candidateDistance = 
+							lambda1 * candidate_dist +
+							lambda2 * reciprocal_overlap;
+					
+					double time_weighted_candidateDistance = weighted_candidateDistance * time_weight;
+
+					if(VERBOSE && voted.getTrackID() == follow_ID)
+						System.out.printf("\t%.2f\t%.2f\t[dist:\t%.2f\tarea:\t%.2f\n",
+								time_weighted_candidateDistance,
+								weighted_candidateDistance,
+								candidate_dist,
+								reciprocal_overlap);
+					
+					
+					weighted_candidateDistance = time_weighted_candidateDistance;
 //							System.out.println(
 //								voted.getTrackID()+
 //								" to: ["+Math.round(current_cell_center.getX())+
@@ -870,91 +1003,76 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 //								" area:"+Math.round(1/normalized_overlap)+
 //								" (= "+ weighted_candidateDistance + ")");
 
-						
-						double min = weighted_candidateDistance;
+					
+					double min = weighted_candidateDistance;
 //						int candidate_no = 1;
 //						double candidate_avg = weighted_candidateDistance;
 
-						while(candidate_it.hasNext()){
+					while(candidate_it.hasNext()){
+						
+						voted = candidate_it.next();
+						if( voted.getFirst() == first){
+							candidate_it.remove();
+							voted_centroid = voted.getCentroid();
 							
-							voted = candidate_it.next();
-							if( voted.getFirst() == first){
-								candidate_it.remove();
-								voted_centroid = voted.getCentroid();
-								
-								candidate_dist = DistanceOp.distance(
-										voted_centroid,
-										current_cell_center);
-								
-								//compute difference in area
-								area_candidate = voted.getGeometry().getArea();
-								area_current = current.getGeometry().getArea();
-								
-								//compute the intersection between the two cell geometries
-								intersection = current.getGeometry().intersection(voted.getGeometry());
-								normalized_overlap = intersection.getArea() / (area_candidate + area_current);
-								reciprocal_overlap = 1 / normalized_overlap;
-								
-								//time distance (recent candidates should count more)
-								candidate_frame_no = voted.getBelongingFrame().getFrameNo();
-								time_difference = time_point - candidate_frame_no;
-								time_weight = 1 - (time_multiplier/time_difference);
-								
-								weighted_candidateDistance = 
-										lambda1 * candidate_dist +
-										lambda2 * reciprocal_overlap;
-								
-								time_weighted_candidateDistance = weighted_candidateDistance * time_weight;
-								
-								if(VERBOSE && voted.getTrackID() == follow_ID)
-									System.out.printf("\t%.2f\t%.2f\t[dist:\t%.2f\tarea:\t%.2f\n",
-											time_weighted_candidateDistance,
-											weighted_candidateDistance,
-											candidate_dist,
-											reciprocal_overlap);
-								
-								weighted_candidateDistance = time_weighted_candidateDistance;
-			
+							candidate_dist = DistanceOp.distance(
+									voted_centroid,
+									current_cell_center);
+							
+							//compute difference in area
+							area_candidate = overlap_cache.getArea(voted);
+							area_current = overlap_cache.getArea(current);
+							
+							//compute the intersection between the two cell geometries
+							intersection = overlap_cache.getIntersectionArea(current, voted);
+							normalized_overlap = intersection / (area_candidate + area_current);
+							reciprocal_overlap = 1 / normalized_overlap;
+							
+							//time distance (recent candidates should count more)
+							candidate_frame_no = voted.getBelongingFrame().getFrameNo();
+							time_difference = time_point - candidate_frame_no;
+							time_weight = 1 - (time_multiplier/time_difference);
+							
+							weighted_candidateDistance = 
+									lambda1 * candidate_dist +
+									lambda2 * reciprocal_overlap;
+							
+							time_weighted_candidateDistance = weighted_candidateDistance * time_weight;
+							
+							if(VERBOSE && voted.getTrackID() == follow_ID)
+								System.out.printf("\t%.2f\t%.2f\t[dist:\t%.2f\tarea:\t%.2f\n",
+										time_weighted_candidateDistance,
+										weighted_candidateDistance,
+										candidate_dist,
+										reciprocal_overlap);
+							
+							weighted_candidateDistance = time_weighted_candidateDistance;
+		
 //									System.out.println(" dist:"+Math.round(candidate_dist) +
 //										" area:"+Math.round(1/normalized_overlap) + 
 //										" (= "+ weighted_candidateDistance + ")");
-								
-								
+							
+							
 //								candidate_no++;
 //								candidate_avg += weighted_candidateDistance;
-										
-								if(min > weighted_candidateDistance)
-									min = weighted_candidateDistance;
+									
+							if(min > weighted_candidateDistance)
+								min = weighted_candidateDistance;
 
-							}
 						}
-
-						group_value = min;
-						
-						break;
-						
 					}
 
-					//assign candidate to both maps with the respective distance
-
-					//first -> current
-					if(!first_map.containsKey(first))
-						first_map.put(first, new ArrayList<ComparableNode>());
-
-					ComparableNode candidate_distance = new ComparableNode(current,group_value);
-					first_map.get(first).add(candidate_distance);
-
-					//current -> first
-					if(!current_map.containsKey(current))
-						current_map.put(current, new ArrayList<ComparableNode>());
-
-					current_map.get(current).add(new ComparableNode(first, group_value));
-
-					//the two maps will be later matched by solving an abstracted
-					//stable marriage problem
-				
+					group_value = min;
+					
+					break;
+					
 				}
+
+				scores.add(new CandidateScore(first, group_value));
+			
 			}
-		}	
+		}
+	
+		return scores;
 	}
 }
@@ -0,0 +1,247 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import plugins.davhelle.cellgraph.nodes.Node;
+
+/**
+ * Cache for the cell areas and the pairwise intersection areas
+ * computed during a tracking run. Every cell gets a slot whose
+ * area is stored in a primitive array, intersection areas are
+ * stored in an open addressing table keyed by the slot pair.<br><br>
+ *
+ * Cells of frames which left the linkrange window are dropped
+ * with {@link #releaseBefore(int)} to keep the memory bounded.<br><br>
+ *
+ * Areas can be requested concurrently: the tables are accessed under
+ * the cache lock while the geometries are measured outside of it.
+ *
+ * @author Davide Heller
+ *
+ */
+public class OverlapCache {
+
+	/**
+	 * Marker for free pair slots
+	 */
+	private static final long FREE = -1L;
+
+	/**
+	 * Slot of every cached cell
+	 */
+	private final Map<Node, Integer> slots;
+	/**
+	 * Frame number and area by slot, NaN if not computed
+	 */
+	private int[] slot_frame;
+	private double[] slot_area;
+	/**
+	 * Released slots available for reuse
+	 */
+	private int[] free_slots;
+	private int free_slot_no;
+	private int slot_no;
+
+	/**
+	 * Pair table, key = (lower slot << 32) | higher slot
+	 */
+	private long[] pair_keys;
+	private double[] pair_areas;
+	private int pair_no;
+
+	/**
+	 * Empty cache
+	 */
+	public OverlapCache(){
+		this.slots = new HashMap<Node, Integer>();
+		this.slot_frame = new int[64];
+		this.slot_area = new double[64];
+		this.free_slots = new int[64];
+		this.free_slot_no = 0;
+		this.slot_no = 0;
+		allocatePairs(256);
+	}
+
+	private void allocatePairs(int capacity){
+		pair_keys = new long[capacity];
+		pair_areas = new double[capacity];
+		Arrays.fill(pair_keys, FREE);
+		pair_no = 0;
+	}
+
+	/**
+	 * @param n cell
+	 * @return slot of the cell, assigned at the first request
+	 */
+	private int slot(Node n){
+		Integer slot = slots.get(n);
+		if(slot != null)
+			return slot;
+
+		int new_slot;
+		if(free_slot_no > 0)
+			new_slot = free_slots[--free_slot_no];
+		else{
+			new_slot = slot_no++;
+			if(new_slot == slot_area.length){
+				slot_frame = Arrays.copyOf(slot_frame, new_slot * 2);
+				slot_area = Arrays.copyOf(slot_area, new_slot * 2);
+			}
+		}
+
+		slot_frame[new_slot] = n.getBelongingFrame().getFrameNo();
+		slot_area[new_slot] = Double.NaN;
+		slots.put(n, new_slot);
+
+		return new_slot;
+	}
+
+	/**
+	 * @param n cell
+	 * @return area of the cell geometry
+	 */
+	public double getArea(Node n){
+		synchronized (this) {
+			int slot = slot(n);
+			if(!Double.isNaN(slot_area[slot]))
+				return slot_area[slot];
+		}
+		
+		double area = n.getGeometry().getArea();
+		
+		synchronized (this) {
+			int slot = slot(n);
+			slot_area[slot] = area;
+		}
+		return area;
+	}
+
+	/**
+	 * @param a first cell
+	 * @param b second cell
+	 * @return area of the intersection between the two cell geometries
+	 */
+	public double getIntersectionArea(Node a, Node b){
+		synchronized (this) {
+			int i = pairSlot(pairKey(slot(a), slot(b)));
+			if(pair_keys[i] != FREE)
+				return pair_areas[i];
+		}
+
+		double area = a.getGeometry().intersection(b.getGeometry()).getArea();
+		putIntersectionArea(a, b, area);
+		return area;
+	}
+
+	/**
+	 * Stores an intersection area computed elsewhere
+	 *
+	 * @param a first cell
+	 * @param b second cell
+	 * @param area area of the intersection between the two cell geometries
+	 */
+	public synchronized void putIntersectionArea(Node a, Node b, double area){
+		long key = pairKey(slot(a), slot(b));
+		int i = pairSlot(key);
+		if(pair_keys[i] == FREE){
+			pair_keys[i] = key;
+			pair_no++;
+		}
+		pair_areas[i] = area;
+
+		if(pair_no * 2 > pair_keys.length)
+			rehash(pair_keys.length * 2);
+	}
+
+	/**
+	 * @param key pair key
+	 * @return table index of the key or of the free slot where it belongs
+	 */
+	private int pairSlot(long key){
+		int mask = pair_keys.length - 1;
+		long h = key * 0x9E3779B97F4A7C15L;
+		int i = (int)(h ^ (h >>> 32)) & mask;
+		while(pair_keys[i] != FREE && pair_keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	private static long pairKey(int slot_a, int slot_b){
+		if(slot_a > slot_b){
+			int tmp = slot_a;
+			slot_a = slot_b;
+			slot_b = tmp;
+		}
+		return ((long)slot_a << 32) | slot_b;
+	}
+
+	/**
+	 * Rebuilds the pair table dropping the pairs of released slots
+	 *
+	 * @param capacity new table size
+	 */
+	private void rehash(int capacity){
+		long[] old_keys = pair_keys;
+		double[] old_areas = pair_areas;
+		allocatePairs(capacity);
+
+		for(int k=0; k<old_keys.length; k++){
+			long key = old_keys[k];
+			if(key == FREE || isReleased((int)(key >>> 32)) || isReleased((int)key))
+				continue;
+
+			int i = pairSlot(key);
+			pair_keys[i] = key;
+			pair_areas[i] = old_areas[k];
+			pair_no++;
+		}
+	}
+
+	private boolean isReleased(int slot){
+		return slot_frame[slot] == Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Drops all cells belonging to frames before a time point
+	 *
+	 * @param frame_no first frame to keep
+	 */
+	public synchronized void releaseBefore(int frame_no){
+		boolean released = false;
+
+		Iterator<Integer> slot_it = slots.values().iterator();
+		while(slot_it.hasNext()){
+			int slot = slot_it.next();
+			if(slot_frame[slot] < frame_no){
+				slot_it.remove();
+				slot_frame[slot] = Integer.MIN_VALUE;
+				released = true;
+			}
+		}
+
+		if(!released)
+			return;
+
+		//pairs must be purged before the slots are reused
+		rehash(pair_keys.length);
+
+		for(int slot=0; slot<slot_no; slot++)
+			if(isReleased(slot)){
+				if(free_slot_no == free_slots.length)
+					free_slots = Arrays.copyOf(free_slots, free_slot_no * 2);
+				free_slots[free_slot_no++] = slot;
+				slot_frame[slot] = Integer.MAX_VALUE;
+			}
+	}
+
+	/**
+	 * @return number of cached cells
+	 */
+	public synchronized int size(){
+		return slots.size();
+	}
+
+}
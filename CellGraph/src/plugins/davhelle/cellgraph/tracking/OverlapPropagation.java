@@ -0,0 +1,144 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * Finds the cells of a later frame which overlap a tracked cell
+ * by more than a minimal area. Used by {@link GraphTracking} to
+ * propagate the tracked cells over the linkrange window.<br><br>
+ *
+ * Candidates are retrieved from the spatial index of the frame and
+ * tested with prepared geometries which are kept for every frame of
+ * the window. The full overlay (intersection) is only computed when
+ * neither the bounding boxes nor a containment relation decide the
+ * overlap area.
+ *
+ * @author Davide Heller
+ *
+ */
+public class OverlapPropagation {
+
+	/**
+	 * Minimal overlap area for a cell to become a candidate
+	 */
+	private final double min_overlap;
+
+	/**
+	 * Prepared geometries of the frames in the window, by frame number
+	 */
+	private final Map<Integer, Map<Node, PreparedGeometry>> prepared_frames;
+
+	/**
+	 * Cache receiving the computed intersection areas
+	 */
+	private final OverlapCache cache;
+
+	private final PreparedGeometryFactory factory;
+
+	/**
+	 * @param min_overlap minimal area of the intersection (exclusive)
+	 */
+	public OverlapPropagation(double min_overlap){
+		this(min_overlap, new OverlapCache());
+	}
+
+	/**
+	 * @param min_overlap minimal area of the intersection (exclusive)
+	 * @param cache cache to store the computed intersection areas for later tracking phases
+	 */
+	public OverlapPropagation(double min_overlap, OverlapCache cache){
+		this.min_overlap = min_overlap;
+		this.cache = cache;
+		this.prepared_frames = new HashMap<Integer, Map<Node,PreparedGeometry>>();
+		this.factory = new PreparedGeometryFactory();
+	}
+
+	/**
+	 * @param n node to prepare
+	 * @return cached prepared geometry of the node
+	 */
+	private PreparedGeometry getPrepared(Node n){
+		int frame_no = n.getBelongingFrame().getFrameNo();
+		Map<Node, PreparedGeometry> frame_cache = prepared_frames.get(frame_no);
+		if(frame_cache == null){
+			frame_cache = new HashMap<Node, PreparedGeometry>();
+			prepared_frames.put(frame_no, frame_cache);
+		}
+
+		PreparedGeometry prepared = frame_cache.get(n);
+		if(prepared == null){
+			prepared = factory.create(n.getGeometry());
+			frame_cache.put(n, prepared);
+		}
+
+		return prepared;
+	}
+
+	/**
+	 * Computes the cells of a frame which overlap a given cell
+	 *
+	 * @param current cell to propagate
+	 * @param next_frame frame in which to look for overlapping cells
+	 * @return cells of next_frame whose intersection with current exceeds the minimal overlap
+	 */
+	public List<Node> findOverlapping(Node current, FrameGraph next_frame){
+
+		Geometry current_geometry = current.getGeometry();
+		Envelope current_envelope = current_geometry.getEnvelopeInternal();
+		PreparedGeometry prepared_current = getPrepared(current);
+
+		List<Node> overlapping = new ArrayList<Node>();
+		for(Node next: next_frame.cellsWithEnvelopeIntersecting(current_envelope)){
+
+			Geometry next_geometry = next.getGeometry();
+
+			//the intersection cannot be larger than the overlap of the bounding boxes
+			Envelope common = current_envelope.intersection(next_geometry.getEnvelopeInternal());
+			if(common.getArea() <= min_overlap)
+				continue;
+
+			if(!prepared_current.intersects(next_geometry))
+				continue;
+
+			double overlap_area;
+			if(prepared_current.contains(next_geometry))
+				overlap_area = cache.getArea(next);
+			else if(getPrepared(next).contains(current_geometry))
+				overlap_area = cache.getArea(current);
+			else
+				overlap_area = next_geometry.intersection(current_geometry).getArea();
+
+			cache.putIntersectionArea(current, next, overlap_area);
+
+			if(overlap_area > min_overlap)
+				overlapping.add(next);
+		}
+
+		return overlapping;
+	}
+
+	/**
+	 * Discards the prepared geometries of the frames before a time point
+	 *
+	 * @param time_point first frame to keep
+	 */
+	public void releaseBefore(int time_point){
+		Iterator<Integer> frame_it = prepared_frames.keySet().iterator();
+		while(frame_it.hasNext())
+			if(frame_it.next() < time_point)
+				frame_it.remove();
+	}
+
+}
@@ -0,0 +1,249 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.Arrays;
+
+/**
+ * Sparse linear assignment solver. Every row is assigned to exactly one
+ * column such that the sum of the costs is minimal, columns may stay
+ * unassigned. Only the given row/column pairs are allowed.<br><br>
+ *
+ * The cost matrix is stored in compressed sparse row (CSR) format:
+ * the allowed columns of row i are columns[row_start[i]..row_start[i+1]-1]
+ * with the respective costs.<br><br>
+ *
+ * Rows are added one at a time by a shortest augmenting path search
+ * (Dijkstra on reduced costs, as in the Jonker-Volgenant algorithm),
+ * which keeps the memory linear in the number of allowed pairs.
+ *
+ * @author Davide Heller
+ *
+ */
+public class SparseAssignment {
+
+	private final int row_no;
+	private final int column_no;
+	private final int[] row_start;
+	private final int[] columns;
+	private final double[] costs;
+
+	/**
+	 * Row and column potentials (dual variables)
+	 */
+	private final double[] u;
+	private final double[] v;
+
+	/**
+	 * Current assignment, -1 if unassigned
+	 */
+	private final int[] row_to_column;
+	private final int[] column_to_row;
+
+	/**
+	 * Shortest path search state
+	 */
+	private final double[] column_distance;
+	private final int[] column_predecessor;
+	private final boolean[] column_done;
+	private final int[] touched_columns;
+	private final int[] done_rows;
+
+	/**
+	 * Binary heap of columns with lazy deletion
+	 */
+	private int[] heap_columns;
+	private double[] heap_keys;
+	private int heap_size;
+
+	/**
+	 * @param row_no number of rows
+	 * @param column_no number of columns
+	 * @param row_start offsets of each row in columns/costs, size row_no+1
+	 * @param columns column index of every allowed pair
+	 * @param costs cost of every allowed pair
+	 */
+	public SparseAssignment(int row_no, int column_no, int[] row_start, int[] columns, double[] costs){
+		this.row_no = row_no;
+		this.column_no = column_no;
+		this.row_start = row_start;
+		this.columns = columns;
+		this.costs = costs;
+
+		this.u = new double[row_no];
+		this.v = new double[column_no];
+		this.row_to_column = new int[row_no];
+		this.column_to_row = new int[column_no];
+
+		this.column_distance = new double[column_no];
+		this.column_predecessor = new int[column_no];
+		this.column_done = new boolean[column_no];
+		this.touched_columns = new int[column_no];
+		this.done_rows = new int[row_no];
+
+		this.heap_columns = new int[16];
+		this.heap_keys = new double[16];
+	}
+
+	/**
+	 * Solves the assignment problem
+	 *
+	 * @return assigned column for every row, -1 if the row has no reachable free column
+	 */
+	public int[] solve(){
+		Arrays.fill(row_to_column, -1);
+		Arrays.fill(column_to_row, -1);
+		Arrays.fill(column_distance, Double.POSITIVE_INFINITY);
+
+		for(int row=0; row<row_no; row++)
+			augment(row);
+
+		return row_to_column.clone();
+	}
+
+	/**
+	 * Assigns a new row by finding the shortest augmenting path
+	 * to a free column and updates the potentials accordingly
+	 *
+	 * @param free_row row to add to the assignment
+	 */
+	private void augment(int free_row){
+
+		if(row_start[free_row] == row_start[free_row + 1])
+			return;
+
+		//initial potential keeps the reduced costs of the new row non-negative
+		double min_reduced = Double.POSITIVE_INFINITY;
+		for(int k=row_start[free_row]; k<row_start[free_row + 1]; k++)
+			min_reduced = Math.min(min_reduced, costs[k] - v[columns[k]]);
+		u[free_row] = min_reduced;
+
+		int touched_no = 0;
+		int done_row_no = 0;
+		heap_size = 0;
+
+		int row = free_row;
+		double row_distance = 0;
+		int end_column = -1;
+		double end_distance = 0;
+
+		while(true){
+			done_rows[done_row_no++] = row;
+
+			//relax the edges of the row
+			for(int k=row_start[row]; k<row_start[row + 1]; k++){
+				int column = columns[k];
+				if(column_done[column])
+					continue;
+
+				double distance = row_distance + costs[k] - u[row] - v[column];
+				if(distance < column_distance[column]){
+					if(column_distance[column] == Double.POSITIVE_INFINITY)
+						touched_columns[touched_no++] = column;
+					column_distance[column] = distance;
+					column_predecessor[column] = row;
+					push(column, distance);
+				}
+			}
+
+			//closest column not yet scanned
+			int column = -1;
+			while(heap_size > 0){
+				int candidate = heap_columns[0];
+				double key = heap_keys[0];
+				pop();
+				if(!column_done[candidate] && key == column_distance[candidate]){
+					column = candidate;
+					break;
+				}
+			}
+
+			if(column == -1)
+				break;
+
+			if(column_to_row[column] == -1){
+				end_column = column;
+				end_distance = column_distance[column];
+				break;
+			}
+
+			//continue along the matched edge which has zero reduced cost
+			column_done[column] = true;
+			row = column_to_row[column];
+			row_distance = column_distance[column];
+		}
+
+		if(end_column != -1){
+			//update potentials of the scanned rows and columns
+			for(int i=0; i<done_row_no; i++){
+				int r = done_rows[i];
+				double distance = r == free_row ? 0 : column_distance[row_to_column[r]];
+				u[r] += end_distance - distance;
+			}
+			for(int i=0; i<touched_no; i++){
+				int c = touched_columns[i];
+				if(column_done[c])
+					v[c] -= end_distance - column_distance[c];
+			}
+
+			//flip the assignment along the path
+			int column = end_column;
+			while(true){
+				int r = column_predecessor[column];
+				int next = row_to_column[r];
+				row_to_column[r] = column;
+				column_to_row[column] = r;
+				if(r == free_row)
+					break;
+				column = next;
+			}
+		}
+
+		//reset the search state
+		for(int i=0; i<touched_no; i++){
+			int c = touched_columns[i];
+			column_distance[c] = Double.POSITIVE_INFINITY;
+			column_done[c] = false;
+		}
+	}
+
+	private void push(int column, double key){
+		if(heap_size == heap_columns.length){
+			heap_columns = Arrays.copyOf(heap_columns, heap_size * 2);
+			heap_keys = Arrays.copyOf(heap_keys, heap_size * 2);
+		}
+
+		int i = heap_size++;
+		while(i > 0){
+			int parent = (i - 1) / 2;
+			if(heap_keys[parent] <= key)
+				break;
+			heap_columns[i] = heap_columns[parent];
+			heap_keys[i] = heap_keys[parent];
+			i = parent;
+		}
+		heap_columns[i] = column;
+		heap_keys[i] = key;
+	}
+
+	private void pop(){
+		heap_size--;
+		int column = heap_columns[heap_size];
+		double key = heap_keys[heap_size];
+
+		int i = 0;
+		while(true){
+			int child = 2 * i + 1;
+			if(child >= heap_size)
+				break;
+			if(child + 1 < heap_size && heap_keys[child + 1] < heap_keys[child])
+				child++;
+			if(key <= heap_keys[child])
+				break;
+			heap_columns[i] = heap_columns[child];
+			heap_keys[i] = heap_keys[child];
+			i = child;
+		}
+		heap_columns[i] = column;
+		heap_keys[i] = key;
+	}
+
+}
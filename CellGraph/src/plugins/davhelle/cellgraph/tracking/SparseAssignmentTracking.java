@@ -0,0 +1,118 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.nodes.ComparableNode;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+/**
+ * Solves the same assignment problem as {@link HungarianTracking}
+ * without building the complete bipartite graph. Only the candidate
+ * pairs found by the candidate evaluation are scored, the non-assignment
+ * of a groom costs the dummy weight and brides may remain unassigned.
+ * See {@link SparseAssignment} for the solver.
+ *
+ * @author Davide Heller
+ *
+ */
+public class SparseAssignmentTracking extends GraphTracking{
+
+	/**
+	 * Dummy weight corresponding to the error generated by connecting it
+	 */
+	private double dummy_weight;
+
+	/**
+	 * Initializes the sparse assignment tracking
+	 *
+	 * @param spatioTemporalGraph Spatio-temporal graph to be tracked/linked
+	 * @param linkrange the maximum no. of frames the node information is projected ahead
+	 * @param lambda1 weight for the centroid candidate to candidate distance
+	 * @param lambda2 weight for the normalized area difference
+	 */
+	public SparseAssignmentTracking(SpatioTemporalGraph spatioTemporalGraph, int linkrange, double lambda1, double lambda2) {
+		super(spatioTemporalGraph, linkrange, lambda1, lambda2);
+		this.dummy_weight = 30.0;
+	}
+
+	/**
+	 * Links grooms (candidates from the previous frames) to brides (nodes of
+	 * the current frame) by minimizing the total candidate distance.
+	 *
+	 * @return returns 2 Stacks containing the unlinked nodes, accessible trough a map interface ("brides", "grooms")
+	 */
+	@Override
+	public Map<String, Stack<Node>> linkCandidates(Map<Node, List<ComparableNode>> grooms,Map<Node, List<ComparableNode>> brides) {
+
+		List<Node> groom_list = new ArrayList<Node>(grooms.keySet());
+		List<Node> bride_list = new ArrayList<Node>(brides.keySet());
+
+		Map<Node, Integer> bride_index = new HashMap<Node, Integer>();
+		for(int j=0; j<bride_list.size(); j++)
+			bride_index.put(bride_list.get(j), j);
+
+		int groom_no = groom_list.size();
+		int bride_no = bride_list.size();
+
+		//CSR cost matrix: candidate brides plus one private dummy bride per groom
+		int pair_no = groom_no;
+		for(Node groom: groom_list)
+			pair_no += grooms.get(groom).size();
+
+		int[] row_start = new int[groom_no + 1];
+		int[] columns = new int[pair_no];
+		double[] costs = new double[pair_no];
+
+		int k = 0;
+		for(int i=0; i<groom_no; i++){
+			row_start[i] = k;
+			for(ComparableNode match: grooms.get(groom_list.get(i))){
+				columns[k] = bride_index.get(match.getNode());
+				costs[k] = match.getValue();
+				k++;
+			}
+			columns[k] = bride_no + i;
+			costs[k] = dummy_weight;
+			k++;
+		}
+		row_start[groom_no] = k;
+
+		int[] assignment = new SparseAssignment(
+				groom_no, bride_no + groom_no, row_start, columns, costs).solve();
+
+		//Initialize output data structures
+		Stack<Node> unmarried_grooms = new Stack<Node>();
+		Stack<Node> unmarried_brides = new Stack<Node>();
+
+		boolean[] married_brides = new boolean[bride_no];
+
+		//finally update node correspondences
+		for(int i=0; i<groom_no; i++){
+			Node groom = groom_list.get(i);
+			int j = assignment[i];
+
+			if(j < 0 || j >= bride_no)
+				unmarried_grooms.push(groom);
+			else{
+				Node bride = bride_list.get(j);
+				married_brides[j] = true;
+				updateCorrespondence(bride, getMostRecentCorrespondence(bride, groom));
+			}
+		}
+
+		for(int j=0; j<bride_no; j++)
+			if(!married_brides[j])
+				unmarried_brides.push(bride_list.get(j));
+
+		Map<String, Stack<Node>> unmarried = new HashMap<String, Stack<Node>>();
+		unmarried.put("brides", unmarried_brides);
+		unmarried.put("grooms", unmarried_grooms);
+
+		return unmarried;
+	}
+}
@@ -0,0 +1,246 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.Arrays;
+
+/**
+ * Array based Gale-Shapley solver for the stable marriage problem.
+ * Grooms propose to their candidate brides in ascending order of
+ * distance, a bride accepts the proposal if she is unmarried or if she
+ * ranks the proposing groom before her current husband.<br><br>
+ *
+ * Preferences are stored in compressed sparse row (CSR) format: the
+ * candidate brides of groom i are brides[groom_start[i]..groom_start[i+1]-1]
+ * with the respective distances and analogously for the brides. Rows are
+ * sorted stably by distance, so that candidates with the same distance keep
+ * their input order.<br><br>
+ *
+ * Before solving, the rank of every groom within the preferences of each
+ * of his candidate brides is precomputed, which makes every engagement
+ * check a constant time comparison.<br><br>
+ *
+ * Grooms are processed as a stack: the last groom is proposing first and
+ * rejected husbands are pushed back on top.
+ *
+ * @author Davide Heller
+ *
+ */
+public class StableMarriage {
+
+	/**
+	 * Rank of grooms that do not appear in the preferences of a bride
+	 */
+	private static final int NOT_RANKED = Integer.MAX_VALUE;
+
+	private final int groom_no;
+	private final int bride_no;
+
+	private final int[] groom_start;
+	private final int[] groom_brides;
+	private final double[] groom_distances;
+
+	private final int[] bride_start;
+	private final int[] bride_grooms;
+	private final double[] bride_distances;
+
+	/**
+	 * Rank of the groom in the preferences of his k-th bride, aligned with groom_brides
+	 */
+	private int[] proposal_rank;
+
+	/**
+	 * Grooms that exhausted their candidates, in order of exhaustion
+	 */
+	private int[] nochoice_grooms;
+	private int nochoice_no;
+
+	/**
+	 * @param groom_no number of grooms
+	 * @param bride_no number of brides
+	 * @param groom_start offsets of each groom in groom_brides/groom_distances, size groom_no+1
+	 * @param groom_brides candidate bride indices of every groom
+	 * @param groom_distances distance of every groom candidate
+	 * @param bride_start offsets of each bride in bride_grooms/bride_distances, size bride_no+1
+	 * @param bride_grooms candidate groom indices of every bride
+	 * @param bride_distances distance of every bride candidate
+	 */
+	public StableMarriage(int groom_no, int bride_no,
+			int[] groom_start, int[] groom_brides, double[] groom_distances,
+			int[] bride_start, int[] bride_grooms, double[] bride_distances){
+		this.groom_no = groom_no;
+		this.bride_no = bride_no;
+		this.groom_start = groom_start;
+		this.groom_brides = groom_brides;
+		this.groom_distances = groom_distances;
+		this.bride_start = bride_start;
+		this.bride_grooms = bride_grooms;
+		this.bride_distances = bride_distances;
+	}
+
+	/**
+	 * Sorts the preferences and computes the stable marriage
+	 *
+	 * @return groom index married to every bride, -1 if unmarried
+	 */
+	public int[] solve(){
+
+		sortRows(groom_start, groom_brides, groom_distances, groom_no);
+		sortRows(bride_start, bride_grooms, bride_distances, bride_no);
+		computeProposalRanks();
+
+		int[] husband = new int[bride_no];
+		int[] husband_rank = new int[bride_no];
+		Arrays.fill(husband, -1);
+
+		//next candidate to propose to for every groom
+		int[] next_proposal = Arrays.copyOf(groom_start, groom_no);
+
+		//grooms to be married, the top of the stack proposes first
+		int[] stack = new int[groom_no];
+		int stack_size = 0;
+		for(int i=0; i<groom_no; i++)
+			stack[stack_size++] = i;
+
+		nochoice_grooms = new int[groom_no];
+		nochoice_no = 0;
+
+		while(stack_size > 0){
+			int groom = stack[--stack_size];
+			boolean married = false;
+
+			//loop until groom has preferences and is not married
+			while(next_proposal[groom] < groom_start[groom + 1] && !married){
+				int k = next_proposal[groom]++;
+				int bride = groom_brides[k];
+
+				if(husband[bride] == -1){
+					husband[bride] = groom;
+					husband_rank[bride] = proposal_rank[k];
+					married = true;
+				}
+				//if already married see if current groom is better fit
+				else if(proposal_rank[k] < husband_rank[bride]){
+					stack[stack_size++] = husband[bride];
+					husband[bride] = groom;
+					husband_rank[bride] = proposal_rank[k];
+					married = true;
+				}
+			}
+
+			//if groom has no more bride candidates eliminate from list
+			if(!married)
+				nochoice_grooms[nochoice_no++] = groom;
+		}
+
+		return husband;
+	}
+
+	/**
+	 * @return grooms without bride after {@link #solve()}, in the order they ran out of candidates
+	 */
+	public int[] getNochoiceGrooms(){
+		return Arrays.copyOf(nochoice_grooms, nochoice_no);
+	}
+
+	/**
+	 * For every groom candidate computes the rank of the groom in the
+	 * preferences of the candidate bride (first occurrence) by transposing
+	 * the bride preferences
+	 */
+	private void computeProposalRanks(){
+
+		//transposed bride preferences: (bride, rank) pairs of every groom
+		int[] transposed_start = new int[groom_no + 1];
+		for(int k=0; k<bride_start[bride_no]; k++)
+			if(bride_grooms[k] >= 0 && bride_grooms[k] < groom_no)
+				transposed_start[bride_grooms[k] + 1]++;
+		for(int i=0; i<groom_no; i++)
+			transposed_start[i + 1] += transposed_start[i];
+
+		int[] fill = Arrays.copyOf(transposed_start, groom_no);
+		int[] transposed_brides = new int[transposed_start[groom_no]];
+		int[] transposed_ranks = new int[transposed_start[groom_no]];
+		for(int bride=0; bride<bride_no; bride++)
+			for(int k=bride_start[bride]; k<bride_start[bride + 1]; k++){
+				int groom = bride_grooms[k];
+				if(groom < 0 || groom >= groom_no)
+					continue;
+				transposed_brides[fill[groom]] = bride;
+				transposed_ranks[fill[groom]] = k - bride_start[bride];
+				fill[groom]++;
+			}
+
+		//align the ranks with the groom preferences using a scratch row of the brides
+		proposal_rank = new int[groom_start[groom_no]];
+		int[] scratch = new int[bride_no];
+		Arrays.fill(scratch, NOT_RANKED);
+		for(int groom=0; groom<groom_no; groom++){
+			for(int t=transposed_start[groom]; t<transposed_start[groom + 1]; t++)
+				scratch[transposed_brides[t]] = Math.min(
+						scratch[transposed_brides[t]], transposed_ranks[t]);
+
+			for(int k=groom_start[groom]; k<groom_start[groom + 1]; k++){
+				int bride = groom_brides[k];
+				proposal_rank[k] = bride >= 0 && bride < bride_no ? scratch[bride] : NOT_RANKED;
+			}
+
+			for(int t=transposed_start[groom]; t<transposed_start[groom + 1]; t++)
+				scratch[transposed_brides[t]] = NOT_RANKED;
+		}
+	}
+
+	/**
+	 * Sorts every row by ascending distance, stable for equal distances
+	 */
+	private static void sortRows(int[] row_start, int[] indices, double[] distances, int row_no){
+		int max_length = 0;
+		for(int i=0; i<row_no; i++)
+			max_length = Math.max(max_length, row_start[i + 1] - row_start[i]);
+
+		int[] index_buffer = new int[max_length];
+		double[] distance_buffer = new double[max_length];
+
+		for(int i=0; i<row_no; i++)
+			mergeSort(indices, distances, row_start[i], row_start[i + 1],
+					index_buffer, distance_buffer);
+	}
+
+	/**
+	 * Bottom-up merge sort of the range [from,to) ordered by Double.compare
+	 */
+	private static void mergeSort(int[] indices, double[] distances, int from, int to,
+			int[] index_buffer, double[] distance_buffer){
+		int length = to - from;
+		for(int width=1; width<length; width*=2){
+			for(int left=from; left<to-width; left+=2*width){
+				int middle = left + width;
+				int right = Math.min(left + 2 * width, to);
+
+				//already in order
+				if(Double.compare(distances[middle - 1], distances[middle]) <= 0)
+					continue;
+
+				int n = middle - left;
+				System.arraycopy(indices, left, index_buffer, 0, n);
+				System.arraycopy(distances, left, distance_buffer, 0, n);
+
+				int i = 0;
+				int j = middle;
+				int k = left;
+				while(i < n && j < right){
+					if(Double.compare(distances[j], distance_buffer[i]) < 0){
+						indices[k] = indices[j];
+						distances[k++] = distances[j++];
+					}
+					else{
+						indices[k] = index_buffer[i];
+						distances[k++] = distance_buffer[i++];
+					}
+				}
+				while(i < n){
+					indices[k] = index_buffer[i];
+					distances[k++] = distance_buffer[i++];
+				}
+			}
+		}
+	}
+}
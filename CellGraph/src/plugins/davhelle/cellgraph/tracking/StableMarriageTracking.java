@@ -3,7 +3,6 @@ package plugins.davhelle.cellgraph.tracking;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
@@ -37,105 +36,96 @@ public class StableMarriageTracking extends GraphTracking{
 	 * Linking algorithm based on the stable marriage problem. 
 	 * The nodes in the current frame are addressed as "brides"
 	 * while the brooms are the candidates from the first frame (except for divisions).
+	 * Nodes are mapped to dense indices and the matching is computed by {@link StableMarriage}.
 	 * 
 	 * @param time_point of frame to be linked
 	 * @return returns 2 Stacks containing the unlinked nodes, accessible trough a map interface ("brides", "grooms")
 	 */
 	public Map<String, Stack<Node>> linkCandidates(Map<Node, List<ComparableNode>> grooms,Map<Node, List<ComparableNode>> brides) {
 
-		//Order the evaluated candidates in ascending manner (smallest distances first) 
-		orderCandidates(grooms);
-		orderCandidates(brides);
+		//Index the nodes, brides only known as groom candidates are appended
+		ArrayList<Node> groom_list = new ArrayList<Node>(grooms.keySet());
+		ArrayList<Node> bride_list = new ArrayList<Node>(brides.keySet());
+		int bride_map_no = bride_list.size();
 
-		//Initialize data structures
-		Map<Node, Node> marriage = new HashMap<Node,Node>();
-
-		Stack<Node> unmarried_grooms = new Stack<Node>();
-		Stack<Node> unmarried_brides = new Stack<Node>();
-		Stack<Node>	nochoice_grooms = new Stack<Node>();
-
-		//Fill candidates
-		unmarried_grooms.addAll(grooms.keySet());
-		unmarried_brides.addAll(brides.keySet());
-
-		//Stable marriage problem (GaleShapley algorithm)
-		while(!unmarried_grooms.empty()){
-			//take groom candidate from stack and try to assign
-			Node groom = unmarried_grooms.pop();
+		HashMap<Node, Integer> groom_index = new HashMap<Node, Integer>();
+		for(int i=0; i<groom_list.size(); i++)
+			groom_index.put(groom_list.get(i), i);
+		
+		HashMap<Node, Integer> bride_index = new HashMap<Node, Integer>();
+		for(int j=0; j<bride_list.size(); j++)
+			bride_index.put(bride_list.get(j), j);
+		
+		//Preferences of the grooms in CSR format
+		int groom_no = groom_list.size();
+		int[] groom_start = new int[groom_no + 1];
+		for(int i=0; i<groom_no; i++)
+			groom_start[i + 1] = groom_start[i] + grooms.get(groom_list.get(i)).size();
+		
+		int[] groom_brides = new int[groom_start[groom_no]];
+		double[] groom_distances = new double[groom_start[groom_no]];
+		int k = 0;
+		for(Node groom: groom_list){
 			
-			if(super.VERBOSE && groom.getTrackID() == super.follow_ID){
-				
-				System.out.println("Prefered brides of "+ follow_ID +" are:");
-				
-				for(ComparableNode b: grooms.get(groom)){
-					Node next = b.getNode();
-					System.out.println(
-							"[" + Math.round(next.getCentroid().getX()) + 
-							"," + Math.round(next.getCentroid().getY()) +
-							"] : "+ b.getValue());
-				}
-				
-				System.out.println();
-				
-			}
+			if(super.VERBOSE && groom.getTrackID() == super.follow_ID)
+				printPreferences(grooms.get(groom));
 			
-			//get preference list of groom 
-			Iterator<ComparableNode> bride_it = grooms.get(groom).iterator();
-			boolean married = false;
-
-			//loop util groom has preferences and is not married
-			while(bride_it.hasNext() && !married){
-
-				//get bride candidate and mark her as visited
-				Node bride = bride_it.next().getNode();
-				bride_it.remove();
-
-				//check if wanted bride is married at all
-				if(!marriage.containsKey(bride)){
-					unmarried_brides.remove(bride);
-
-					marriage.put(bride, groom);
-					married = true;
-				}
-
-				//if already married see if current groom is better fit
-				else{
-
-					Node old_groom = marriage.get(bride);
-					Iterator<ComparableNode> grooms_it = brides.get(bride).iterator();
-
-					//cycle preferences (ascending order, best first)
-					while(grooms_it.hasNext()){
-						Node preffered_groom = grooms_it.next().getNode();
-
-						//current husband has better rating
-						if(preffered_groom == old_groom)
-							break;
-
-						//new husband has better rating!
-						if(preffered_groom == groom){
-							unmarried_grooms.push(old_groom);
-
-							marriage.put(bride, groom);
-							married = true;
-							break;
-						}
-					}
+			for(ComparableNode candidate: grooms.get(groom)){
+				Node bride = candidate.getNode();
+				Integer j = bride_index.get(bride);
+				if(j == null){
+					j = bride_list.size();
+					bride_index.put(bride, j);
+					bride_list.add(bride);
 				}
+				groom_brides[k] = j;
+				groom_distances[k] = candidate.getValue();
+				k++;
 			}
-
-			//if groom has no more bride candidates eliminate from list
-			if(!marriage.containsValue(groom) && grooms.get(groom).isEmpty())
-				nochoice_grooms.push(groom);
-
 		}
+		
+		//Preferences of the brides in CSR format, unknown grooms are marked with -1
+		int bride_no = bride_list.size();
+		int[] bride_start = new int[bride_no + 1];
+		for(int j=0; j<bride_no; j++){
+			int candidate_no = j < bride_map_no ? brides.get(bride_list.get(j)).size() : 0;
+			bride_start[j + 1] = bride_start[j] + candidate_no;
+		}
+		
+		int[] bride_grooms = new int[bride_start[bride_no]];
+		double[] bride_distances = new double[bride_start[bride_no]];
+		k = 0;
+		for(int j=0; j<bride_map_no; j++)
+			for(ComparableNode candidate: brides.get(bride_list.get(j))){
+				Integer i = groom_index.get(candidate.getNode());
+				bride_grooms[k] = i == null ? -1 : i;
+				bride_distances[k] = candidate.getValue();
+				k++;
+			}
+		
+		//Stable marriage problem (GaleShapley algorithm)
+		StableMarriage stable_marriage = new StableMarriage(groom_no, bride_no,
+				groom_start, groom_brides, groom_distances,
+				bride_start, bride_grooms, bride_distances);
+		int[] husband = stable_marriage.solve();
 
 		//finally update node correspondences
-		for(Node bride: marriage.keySet()){
-			Node groom = marriage.get(bride);
-			updateCorrespondence(bride, getMostRecentCorrespondence(bride, groom));
+		Stack<Node> unmarried_brides = new Stack<Node>();
+		for(int j=0; j<bride_no; j++){
+			if(husband[j] == -1){
+				if(j < bride_map_no)
+					unmarried_brides.push(bride_list.get(j));
+			}
+			else{
+				Node bride = bride_list.get(j);
+				Node groom = groom_list.get(husband[j]);
+				updateCorrespondence(bride, getMostRecentCorrespondence(bride, groom));
+			}
 		}
 		
+		Stack<Node>	nochoice_grooms = new Stack<Node>();
+		for(int i: stable_marriage.getNochoiceGrooms())
+			nochoice_grooms.push(groom_list.get(i));
 		
 		Map<String, Stack<Node>> unmarried = new HashMap<String, Stack<Node>>();
 		
@@ -145,34 +135,26 @@ public class StableMarriageTracking extends GraphTracking{
 		return unmarried;
 	}
 	
-	
-
 	/**
-	 * Method to order the candidates based on the distance computed
-	 * by the evaluation method. Given the ComparableNode object the
-	 * standard Arrays.sort method can be used.
+	 * Prints the candidates of a groom in ascending order of distance
 	 * 
-	 * @param node_map Map with node's list to be ordered
+	 * @param candidate_list bride candidates of the groom
 	 */
-	private void orderCandidates(
-			Map<Node, List<ComparableNode>> node_map) {
-
-		for(Node first: node_map.keySet()){
-			
-			//retrieve
-			List<ComparableNode> candidate_list = node_map.get(first);
-			int candidate_no = candidate_list.size();
-			
-			//ascending sort
-			ComparableNode[] candidate_array = candidate_list.toArray(new ComparableNode[candidate_no]);
-			Arrays.sort(candidate_array);
+	private void printPreferences(List<ComparableNode> candidate_list){
 		
-			//List conversion
-			candidate_list = new ArrayList<ComparableNode>(Arrays.asList(candidate_array));
-			
-			//update (requires change from immutable java.util.Arrays$Arraylist to mutable ArrayList object)
-			node_map.put(first, candidate_list);
-
+		ComparableNode[] candidate_array = candidate_list.toArray(new ComparableNode[candidate_list.size()]);
+		Arrays.sort(candidate_array);
+		
+		System.out.println("Prefered brides of "+ follow_ID +" are:");
+		
+		for(ComparableNode b: candidate_array){
+			Node next = b.getNode();
+			System.out.println(
+					"[" + Math.round(next.getCentroid().getX()) + 
+					"," + Math.round(next.getCentroid().getY()) +
+					"] : "+ b.getValue());
 		}
+		
+		System.out.println();
 	}
-}
\ No newline at end of file
+}
@@ -7,5 +7,5 @@ package plugins.davhelle.cellgraph.tracking;
  *
  */
 public enum TrackingEnum{
-   STABLE_MARRIAGE, HUNGARIAN, LOAD_CSV_FILE
+   STABLE_MARRIAGE, HUNGARIAN, SPARSE_ASSIGNMENT, LOAD_CSV_FILE
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package plugins.davhelle.cellgraph.graphs;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.io.InputType;
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+public class FrameGeneratorTest {
+
+	@Test
+	public void testSharedBoundarySampleCrop() {
+		assertSameAdjacency("testData/cell_tissue_crop.tif");
+	}
+
+	@Test
+	public void testSharedBoundaryNested() {
+		assertSameAdjacency("testData/nested_example.tiff");
+	}
+
+	/**
+	 * Compares the shared boundary adjacency with the intersection based
+	 * one and the edge geometry with the polygon intersection
+	 * 
+	 * @param file_name skeleton file to test
+	 */
+	private void assertSameAdjacency(String file_name){
+
+		FrameGraph expected = new FrameGenerator(
+				InputType.SKELETON, AdjacencyType.INTERSECTION).generateFrame(0, file_name);
+		FrameGraph frame = new FrameGenerator(
+				InputType.SKELETON, AdjacencyType.SHARED_BOUNDARY).generateFrame(0, file_name);
+
+		Assert.assertEquals(frame.size(), expected.size());
+		Assert.assertEquals(frame.edgeSet().size(), expected.edgeSet().size());
+
+		for(Edge e: frame.edgeSet()){
+			Node source = frame.getEdgeSource(e);
+			Node target = frame.getEdgeTarget(e);
+
+			Assert.assertTrue(e.hasGeometry());
+			Assert.assertSame(e.getFrame(), frame);
+
+			Geometry intersection = source.getGeometry().intersection(target.getGeometry());
+			Assert.assertEquals(frame.getEdgeWeight(e), intersection.getLength(), 1e-9);
+			Assert.assertEquals(e.getGeometry().getLength(), intersection.getLength(), 1e-9);
+		}
+
+		//same neighbors by position of the cell geometry
+		for(Node n: frame.vertexSet()){
+			Node m = null;
+			for(Node candidate: expected.vertexSet())
+				if(candidate.getGeometry().equalsNorm(n.getGeometry()))
+					m = candidate;
+
+			Assert.assertNotNull(m);
+			Assert.assertEquals(frame.degreeOf(n), expected.degreeOf(m));
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package plugins.davhelle.cellgraph.graphs;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class FrameGraphTest {
+
+	private GeometryFactory factory = new GeometryFactory();
+
+	private Cell createCell(FrameGraph frame, int x){
+		return createCell(frame, x, 0);
+	}
+
+	private Cell createCell(FrameGraph frame, int x, int y){
+		Polygon square = factory.createPolygon(factory.createLinearRing(new Coordinate[]{
+				new Coordinate(x, y), new Coordinate(x + 1, y), new Coordinate(x + 1, y + 1),
+				new Coordinate(x, y + 1), new Coordinate(x, y)}), null);
+		return new Cell(square, frame);
+	}
+
+	@Test
+	public void testTrackIdLookup() {
+		FrameGraph frame = new FrameGraph(0);
+
+		Cell a = createCell(frame, 0);
+		Cell b = createCell(frame, 1);
+		frame.addVertex(a);
+		frame.addVertex(b);
+
+		//untracked cells share the id -1
+		Assert.assertTrue(frame.hasTrackID(-1));
+		Assert.assertFalse(frame.hasTrackID(1));
+
+		a.setTrackID(1);
+		b.setTrackID(2);
+		Assert.assertFalse(frame.hasTrackID(-1));
+		Assert.assertSame(frame.getNode(1), a);
+		Assert.assertSame(frame.getNode(2), b);
+
+		frame.addEdge(a, b);
+		long edge_id = frame.getEdge(a, b).getPairCode(frame);
+		Assert.assertTrue(frame.hasEdgeTrackId(edge_id));
+		Assert.assertSame(frame.getEdgeWithTrackId(edge_id), frame.getEdge(a, b));
+
+		frame.removeVertex(a);
+		Assert.assertFalse(frame.hasTrackID(1));
+		Assert.assertNull(frame.getNode(1));
+		Assert.assertFalse(frame.hasEdgeTrackId(edge_id));
+
+		//cells outside of the frame do not affect the lookup
+		a.setTrackID(2);
+		Assert.assertSame(frame.getNode(2), b);
+	}
+
+	@Test
+	public void testTrackIdLookupAgainstScan() {
+		FrameGraph frame = new FrameGraph(0);
+		Random random = new Random(42);
+
+		ArrayList<Cell> cells = new ArrayList<Cell>();
+		for(int i=0; i<2000; i++){
+			Cell c = createCell(frame, i);
+			cells.add(c);
+			frame.addVertex(c);
+		}
+
+		for(int step=0; step<20000; step++){
+			Cell c = cells.get(random.nextInt(cells.size()));
+			int operation = random.nextInt(10);
+
+			if(operation < 7)
+				c.setTrackID(random.nextInt(3000) - 1);
+			else if(operation < 9)
+				frame.removeVertex(c);
+			else
+				frame.addVertex(c);
+
+			int track_id = random.nextInt(3000) - 1;
+			Assert.assertEquals(frame.getNode(track_id) != null, scan(frame, track_id));
+			Assert.assertEquals(frame.hasTrackID(track_id), scan(frame, track_id));
+			if(frame.hasTrackID(track_id)){
+				Assert.assertEquals(frame.getNode(track_id).getTrackID(), track_id);
+				Assert.assertTrue(frame.containsVertex(frame.getNode(track_id)));
+			}
+		}
+	}
+
+	@Test
+	public void testSpatialQueries() {
+		FrameGraph frame = new FrameGraph(0);
+
+		Cell[][] grid = new Cell[30][20];
+		for(int x=0; x<30; x++)
+			for(int y=0; y<20; y++){
+				grid[x][y] = createCell(frame, x, y);
+				frame.addVertex(grid[x][y]);
+			}
+
+		Assert.assertSame(frame.findCellAt(3.5, 7.2), grid[3][7]);
+		Assert.assertNull(frame.findCellAt(-0.5, 7.2));
+
+		List<Node> region = frame.cellsIntersecting(new Envelope(2.5, 4.5, 0.5, 1.5));
+		Assert.assertEquals(region.size(), 6);
+		Assert.assertTrue(region.contains(grid[4][1]));
+
+		Random random = new Random(7);
+		for(int i=0; i<200; i++){
+			double x = random.nextDouble() * 40 - 5;
+			double y = random.nextDouble() * 30 - 5;
+			int k = 1 + random.nextInt(12);
+
+			List<Node> nearest = frame.findNearestCells(x, y, k);
+			Assert.assertEquals(nearest.size(), k);
+
+			//no cell outside the result is closer than the k-th one
+			double kth_distance = distance(nearest.get(k - 1), x, y);
+			HashSet<Node> result = new HashSet<Node>(nearest);
+			for(Node n: frame.vertexSet())
+				if(!result.contains(n))
+					Assert.assertTrue(distance(n, x, y) >= kth_distance);
+		}
+
+		//index follows the vertex set
+		frame.removeVertex(grid[3][7]);
+		Assert.assertNull(frame.findCellAt(3.5, 7.2));
+		frame.addVertex(grid[3][7]);
+		Assert.assertSame(frame.findCellAt(3.5, 7.2), grid[3][7]);
+		Assert.assertSame(frame.findNearestCells(3.5, 7.5, 1).get(0), grid[3][7]);
+	}
+
+	@Test
+	public void testCellFeatures() {
+		FrameGraph frame = new FrameGraph(0);
+
+		Cell[][] grid = new Cell[6][4];
+		for(int x=0; x<6; x++)
+			for(int y=0; y<4; y++){
+				grid[x][y] = createCell(frame, 2 * x, 2 * y);
+				grid[x][y].setTrackID(4 * x + y);
+				grid[x][y].setBoundary(x == 0);
+				frame.addVertex(grid[x][y]);
+			}
+		for(int x=0; x<5; x++)
+			for(int y=0; y<4; y++)
+				frame.addEdge(grid[x][y], grid[x + 1][y]);
+
+		CellFeatures features = frame.getFeatures();
+		Assert.assertEquals(features.size(), frame.vertexSet().size());
+		for(Node n: frame.vertexSet()){
+			int k = features.indexOf(n);
+			Assert.assertSame(features.getNode(k), n);
+			Assert.assertEquals(features.getArea(k), n.getGeometry().getArea(), 1e-9);
+			Assert.assertEquals(features.getPerimeter(k), n.getGeometry().getLength(), 1e-9);
+			Assert.assertEquals(features.getCentroidX(k), n.getCentroid().getX(), 1e-9);
+			Assert.assertEquals(features.getCentroidY(k), n.getCentroid().getY(), 1e-9);
+			Assert.assertEquals(features.getNeighborNo(k), frame.degreeOf(n));
+			Assert.assertEquals(features.getTrackID(k), n.getTrackID());
+			Assert.assertEquals(features.onBoundary(k), n.onBoundary());
+			Assert.assertEquals(features.getElongationRatio(k), 1.0, 1e-9);
+		}
+
+		//columns follow the modifications of the frame
+		Cell moved = grid[2][1];
+		moved.setGeometry(factory.toGeometry(new Envelope(4, 7, 2, 3)));
+		Assert.assertEquals(features.getArea(features.indexOf(moved)), 3.0, 1e-9);
+		Assert.assertEquals(features.getElongationRatio(features.indexOf(moved)), 3.0, 1e-9);
+		Assert.assertEquals(features.getMaximum(CellFeature.AREA), 3.0, 1e-9);
+
+		moved.setBoundary(true);
+		Assert.assertTrue(features.onBoundary(features.indexOf(moved)));
+
+		moved.setTrackID(100);
+		Assert.assertEquals(features.getMaximum(CellFeature.TRACK_ID), 100.0);
+
+		frame.addEdge(moved, grid[2][2]);
+		Assert.assertEquals(features.getNeighborNo(features.indexOf(moved)), 3);
+
+		frame.removeVertex(grid[5][3]);
+		Assert.assertEquals(features.size(), 23);
+		Assert.assertEquals(features.indexOf(grid[5][3]), -1);
+
+		//ranges over all frames
+		SpatioTemporalGraph stGraph = new TissueEvolution(2);
+		stGraph.setFrame(frame, 0);
+		FrameGraph small = new FrameGraph(1);
+		small.addVertex(new Cell((Polygon)factory.toGeometry(new Envelope(0, 0.5, 0, 0.5)), small));
+		stGraph.setFrame(small, 1);
+
+		CellFeatureTable table = new CellFeatureTable(stGraph);
+		Assert.assertEquals(table.getMinimum(CellFeature.AREA), 0.25, 1e-9);
+		Assert.assertEquals(table.getMaximum(CellFeature.AREA), 3.0, 1e-9);
+		Assert.assertEquals(table.getMinimum(CellFeature.NEIGHBOR_NO), 0.0);
+		Assert.assertEquals(table.get(CellFeature.AREA, 1, 0), 0.25, 1e-9);
+	}
+
+	@Test
+	public void testFeatureRanges() {
+		FrameGraph empty = new FrameGraph(0);
+		Assert.assertTrue(Double.isNaN(empty.getFeatures().getMinimum(CellFeature.AREA)));
+		Assert.assertTrue(Double.isNaN(empty.getFeatures().getMaximum(CellFeature.AREA)));
+
+		//the ratio of a cell without area is not finite and excluded
+		FrameGraph frame = new FrameGraph(1);
+		frame.addVertex(createCell(frame, 0));
+		Polygon flat = factory.createPolygon(factory.createLinearRing(new Coordinate[]{
+				new Coordinate(2, 0), new Coordinate(3, 0), new Coordinate(4, 0),
+				new Coordinate(2, 0)}), null);
+		frame.addVertex(new Cell(flat, frame));
+		CellFeatures features = frame.getFeatures();
+		Assert.assertEquals(features.getMinimum(CellFeature.ELONGATION_RATIO), 1.0, 1e-9);
+		Assert.assertEquals(features.getMaximum(CellFeature.ELONGATION_RATIO), 1.0, 1e-9);
+
+		//empty frames do not contribute to the range
+		SpatioTemporalGraph stGraph = new TissueEvolution(2);
+		stGraph.setFrame(empty, 0);
+		CellFeatureTable table = new CellFeatureTable(stGraph);
+		Assert.assertTrue(Double.isNaN(table.getMaximum(CellFeature.AREA)));
+
+		stGraph.setFrame(frame, 1);
+		table = new CellFeatureTable(stGraph);
+		Assert.assertEquals(table.getMinimum(CellFeature.AREA), 0.0, 1e-9);
+		Assert.assertEquals(table.getMaximum(CellFeature.AREA), 1.0, 1e-9);
+	}
+
+	private double distance(Node n, double x, double y){
+		return n.getCentroid().getCoordinate().distance(new Coordinate(x, y));
+	}
+
+	private boolean scan(FrameGraph frame, int track_id){
+		for(Node n: frame.vertexSet())
+			if(n.getTrackID() == track_id)
+				return true;
+		return false;
+	}
+}
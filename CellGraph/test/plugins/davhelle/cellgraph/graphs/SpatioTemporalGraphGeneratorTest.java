@@ -7,6 +7,7 @@ import org.testng.annotations.Test;
 
 import plugins.davhelle.cellgraph.export.ExportFieldType;
 import plugins.davhelle.cellgraph.export.GraphExporter;
+import plugins.davhelle.cellgraph.io.InputType;
 
 public class SpatioTemporalGraphGeneratorTest {
   @Test
@@ -70,4 +71,35 @@ public class SpatioTemporalGraphGeneratorTest {
 	  
 	  
   }
+  
+  @Test
+  public void testParallelGeneration(){
+	  String[] file_names = new String[]{
+			  "testData/cell_tissue_crop.tif",
+			  "testData/nested_example.tiff",
+			  "testData/square_example.tif",
+			  "testData/cell_tissue_crop.tif",
+			  "testData/nested_example.tiff"};
+	  
+	  SpatioTemporalGraphGenerator sequential = 
+			  new SpatioTemporalGraphGenerator(GraphType.TISSUE_EVOLUTION, InputType.SKELETON);
+	  for(int i=0; i<file_names.length; i++)
+		  sequential.addFrame(i, file_names[i]);
+	  
+	  SpatioTemporalGraphGenerator parallel = 
+			  new SpatioTemporalGraphGenerator(GraphType.TISSUE_EVOLUTION, InputType.SKELETON);
+	  parallel.addFrames(file_names, 3);
+	  
+	  SpatioTemporalGraph expected = sequential.getStGraph();
+	  SpatioTemporalGraph stGraph = parallel.getStGraph();
+	  
+	  Assert.assertEquals(stGraph.size(), file_names.length, "Incorrect no of frames");
+	  for(int i=0; i<file_names.length; i++){
+		  FrameGraph frame = stGraph.getFrame(i);
+		  Assert.assertEquals(frame.getFrameNo(), i, "Frame inserted out of order");
+		  Assert.assertEquals(frame.getFileSource(), file_names[i]);
+		  Assert.assertEquals(frame.size(), expected.getFrame(i).size());
+		  Assert.assertEquals(frame.edgeSet().size(), expected.getFrame(i).edgeSet().size());
+	  }
+  }
 }
@@ -0,0 +1,146 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class BatchIntensityReaderTest {
+
+	private GeometryFactory factory = new GeometryFactory();
+
+	@Test
+	public void testAgainstPixelCenters() {
+		Random random = new Random(3);
+		int width = 120;
+		int height = 80;
+
+		double[] pixels = new double[width * height];
+		for(int i=0; i<pixels.length; i++)
+			pixels[i] = random.nextInt(4096);
+
+		BitSet ignored = new BitSet(pixels.length);
+		for(int i=0; i<pixels.length; i+=7)
+			ignored.set(i);
+
+		//overlapping buffers, rings with holes and geometries crossing the image border
+		ArrayList<Geometry> geometries = new ArrayList<Geometry>();
+		for(int i=0; i<40; i++){
+			Coordinate a = new Coordinate(random.nextDouble() * 140 - 10, random.nextDouble() * 100 - 10);
+			Coordinate b = new Coordinate(a.x + random.nextDouble() * 30, a.y + random.nextDouble() * 30);
+			Geometry edge_buffer = factory.createLineString(new Coordinate[]{a, b}).buffer(1 + random.nextDouble() * 3);
+			geometries.add(edge_buffer);
+			geometries.add(edge_buffer.buffer(4).difference(edge_buffer));
+		}
+		geometries.add(factory.toGeometry(new Envelope(200, 210, 10, 20)));
+
+		BatchIntensityReader reader = new BatchIntensityReader(width, height);
+		for(Geometry geometry: geometries)
+			reader.addGeometry(geometry);
+		Assert.assertEquals(reader.size(), geometries.size());
+
+		reader.setTopPercent(0.2);
+		reader.measure(pixels, ignored);
+
+		for(int label=0; label<geometries.size(); label++){
+			Geometry geometry = geometries.get(label);
+
+			int n = 0;
+			double sum = 0;
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			ArrayList<Double> values = new ArrayList<Double>();
+			for(int y=0; y<height; y++)
+				for(int x=0; x<width; x++){
+					int i = y * width + x;
+					if(ignored.get(i))
+						continue;
+					if(geometry.contains(factory.createPoint(new Coordinate(x + 0.5, y + 0.5)))){
+						n++;
+						sum += pixels[i];
+						min = Math.min(min, pixels[i]);
+						max = Math.max(max, pixels[i]);
+						values.add(pixels[i]);
+					}
+				}
+
+			Assert.assertEquals(reader.getPixelNo(label), n);
+			if(n == 0){
+				Assert.assertEquals(reader.getIntensity(label, IntensitySummaryType.Mean), BatchIntensityReader.NO_READOUT);
+				continue;
+			}
+
+			double mean = sum / n;
+			double variance = 0;
+			for(double value: values)
+				variance += (value - mean) * (value - mean);
+
+			Assert.assertEquals(reader.getIntensity(label, IntensitySummaryType.Sum), sum, 1e-6);
+			Assert.assertEquals(reader.getIntensity(label, IntensitySummaryType.Mean), mean, 1e-9);
+			Assert.assertEquals(reader.getIntensity(label, IntensitySummaryType.Min), min);
+			Assert.assertEquals(reader.getIntensity(label, IntensitySummaryType.Max), max);
+			Assert.assertEquals(reader.getIntensity(label, IntensitySummaryType.StandardDeviation),
+					Math.sqrt(variance / n), 1e-6);
+
+			//mean of the 20% brightest pixels
+			Collections.sort(values);
+			int top_size = Math.max(1, (int)Math.round(n * 0.2));
+			double top_sum = 0;
+			for(int i=n-top_size; i<n; i++)
+				top_sum += values.get(i);
+			Assert.assertEquals(reader.getIntensity(label, IntensitySummaryType.TopPercentMean),
+					top_sum / top_size, 1e-9);
+		}
+	}
+
+	@Test
+	public void testStandardDeviationOfLargeValues() {
+		//small variations on a large offset cancel out in sum(x^2)/n - mean^2
+		int width = 10;
+		int height = 10;
+		double[] pixels = new double[width * height];
+		for(int i=0; i<pixels.length; i++)
+			pixels[i] = 1e9 + i % 2;
+
+		BatchIntensityReader reader = new BatchIntensityReader(width, height);
+		int label = reader.addGeometry(factory.toGeometry(new Envelope(0, width, 0, height)));
+		reader.measure(pixels, null);
+
+		Assert.assertEquals(reader.getPixelNo(label), pixels.length);
+		Assert.assertEquals(reader.getIntensity(label, IntensitySummaryType.StandardDeviation), 0.5, 1e-9);
+		Assert.assertEquals(reader.getIntensity(label, IntensitySummaryType.StandardDeviation),
+				IntensityStatistics.summarize(pixels, 0, pixels.length, IntensitySummaryType.StandardDeviation), 1e-9);
+	}
+
+	@Test
+	public void testTopSelection() {
+		Random random = new Random(11);
+		for(int trial=0; trial<200; trial++){
+			int n = 1 + random.nextInt(300);
+			double[] values = new double[n];
+			for(int i=0; i<n; i++)
+				//few distinct values to exercise ties
+				values[i] = random.nextInt(trial % 2 == 0 ? 5 : 1000);
+			double[] sorted = values.clone();
+			Arrays.sort(sorted);
+
+			double top_percent = random.nextDouble();
+			int top_size = IntensityStatistics.getTopSize(n, top_percent);
+			double threshold = IntensityStatistics.selectTop(values, n, top_size);
+
+			Assert.assertEquals(threshold, sorted[n - top_size]);
+			double[] top = Arrays.copyOfRange(values, n - top_size, n);
+			Arrays.sort(top);
+			Assert.assertTrue(Arrays.equals(top, Arrays.copyOfRange(sorted, n - top_size, n)));
+		}
+	}
+}
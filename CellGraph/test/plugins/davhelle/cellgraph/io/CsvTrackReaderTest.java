@@ -1,14 +1,23 @@
 package plugins.davhelle.cellgraph.io;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.misc.VoronoiTissue;
 import plugins.davhelle.cellgraph.nodes.Cell;
 import plugins.davhelle.cellgraph.nodes.Division;
+import plugins.davhelle.cellgraph.nodes.Node;
+import plugins.davhelle.cellgraph.tracking.StableMarriageTracking;
 
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -135,4 +144,106 @@ public class CsvTrackReaderTest {
 		  
 		  return(dummy_cell);
 	  }
+
+	@Test
+	public void testParallelRoundTrip() throws IOException{
+		SpatioTemporalGraph tracked = createTissue();
+		new StableMarriageTracking(tracked, 5, 1, 1).track();
+		
+		File directory = File.createTempFile("cellgraph_tracking", "");
+		directory.delete();
+		directory.mkdir();
+		new CsvTrackWriter(tracked, directory.getAbsolutePath()).write();
+		
+		SpatioTemporalGraph sequential = createTissue();
+		CsvTrackReader sequential_reader = new CsvTrackReader(sequential, directory.getAbsolutePath());
+		sequential_reader.setThreadNo(1);
+		sequential_reader.track();
+		
+		SpatioTemporalGraph parallel = createTissue();
+		CsvTrackReader parallel_reader = new CsvTrackReader(parallel, directory.getAbsolutePath());
+		parallel_reader.setThreadNo(4);
+		parallel_reader.track();
+		
+		cleanUp(directory.getAbsolutePath());
+		directory.delete();
+		
+		for(int i=0; i<tracked.size(); i++){
+			List<Node> expected = new ArrayList<Node>(tracked.getFrame(i).vertexSet());
+			List<Node> read = new ArrayList<Node>(sequential.getFrame(i).vertexSet());
+			List<Node> found = new ArrayList<Node>(parallel.getFrame(i).vertexSet());
+			
+			for(int j=0; j<expected.size(); j++){
+				Assert.assertEquals(read.get(j).getTrackID(), expected.get(j).getTrackID());
+				Assert.assertEquals(found.get(j).getTrackID(), read.get(j).getTrackID());
+				Assert.assertEquals(found.get(j).onBoundary(), read.get(j).onBoundary());
+				Assert.assertEquals(trackIdOf(found.get(j).getFirst()), trackIdOf(read.get(j).getFirst()));
+				Assert.assertEquals(trackIdOf(found.get(j).getPrevious()), trackIdOf(read.get(j).getPrevious()));
+				Assert.assertEquals(trackIdOf(found.get(j).getNext()), trackIdOf(read.get(j).getNext()));
+				Assert.assertEquals(found.get(j).hasObservedDivision(), read.get(j).hasObservedDivision());
+			}
+		}
+	}
+	
+	@Test(expectedExceptions = NumberFormatException.class)
+	public void testParallelParseFailure() throws IOException{
+		SpatioTemporalGraph tracked = createTissue();
+		new StableMarriageTracking(tracked, 5, 1, 1).track();
+		
+		File directory = File.createTempFile("cellgraph_tracking", "");
+		directory.delete();
+		directory.mkdir();
+		String path = directory.getAbsolutePath() + File.separator;
+		new CsvTrackWriter(tracked, path).writeTrackingIds();
+		
+		//corrupt a frame in the middle of the sequence
+		File corrupted = new File(directory, String.format(CsvTrackReader.tracking_file_pattern, 3));
+		FileWriter writer = new FileWriter(corrupted, true);
+		writer.write("x,1.0,1.0,false\n");
+		writer.close();
+		
+		try{
+			CsvTrackReader parallel_reader = new CsvTrackReader(createTissue(), path);
+			parallel_reader.setThreadNo(4);
+			parallel_reader.readTrackingIds();
+		}
+		finally{
+			cleanUp(path);
+			directory.delete();
+		}
+	}
+	
+	@Test
+	public void testFieldParsing(){
+		String[] lines = {"12,3.25,-4.00,true", "-7,0,1,FALSE", "2147483647,1e3,2,True", "5,,,"};
+		int[] field_start = new int[2];
+		for(String line: lines){
+			String[] content = line.split(",", -1);
+			field_start = CsvTrackReader.splitFields(line, field_start);
+			
+			Assert.assertEquals(CsvTrackReader.parseInt(line, field_start, 0), Integer.parseInt(content[0]));
+			for(int k=1; k<content.length; k++)
+				Assert.assertEquals(CsvTrackReader.getField(line, field_start, k), content[k]);
+			Assert.assertEquals(CsvTrackReader.parseBoolean(line, field_start, 3), Boolean.parseBoolean(content[3]));
+		}
+		
+		field_start = CsvTrackReader.splitFields("1", field_start);
+		try{
+			CsvTrackReader.getField("1", field_start, 1);
+			Assert.fail("Missing field not detected");
+		}catch(ArrayIndexOutOfBoundsException e){
+			//expected
+		}
+	}
+	
+	private int trackIdOf(Node n){
+		return n == null ? Integer.MIN_VALUE : n.getTrackID();
+	}
+	
+	/**
+	 * @return voronoi tissue with moving seeds, identical at every call
+	 */
+	private SpatioTemporalGraph createTissue(){
+		return VoronoiTissue.createGraph(200, 6, new Random(17));
+	}
 }
@@ -0,0 +1,176 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.misc.VoronoiTissue;
+import plugins.davhelle.cellgraph.nodes.Division;
+import plugins.davhelle.cellgraph.nodes.Elimination;
+import plugins.davhelle.cellgraph.nodes.Node;
+import plugins.davhelle.cellgraph.tracking.StableMarriageTracking;
+
+public class LazySessionGraphTest {
+
+	@Test
+	public void testMatchesEagerSession() throws IOException {
+		File session_file = writeSession(createGraph());
+
+		SpatioTemporalGraph eager = new SessionReader(session_file).read();
+		LazySessionGraph lazy = new LazySessionGraph(session_file, 2);
+
+		Assert.assertEquals(lazy.size(), eager.size());
+		Assert.assertTrue(lazy.hasTracking());
+
+		//backwards to force evictions and reloading of linked frames
+		for(int i=eager.size()-1; i>=0; i--){
+			FrameGraph expected = eager.getFrame(i);
+			FrameGraph found = lazy.getFrame(i);
+
+			Assert.assertEquals(found.getFrameNo(), i);
+			Assert.assertEquals(found.size(), expected.size());
+			Assert.assertEquals(found.edgeSet().size(), expected.edgeSet().size());
+			Assert.assertEquals(found.getDivisionNo(), expected.getDivisionNo());
+			Assert.assertEquals(found.getEliminationNo(), expected.getEliminationNo());
+
+			List<Node> expected_cells = new ArrayList<Node>(expected.vertexSet());
+			List<Node> found_cells = new ArrayList<Node>(found.vertexSet());
+			for(int k=0; k<expected_cells.size(); k++){
+				Node e = expected_cells.get(k);
+				Node f = found_cells.get(k);
+
+				Assert.assertTrue(f.getGeometry().equalsExact(e.getGeometry()));
+				Assert.assertEquals(f.getTrackID(), e.getTrackID());
+				Assert.assertEquals(f.getErrorTag(), e.getErrorTag());
+				assertSameTrack(f.getFirst(), e.getFirst());
+				assertSameTrack(f.getPrevious(), e.getPrevious());
+				assertSameTrack(f.getNext(), e.getNext());
+				Assert.assertEquals(f.hasNext(), e.hasNext());
+				Assert.assertEquals(f.hasObservedDivision(), e.hasObservedDivision());
+				Assert.assertEquals(f.hasObservedElimination(), e.hasObservedElimination());
+
+				if(e.hasObservedDivision()){
+					Assert.assertEquals(f.getDivision().getMother().getTrackID(),
+							e.getDivision().getMother().getTrackID());
+					Assert.assertEquals(f.getDivision().getTimePoint(), e.getDivision().getTimePoint());
+				}
+			}
+
+			Assert.assertTrue(lazy.getCachedFrameNo() <= 2);
+		}
+	}
+
+	@Test
+	public void testFrameIdentity() throws IOException {
+		LazySessionGraph lazy = new LazySessionGraph(writeSession(createGraph()), 1);
+
+		FrameGraph frame = lazy.getFrame(1);
+		Node cell = frame.iterator().next();
+		Assert.assertTrue(cell.hasNext());
+
+		//evicts frame 1 from the cache, it stays referenced by the test
+		for(int i=0; i<lazy.size(); i++)
+			lazy.getFrame(i);
+
+		Assert.assertSame(lazy.getFrame(1), frame);
+		Assert.assertSame(cell.getNext().getPrevious(), cell);
+
+		Iterator<Division> division_it = lazy.getFrame(2).divisionIterator();
+		Assert.assertTrue(division_it.hasNext());
+		Division division = division_it.next();
+		Assert.assertSame(division.getChild1().getDivision(), division);
+		Assert.assertSame(division.getMother().getDivision(), division);
+	}
+
+	@Test
+	public void testRewriteLazyGraph() throws IOException {
+		File session_file = writeSession(createGraph());
+		File copy_file = writeSession(new LazySessionGraph(session_file, 2));
+
+		SpatioTemporalGraph original = new SessionReader(session_file).read();
+		SpatioTemporalGraph copy = new SessionReader(copy_file).read();
+
+		Assert.assertEquals(copy.size(), original.size());
+		for(int i=0; i<original.size(); i++){
+			List<Node> expected_cells = new ArrayList<Node>(original.getFrame(i).vertexSet());
+			List<Node> found_cells = new ArrayList<Node>(copy.getFrame(i).vertexSet());
+			Assert.assertEquals(found_cells.size(), expected_cells.size());
+			Assert.assertEquals(copy.getFrame(i).getDivisionNo(), original.getFrame(i).getDivisionNo());
+			Assert.assertEquals(copy.getFrame(i).getEliminationNo(), original.getFrame(i).getEliminationNo());
+			for(int k=0; k<expected_cells.size(); k++){
+				Assert.assertEquals(found_cells.get(k).getTrackID(), expected_cells.get(k).getTrackID());
+				assertSameTrack(found_cells.get(k).getNext(), expected_cells.get(k).getNext());
+			}
+		}
+	}
+
+	@Test
+	public void testSharedTrackIds() throws IOException {
+		SpatioTemporalGraph stGraph = createGraph();
+
+		//two linked cells of frame 1 with the same tracking id
+		List<Node> frame_0 = new ArrayList<Node>(stGraph.getFrame(0).vertexSet());
+		List<Node> frame_1 = new ArrayList<Node>(stGraph.getFrame(1).vertexSet());
+		List<Node> linked = new ArrayList<Node>();
+		for(Node n: frame_0)
+			if(n.getNext() != null)
+				linked.add(n);
+		Node first = linked.get(0).getNext();
+		Node second = linked.get(1).getNext();
+		second.setTrackID(first.getTrackID());
+
+		LazySessionGraph lazy = new LazySessionGraph(writeSession(stGraph), 2);
+		List<Node> found_0 = new ArrayList<Node>(lazy.getFrame(0).vertexSet());
+		List<Node> found_1 = new ArrayList<Node>(lazy.getFrame(1).vertexSet());
+
+		for(int i=0; i<2; i++){
+			Node found = found_0.get(frame_0.indexOf(linked.get(i)));
+			Node next = found_1.get(frame_1.indexOf(linked.get(i).getNext()));
+			Assert.assertSame(found.getNext(), next);
+			Assert.assertSame(next.getPrevious(), found);
+		}
+	}
+
+	private static void assertSameTrack(Node found, Node expected){
+		if(expected == null){
+			Assert.assertNull(found);
+			return;
+		}
+		Assert.assertNotNull(found);
+		Assert.assertEquals(found.getTrackID(), expected.getTrackID());
+		Assert.assertEquals(found.getFrameNo(), expected.getFrameNo());
+	}
+
+	private File writeSession(SpatioTemporalGraph stGraph) throws IOException {
+		File session_file = File.createTempFile("session", SessionWriter.FILE_EXTENSION);
+		session_file.deleteOnExit();
+		new SessionWriter(stGraph).write(session_file);
+		return session_file;
+	}
+
+	/**
+	 * @return tracked voronoi tissue with a division and an elimination
+	 */
+	private SpatioTemporalGraph createGraph(){
+		SpatioTemporalGraph stGraph = VoronoiTissue.createGraph(40, 6, new Random(11));
+
+		new StableMarriageTracking(stGraph, 2, 1, 1).track();
+
+		List<Node> frame_1 = new ArrayList<Node>(stGraph.getFrame(1).vertexSet());
+		List<Node> frame_2 = new ArrayList<Node>(stGraph.getFrame(2).vertexSet());
+		new Division(frame_1.get(0), frame_2.get(1), frame_2.get(2));
+
+		List<Node> frame_4 = new ArrayList<Node>(stGraph.getFrame(4).vertexSet());
+		new Elimination(frame_4.get(3));
+
+		return stGraph;
+	}
+}
@@ -0,0 +1,117 @@
+package plugins.davhelle.cellgraph.io;
+
+import icy.sequence.Sequence;
+import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceEvent.SequenceEventSourceType;
+import icy.sequence.SequenceListener;
+
+import java.util.BitSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class NanMaskCacheTest {
+
+	/**
+	 * Single plane sequence counting the plane reads
+	 */
+	private static class CountingSequence extends Sequence {
+		
+		int read_no = 0;
+		SequenceListener listener = null;
+		private final Object data;
+		
+		CountingSequence(Object data){
+			this.data = data;
+		}
+		
+		@Override
+		public Object getDataXY(int t, int z, int c) {
+			read_no++;
+			return data;
+		}
+		
+		@Override
+		public boolean isSignedDataType() {
+			return false;
+		}
+		
+		@Override
+		public void addListener(SequenceListener listener) {
+			this.listener = listener;
+		}
+	}
+
+	@Test
+	public void testMaskValues() {
+		BitSet unsigned_mask = NanMaskCache.computeMask(new byte[]{0, 1, -1, 0}, false);
+		Assert.assertEquals(unsigned_mask, bits(0, 3));
+
+		BitSet signed_mask = NanMaskCache.computeMask(new short[]{0, 5, -3, 7}, true);
+		Assert.assertEquals(signed_mask, bits(0, 2));
+
+		BitSet float_mask = NanMaskCache.computeMask(new float[]{Float.NaN, 0.5f, -0.5f, 0f}, false);
+		Assert.assertEquals(float_mask, bits(0, 2, 3));
+
+		BitSet double_mask = NanMaskCache.computeMask(new double[]{1, Double.NaN, 2}, false);
+		Assert.assertEquals(double_mask, bits(1));
+	}
+
+	@Test
+	public void testCaching() {
+		CountingSequence sequence = new CountingSequence(new byte[]{0, 3, 0, 3});
+
+		BitSet mask = NanMaskCache.getMask(sequence, 0, 0, 0);
+		Assert.assertEquals(mask, bits(0, 2));
+		Assert.assertSame(NanMaskCache.getMask(sequence, 0, 0, 0), mask);
+		Assert.assertEquals(sequence.read_no, 1);
+
+		//different planes are cached separately
+		NanMaskCache.getMask(sequence, 1, 0, 0);
+		Assert.assertEquals(sequence.read_no, 2);
+
+		NanMaskCache.invalidate(sequence);
+		NanMaskCache.getMask(sequence, 0, 0, 0);
+		Assert.assertEquals(sequence.read_no, 3);
+
+		//least recently used planes are evicted
+		for(int t=1; t<=NanMaskCache.CAPACITY; t++)
+			NanMaskCache.getMask(sequence, t, 0, 0);
+		int read_no = sequence.read_no;
+		NanMaskCache.getMask(sequence, NanMaskCache.CAPACITY, 0, 0);
+		Assert.assertEquals(sequence.read_no, read_no);
+		NanMaskCache.getMask(sequence, 0, 0, 0);
+		Assert.assertEquals(sequence.read_no, read_no + 1);
+	}
+
+	@Test
+	public void testDataChange() {
+		CountingSequence sequence = new CountingSequence(new byte[]{0, 3});
+
+		NanMaskCache.getMask(sequence, 0, 0, 0);
+		Assert.assertNotNull(sequence.listener);
+
+		//other changes keep the mask
+		sequence.listener.sequenceChanged(
+				new SequenceEvent(sequence, SequenceEventSourceType.SEQUENCE_META));
+		NanMaskCache.getMask(sequence, 0, 0, 0);
+		Assert.assertEquals(sequence.read_no, 1);
+
+		sequence.listener.sequenceChanged(
+				new SequenceEvent(sequence, SequenceEventSourceType.SEQUENCE_DATA));
+		NanMaskCache.getMask(sequence, 0, 0, 0);
+		Assert.assertEquals(sequence.read_no, 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testUnsupportedData() {
+		NanMaskCache.computeMask(new long[]{1, 2}, false);
+	}
+
+	private BitSet bits(int... indices){
+		BitSet bits = new BitSet();
+		for(int i: indices)
+			bits.set(i);
+		return bits;
+	}
+}
@@ -0,0 +1,93 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class RasterSkeletonReaderTest {
+
+	@Test
+	public void testSinglePolygon() {
+		assertSameCells("testData/square_example.tif");
+	}
+
+	@Test
+	public void testNestedImage() {
+		String file_name = "testData/nested_example.tiff";
+		assertSameCells(file_name);
+
+		ArrayList<Polygon> extracted_polygons = new RasterSkeletonReader().extractPolygons(file_name);
+
+		int holes = 0;
+		for(Polygon p: extracted_polygons)
+			holes += p.getNumInteriorRing();
+
+		Assert.assertEquals(holes, 1);
+	}
+
+	@Test
+	public void testSampleCrop(){
+		assertSameCells("testData/cell_tissue_crop.tif");
+	}
+
+	@Test
+	public void testDanglingAndCutEdges(){
+
+		//two squares joined by a bridge, plus a dangling line
+		SkeletonMask skeleton = new SkeletonMask(20, 10);
+		for(int i=2; i<=6; i++){
+			skeleton.set(i, 2, true);
+			skeleton.set(i, 6, true);
+			skeleton.set(2, i, true);
+			skeleton.set(6, i, true);
+
+			skeleton.set(i+10, 2, true);
+			skeleton.set(i+10, 6, true);
+			skeleton.set(12, i, true);
+			skeleton.set(16, i, true);
+		}
+		for(int i=7; i<12; i++)
+			skeleton.set(i, 4, true);
+		for(int i=3; i<5; i++)
+			skeleton.set(4, i, true);
+
+		ArrayList<Polygon> extracted_polygons = new RasterSkeletonReader().polygonize(skeleton);
+
+		Assert.assertEquals(extracted_polygons.size(), 2);
+		for(Polygon p: extracted_polygons){
+			Assert.assertEquals(p.getArea(), 16.0);
+			Assert.assertEquals(p.getNumInteriorRing(), 0);
+		}
+	}
+
+	/**
+	 * Compares the output of the raster reader with the
+	 * JTS based SkeletonReader
+	 *
+	 * @param file_name skeleton file to test
+	 */
+	private void assertSameCells(String file_name){
+
+		ArrayList<Polygon> expected = new SkeletonReader().extractPolygons(file_name);
+		ArrayList<Polygon> extracted = new RasterSkeletonReader().extractPolygons(file_name);
+
+		Assert.assertEquals(extracted.size(), expected.size());
+		Assert.assertEquals(normalize(extracted), normalize(expected));
+	}
+
+	private Set<String> normalize(ArrayList<Polygon> polygons){
+		Set<String> normalized = new HashSet<String>();
+		for(Polygon p: polygons){
+			Geometry copy = (Geometry)p.clone();
+			copy.normalize();
+			normalized.add(copy.toText());
+		}
+		return normalized;
+	}
+}
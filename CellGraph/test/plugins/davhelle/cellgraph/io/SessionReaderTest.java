@@ -0,0 +1,216 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.misc.VoronoiTissue;
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Division;
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Elimination;
+import plugins.davhelle.cellgraph.nodes.Node;
+import plugins.davhelle.cellgraph.tracking.StableMarriageTracking;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class SessionReaderTest {
+
+	private GeometryFactory factory = new GeometryFactory();
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		SpatioTemporalGraph stGraph = createGraph();
+
+		File session_file = File.createTempFile("session", SessionWriter.FILE_EXTENSION);
+		session_file.deleteOnExit();
+		new SessionWriter(stGraph).write(session_file);
+
+		SessionReader reader = new SessionReader(session_file);
+		Assert.assertEquals(reader.getFrameNo(), stGraph.size());
+
+		SpatioTemporalGraph loaded = reader.read();
+		Assert.assertNotNull(loaded);
+		Assert.assertEquals(loaded.size(), stGraph.size());
+		Assert.assertTrue(loaded.hasTracking());
+
+		for(int i=0; i<stGraph.size(); i++){
+			FrameGraph expected = stGraph.getFrame(i);
+			FrameGraph found = loaded.getFrame(i);
+
+			Assert.assertEquals(found.getFrameNo(), i);
+			Assert.assertEquals(found.size(), expected.size());
+			Assert.assertEquals(found.edgeSet().size(), expected.edgeSet().size());
+			Assert.assertEquals(found.hasBoundary(), expected.hasBoundary());
+			Assert.assertEquals(count(found.divisionIterator()), count(expected.divisionIterator()));
+			Assert.assertEquals(count(found.eliminationIterator()), count(expected.eliminationIterator()));
+
+			List<Node> expected_cells = new ArrayList<Node>(expected.vertexSet());
+			List<Node> found_cells = new ArrayList<Node>(found.vertexSet());
+			for(int k=0; k<expected_cells.size(); k++)
+				assertSameCell(found_cells.get(k), expected_cells.get(k));
+
+			for(Edge e: expected.edgeSet()){
+				Node source = found_cells.get(expected_cells.indexOf(expected.getEdgeSource(e)));
+				Node target = found_cells.get(expected_cells.indexOf(expected.getEdgeTarget(e)));
+				Edge found_edge = found.getEdge(source, target);
+				Assert.assertNotNull(found_edge);
+				Assert.assertEquals(found.getEdgeWeight(found_edge), expected.getEdgeWeight(e));
+			}
+		}
+	}
+
+	@Test
+	public void testPartialRange() throws IOException {
+		SpatioTemporalGraph stGraph = createGraph();
+
+		File session_file = File.createTempFile("session", SessionWriter.FILE_EXTENSION);
+		session_file.deleteOnExit();
+		new SessionWriter(stGraph).write(session_file);
+
+		SpatioTemporalGraph loaded = new SessionReader(session_file).read(2, 3);
+		Assert.assertEquals(loaded.size(), 3);
+
+		for(int i=0; i<loaded.size(); i++){
+			FrameGraph expected = stGraph.getFrame(i + 2);
+			FrameGraph found = loaded.getFrame(i);
+			Assert.assertEquals(found.getFrameNo(), i);
+			Assert.assertEquals(found.size(), expected.size());
+
+			List<Node> expected_cells = new ArrayList<Node>(expected.vertexSet());
+			List<Node> found_cells = new ArrayList<Node>(found.vertexSet());
+			for(int k=0; k<expected_cells.size(); k++){
+				Node n = found_cells.get(k);
+				Assert.assertEquals(n.getTrackID(), expected_cells.get(k).getTrackID());
+
+				//links leaving the range are dropped
+				if(i == 0)
+					Assert.assertNull(n.getPrevious());
+				if(n.getPrevious() != null)
+					Assert.assertSame(n.getPrevious().getBelongingFrame(), loaded.getFrame(i - 1));
+			}
+		}
+
+		//the division between frame 1 and 2 lost its mother
+		Assert.assertEquals(count(loaded.getFrame(0).divisionIterator()), 0);
+	}
+
+	@Test
+	public void testUnsupportedGeometry() throws IOException {
+		SpatioTemporalGraph stGraph = createGraph();
+
+		//cell whose geometry is not a single polygon
+		final Geometry pair = factory.toGeometry(new Envelope(0, 1, 0, 1))
+				.union(factory.toGeometry(new Envelope(5, 6, 0, 1)));
+		FrameGraph frame = stGraph.getFrame(2);
+		frame.addVertex(new Cell((Polygon)factory.toGeometry(new Envelope(0, 1, 0, 1)), frame){
+			@Override
+			public Geometry getGeometry() {
+				return pair;
+			}
+		});
+
+		File session_file = File.createTempFile("session", SessionWriter.FILE_EXTENSION);
+		session_file.deleteOnExit();
+		try{
+			new SessionWriter(stGraph).write(session_file);
+			Assert.fail("MultiPolygon cell was written");
+		}catch(IOException e){
+			Assert.assertTrue(e.getMessage().contains("MultiPolygon"));
+		}
+
+		//no incomplete session is left behind
+		Assert.assertFalse(session_file.exists());
+	}
+
+	private void assertSameCell(Node found, Node expected){
+		Coordinate[] expected_coordinates = expected.getGeometry().getCoordinates();
+		Coordinate[] found_coordinates = found.getGeometry().getCoordinates();
+		Assert.assertEquals(found_coordinates.length, expected_coordinates.length);
+		for(int i=0; i<expected_coordinates.length; i++){
+			Assert.assertEquals(found_coordinates[i].x, expected_coordinates[i].x, 1.0 / SessionWriter.DEFAULT_SCALE);
+			Assert.assertEquals(found_coordinates[i].y, expected_coordinates[i].y, 1.0 / SessionWriter.DEFAULT_SCALE);
+		}
+
+		Assert.assertEquals(found.getTrackID(), expected.getTrackID());
+		Assert.assertEquals(found.onBoundary(), expected.onBoundary());
+		Assert.assertEquals(found.getErrorTag(), expected.getErrorTag());
+		Assert.assertEquals(found.hasColorTag(), expected.hasColorTag());
+		if(expected.hasColorTag())
+			Assert.assertEquals(found.getColorTag(), expected.getColorTag());
+
+		assertSameTrack(found.getFirst(), expected.getFirst());
+		assertSameTrack(found.getPrevious(), expected.getPrevious());
+		assertSameTrack(found.getNext(), expected.getNext());
+
+		Assert.assertEquals(found.hasObservedDivision(), expected.hasObservedDivision());
+		Assert.assertEquals(found.hasObservedElimination(), expected.hasObservedElimination());
+		Assert.assertEquals(found.getOrigin() == null, expected.getOrigin() == null);
+	}
+
+	private static void assertSameTrack(Node found, Node expected){
+		if(expected == null){
+			Assert.assertNull(found);
+			return;
+		}
+		Assert.assertNotNull(found);
+		Assert.assertEquals(found.getTrackID(), expected.getTrackID());
+		Assert.assertEquals(found.getBelongingFrame().getFrameNo(), expected.getBelongingFrame().getFrameNo());
+	}
+
+	private static int count(Iterator<?> it){
+		int n = 0;
+		while(it.hasNext()){
+			it.next();
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @return tracked voronoi tissue with a division, an elimination and color tags
+	 */
+	private SpatioTemporalGraph createGraph(){
+		SpatioTemporalGraph stGraph = VoronoiTissue.createGraph(60, 5, new Random(3));
+		for(int t=0; t<stGraph.size(); t++){
+			FrameGraph frame = stGraph.getFrame(t);
+			frame.setFileSource(String.format("skeleton_%03d.tif", t));
+			for(Node cell: frame.vertexSet())
+				cell.setBoundary(cell.getGeometry().getEnvelopeInternal().getMinX() <= 0);
+			//shared boundary length as weight
+			for(Edge e: frame.edgeSet())
+				frame.setEdgeWeight(e, frame.getEdgeSource(e).getGeometry().intersection(
+						frame.getEdgeTarget(e).getGeometry()).getLength());
+		}
+
+		stGraph.getFrame(0).setBoundary(factory.toGeometry(VoronoiTissue.extent(60)).getBoundary());
+
+		new StableMarriageTracking(stGraph, 2, 1, 1).track();
+
+		List<Node> frame_1 = new ArrayList<Node>(stGraph.getFrame(1).vertexSet());
+		List<Node> frame_2 = new ArrayList<Node>(stGraph.getFrame(2).vertexSet());
+		Division division = new Division(frame_1.get(0), frame_2.get(1), frame_2.get(2));
+		division.setDivisionOrientation(0.5);
+
+		List<Node> frame_3 = new ArrayList<Node>(stGraph.getFrame(3).vertexSet());
+		new Elimination(frame_3.get(4));
+
+		for(int i=0; i<frame_3.size(); i+=7)
+			frame_3.get(i).setColorTag(new Color(10 * i % 256, 20, 200));
+
+		return stGraph;
+	}
+}
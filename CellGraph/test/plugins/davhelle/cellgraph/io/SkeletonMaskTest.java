@@ -0,0 +1,65 @@
+package plugins.davhelle.cellgraph.io;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SkeletonMaskTest {
+
+	@Test
+	public void testBinarizeTwoValues(){
+
+		//16-bit style skeleton with values 0/1
+		byte[] gray = new byte[]{0, 1, 1, 0};
+		SkeletonMask mask = SkeletonMask.binarize(gray, 2, 2);
+
+		Assert.assertFalse(mask.isSet(0, 0));
+		Assert.assertTrue(mask.isSet(1, 0));
+		Assert.assertTrue(mask.isSet(0, 1));
+		Assert.assertFalse(mask.isSet(1, 1));
+	}
+
+	@Test
+	public void testThinThickLine(){
+
+		//horizontal bar, three pixels thick
+		SkeletonMask mask = new SkeletonMask(20, 9);
+		for(int x=2; x<18; x++)
+			for(int y=3; y<6; y++)
+				mask.set(x, y, true);
+
+		mask.thin();
+
+		for(int x=4; x<16; x++){
+			int column_count = 0;
+			for(int y=0; y<9; y++)
+				if(mask.isSet(x, y))
+					column_count++;
+			Assert.assertEquals(column_count, 1);
+		}
+	}
+
+	@Test
+	public void testStaircaseReduction(){
+
+		//closed square ring drawn with a 4-connected staircase corner
+		SkeletonMask mask = new SkeletonMask(12, 12);
+		for(int i=2; i<=8; i++){
+			mask.set(i, 2, true);
+			mask.set(2, i, true);
+		}
+		for(int i=2; i<=7; i++)
+			mask.set(9, i + 1, true);
+		mask.set(8, 3, true);
+		for(int i=2; i<=9; i++)
+			mask.set(i, 9, true);
+
+		mask.thin();
+
+		//4-connected step is reduced to a diagonal one
+		Assert.assertFalse(mask.isSet(8, 3) && mask.isSet(8, 2) && mask.isSet(9, 3));
+
+		//the ring stays closed
+		Assert.assertEquals(new RasterSkeletonReader().polygonize(mask).size(), 1);
+	}
+
+}
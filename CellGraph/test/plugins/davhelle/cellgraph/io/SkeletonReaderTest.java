@@ -93,7 +93,7 @@ public class SkeletonReaderTest {
 		for(Polygon p: extracted_polygons){
 			ArrayList<Point> contained = new ArrayList<Point>();
 			for(Point roi: multiPointRoi.values())
-				if(p.getEnvelope().contains(roi)) contained.add(roi);
+				if(p.contains(roi)) contained.add(roi);
 
 			Assert.assertTrue(contained.size() == 1, p.getCentroid().toText()+" contains more than one point");
 		}
@@ -0,0 +1,120 @@
+package plugins.davhelle.cellgraph.misc;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.AdjacencyType;
+import plugins.davhelle.cellgraph.graphs.FrameGenerator;
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.io.InputType;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.util.AffineTransformation;
+import com.vividsolutions.jts.operation.union.CascadedPolygonUnion;
+
+public class BorderCellsTest {
+
+	@Test
+	public void testSampleCrop() {
+		FrameGenerator generator = new FrameGenerator(InputType.SKELETON, AdjacencyType.INTERSECTION);
+		FrameGraph frame = generator.generateFrame(0, "testData/cell_tissue_crop.tif");
+		FrameGraph expected = generator.generateFrame(0, "testData/cell_tissue_crop.tif");
+		assertSameLayers(frame, expected, 1);
+	}
+
+	@Test
+	public void testVoronoiTissue() {
+		FrameGraph frame = VoronoiTissue.create(900, 1, new Random(5))[0];
+		FrameGraph expected = VoronoiTissue.create(900, 1, new Random(5))[0];
+		assertSameLayers(frame, expected, 4);
+	}
+
+	@Test
+	public void testTopologyValidity() {
+		FrameGraph frame = VoronoiTissue.create(100, 1, new Random(7))[0];
+		BorderTopology topology = new BorderTopology(frame);
+		Assert.assertTrue(topology.isValid());
+
+		//removals through the topology keep it up to date
+		topology.removeCells(new ArrayList<Node>(topology.getBorderCells()));
+		Assert.assertTrue(topology.isValid());
+
+		Node n = frame.vertexSet().iterator().next();
+		n.setGeometry(AffineTransformation.translationInstance(1, 1).transform(n.getGeometry()));
+		Assert.assertFalse(topology.isValid());
+
+		//same number of cells but different cells
+		topology = new BorderTopology(frame);
+		Node other = VoronoiTissue.create(100, 1, new Random(8))[0].vertexSet().iterator().next();
+		frame.removeVertex(n);
+		frame.addVertex(other);
+		Assert.assertEquals(frame.size(), topology.getFrame().size());
+		Assert.assertFalse(topology.isValid());
+	}
+
+	/**
+	 * Peels layers of border cells and compares them with the 
+	 * cells intersecting the boundary of the polygon union
+	 * 
+	 * @param frame frame processed by BorderCells
+	 * @param expected identical frame processed with the polygon union
+	 * @param layer_no number of layers to peel
+	 */
+	private void assertSameLayers(FrameGraph frame, FrameGraph expected, int layer_no){
+		TissueEvolution stGraph = new TissueEvolution(1);
+		stGraph.setFrame(frame, 0);
+		BorderCells border = new BorderCells(stGraph);
+
+		border.markOnly();
+		Geometry union_boundary = unionBoundary(expected);
+		Assert.assertEquals(markedCells(frame), intersectingCells(expected, union_boundary));
+		Assert.assertTrue(frame.getBoundary().equalsTopo(union_boundary));
+
+		for(int i=0; i<layer_no; i++){
+			border.removeOneBoundaryLayerFromFrame(0);
+			new BorderCells(stGraph).removeBoundaryLayer(expected, unionBoundary(expected));
+			Assert.assertEquals(centroids(frame.vertexSet()), centroids(expected.vertexSet()));
+
+			union_boundary = unionBoundary(expected);
+			Assert.assertEquals(markedCells(frame), intersectingCells(expected, union_boundary));
+			Assert.assertTrue(frame.getBoundary().equalsTopo(union_boundary));
+		}
+	}
+
+	private Geometry unionBoundary(FrameGraph frame){
+		ArrayList<Geometry> polygons = new ArrayList<Geometry>();
+		for(Node n: frame.vertexSet())
+			polygons.add(n.getGeometry());
+		return CascadedPolygonUnion.union(polygons).getBoundary();
+	}
+
+	private Set<String> intersectingCells(FrameGraph frame, Geometry boundary){
+		Set<Node> cells = new HashSet<Node>();
+		for(Node n: frame.vertexSet())
+			if(boundary.intersects(n.getGeometry()))
+				cells.add(n);
+		return centroids(cells);
+	}
+
+	private Set<String> markedCells(FrameGraph frame){
+		Set<Node> cells = new HashSet<Node>();
+		for(Node n: frame.vertexSet())
+			if(n.onBoundary())
+				cells.add(n);
+		return centroids(cells);
+	}
+
+	private Set<String> centroids(Set<Node> cells){
+		Set<String> centroids = new HashSet<String>();
+		for(Node n: cells)
+			centroids.add(n.getCentroid().toText());
+		return centroids;
+	}
+}
@@ -0,0 +1,95 @@
+package plugins.davhelle.cellgraph.misc;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.process.EllipseFitter;
+import ij.process.ImageProcessor;
+
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.AdjacencyType;
+import plugins.davhelle.cellgraph.graphs.FrameGenerator;
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.io.InputType;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.util.AffineTransformation;
+
+public class EllipseFitGeneratorTest {
+
+	@Test
+	public void testSampleCrop() {
+		assertSameAsRaster("testData/cell_tissue_crop.tif");
+	}
+
+	@Test
+	public void testNested() {
+		assertSameAsRaster("testData/nested_example.tiff");
+	}
+
+	@Test
+	public void testRotatedRectangle() {
+		GeometryFactory factory = new GeometryFactory();
+		Polygon rectangle = (Polygon)factory.toGeometry(
+				new Envelope(-20, 20, -5, 5));
+
+		for(int degrees=0; degrees<180; degrees+=15){
+			double rotation = Math.toRadians(degrees);
+			AffineTransformation transformation = new AffineTransformation();
+			transformation.rotate(rotation);
+			transformation.translate(50, 50);
+
+			PolygonEllipseFitter ef = new PolygonEllipseFitter();
+			ef.fit(transformation.transform(rectangle));
+
+			Assert.assertEquals(ef.xCenter, 50, 1e-9);
+			Assert.assertEquals(ef.yCenter, 50, 1e-9);
+			Assert.assertEquals(Math.PI * ef.major * ef.minor / 4, 400, 1e-6);
+			Assert.assertEquals(ef.major / ef.minor, 4, 1e-3);
+
+			//image y axis points downwards, theta is measured counterclockwise on screen
+			double expected_theta = (Math.PI - rotation) % Math.PI;
+			Assert.assertEquals(ef.theta, expected_theta, 1e-4, "Wrong orientation for "+degrees);
+		}
+	}
+
+	/**
+	 * Compares the analytic ellipse fit with the raster fit of ImageJ
+	 * 
+	 * @param file_name skeleton file to test
+	 */
+	private void assertSameAsRaster(String file_name){
+		FrameGraph frame = new FrameGenerator(
+				InputType.SKELETON, AdjacencyType.INTERSECTION).generateFrame(0, file_name);
+		ImagePlus imp = IJ.openImage(file_name);
+
+		EllipseFitGenerator generator = new EllipseFitGenerator(new TissueEvolution(), imp.getWidth(), imp.getHeight());
+		ImageProcessor ip = EllipseFitGenerator.createRasterProcessor(imp.getWidth(), imp.getHeight());
+		Map<Node, EllipseFitter> analytic = EllipseFitGenerator.computeEllipseFits(frame);
+		Assert.assertEquals(analytic.size(), frame.size());
+
+		for(Node n: frame.vertexSet()){
+			EllipseFitter raster = generator.computeEllipseFit(ip, n);
+			EllipseFitter ef = analytic.get(n);
+
+			Assert.assertEquals(ef.xCenter, raster.xCenter, 0.5);
+			Assert.assertEquals(ef.yCenter, raster.yCenter, 0.5);
+			Assert.assertEquals(ef.major / raster.major, 1, 0.03);
+			Assert.assertEquals(ef.minor / raster.minor, 1, 0.03);
+
+			//orientation is only meaningful for elongated cells
+			if(raster.major / raster.minor > 1.3){
+				double difference = Math.abs(ef.theta - raster.theta);
+				Assert.assertTrue(Math.min(difference, Math.PI - difference) < Math.toRadians(5),
+						"Orientation differs for cell at "+n.getCentroid());
+			}
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package plugins.davhelle.cellgraph.misc;
+
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class PolygonalCellTileGeneratorTest {
+
+	private GeometryFactory factory = new GeometryFactory();
+
+	@Test
+	public void testTilesMatchIntersection() {
+		TissueEvolution stGraph = createGrid(3, 4);
+
+		Map<Node, PolygonalCellTile> cell_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph);
+		Assert.assertEquals(cell_tiles.size(), 3 * 16);
+
+		for(int t=0; t<stGraph.size(); t++){
+			FrameGraph frame = stGraph.getFrame(t);
+			for(Edge e: frame.edgeSet()){
+				Node source = frame.getEdgeSource(e);
+				Node target = frame.getEdgeTarget(e);
+				Geometry expected = source.getGeometry().intersection(target.getGeometry());
+
+				Assert.assertTrue(e.hasGeometry());
+				Assert.assertEquals(frame.getEdgeWeight(e), expected.getLength(), 1e-9);
+				Assert.assertTrue(cell_tiles.get(source).getTileEdge(target).equalsExact(expected));
+				//both tiles share the geometry of the edge
+				Assert.assertSame(cell_tiles.get(source).getTileEdge(target), 
+						cell_tiles.get(target).getTileEdge(source));
+			}
+
+			for(Node n: frame.vertexSet())
+				Assert.assertEquals(cell_tiles.get(n).getTileIntersectionNo(), frame.degreeOf(n));
+		}
+
+		//cells of the first row and column are not neighbors
+		FrameGraph first_frame = stGraph.getFrame(0);
+		Node corner = null;
+		Node opposite = null;
+		for(Node n: first_frame.vertexSet()){
+			if(n.getTrackID() == 0)
+				corner = n;
+			if(n.getTrackID() == 15)
+				opposite = n;
+		}
+		Assert.assertNull(cell_tiles.get(corner).getTileEdge(opposite));
+	}
+
+	@Test
+	public void testTilesAreStoredInGraph() {
+		TissueEvolution stGraph = createGrid(2, 3);
+
+		Map<Node, PolygonalCellTile> cell_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph);
+		Assert.assertNotNull(stGraph.getTileCache());
+		Assert.assertSame(PolygonalCellTileGenerator.createPolygonalTiles(stGraph), cell_tiles);
+
+		//removing a cell invalidates the stored tiles
+		FrameGraph frame = stGraph.getFrame(1);
+		frame.removeVertex(frame.vertexSet().iterator().next());
+		Map<Node, PolygonalCellTile> updated_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph);
+		Assert.assertNotSame(updated_tiles, cell_tiles);
+		Assert.assertEquals(updated_tiles.size(), 2 * 9 - 1);
+	}
+
+	@Test
+	public void testModifiedFrameIsRegenerated() {
+		TissueEvolution stGraph = createGrid(2, 3);
+		Map<Node, PolygonalCellTile> cell_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph);
+
+		//shrink the corner cell of the second frame
+		FrameGraph frame = stGraph.getFrame(1);
+		Node corner = findCell(frame, 0);
+		Node right = findCell(frame, 3);
+		corner.setGeometry(factory.toGeometry(new Envelope(0, 10, 0, 8)));
+
+		Map<Node, PolygonalCellTile> updated_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph);
+		Assert.assertNotSame(updated_tiles, cell_tiles);
+		Assert.assertEquals(updated_tiles.size(), 2 * 9);
+		Assert.assertNotSame(updated_tiles.get(corner), cell_tiles.get(corner));
+		Assert.assertEquals(updated_tiles.get(corner).getTileEdge(right).getLength(), 8, 1e-9);
+		Assert.assertEquals(updated_tiles.get(right).getTileEdge(corner).getLength(), 8, 1e-9);
+
+		//tiles of the unchanged frame are reused
+		for(Node n: stGraph.getFrame(0).vertexSet())
+			Assert.assertSame(updated_tiles.get(n), cell_tiles.get(n));
+	}
+
+	/**
+	 * @param frame frame to search
+	 * @param track_id track id of the cell
+	 * @return cell with the given track id, null if absent
+	 */
+	private Node findCell(FrameGraph frame, int track_id){
+		for(Node n: frame.vertexSet())
+			if(n.getTrackID() == track_id)
+				return n;
+		return null;
+	}
+
+	/**
+	 * @param frame_no number of frames
+	 * @param side number of cells per grid side
+	 * @return graph of square cells connected to their 4 direct neighbors
+	 */
+	private TissueEvolution createGrid(int frame_no, int side){
+		TissueEvolution stGraph = new TissueEvolution(frame_no);
+		for(int t=0; t<frame_no; t++){
+			FrameGraph frame = new FrameGraph(t);
+			Cell[][] cells = new Cell[side][side];
+			for(int i=0; i<side; i++)
+				for(int j=0; j<side; j++){
+					Polygon square = (Polygon)factory.toGeometry(
+							new Envelope(i * 10, i * 10 + 10, j * 10, j * 10 + 10));
+					cells[i][j] = new Cell(square, frame);
+					cells[i][j].setTrackID(i * side + j);
+					frame.addVertex(cells[i][j]);
+				}
+
+			for(int i=0; i<side; i++)
+				for(int j=0; j<side; j++){
+					if(i + 1 < side)
+						frame.addEdge(cells[i][j], cells[i + 1][j]);
+					if(j + 1 < side)
+						frame.addEdge(cells[i][j], cells[i][j + 1]);
+				}
+
+			stGraph.setFrame(frame, t);
+		}
+		return stGraph;
+	}
+}
@@ -0,0 +1,70 @@
+package plugins.davhelle.cellgraph.misc;
+
+import java.util.ArrayList;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.AdjacencyType;
+import plugins.davhelle.cellgraph.graphs.FrameGenerator;
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.io.InputType;
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class SmallCellRemoverTest {
+
+	private GeometryFactory factory = new GeometryFactory();
+
+	@Test
+	public void testAbsorbingCellEdges() {
+		//the small cell shares its longest side with the cell above
+		ArrayList<Polygon> polygons = new ArrayList<Polygon>();
+		polygons.add(polygon(0,0, 4,0, 4,1, 4,3, 0,3));
+		polygons.add(polygon(4,0, 6,0, 6,1, 4,1));
+		polygons.add(polygon(4,1, 6,1, 6,3, 4,3));
+		polygons.add(polygon(6,0, 8,0, 8,3, 6,3, 6,1));
+
+		FrameGraph frame = new FrameGraph(0);
+		new FrameGenerator(InputType.WKT, AdjacencyType.SHARED_BOUNDARY).populateFrame(frame, polygons);
+		Node left = findCell(frame, 2, 1.5);
+		Node top = findCell(frame, 5, 2);
+		Node right = findCell(frame, 7, 1.5);
+		Assert.assertEquals(frame.getEdgeWeight(frame.getEdge(left, top)), 2.0, 1e-9);
+
+		TissueEvolution stGraph = new TissueEvolution(1);
+		stGraph.setFrame(frame, 0);
+		Assert.assertEquals(new SmallCellRemover(stGraph).removeCellsBelow(3), 1);
+
+		Assert.assertEquals(frame.size(), 3);
+		Assert.assertEquals(top.getGeometry().getArea(), 6.0, 1e-9);
+		for(Node neighbor: new Node[]{left, right}){
+			Edge e = frame.getEdge(neighbor, top);
+			Assert.assertNotNull(e);
+			Assert.assertEquals(e.getGeometry().getLength(), 3.0, 1e-9);
+			Assert.assertEquals(frame.getEdgeWeight(e), 3.0, 1e-9);
+		}
+	}
+
+	private Polygon polygon(double... xy){
+		Coordinate[] coordinates = new Coordinate[xy.length / 2 + 1];
+		for(int i=0; i<xy.length / 2; i++)
+			coordinates[i] = new Coordinate(xy[2 * i], xy[2 * i + 1]);
+		coordinates[coordinates.length - 1] = coordinates[0];
+		return factory.createPolygon(factory.createLinearRing(coordinates), null);
+	}
+
+	private Node findCell(FrameGraph frame, double x, double y){
+		Geometry point = factory.createPoint(new Coordinate(x, y));
+		for(Node n: frame.vertexSet())
+			if(n.getGeometry().contains(point))
+				return n;
+		return null;
+	}
+}
@@ -0,0 +1,77 @@
+package plugins.davhelle.cellgraph.misc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.util.AffineTransformation;
+import com.vividsolutions.jts.triangulate.VoronoiDiagramBuilder;
+
+public class VoronoiGeneratorTest {
+
+	@Test
+	public void testSiteMapping() {
+		int time_points = 3;
+		FrameGraph[] frames = VoronoiTissue.create(400, time_points, new Random(3));
+		TissueEvolution stGraph = new TissueEvolution(time_points);
+		for(int t=0; t<time_points; t++)
+			stGraph.setFrame(frames[t], t);
+
+		int side = 400;
+		Map<Node, Geometry> tesselation = new VoronoiGenerator(stGraph, side, side).getNodeVoroniMapping();
+
+		//compare with the mapping by centroid containment
+		for(int t=0; t<time_points; t++){
+			Map<Node, Geometry> expected = containmentMapping(frames[t], new Envelope(0, side, 0, side));
+			Assert.assertEquals(expected.size(), frames[t].size());
+			for(Node cell: frames[t].vertexSet())
+				Assert.assertTrue(tesselation.get(cell).equalsExact(expected.get(cell)),
+						"Wrong voronoi tile for cell at "+cell.getCentroid());
+		}
+
+		Assert.assertTrue(stGraph.hasVoronoi());
+		Assert.assertSame(new VoronoiGenerator(stGraph, side, side).getNodeVoroniMapping(), tesselation);
+
+		//modified frames invalidate the stored tesselation
+		frames[1].removeVertex(frames[1].vertexSet().iterator().next());
+		Map<Node, Geometry> updated = new VoronoiGenerator(stGraph, side, side).getNodeVoroniMapping();
+		Assert.assertNotSame(updated, tesselation);
+		Assert.assertEquals(updated.size(), tesselation.size() - 1);
+
+		//so do geometry changes of cells remaining in the graph
+		Node moved = frames[2].vertexSet().iterator().next();
+		moved.setGeometry(AffineTransformation.translationInstance(3, 2).transform(moved.getGeometry()));
+		Map<Node, Geometry> moved_tesselation = new VoronoiGenerator(stGraph, side, side).getNodeVoroniMapping();
+		Assert.assertNotSame(moved_tesselation, updated);
+		Assert.assertTrue(moved_tesselation.get(moved).contains(moved.getCentroid()));
+	}
+
+	private Map<Node, Geometry> containmentMapping(FrameGraph frame, Envelope clip_envelope){
+		VoronoiDiagramBuilder vdb = new VoronoiDiagramBuilder();
+		vdb.setClipEnvelope(clip_envelope);
+		ArrayList<Coordinate> coords = new ArrayList<Coordinate>();
+		for(Node cell: frame.vertexSet())
+			coords.add(cell.getCentroid().getCoordinate());
+		vdb.setSites(coords);
+		Geometry diagram = vdb.getDiagram(new GeometryFactory());
+
+		Map<Node, Geometry> mapping = new HashMap<Node, Geometry>();
+		for(int j=0; j<diagram.getNumGeometries(); j++)
+			for(Node cell: frame.vertexSet())
+				if(diagram.getGeometryN(j).contains(cell.getCentroid()))
+					mapping.put(cell, diagram.getGeometryN(j));
+		return mapping;
+	}
+}
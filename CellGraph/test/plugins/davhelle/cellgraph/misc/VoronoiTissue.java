@@ -0,0 +1,125 @@
+package plugins.davhelle.cellgraph.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.triangulate.VoronoiDiagramBuilder;
+
+/**
+ * Test fixture of a moving synthetic tissue, every frame is the
+ * Voronoi diagram of randomly placed seeds which drift between frames.
+ * Shared by the tests of all packages.
+ *
+ * @author Davide Heller
+ *
+ */
+public class VoronoiTissue {
+
+	/**
+	 * Approximate side length of a cell
+	 */
+	public static final double CELL_SIZE = 20;
+
+	/**
+	 * Maximal distance of two touching cells
+	 */
+	private static final double TOLERANCE = 1e-6;
+
+	/**
+	 * @param cell_no number of cells per frame
+	 * @return square region covered by the tissue
+	 */
+	public static Envelope extent(int cell_no){
+		double side = Math.sqrt(cell_no) * CELL_SIZE;
+		return new Envelope(0, side, 0, side);
+	}
+
+	/**
+	 * Creates the frames of a synthetic tissue
+	 *
+	 * @param cell_no number of cells per frame
+	 * @param time_points number of frames
+	 * @param random random source
+	 * @return frames of the tissue, without edges
+	 */
+	public static FrameGraph[] create(int cell_no, int time_points, Random random){
+		GeometryFactory factory = new GeometryFactory();
+		Envelope extent = extent(cell_no);
+		double side = extent.getWidth();
+		Geometry clip = factory.toGeometry(extent);
+
+		List<Coordinate> seeds = new ArrayList<Coordinate>();
+		for(int i=0; i<cell_no; i++)
+			seeds.add(new Coordinate(random.nextDouble() * side, random.nextDouble() * side));
+
+		FrameGraph[] frames = new FrameGraph[time_points];
+		for(int t=0; t<time_points; t++){
+			VoronoiDiagramBuilder builder = new VoronoiDiagramBuilder();
+			builder.setSites(seeds);
+			builder.setClipEnvelope(extent);
+			Geometry diagram = builder.getDiagram(factory);
+
+			frames[t] = new FrameGraph(t);
+			for(int i=0; i<diagram.getNumGeometries(); i++){
+				Geometry cell = diagram.getGeometryN(i).intersection(clip);
+				if(cell instanceof Polygon)
+					frames[t].addVertex(new Cell((Polygon)cell, frames[t]));
+			}
+
+			for(Coordinate c: seeds){
+				c.x += random.nextGaussian() * CELL_SIZE / 10;
+				c.y += random.nextGaussian() * CELL_SIZE / 10;
+			}
+		}
+
+		return frames;
+	}
+
+	/**
+	 * Creates a synthetic tissue whose touching cells are connected
+	 *
+	 * @param cell_no number of cells per frame
+	 * @param time_points number of frames
+	 * @param random random source
+	 * @return untracked spatio-temporal graph of the tissue
+	 */
+	public static SpatioTemporalGraph createGraph(int cell_no, int time_points, Random random){
+		FrameGraph[] frames = create(cell_no, time_points, random);
+		TissueEvolution stGraph = new TissueEvolution(time_points);
+		for(int t=0; t<time_points; t++){
+			connect(frames[t]);
+			stGraph.setFrame(frames[t], t);
+		}
+		return stGraph;
+	}
+
+	/**
+	 * Adds an edge between every pair of touching cells (up to rounding
+	 * errors of the clipping), candidates are retrieved from the spatial
+	 * index of the frame
+	 *
+	 * @param frame frame to connect
+	 */
+	public static void connect(FrameGraph frame){
+		for(Node n: new ArrayList<Node>(frame.vertexSet())){
+			Envelope search_area = new Envelope(n.getGeometry().getEnvelopeInternal());
+			search_area.expandBy(TOLERANCE);
+			for(Node other: frame.cellsWithEnvelopeIntersecting(search_area))
+				if(other != n && !frame.containsEdge(n, other) && 
+						n.getGeometry().isWithinDistance(other.getGeometry(), TOLERANCE))
+					frame.addEdge(n, other);
+		}
+	}
+}
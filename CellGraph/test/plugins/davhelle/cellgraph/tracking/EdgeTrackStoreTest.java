@@ -0,0 +1,113 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Edge;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class EdgeTrackStoreTest {
+
+	private GeometryFactory factory = new GeometryFactory();
+
+	@Test
+	public void testAgainstHashMap() {
+		Random random = new Random(7);
+		int frame_no = 100;
+
+		//few expected edges to force growth and rehashing
+		EdgeTrackStore store = new EdgeTrackStore(frame_no, 4);
+		HashMap<Long, boolean[]> reference = new HashMap<Long, boolean[]>();
+
+		for(int i=0; i<2000; i++){
+			int a = random.nextInt(500);
+			int b = random.nextInt(500);
+			long code = Edge.computePairCode(a, b);
+			store.add(code, a, b);
+			if(!reference.containsKey(code))
+				reference.put(code, new boolean[frame_no]);
+		}
+
+		Long[] codes = reference.keySet().toArray(new Long[0]);
+		for(int i=0; i<20000; i++){
+			long code = codes[random.nextInt(codes.length)];
+			int frame = random.nextInt(frame_no);
+			store.setPresent(code, frame);
+			if(reference.containsKey(code))
+				reference.get(code)[frame] = true;
+		}
+
+		//deletions exercise the backward shift of the probe sequences
+		for(int i=0; i<codes.length; i+=3){
+			store.delete(codes[i]);
+			reference.remove(codes[i]);
+		}
+
+		Assert.assertEquals(store.size(), reference.size());
+		Assert.assertEquals(new HashSet<Long>(store.keySet()), reference.keySet());
+		for(long code: codes){
+			Assert.assertEquals(store.containsKey(code), reference.containsKey(code));
+			if(reference.containsKey(code))
+				Assert.assertTrue(Arrays.equals(store.get(code), reference.get(code)));
+			else
+				Assert.assertNull(store.get(code));
+		}
+	}
+
+	@Test
+	public void testEdgeTracking() {
+		int frame_no = 4;
+		TissueEvolution stGraph = new TissueEvolution(frame_no);
+		Cell[][] cells = new Cell[frame_no][4];
+		for(int t=0; t<frame_no; t++){
+			FrameGraph frame = new FrameGraph(t);
+			for(int i=0; i<4; i++)
+				if(t != 2 || i != 3){
+					cells[t][i] = createCell(frame, i * 10, 0);
+					cells[t][i].setTrackID(i);
+				}
+			stGraph.setFrame(frame, t);
+		}
+
+		//cells 0 and 1 lose their edge in frame 1 and 2
+		int[][][] edges = {
+				{{0,1},{1,2},{2,3},{0,3}},
+				{{0,2},{1,2},{2,3},{0,3}},
+				{{0,2},{1,2}},
+				{{0,1},{1,2},{2,3},{0,3}}};
+		for(int t=0; t<frame_no; t++)
+			for(int[] edge: edges[t])
+				stGraph.getFrame(t).addEdge(cells[t][edge[0]], cells[t][edge[1]]);
+
+		EdgeTrackStore tracked_edges = EdgeTracking.trackEdges(stGraph);
+
+		//edges of cell 3 are removed as the cell is missing in frame 2
+		long lost_edge = Edge.computePairCode(0, 1);
+		long stable_edge = Edge.computePairCode(1, 2);
+		Assert.assertEquals(tracked_edges.keySet(),
+				new HashSet<Long>(Arrays.asList(lost_edge, stable_edge)));
+
+		Assert.assertTrue(Arrays.equals(tracked_edges.get(lost_edge), new boolean[]{true, false, false, true}));
+		Assert.assertTrue(Arrays.equals(tracked_edges.get(stable_edge), new boolean[]{true, true, true, true}));
+		Assert.assertFalse(tracked_edges.isPresent(lost_edge, 2));
+		Assert.assertFalse(tracked_edges.containsKey(Edge.computePairCode(0, 2)));
+	}
+
+	private Cell createCell(FrameGraph frame, double x, double y){
+		Polygon square = (Polygon)factory.toGeometry(new Envelope(x, x + 10, y, y + 10));
+		Cell cell = new Cell(square, frame);
+		frame.addVertex(cell);
+		return cell;
+	}
+}
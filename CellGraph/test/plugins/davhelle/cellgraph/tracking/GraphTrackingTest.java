@@ -0,0 +1,95 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Stack;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.misc.VoronoiTissue;
+import plugins.davhelle.cellgraph.nodes.ComparableNode;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+public class GraphTrackingTest {
+
+	/**
+	 * Stable marriage tracking recording the scored preference lists.
+	 * The candidate maps are passed on in a fixed order, so that the 
+	 * linking does not depend on the identity hashes of the nodes.
+	 */
+	private static class RecordingTracking extends StableMarriageTracking {
+
+		private StringBuilder preferences = new StringBuilder();
+
+		RecordingTracking(SpatioTemporalGraph stGraph, int thread_no){
+			super(stGraph, 3, 1, 1);
+			setThreadNo(thread_no);
+		}
+
+		@Override
+		public Map<String, Stack<Node>> linkCandidates(
+				Map<Node, List<ComparableNode>> grooms, Map<Node, List<ComparableNode>> brides) {
+			return super.linkCandidates(record(grooms), record(brides));
+		}
+
+		private Map<Node, List<ComparableNode>> record(Map<Node, List<ComparableNode>> candidates){
+			List<Node> keys = new ArrayList<Node>(candidates.keySet());
+			Collections.sort(keys, new Comparator<Node>() {
+				@Override
+				public int compare(Node a, Node b) {
+					return a.getCentroid().getCoordinate().compareTo(b.getCentroid().getCoordinate());
+				}
+			});
+
+			Map<Node, List<ComparableNode>> ordered = new LinkedHashMap<Node, List<ComparableNode>>();
+			for(Node key: keys){
+				ordered.put(key, candidates.get(key));
+				preferences.append(key.getCentroid()).append(':');
+				for(ComparableNode candidate: candidates.get(key))
+					preferences.append(candidate.getNode().getCentroid()).append('=')
+						.append(Double.doubleToLongBits(candidate.getValue())).append(',');
+				preferences.append('\n');
+			}
+			return ordered;
+		}
+	}
+
+	@Test
+	public void testParallelScoringMatchesSequential() {
+
+		SpatioTemporalGraph sequential = createGraph();
+		RecordingTracking sequential_tracker = new RecordingTracking(sequential, 1);
+		sequential_tracker.track();
+
+		SpatioTemporalGraph parallel = createGraph();
+		RecordingTracking parallel_tracker = new RecordingTracking(parallel, 4);
+		parallel_tracker.track();
+
+		Assert.assertTrue(sequential_tracker.preferences.length() > 0);
+		Assert.assertEquals(parallel_tracker.preferences.toString(),
+				sequential_tracker.preferences.toString());
+
+		for(int i=0; i<sequential.size(); i++){
+			List<Node> expected = new ArrayList<Node>(sequential.getFrame(i).vertexSet());
+			List<Node> found = new ArrayList<Node>(parallel.getFrame(i).vertexSet());
+			Assert.assertEquals(found.size(), expected.size());
+			for(int j=0; j<expected.size(); j++)
+				Assert.assertEquals(found.get(j).getTrackID(), expected.get(j).getTrackID(),
+						"Different track in frame " + i + " at " + expected.get(j).getCentroid());
+		}
+	}
+
+	/**
+	 * @return voronoi tissue with moving seeds, identical at every call
+	 */
+	private SpatioTemporalGraph createGraph(){
+		return VoronoiTissue.createGraph(300, 5, new Random(13));
+	}
+}
@@ -0,0 +1,70 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class OverlapCacheTest {
+
+	private GeometryFactory factory = new GeometryFactory();
+
+	@Test
+	public void testAreas() {
+		FrameGraph first = new FrameGraph(0);
+		FrameGraph second = new FrameGraph(1);
+		Cell a = createCell(first, 0, 0, 10);
+		Cell b = createCell(second, 5, 0, 10);
+
+		OverlapCache cache = new OverlapCache();
+
+		Assert.assertEquals(cache.getArea(a), 100.0);
+		Assert.assertEquals(cache.getIntersectionArea(a, b), 50.0);
+		Assert.assertEquals(cache.getIntersectionArea(b, a), 50.0);
+
+		cache.putIntersectionArea(b, a, 42.0);
+		Assert.assertEquals(cache.getIntersectionArea(a, b), 42.0);
+	}
+
+	@Test
+	public void testRelease() {
+		int frame_no = 12;
+		int cell_no = 40;
+
+		FrameGraph[] frames = new FrameGraph[frame_no];
+		Node[][] cells = new Node[frame_no][cell_no];
+		for(int t=0; t<frame_no; t++){
+			frames[t] = new FrameGraph(t);
+			for(int i=0; i<cell_no; i++)
+				cells[t][i] = createCell(frames[t], i * 10 + t, 0, 10);
+		}
+
+		OverlapCache cache = new OverlapCache();
+
+		//slide a window of two frames while the released slots are reused
+		for(int t=1; t<frame_no; t++){
+			cache.releaseBefore(t - 1);
+			Assert.assertTrue(cache.size() <= 2 * cell_no, "Released cells still cached");
+
+			for(int i=0; i<cell_no; i++){
+				Assert.assertEquals(cache.getArea(cells[t][i]), 100.0, 1e-9);
+				Assert.assertEquals(cache.getIntersectionArea(cells[t - 1][i], cells[t][i]), 90.0, 1e-9);
+				if(i > 0)
+					Assert.assertEquals(cache.getIntersectionArea(cells[t][i - 1], cells[t - 1][i]), 10.0, 1e-9);
+			}
+		}
+	}
+
+	private Cell createCell(FrameGraph frame, double x, double y, double side){
+		Polygon square = (Polygon)factory.toGeometry(new Envelope(x, x + side, y, y + side));
+		Cell cell = new Cell(square, frame);
+		frame.addVertex(cell);
+		return cell;
+	}
+}
@@ -0,0 +1,73 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.misc.VoronoiTissue;
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class OverlapPropagationTest {
+
+	private GeometryFactory factory = new GeometryFactory();
+
+	@Test
+	public void testSameCandidatesAsExhaustiveSearch() {
+
+		//consecutive frames of a moving tissue
+		FrameGraph[] frames = VoronoiTissue.create(150, 2, new Random(3));
+		FrameGraph first = frames[0];
+		FrameGraph second = frames[1];
+
+		OverlapPropagation propagation = new OverlapPropagation(10);
+
+		int candidate_no = 0;
+		for(Node current: first.vertexSet()){
+			HashSet<Node> found = new HashSet<Node>(propagation.findOverlapping(current, second));
+
+			HashSet<Node> expected = new HashSet<Node>();
+			for(Node next: second.vertexSet())
+				if(next.getGeometry().intersects(current.getGeometry()) &&
+						next.getGeometry().intersection(current.getGeometry()).getArea() > 10)
+					expected.add(next);
+
+			Assert.assertEquals(found, expected, "Wrong candidates for cell at " + current.getCentroid());
+			candidate_no += found.size();
+		}
+
+		Assert.assertTrue(candidate_no >= first.size(), "Every cell should overlap its successor");
+	}
+
+	@Test
+	public void testContainedCell() {
+		FrameGraph first = new FrameGraph(0);
+		Cell outer = new Cell(square(new Envelope(0, 20, 0, 20)), first);
+		first.addVertex(outer);
+
+		FrameGraph second = new FrameGraph(1);
+		Cell inner = new Cell(square(new Envelope(5, 9, 5, 9)), second);
+		Cell small = new Cell(square(new Envelope(10, 13, 10, 13)), second);
+		Cell touching = new Cell(square(new Envelope(20, 30, 0, 20)), second);
+		second.addVertex(inner);
+		second.addVertex(small);
+		second.addVertex(touching);
+
+		List<Node> found = new OverlapPropagation(10).findOverlapping(outer, second);
+
+		Assert.assertEquals(found.size(), 1);
+		Assert.assertSame(found.get(0), inner);
+	}
+
+	private Polygon square(Envelope envelope){
+		return (Polygon)factory.toGeometry(envelope);
+	}
+}
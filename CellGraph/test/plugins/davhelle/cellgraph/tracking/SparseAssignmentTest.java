@@ -0,0 +1,145 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.jgrapht.WeightedGraph;
+import org.jgrapht.alg.KuhnMunkresMinimalWeightBipartitePerfectMatching;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SparseAssignmentTest {
+
+	private static final double DUMMY_WEIGHT = 30.0;
+
+	@Test
+	public void testSimpleAssignment() {
+		//row 0 prefers column 0, row 1 only has column 0 and must otherwise use its dummy
+		int[] row_start = {0, 3, 5};
+		int[] columns = {0, 1, 2, 0, 3};
+		double[] costs = {1, 2, DUMMY_WEIGHT, 1.5, DUMMY_WEIGHT};
+
+		int[] assignment = new SparseAssignment(2, 4, row_start, columns, costs).solve();
+
+		Assert.assertEquals(assignment[0], 1);
+		Assert.assertEquals(assignment[1], 0);
+	}
+
+	@Test
+	public void testSameMatchingAsHungarian() {
+		Random random = new Random(11);
+
+		for(int run=0; run<300; run++){
+			int groom_no = 1 + random.nextInt(7);
+			int bride_no = 1 + random.nextInt(7);
+
+			//random candidate pairs with distinct costs
+			double[][] candidates = new double[groom_no][bride_no];
+			for(int i=0; i<groom_no; i++)
+				for(int j=0; j<bride_no; j++)
+					candidates[i][j] = random.nextDouble() < 0.4 ? random.nextDouble() * 50 : -1;
+
+			int[] sparse = solveSparse(candidates);
+			int[] hungarian = solveHungarian(candidates);
+
+			Assert.assertEquals(sparse, hungarian, "Assignment differs in run " + run);
+		}
+	}
+
+	/**
+	 * @return bride for every groom, -1 if unassigned
+	 */
+	private int[] solveSparse(double[][] candidates){
+		int groom_no = candidates.length;
+		int bride_no = candidates[0].length;
+
+		int[] row_start = new int[groom_no + 1];
+		List<Integer> columns = new ArrayList<Integer>();
+		List<Double> costs = new ArrayList<Double>();
+		for(int i=0; i<groom_no; i++){
+			row_start[i] = columns.size();
+			for(int j=0; j<bride_no; j++)
+				if(candidates[i][j] >= 0){
+					columns.add(j);
+					costs.add(candidates[i][j]);
+				}
+			columns.add(bride_no + i);
+			costs.add(DUMMY_WEIGHT);
+		}
+		row_start[groom_no] = columns.size();
+
+		int[] column_array = new int[columns.size()];
+		double[] cost_array = new double[costs.size()];
+		for(int k=0; k<column_array.length; k++){
+			column_array[k] = columns.get(k);
+			cost_array[k] = costs.get(k);
+		}
+
+		int[] assignment = new SparseAssignment(
+				groom_no, bride_no + groom_no, row_start, column_array, cost_array).solve();
+
+		for(int i=0; i<groom_no; i++)
+			if(assignment[i] >= bride_no)
+				assignment[i] = -1;
+
+		return assignment;
+	}
+
+	/**
+	 * Dense formulation as in HungarianTracking
+	 *
+	 * @return bride for every groom, -1 if unassigned
+	 */
+	private int[] solveHungarian(double[][] candidates){
+		int groom_no = candidates.length;
+		int bride_no = candidates[0].length;
+
+		WeightedGraph<String, DefaultWeightedEdge> graph =
+				new SimpleWeightedGraph<String, DefaultWeightedEdge>(DefaultWeightedEdge.class);
+
+		List<String> grooms = new ArrayList<String>();
+		List<String> brides = new ArrayList<String>();
+		for(int i=0; i<groom_no; i++){
+			grooms.add("g" + i);
+			brides.add("dummy_b" + i);
+		}
+		for(int j=0; j<bride_no; j++){
+			brides.add("b" + j);
+			grooms.add("dummy_g" + j);
+		}
+		for(String v: grooms)
+			graph.addVertex(v);
+		for(String v: brides)
+			graph.addVertex(v);
+
+		for(int i=0; i<groom_no; i++){
+			for(int j=0; j<bride_no; j++)
+				if(candidates[i][j] >= 0)
+					graph.setEdgeWeight(graph.addEdge("g" + i, "b" + j), candidates[i][j]);
+			graph.setEdgeWeight(graph.addEdge("g" + i, "dummy_b" + i), DUMMY_WEIGHT);
+		}
+
+		for(String groom: grooms)
+			for(String bride: brides)
+				if(!graph.containsEdge(groom, bride))
+					graph.setEdgeWeight(graph.addEdge(groom, bride), Double.MAX_VALUE);
+
+		Map<String, String> matching = new HashMap<String, String>();
+		for(DefaultWeightedEdge e: new KuhnMunkresMinimalWeightBipartitePerfectMatching<String, DefaultWeightedEdge>(
+				graph, grooms, brides).getMatching())
+			matching.put(graph.getEdgeSource(e), graph.getEdgeTarget(e));
+
+		int[] assignment = new int[groom_no];
+		for(int i=0; i<groom_no; i++){
+			String bride = matching.get("g" + i);
+			assignment[i] = bride.startsWith("dummy") ? -1 : Integer.parseInt(bride.substring(1));
+		}
+
+		return assignment;
+	}
+}
@@ -0,0 +1,209 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class StableMarriageTest {
+
+	@Test
+	public void testAgainstListImplementation() {
+		Random random = new Random(5);
+		for(int trial=0; trial<500; trial++){
+			int groom_no = random.nextInt(30);
+			int bride_no = 1 + random.nextInt(30);
+
+			int[][] groom_brides = randomPreferences(random, groom_no, bride_no);
+			double[][] groom_distances = randomDistances(random, groom_brides, trial);
+			int[][] bride_grooms = randomPreferences(random, bride_no, Math.max(1, groom_no));
+			double[][] bride_distances = randomDistances(random, bride_grooms, trial);
+
+			Stack<Integer> expected_nochoice = new Stack<Integer>();
+			int[] expected = listMarriage(groom_brides, groom_distances,
+					bride_grooms, bride_distances, bride_no, expected_nochoice);
+
+			StableMarriage stable_marriage = new StableMarriage(groom_no, bride_no,
+					startOf(groom_brides), flatten(groom_brides), flatten(groom_distances),
+					startOf(bride_grooms), flatten(bride_grooms), flatten(bride_distances));
+
+			Assert.assertTrue(Arrays.equals(stable_marriage.solve(), expected), "trial " + trial);
+
+			int[] nochoice = stable_marriage.getNochoiceGrooms();
+			Assert.assertEquals(nochoice.length, expected_nochoice.size());
+			for(int i=0; i<nochoice.length; i++)
+				Assert.assertEquals(nochoice[i], expected_nochoice.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void testLargeInstance() {
+		Random random = new Random(7);
+		int n = 10000;
+		int candidate_no = 8;
+
+		int[] groom_start = new int[n + 1];
+		int[] groom_brides = new int[n * candidate_no];
+		double[] groom_distances = new double[n * candidate_no];
+		int[] bride_start = new int[n + 1];
+		int[] bride_grooms = new int[n * candidate_no];
+		double[] bride_distances = new double[n * candidate_no];
+
+		//local neighborhoods as in a tracked frame
+		for(int i=0; i<n; i++){
+			groom_start[i + 1] = (i + 1) * candidate_no;
+			bride_start[i + 1] = (i + 1) * candidate_no;
+			for(int k=0; k<candidate_no; k++){
+				groom_brides[i * candidate_no + k] = (i + k) % n;
+				groom_distances[i * candidate_no + k] = random.nextDouble();
+				bride_grooms[i * candidate_no + k] = (i - k + n) % n;
+				bride_distances[i * candidate_no + k] = random.nextDouble();
+			}
+		}
+
+		int[] husband = new StableMarriage(n, n, groom_start, groom_brides, groom_distances,
+				bride_start, bride_grooms, bride_distances).solve();
+
+		//every groom is married at most once
+		boolean[] taken = new boolean[n];
+		for(int bride=0; bride<n; bride++)
+			if(husband[bride] != -1){
+				Assert.assertFalse(taken[husband[bride]]);
+				taken[husband[bride]] = true;
+			}
+	}
+
+	private static int[][] randomPreferences(Random random, int row_no, int column_no){
+		int[][] preferences = new int[row_no][];
+		for(int i=0; i<row_no; i++){
+			preferences[i] = new int[random.nextInt(6)];
+			for(int k=0; k<preferences[i].length; k++)
+				preferences[i][k] = random.nextInt(column_no);
+		}
+		return preferences;
+	}
+
+	private static double[][] randomDistances(Random random, int[][] preferences, int trial){
+		double[][] distances = new double[preferences.length][];
+		for(int i=0; i<preferences.length; i++){
+			distances[i] = new double[preferences[i].length];
+			for(int k=0; k<distances[i].length; k++)
+				//few distinct values to exercise ties
+				distances[i][k] = trial % 2 == 0 ? random.nextInt(3) : random.nextDouble();
+		}
+		return distances;
+	}
+
+	private static int[] startOf(int[][] rows){
+		int[] start = new int[rows.length + 1];
+		for(int i=0; i<rows.length; i++)
+			start[i + 1] = start[i] + rows[i].length;
+		return start;
+	}
+
+	private static int[] flatten(int[][] rows){
+		int[] flat = new int[startOf(rows)[rows.length]];
+		int k = 0;
+		for(int[] row: rows)
+			for(int value: row)
+				flat[k++] = value;
+		return flat;
+	}
+
+	private static double[] flatten(double[][] rows){
+		int n = 0;
+		for(double[] row: rows)
+			n += row.length;
+		double[] flat = new double[n];
+		int k = 0;
+		for(double[] row: rows)
+			for(double value: row)
+				flat[k++] = value;
+		return flat;
+	}
+
+	/**
+	 * Sorted candidate lists, ties keep their input order
+	 */
+	private static List<List<Integer>> sortedLists(final int[][] indices, final double[][] distances){
+		List<List<Integer>> lists = new ArrayList<List<Integer>>();
+		for(int i=0; i<indices.length; i++){
+			final int row = i;
+			List<Integer> order = new ArrayList<Integer>();
+			for(int k=0; k<indices[i].length; k++)
+				order.add(k);
+			Collections.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Double.compare(distances[row][a], distances[row][b]);
+				}
+			});
+			List<Integer> candidates = new ArrayList<Integer>();
+			for(int k: order)
+				candidates.add(indices[i][k]);
+			lists.add(candidates);
+		}
+		return lists;
+	}
+
+	/**
+	 * Reference implementation following the previous list based linking
+	 */
+	private static int[] listMarriage(int[][] groom_brides, double[][] groom_distances,
+			int[][] bride_grooms, double[][] bride_distances, int bride_no, Stack<Integer> nochoice_grooms){
+
+		List<List<Integer>> grooms = sortedLists(groom_brides, groom_distances);
+		List<List<Integer>> brides = sortedLists(bride_grooms, bride_distances);
+
+		HashMap<Integer, Integer> marriage = new HashMap<Integer, Integer>();
+		Stack<Integer> unmarried_grooms = new Stack<Integer>();
+		for(int i=0; i<grooms.size(); i++)
+			unmarried_grooms.push(i);
+
+		while(!unmarried_grooms.empty()){
+			Integer groom = unmarried_grooms.pop();
+			Iterator<Integer> bride_it = grooms.get(groom).iterator();
+			boolean married = false;
+
+			while(bride_it.hasNext() && !married){
+				Integer bride = bride_it.next();
+				bride_it.remove();
+
+				if(!marriage.containsKey(bride)){
+					marriage.put(bride, groom);
+					married = true;
+				}
+				else{
+					Integer old_groom = marriage.get(bride);
+					for(Integer preffered_groom: brides.get(bride)){
+						if(preffered_groom.equals(old_groom))
+							break;
+						if(preffered_groom.equals(groom)){
+							unmarried_grooms.push(old_groom);
+							marriage.put(bride, groom);
+							married = true;
+							break;
+						}
+					}
+				}
+			}
+
+			if(!marriage.containsValue(groom) && grooms.get(groom).isEmpty())
+				nochoice_grooms.push(groom);
+		}
+
+		int[] husband = new int[bride_no];
+		Arrays.fill(husband, -1);
+		for(Integer bride: marriage.keySet())
+			husband[bride] = marriage.get(bride);
+		return husband;
+	}
+}